@@ -18,10 +18,20 @@ package es.tid.keyserver.config;
 import es.tid.keyserver.config.keyserver.ConfigFile;
 import es.tid.keyserver.config.maven.Maven;
 import es.tid.keyserver.core.lib.CheckObject;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.jetty.KsJetty;
+import es.tid.keyserver.https.jetty.KsSslContextFactory;
+import es.tid.keyserver.https.jetty.SessionTicketKeys;
+import es.tid.keyserver.https.protocol.SkiRequestParser;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -36,6 +46,13 @@ public class ConfigController implements CheckObject{
      */
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ConfigController.class);
 
+    /**
+     * Default maximum number of connections inside the Redis connection pool:
+     *     twice the number of available processors (minimum 8).
+     * @since v0.4.5
+     */
+    public static final int DEFAULT_DB_POOL_MAX_TOTAL = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
     /**
      * Maven project data object.
      */
@@ -360,4 +377,719 @@ public class ConfigController implements CheckObject{
             return -1;
         }
     }
+    
+    /**
+     * Maximum number of connections inside the Redis connection pool. Each 
+     *     incoming request borrows one connection for its private key query.
+     * @return Integer with the pool size. If the field is not present or not
+     *     valid, returns twice the number of available processors (minimum 8).
+     * @since v0.4.5
+     */
+    public int getDbPoolMaxTotal(){
+        return readInteger(this.keyserverConfig.getDbPoolMaxTotal(), 1, DEFAULT_DB_POOL_MAX_TOTAL,
+                "Redis pool maximum connections");
+    }
+    
+    /**
+     * Maximum number of idle connections inside the Redis connection pool.
+     * @return Integer with the value. If the field is not present or not 
+     *     valid, returns the pool maximum size.
+     * @since v0.4.5
+     */
+    public int getDbPoolMaxIdle(){
+        return readInteger(this.keyserverConfig.getDbPoolMaxIdle(), 0, this.getDbPoolMaxTotal(),
+                "Redis pool maximum idle connections");
+    }
+    
+    /**
+     * Minimum number of idle connections inside the Redis connection pool.
+     * @return Integer with the value. If the field is not present or not 
+     *     valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getDbPoolMinIdle(){
+        return readInteger(this.keyserverConfig.getDbPoolMinIdle(), 0, 0,
+                "Redis pool minimum idle connections");
+    }
+    
+    /**
+     * Maximum time in milliseconds that a request waits for a free Redis 
+     *     connection when the pool is exhausted.
+     * @return Integer with the time in milliseconds. If the field is not 
+     *     present or not valid, returns 2000.
+     * @since v0.4.5
+     */
+    public int getDbPoolMaxWait(){
+        return readInteger(this.keyserverConfig.getDbPoolMaxWait(), 1, 2000,
+                "Redis pool maximum wait time");
+    }
+    
+    /**
+     * Time in milliseconds that a Redis connection can be idle inside the 
+     *     pool before it is evicted.
+     * @return Integer with the time in milliseconds. If the field is not 
+     *     present or not valid, returns 60000.
+     * @since v0.4.5
+     */
+    public int getDbPoolIdleTime(){
+        return readInteger(this.keyserverConfig.getDbPoolIdleTime(), 1000, 60000,
+                "Redis pool idle time");
+    }
+    
+    /**
+     * Maximum number of parsed private keys kept in memory.
+     * @return Integer with the cache size. If the field is not present or not
+     *     valid, returns 10000. Zero disables the cache.
+     * @since v0.4.5
+     */
+    public int getKeyCacheMaxSize(){
+        return readInteger(this.keyserverConfig.getKeyCacheMaxSize(), 0, 10000,
+                "Private key cache size");
+    }
+    
+    /**
+     * Maximum time in milliseconds that a parsed private key is kept in 
+     *     memory. Redis expiration dates are always respected.
+     * @return Integer with the time in milliseconds. If the field is not 
+     *     present or not valid, returns 60000. Zero disables the cache.
+     * @since v0.4.5
+     */
+    public int getKeyCacheTtl(){
+        return readInteger(this.keyserverConfig.getKeyCacheTtl(), 0, 60000,
+                "Private key cache time to live");
+    }
+    
+    /**
+     * Number of threads used for the private key operations (RSA decryption 
+     *     and ECDHE signatures).
+     * @return Integer with the number of threads. If the field is not present
+     *     or not valid, returns the number of available processors. Zero 
+     *     runs the operations on the Jetty threads (not allowed with virtual
+     *     request threads, the number of available processors is used).
+     * @since v0.4.5
+     */
+    public int getCryptoWorkers(){
+        int cores = Runtime.getRuntime().availableProcessors();
+        int workers = readInteger(this.keyserverConfig.getCryptoWorkers(), 0, cores, "Crypto workers");
+        if((workers == 0) && RequestThreads.MODE_VIRTUAL.equals(this.getServerThreadMode())){
+            // The operations would run on unbounded virtual threads.
+            LOGGER.warn("Crypto workers can't be disabled with virtual request threads. Using {} workers.", cores);
+            return cores;
+        }
+        return workers;
+    }
+    
+    /**
+     * Maximum number of private key operations waiting for a free worker.
+     * @return Integer with the queue size. If the field is not present or not
+     *     valid, returns 1024.
+     * @since v0.4.5
+     */
+    public int getCryptoQueueSize(){
+        return readInteger(this.keyserverConfig.getCryptoQueueSize(), 1, 1024,
+                "Crypto workers queue size");
+    }
+    
+    /**
+     * Response sent when the private key operations queue is full.
+     * @return String with one of the following values: busy (HTTP 503), error
+     *     (HTTP 200 with an "unspecified error" JSON) or inline (the operation 
+     *     is executed on the Jetty thread). If the field is not present or not
+     *     valid, returns busy.
+     * @since v0.4.5
+     */
+    public String getCryptoQueueFullResponse(){
+        return readOption(this.keyserverConfig.getCryptoQueueFullResponse(), 
+                new String[] {CryptoWorkers.QUEUE_FULL_BUSY, CryptoWorkers.QUEUE_FULL_ERROR, CryptoWorkers.QUEUE_FULL_INLINE},
+                CryptoWorkers.QUEUE_FULL_BUSY, "Crypto workers queue full response");
+    }
+    
+    /**
+     * Maximum number of items inside a batch request (POST /batch).
+     * @return Integer with the value. If the field is not present or not 
+     *     valid, returns 64.
+     * @since v0.4.5
+     */
+    public int getBatchMaxItems(){
+        return readInteger(this.keyserverConfig.getBatchMaxItems(), 1, 64,
+                "Batch request maximum items");
+    }
+    
+    /**
+     * Maximum HTTP request body size (single SKI requests). Batch requests 
+     *     can use this size for each item.
+     * @return Integer with the value in bytes. If the field is not present 
+     *     or not valid, returns 8192.
+     * @since v0.4.5
+     */
+    public int getHttpMaxBodySize(){
+        return readInteger(this.keyserverConfig.getHttpMaxBodySize(), 1024, SkiRequestParser.MAX_REQUEST_SIZE,
+                "HTTP maximum body size");
+    }
+    
+    /**
+     * Security audit log ring buffer size.
+     * @return Integer with the value. Zero means that the security log 
+     *     entries are written by the request threads. If the field is not 
+     *     present or not valid, returns 8192.
+     * @since v0.4.5
+     */
+    public int getAuditQueueSize(){
+        return readInteger(this.keyserverConfig.getAuditQueueSize(), 0, 8192,
+                "Security audit log queue size");
+    }
+    
+    /**
+     * Security audit log overflow policy (ring buffer full).
+     * @return String with one of the following values: block (the request 
+     *     thread waits), drop (the entry is discarded and the number of 
+     *     discarded entries is written to the security log) or count (the 
+     *     entry is discarded and only counted). If the field is not present 
+     *     or not valid, returns block.
+     * @since v0.4.5
+     */
+    public String getAuditOverflowPolicy(){
+        return readOption(this.keyserverConfig.getAuditOverflowPolicy(), 
+                new String[] {AuditLog.OVERFLOW_BLOCK, AuditLog.OVERFLOW_DROP, AuditLog.OVERFLOW_COUNT},
+                AuditLog.OVERFLOW_BLOCK, "Security audit log overflow policy");
+    }
+    
+    /**
+     * HTTP protocol used by the HTTPS connector.
+     * @return String with one of the following values: http/1.1 (HTTP/1.1 
+     *     only) or h2 (HTTP/2 negotiated with ALPN, HTTP/1.1 for clients 
+     *     without h2 support). If the field is not present or not valid, 
+     *     returns http/1.1.
+     * @since v0.4.5
+     */
+    public String getHttpVersion(){
+        return readOption(this.keyserverConfig.getHttpVersion(), 
+                new String[] {KsJetty.HTTP_1_1, KsJetty.HTTP_2},
+                KsJetty.HTTP_1_1, "HTTP protocol version");
+    }
+    
+    /**
+     * Maximum number of concurrent HTTP/2 streams (in flight requests) for 
+     *     each client connection.
+     * @return Integer with the value. If the field is not present or not 
+     *     valid, returns 256.
+     * @since v0.4.5
+     */
+    public int getHttp2MaxConcurrentStreams(){
+        return readInteger(this.keyserverConfig.getHttp2MaxConcurrentStreams(), 1, 256,
+                "HTTP/2 maximum concurrent streams");
+    }
+    
+    /**
+     * HTTP/2 initial flow control receive window for each stream.
+     * @return Integer with the value in bytes. If the field is not present 
+     *     or not valid, returns 65535.
+     * @since v0.4.5
+     */
+    public int getHttp2StreamWindow(){
+        return readInteger(this.keyserverConfig.getHttp2StreamWindow(), 65535, 65535,
+                "HTTP/2 stream receive window");
+    }
+    
+    /**
+     * HTTP/2 initial flow control receive window for each connection (shared
+     *     by all the streams of the connection).
+     * @return Integer with the value in bytes. If the field is not present 
+     *     or not valid, returns 1048576.
+     * @since v0.4.5
+     */
+    public int getHttp2SessionWindow(){
+        return readInteger(this.keyserverConfig.getHttp2SessionWindow(), 65535, 1048576,
+                "HTTP/2 session receive window");
+    }
+    
+    /**
+     * Binary SKI protocol listener port (TLS, same address and certificate 
+     *     as the HTTPS server).
+     * @return Integer with the port. Zero disables the listener. If the 
+     *     field is not present or not valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getBinaryPort(){
+        int port = readInteger(this.keyserverConfig.getBinaryPort(), 0, 0,
+                "Binary SKI listener port");
+        if(port > 65535){
+            LOGGER.warn("Binary SKI listener port is not valid ({}). Listener disabled.", port);
+            return 0;
+        }
+        return port;
+    }
+    
+    /**
+     * Maximum number of binary SKI requests in flight for each connection.
+     * @return Integer with the value. If the field is not present or not 
+     *     valid, returns 256.
+     * @since v0.4.5
+     */
+    public int getBinaryMaxInFlight(){
+        return readInteger(this.keyserverConfig.getBinaryMaxInFlight(), 1, 256,
+                "Binary SKI maximum requests in flight");
+    }
+    
+    /**
+     * JSSE provider used by the TLS listeners.
+     * @return String with the value: default (JVM default provider), 
+     *     conscrypt (Conscrypt/BoringSSL, if it's present on the classpath) 
+     *     or the name of a registered provider. If the field is not present,
+     *     returns default.
+     * @since v0.4.5
+     */
+    public String getTlsProvider(){
+        String value = this.keyserverConfig.getTlsProvider();
+        if((value == null) || value.trim().isEmpty()){
+            LOGGER.debug("TLS provider not present. Using default value ({}).", KsSslContextFactory.PROVIDER_DEFAULT);
+            return KsSslContextFactory.PROVIDER_DEFAULT;
+        }
+        return value.trim();
+    }
+    
+    /**
+     * TLS cipher suites order.
+     * @return String with one of the following values: client (client 
+     *     preference, JSSE default) or server (server preference with 
+     *     ECDHE-ECDSA and AES-GCM suites first). If the field is not present
+     *     or not valid, returns client.
+     * @since v0.4.5
+     */
+    public String getTlsCipherOrder(){
+        return readOption(this.keyserverConfig.getTlsCipherOrder(), 
+                new String[] {KsSslContextFactory.CIPHER_ORDER_CLIENT, KsSslContextFactory.CIPHER_ORDER_SERVER},
+                KsSslContextFactory.CIPHER_ORDER_CLIENT, "TLS cipher suites order");
+    }
+    
+    /**
+     * Maximum number of TLS sessions inside the server sessions cache.
+     * @return Integer with the value (0 means no limit). If the field is not
+     *     present or not valid, returns 20480.
+     * @since v0.4.5
+     */
+    public int getTlsSessionCacheSize(){
+        return readInteger(this.keyserverConfig.getTlsSessionCacheSize(), 0, 20480,
+                "TLS session cache size");
+    }
+    
+    /**
+     * TLS session lifetime inside the server sessions cache.
+     * @return Integer with the value in seconds (0 means no limit). If the 
+     *     field is not present or not valid, returns 86400.
+     * @since v0.4.5
+     */
+    public int getTlsSessionTimeout(){
+        return readInteger(this.keyserverConfig.getTlsSessionTimeout(), 0, 86400,
+                "TLS session timeout");
+    }
+    
+    /**
+     * TLS session tickets (stateless session resumption).
+     * @return String with one of the following values: default (provider 
+     *     default), on or off. If the field is not present or not valid, 
+     *     returns default.
+     * @since v0.4.5
+     */
+    public String getTlsSessionTickets(){
+        return readOption(this.keyserverConfig.getTlsSessionTickets(), 
+                new String[] {KsSslContextFactory.TICKETS_DEFAULT, KsSslContextFactory.TICKETS_ON, 
+                    KsSslContextFactory.TICKETS_OFF},
+                KsSslContextFactory.TICKETS_DEFAULT, "TLS session tickets");
+    }
+    
+    /**
+     * Secret source of the session ticket keys shared by the KeyServer 
+     *     nodes.
+     * @return String with one of the following values: off (provider keys),
+     *     file:path (base64 secret inside a file) or redis:key (base64 secret
+     *     inside a Redis key). If the field is not present or not valid, 
+     *     returns off.
+     * @since v0.4.5
+     */
+    public String getTlsTicketKeySource(){
+        String value = this.keyserverConfig.getTlsTicketKeySource();
+        if((value == null) || value.trim().isEmpty()){
+            return SessionTicketKeys.SOURCE_OFF;
+        }
+        String source = value.trim();
+        if(SessionTicketKeys.SOURCE_OFF.equalsIgnoreCase(source)){
+            return SessionTicketKeys.SOURCE_OFF;
+        }
+        for(String prefix : new String[] {SessionTicketKeys.SOURCE_FILE, SessionTicketKeys.SOURCE_REDIS}){
+            if(source.regionMatches(true, 0, prefix, 0, prefix.length()) && (source.length() > prefix.length())){
+                return prefix + source.substring(prefix.length()).trim();
+            }
+        }
+        // Warning level.
+        LOGGER.warn("TLS ticket keys source value is not valid ({}). Using default value ({}).", 
+                value, SessionTicketKeys.SOURCE_OFF);
+        return SessionTicketKeys.SOURCE_OFF;
+    }
+    
+    /**
+     * Rotation interval of the shared session ticket keys.
+     * @return Integer with the value in seconds. If the field is not present
+     *     or not valid, returns 3600.
+     * @since v0.4.5
+     */
+    public int getTlsTicketKeyRotation(){
+        return readInteger(this.keyserverConfig.getTlsTicketKeyRotation(), 60, 3600,
+                "TLS ticket keys rotation");
+    }
+    
+    /**
+     * Minimum number of Jetty worker threads.
+     * @return Integer with the value. If the field is not present or not valid, 
+     *     returns 8.
+     * @since v0.4.5
+     */
+    public int getServerMinThreads(){
+        return readInteger(this.keyserverConfig.getServerMinThreads(), 1, 8,
+                "Jetty minimum threads");
+    }
+    
+    /**
+     * Maximum number of Jetty worker threads (acceptors and selectors use 
+     *     threads of the same pool).
+     * @return Integer with the value. If the field is not present or not valid, 
+     *     returns 200.
+     * @since v0.4.5
+     */
+    public int getServerMaxThreads(){
+        return readInteger(this.keyserverConfig.getServerMaxThreads(), 1, 200,
+                "Jetty maximum threads");
+    }
+    
+    /**
+     * Number of Jetty threads reserved to run the selected connections 
+     *     without a thread pool dispatch.
+     * @return Integer with the value (-1 means Jetty heuristic). If the field is 
+     *     not present or not valid, returns -1.
+     * @since v0.4.5
+     */
+    public int getServerReservedThreads(){
+        return readInteger(this.keyserverConfig.getServerReservedThreads(), -1, -1,
+                "Jetty reserved threads");
+    }
+    
+    /**
+     * Number of HTTPS connector acceptor threads.
+     * @return Integer with the value (-1 means Jetty heuristic, 0 accepts on the 
+     *     selector threads). If the field is not present or not valid, 
+     *     returns -1.
+     * @since v0.4.5
+     */
+    public int getServerAcceptors(){
+        return readInteger(this.keyserverConfig.getServerAcceptors(), -1, -1,
+                "HTTPS connector acceptors");
+    }
+    
+    /**
+     * Number of HTTPS connector selector threads.
+     * @return Integer with the value (-1 means Jetty heuristic). If the field is 
+     *     not present or not valid, returns -1.
+     * @since v0.4.5
+     */
+    public int getServerSelectors(){
+        return readInteger(this.keyserverConfig.getServerSelectors(), -1, -1,
+                "HTTPS connector selectors");
+    }
+    
+    /**
+     * Number of HTTPS connectors listening on the same address and port with
+     *     SO_REUSEPORT (each one with its own acceptors and selectors).
+     * @return Integer with the value. If the field is not present or not 
+     *     valid, returns 1.
+     * @since v0.4.5
+     */
+    public int getServerConnectors(){
+        return readInteger(this.keyserverConfig.getServerConnectors(), 1, 1,
+                "HTTPS connectors");
+    }
+    
+    /**
+     * Local cleartext HTTP listener port, for edge proxies running on the 
+     *     same host (no TLS, loopback address only).
+     * @return Integer with the port. Zero disables the listener. If the 
+     *     field is not present or not valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getLocalPort(){
+        int port = readInteger(this.keyserverConfig.getLocalPort(), 0, 0,
+                "Local cleartext listener port");
+        if(port > 65535){
+            LOGGER.warn("Local cleartext listener port is not valid ({}). Listener disabled.", port);
+            return 0;
+        }
+        return port;
+    }
+    
+    /**
+     * Local cleartext HTTP listener address. Only loopback addresses are 
+     *     accepted, so the listener can't be reached from other hosts.
+     * @return Loopback address. If the field is not present or it's not a 
+     *     loopback address, returns the default loopback address.
+     * @since v0.4.5
+     */
+    public InetAddress getLocalAddress(){
+        String address = this.keyserverConfig.getLocalAddress();
+        if((address == null) || address.trim().isEmpty()){
+            return InetAddress.getLoopbackAddress();
+        }
+        try {
+            InetAddress local = InetAddress.getByName(address.trim());
+            if(local.isLoopbackAddress()){
+                return local;
+            }
+        } catch (UnknownHostException ex) {
+            LOGGER.trace("Local cleartext listener address not valid: {}", ex.getMessage());
+        }
+        // Warning level.
+        LOGGER.warn("Local cleartext listener address is not a loopback address ({}). Using {}.", 
+                address, InetAddress.getLoopbackAddress().getHostAddress());
+        return InetAddress.getLoopbackAddress();
+    }
+    
+    /**
+     * HTTPS listener accept queue size (listen backlog).
+     * @return Integer with the value (0 means the OS default). If the field is 
+     *     not present or not valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getServerAcceptQueueSize(){
+        return readInteger(this.keyserverConfig.getServerAcceptQueueSize(), 0, 0,
+                "HTTPS accept queue size");
+    }
+    
+    /**
+     * HTTP response output buffer size.
+     * @return Integer with the value in bytes. If the field is not present or not 
+     *     valid, returns 32768.
+     * @since v0.4.5
+     */
+    public int getHttpOutputBufferSize(){
+        return readInteger(this.keyserverConfig.getHttpOutputBufferSize(), 1024, 32768,
+                "HTTP output buffer size");
+    }
+    
+    /**
+     * Maximum number of open HTTPS connections. New connections are not 
+     *     accepted while the limit is reached. The binary SKI listener has its
+     *     own connections with the same limit (new ones are closed).
+     * @return Integer with the value (0 means no limit). If the field is not 
+     *     present or not valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getServerMaxConnections(){
+        return readInteger(this.keyserverConfig.getServerMaxConnections(), 0, 0,
+                "HTTPS maximum connections");
+    }
+    
+    /**
+     * HTTPS requests threads mode.
+     * @return String with one of the following values: platform (requests
+     *     run on the Jetty threads) or virtual (private key queries run on
+     *     virtual threads, Java 21 or newer). If the field is not present or
+     *     not valid, returns platform.
+     * @since v0.4.5
+     */
+    public String getServerThreadMode(){
+        return readOption(this.keyserverConfig.getServerThreadMode(), 
+                new String[] {RequestThreads.MODE_PLATFORM, RequestThreads.MODE_VIRTUAL},
+                RequestThreads.MODE_PLATFORM, "HTTPS requests threads mode");
+    }
+    
+    /**
+     * Initial adaptive limit of in-flight private key operations. Requests
+     *     above the limit are rejected with HTTP 503 (batch items above the 
+     *     limit get an error result).
+     * @return Integer with the value (0 disables the limit). If the field is not 
+     *     present or not valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getCryptoLimit(){
+        return readInteger(this.keyserverConfig.getCryptoLimit(), 0, 0,
+                "Concurrency limit");
+    }
+    
+    /**
+     * Maximum adaptive limit of in-flight private key operations.
+     * @return Integer with the value. If the field is not present or not valid, 
+     *     returns 1000.
+     * @since v0.4.5
+     */
+    public int getCryptoLimitMax(){
+        return readInteger(this.keyserverConfig.getCryptoLimitMax(), 1, 1000,
+                "Concurrency limit maximum");
+    }
+    
+    /**
+     * Target latency of the private key operations. Slower operations 
+     *     decrease the concurrency limit.
+     * @return Integer with the value in milliseconds. If the field is not present
+     *     or not valid, returns 100.
+     * @since v0.4.5
+     */
+    public int getCryptoLimitLatency(){
+        return readInteger(this.keyserverConfig.getCryptoLimitLatency(), 1, 100,
+                "Concurrency limit target latency");
+    }
+    
+    /**
+     * Crypto workers queue scheduler.
+     * @return String with one of the following values: fifo (one queue for
+     *     all the clients) or fair (weighted fair queuing by client address).
+     *     If the field is not present or not valid, returns fifo.
+     * @since v0.4.5
+     */
+    public String getCryptoScheduler(){
+        return readOption(this.keyserverConfig.getCryptoScheduler(), 
+                new String[] {CryptoWorkers.SCHEDULER_FIFO, CryptoWorkers.SCHEDULER_FAIR},
+                CryptoWorkers.SCHEDULER_FIFO, "Crypto workers scheduler");
+    }
+    
+    /**
+     * Weights of the clients for the crypto workers fair scheduler. The 
+     *     field contains "address=weight" entries separated by '&' (for 
+     *     example "192.168.1.10=4&192.168.1.11=2"). Not valid entries are 
+     *     ignored.
+     * @return Map with the weight (1 or more) of each client address. If the
+     *     field is not present, returns an empty map.
+     * @since v0.4.5
+     */
+    public Map<String, Integer> getCryptoClientWeights(){
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        String value = this.keyserverConfig.getCryptoClientWeights();
+        if((value == null) || value.trim().isEmpty()){
+            return weights;
+        }
+        for(String entry : value.split("&")){
+            int separator = entry.lastIndexOf('=');
+            String client = (separator < 0) ? "" : entry.substring(0, separator).trim();
+            int weight = 0;
+            try {
+                weight = (separator < 0) ? 0 : Integer.parseInt(entry.substring(separator + 1).trim());
+            } catch (NumberFormatException ex) {
+                weight = 0;
+            }
+            if(client.isEmpty() || (weight < 1)){
+                LOGGER.warn("Crypto workers client weight is not valid ({}). Ignored.", entry.trim());
+                continue;
+            }
+            weights.put(client, weight);
+        }
+        return weights;
+    }
+    
+    /**
+     * Number of cached private keys needed by the readiness probe (GET 
+     *     /ready), so a new node doesn't get traffic before its cache is 
+     *     warmed up. It's limited to the cache size.
+     * @return Integer with the value (0 no warm up). If the field is not 
+     *     present or not valid, returns 0.
+     * @since v0.4.5
+     */
+    public int getReadyCacheKeys(){
+        return readInteger(this.keyserverConfig.getReadyCacheKeys(), 0, 0,
+                "Readiness cache keys");
+    }
+    
+    /**
+     * Crypto workers queue level, in percent of the queue size, at which the
+     *     readiness probe (GET /ready) fails.
+     * @return Integer from 1 to 100. If the field is not present or not 
+     *     valid, returns 80.
+     * @since v0.4.5
+     */
+    public int getReadyQueueLevel(){
+        int level = readInteger(this.keyserverConfig.getReadyQueueLevel(), 1, 80,
+                "Readiness queue level");
+        if(level > 100){
+            LOGGER.warn("Readiness queue level is not valid ({}). Using default value (80).", level);
+            return 80;
+        }
+        return level;
+    }
+    
+    /**
+     * Request header with the client time budget in milliseconds (remaining
+     *     time until the client abandons the handshake). Requests whose 
+     *     budget has expired are discarded.
+     * @return String with the header name or null if the value is "off". If
+     *     the field is not present or not valid, returns 
+     *     {@link DeadlineControl#DEFAULT_HEADER}.
+     * @since v0.4.5
+     */
+    public String getDeadlineHeader(){
+        String header = this.keyserverConfig.getDeadlineHeader();
+        if((header == null) || header.trim().isEmpty()){
+            return DeadlineControl.DEFAULT_HEADER;
+        }
+        header = header.trim();
+        if("off".equalsIgnoreCase(header)){
+            return null;
+        }
+        if(header.matches("[!#$%&'*+.^_`|~0-9A-Za-z-]+")){
+            return header;
+        }
+        // Warning level.
+        LOGGER.warn("Time budget header is not valid ({}). Using default value ({}).", 
+                header, DeadlineControl.DEFAULT_HEADER);
+        return DeadlineControl.DEFAULT_HEADER;
+    }
+    
+    /**
+     * This method is used to parse optional numeric configuration fields.
+     * @param value String with the configuration field value.
+     * @param min Minimum valid value.
+     * @param defaultValue Value returned if the field is not present or it's
+     *     not valid.
+     * @param description Field description used for log purposes.
+     * @return Integer with the field value or the default value.
+     * @since v0.4.5
+     */
+    private int readInteger(String value, int min, int defaultValue, String description){
+        if((value == null) || value.trim().isEmpty()){
+            LOGGER.debug("{} not present. Using default value ({}).", description, defaultValue);
+            return defaultValue;
+        }
+        try {
+            int number = Integer.parseInt(value.trim());
+            if(number >= min){
+                return number;
+            }
+        } catch (NumberFormatException ex) {
+            LOGGER.trace("{} not numeric: {}", description, ex.getMessage());
+        }
+        // Warning level.
+        LOGGER.warn("{} value is not valid ({}). Using default value ({}).", description, value, defaultValue);
+        return defaultValue;
+    }
+    
+    /**
+     * This method is used to parse optional configuration fields with a 
+     *     closed set of values.
+     * @param value String with the configuration field value.
+     * @param options Valid values (lower case).
+     * @param defaultValue Value returned if the field is not present or it's
+     *     not valid.
+     * @param description Field description used for log purposes.
+     * @return String with the field value (lower case) or the default value.
+     * @since v0.4.5
+     */
+    private String readOption(String value, String[] options, String defaultValue, String description){
+        if((value == null) || value.trim().isEmpty()){
+            LOGGER.debug("{} not present. Using default value ({}).", description, defaultValue);
+            return defaultValue;
+        }
+        for(String option : options){
+            if(option.equalsIgnoreCase(value.trim())){
+                return option;
+            }
+        }
+        // Warning level.
+        LOGGER.warn("{} value is not valid ({}). Using default value ({}).", description, value, defaultValue);
+        return defaultValue;
+    }
 }
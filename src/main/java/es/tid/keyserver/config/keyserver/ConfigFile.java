@@ -16,6 +16,7 @@
 
 package es.tid.keyserver.config.keyserver;
 
+import es.tid.keyserver.config.ConfigController;
 import es.tid.keyserver.core.lib.CheckObject;
 import org.slf4j.LoggerFactory;
 
@@ -227,6 +228,432 @@ public class ConfigFile implements CheckObject{
         return this.getParameter("serverIpWhiteList");
     }
     
+    /**
+     * Maximum number of connections inside the Redis connection pool.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getDbPoolMaxTotal() {
+        return this.getParameter("dbPoolMaxTotal");
+    }
+    
+    /**
+     * Maximum number of idle connections inside the Redis connection pool.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getDbPoolMaxIdle() {
+        return this.getParameter("dbPoolMaxIdle");
+    }
+    
+    /**
+     * Minimum number of idle connections inside the Redis connection pool.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getDbPoolMinIdle() {
+        return this.getParameter("dbPoolMinIdle");
+    }
+    
+    /**
+     * Maximum time in milliseconds that a request waits for a free Redis 
+     * connection when the pool is exhausted.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getDbPoolMaxWait() {
+        return this.getParameter("dbPoolMaxWait");
+    }
+    
+    /**
+     * Time in milliseconds that a Redis connection can be idle inside the pool
+     * before it is evicted.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getDbPoolIdleTime() {
+        return this.getParameter("dbPoolIdleTime");
+    }
+    
+    /**
+     * Maximum number of parsed private keys kept in memory.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getKeyCacheMaxSize() {
+        return this.getParameter("keyCacheMaxSize");
+    }
+    
+    /**
+     * Maximum time in milliseconds that a parsed private key is kept in memory.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getKeyCacheTtl() {
+        return this.getParameter("keyCacheTtl");
+    }
+    
+    /**
+     * Number of threads used for the private key operations.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoWorkers() {
+        return this.getParameter("cryptoWorkers");
+    }
+    
+    /**
+     * Maximum number of private key operations waiting for a free worker.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoQueueSize() {
+        return this.getParameter("cryptoQueueSize");
+    }
+    
+    /**
+     * Response sent when the private key operations queue is full.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoQueueFullResponse() {
+        return this.getParameter("cryptoQueueFullResponse");
+    }
+    
+    /**
+     * Maximum number of items inside a batch request.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getBatchMaxItems() {
+        return this.getParameter("batchMaxItems");
+    }
+    
+    /**
+     * Maximum HTTP request body size.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getHttpMaxBodySize() {
+        return this.getParameter("httpMaxBodySize");
+    }
+    
+    /**
+     * Security audit log ring buffer size.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getAuditQueueSize() {
+        return this.getParameter("auditQueueSize");
+    }
+    
+    /**
+     * Security audit log overflow policy.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getAuditOverflowPolicy() {
+        return this.getParameter("auditOverflowPolicy");
+    }
+    
+    /**
+     * HTTP protocol version (http/1.1 or h2).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getHttpVersion() {
+        return this.getParameter("httpVersion");
+    }
+    
+    /**
+     * HTTP/2 maximum concurrent streams for each connection.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getHttp2MaxConcurrentStreams() {
+        return this.getParameter("http2MaxConcurrentStreams");
+    }
+    
+    /**
+     * HTTP/2 initial stream receive window.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getHttp2StreamWindow() {
+        return this.getParameter("http2StreamWindow");
+    }
+    
+    /**
+     * HTTP/2 initial session receive window.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getHttp2SessionWindow() {
+        return this.getParameter("http2SessionWindow");
+    }
+    
+    /**
+     * Binary SKI protocol listener port (0 disabled).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getBinaryPort() {
+        return this.getParameter("binaryPort");
+    }
+    
+    /**
+     * Binary SKI maximum requests in flight for each connection.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getBinaryMaxInFlight() {
+        return this.getParameter("binaryMaxInFlight");
+    }
+    
+    /**
+     * TLS provider (default, conscrypt or a JSSE provider name).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsProvider() {
+        return this.getParameter("tlsProvider");
+    }
+    
+    /**
+     * TLS cipher suites order (client or server).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsCipherOrder() {
+        return this.getParameter("tlsCipherOrder");
+    }
+    
+    /**
+     * TLS session cache size (0 no limit).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsSessionCacheSize() {
+        return this.getParameter("tlsSessionCacheSize");
+    }
+    
+    /**
+     * TLS session timeout in seconds (0 no limit).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsSessionTimeout() {
+        return this.getParameter("tlsSessionTimeout");
+    }
+    
+    /**
+     * TLS session tickets (default, on or off).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsSessionTickets() {
+        return this.getParameter("tlsSessionTickets");
+    }
+    
+    /**
+     * Shared session ticket keys secret source (off, file:path or redis:key).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsTicketKeySource() {
+        return this.getParameter("tlsTicketKeySource");
+    }
+    
+    /**
+     * Shared session ticket keys rotation interval (seconds).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getTlsTicketKeyRotation() {
+        return this.getParameter("tlsTicketKeyRotation");
+    }
+    
+    /**
+     * Jetty thread pool minimum size.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerMinThreads() {
+        return this.getParameter("serverMinThreads");
+    }
+    
+    /**
+     * Jetty thread pool maximum size.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerMaxThreads() {
+        return this.getParameter("serverMaxThreads");
+    }
+    
+    /**
+     * Jetty reserved threads (-1 Jetty heuristic).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerReservedThreads() {
+        return this.getParameter("serverReservedThreads");
+    }
+    
+    /**
+     * HTTPS connector acceptor threads (-1 Jetty heuristic).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerAcceptors() {
+        return this.getParameter("serverAcceptors");
+    }
+    
+    /**
+     * HTTPS connector selector threads (-1 Jetty heuristic).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerSelectors() {
+        return this.getParameter("serverSelectors");
+    }
+    
+    /**
+     * Number of HTTPS connectors listening on the same port (SO_REUSEPORT).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerConnectors() {
+        return this.getParameter("serverConnectors");
+    }
+    
+    /**
+     * Local cleartext listener port (0 disabled).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getLocalPort() {
+        return this.getParameter("localPort");
+    }
+    
+    /**
+     * Local cleartext listener address (loopback only).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getLocalAddress() {
+        return this.getParameter("localAddress");
+    }
+    
+    /**
+     * HTTPS accept queue size (0 OS default).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerAcceptQueueSize() {
+        return this.getParameter("serverAcceptQueueSize");
+    }
+    
+    /**
+     * HTTP response output buffer size in bytes.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getHttpOutputBufferSize() {
+        return this.getParameter("httpOutputBufferSize");
+    }
+    
+    /**
+     * HTTPS maximum open connections (0 no limit).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerMaxConnections() {
+        return this.getParameter("serverMaxConnections");
+    }
+    
+    /**
+     * HTTPS requests threads mode (platform or virtual).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getServerThreadMode() {
+        return this.getParameter("serverThreadMode");
+    }
+    
+    /**
+     * Initial in-flight private key operations limit (0 disabled).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoLimit() {
+        return this.getParameter("cryptoLimit");
+    }
+    
+    /**
+     * Maximum in-flight private key operations limit.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoLimitMax() {
+        return this.getParameter("cryptoLimitMax");
+    }
+    
+    /**
+     * Target latency of the private key operations in milliseconds.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoLimitLatency() {
+        return this.getParameter("cryptoLimitLatency");
+    }
+    
+    /**
+     * Crypto workers queue scheduler (fifo or fair).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoScheduler() {
+        return this.getParameter("cryptoScheduler");
+    }
+    
+    /**
+     * Fair scheduler client weights (address=weight separated by '&').
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getCryptoClientWeights() {
+        return this.getParameter("cryptoClientWeights");
+    }
+    
+    /**
+     * Cached private keys needed by the readiness probe (0 no warm up).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getReadyCacheKeys() {
+        return this.getParameter("readyCacheKeys");
+    }
+    
+    /**
+     * Crypto workers queue level (percent) above which the readiness probe 
+     *     fails.
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getReadyQueueLevel() {
+        return this.getParameter("readyQueueLevel");
+    }
+    
+    /**
+     * Client time budget request header (off disabled).
+     * @return String with the value. If the field is not present, returns 'null'.
+     * @since v0.4.5
+     */
+    public String getDeadlineHeader() {
+        return this.getParameter("deadlineHeader");
+    }
+    
     /**
      * Method used to create a new configuration file on specific route with 
      *     default parameters.
@@ -255,6 +682,53 @@ public class ConfigFile implements CheckObject{
             defaultParameters.setProperty("dbPort", "6379");
             defaultParameters.setProperty("dbPassword", "foobared"); // Default password for Redis config file.
             defaultParameters.setProperty("dbCheckInterval", "1000");
+            defaultParameters.setProperty("dbPoolMaxTotal", String.valueOf(ConfigController.DEFAULT_DB_POOL_MAX_TOTAL));
+            defaultParameters.setProperty("dbPoolMaxIdle", String.valueOf(ConfigController.DEFAULT_DB_POOL_MAX_TOTAL));
+            defaultParameters.setProperty("dbPoolMinIdle", "2");
+            defaultParameters.setProperty("dbPoolMaxWait", "2000");
+            defaultParameters.setProperty("dbPoolIdleTime", "60000");
+            defaultParameters.setProperty("keyCacheMaxSize", "10000");
+            defaultParameters.setProperty("keyCacheTtl", "60000");
+            defaultParameters.setProperty("cryptoWorkers", String.valueOf(Runtime.getRuntime().availableProcessors()));
+            defaultParameters.setProperty("cryptoQueueSize", "1024");
+            defaultParameters.setProperty("cryptoQueueFullResponse", "busy");
+            defaultParameters.setProperty("batchMaxItems", "64");
+            defaultParameters.setProperty("httpMaxBodySize", "8192");
+            defaultParameters.setProperty("auditQueueSize", "8192");
+            defaultParameters.setProperty("auditOverflowPolicy", "block");
+            defaultParameters.setProperty("httpVersion", "http/1.1");
+            defaultParameters.setProperty("http2MaxConcurrentStreams", "256");
+            defaultParameters.setProperty("http2StreamWindow", "65535");
+            defaultParameters.setProperty("http2SessionWindow", "1048576");
+            defaultParameters.setProperty("binaryPort", "0");
+            defaultParameters.setProperty("binaryMaxInFlight", "256");
+            defaultParameters.setProperty("tlsProvider", "default");
+            defaultParameters.setProperty("tlsCipherOrder", "client");
+            defaultParameters.setProperty("tlsSessionCacheSize", "20480");
+            defaultParameters.setProperty("tlsSessionTimeout", "86400");
+            defaultParameters.setProperty("tlsSessionTickets", "default");
+            defaultParameters.setProperty("tlsTicketKeySource", "off");
+            defaultParameters.setProperty("tlsTicketKeyRotation", "3600");
+            defaultParameters.setProperty("serverMinThreads", "8");
+            defaultParameters.setProperty("serverMaxThreads", "200");
+            defaultParameters.setProperty("serverReservedThreads", "-1");
+            defaultParameters.setProperty("serverAcceptors", "-1");
+            defaultParameters.setProperty("serverSelectors", "-1");
+            defaultParameters.setProperty("serverConnectors", "1");
+            defaultParameters.setProperty("localPort", "0");
+            defaultParameters.setProperty("localAddress", "127.0.0.1");
+            defaultParameters.setProperty("serverAcceptQueueSize", "0");
+            defaultParameters.setProperty("httpOutputBufferSize", "32768");
+            defaultParameters.setProperty("serverMaxConnections", "0");
+            defaultParameters.setProperty("serverThreadMode", "platform");
+            defaultParameters.setProperty("cryptoLimit", "0");
+            defaultParameters.setProperty("cryptoLimitMax", "1000");
+            defaultParameters.setProperty("cryptoLimitLatency", "100");
+            defaultParameters.setProperty("cryptoScheduler", "fifo");
+            defaultParameters.setProperty("cryptoClientWeights", "");
+            defaultParameters.setProperty("readyCacheKeys", "0");
+            defaultParameters.setProperty("readyQueueLevel", "80");
+            defaultParameters.setProperty("deadlineHeader", "X-KeyServer-Budget");
             // Save parameters on file
             defaultParameters.store(newConfigFile, null);
             // Close configuration file.
@@ -0,0 +1,794 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.controllers.cache;
+
+import es.tid.keyserver.controllers.db.DataBase;
+import es.tid.keyserver.controllers.db.PrivateKeyRegister;
+import es.tid.keyserver.core.lib.RequestDeadline;
+import java.security.KeyFactory;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded and concurrent cache of parsed private key objects indexed by the
+ *     certificate SPKI hash.
+ *
+ *     <p>Entries are valid until the configured time to live or the Redis
+ *     expiration date of the register (the lowest one). Concurrent misses for
+ *     the same SPKI are collapsed into a single Redis query (one round trip
+ *     for the private key and its expiration date). When the cache is full,
+ *     entries are evicted using a second chance (CLOCK) policy.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class PrivateKeyCache {
+    /**
+     * Logging object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(PrivateKeyCache.class);
+
+    /**
+     * Cached entries indexed by SPKI.
+     */
+    private final ConcurrentHashMap<String, CacheEntry> cache;
+
+    /**
+     * Insertion order of the cached entries (used for evictions).
+     */
+    private final ConcurrentLinkedQueue<CacheEntry> order;
+
+    /**
+     * Number of elements inside the eviction queue.
+     */
+    private final AtomicInteger orderSize;
+
+    /**
+     * Lock used to run only one eviction process at the same time.
+     */
+    private final ReentrantLock evictionLock;
+
+    /**
+     * Function used to get the encoded private key from the database.
+     */
+    private final Function<String, byte[]> keyLoader;
+
+    /**
+     * Function used to get the encoded private key and the register time to
+     *     live from the database.
+     */
+    private final Function<String, PrivateKeyRegister> registerLoader;
+
+    /**
+     * Function used to get a group of encoded private keys from the database.
+     */
+    private final Function<List<String>, List<byte[]>> keysLoader;
+
+    /**
+     * Function used to get a group of encoded private keys and register times
+     *     to live from the database.
+     */
+    private final Function<List<String>, List<PrivateKeyRegister>> registersLoader;
+
+    /**
+     * Maximum number of cached private keys.
+     */
+    private final int maxSize;
+
+    /**
+     * Maximum time in milliseconds that a private key is cached.
+     */
+    private final long ttl;
+
+    /**
+     * Number of requests served from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+
+    /**
+     * Number of requests that required a database query.
+     */
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Number of requests that waited for the database query of other request.
+     */
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Number of entries removed because the cache was full.
+     */
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Number of entries removed because its time to live has expired.
+     */
+    private final LongAdder expirations = new LongAdder();
+
+    /**
+     * Class constructor.
+     * @param db Redis database object.
+     * @param maxSize Maximum number of cached private keys. Zero disables the
+     *     cache.
+     * @param ttl Maximum time in milliseconds that a private key is cached.
+     *     Zero disables the cache.
+     * @since v0.4.5
+     */
+    public PrivateKeyCache(DataBase db, int maxSize, long ttl){
+        this(db::getPrivateForHash, db::getPrivateKeyRegister, 
+                db::getPrivateForHashes, db::getPrivateKeyRegisters, maxSize, ttl);
+    }
+
+    /**
+     * Class constructor with custom loader functions.
+     * @param keyLoader Function that returns the encoded private key for a
+     *     SPKI or null if it's not found.
+     * @param ttlLoader Function that returns the remaining time to live in
+     *     milliseconds of a SPKI register (negative if not defined).
+     * @param maxSize Maximum number of cached private keys.
+     * @param ttl Maximum time in milliseconds that a private key is cached.
+     * @since v0.4.5
+     */
+    PrivateKeyCache(Function<String, byte[]> keyLoader, ToLongFunction<String> ttlLoader, int maxSize, long ttl){
+        this(keyLoader, ttlLoader, 
+                spkis -> spkis.stream().map(keyLoader).collect(Collectors.toList()),
+                spkis -> spkis.stream().map(registerLoader(keyLoader, ttlLoader)).collect(Collectors.toList()),
+                maxSize, ttl);
+    }
+
+    /**
+     * Class constructor with custom single and group loader functions.
+     * @param keyLoader Function that returns the encoded private key for a
+     *     SPKI or null if it's not found.
+     * @param ttlLoader Function that returns the remaining time to live in
+     *     milliseconds of a SPKI register (negative if not defined).
+     * @param keysLoader Function that returns the encoded private keys for a 
+     *     list of SPKIs (same order, null if not found).
+     * @param registersLoader Function that returns the encoded private keys
+     *     and the remaining times to live for a list of SPKIs (same order, 
+     *     null if not found).
+     * @param maxSize Maximum number of cached private keys.
+     * @param ttl Maximum time in milliseconds that a private key is cached.
+     * @since v0.4.5
+     */
+    PrivateKeyCache(Function<String, byte[]> keyLoader, ToLongFunction<String> ttlLoader,
+            Function<List<String>, List<byte[]>> keysLoader, 
+            Function<List<String>, List<PrivateKeyRegister>> registersLoader, int maxSize, long ttl){
+        this(keyLoader, registerLoader(keyLoader, ttlLoader), keysLoader, registersLoader, maxSize, ttl);
+    }
+
+    /**
+     * Class constructor with custom single, register and group loader 
+     *     functions.
+     * @param keyLoader Function that returns the encoded private key for a
+     *     SPKI or null if it's not found (used when the cache is disabled).
+     * @param registerLoader Function that returns the encoded private key and
+     *     the remaining time to live of a SPKI register or null if it's not
+     *     found.
+     * @param keysLoader Function that returns the encoded private keys for a 
+     *     list of SPKIs (same order, null if not found, used when the cache 
+     *     is disabled).
+     * @param registersLoader Function that returns the encoded private keys
+     *     and the remaining times to live for a list of SPKIs (same order, 
+     *     null if not found).
+     * @param maxSize Maximum number of cached private keys.
+     * @param ttl Maximum time in milliseconds that a private key is cached.
+     */
+    private PrivateKeyCache(Function<String, byte[]> keyLoader, Function<String, PrivateKeyRegister> registerLoader,
+            Function<List<String>, List<byte[]>> keysLoader, 
+            Function<List<String>, List<PrivateKeyRegister>> registersLoader, int maxSize, long ttl){
+        this.keyLoader = keyLoader;
+        this.registerLoader = registerLoader;
+        this.keysLoader = keysLoader;
+        this.registersLoader = registersLoader;
+        this.maxSize = Math.max(0, maxSize);
+        this.ttl = Math.max(0, ttl);
+        this.cache = new ConcurrentHashMap<>();
+        this.order = new ConcurrentLinkedQueue<>();
+        this.orderSize = new AtomicInteger();
+        this.evictionLock = new ReentrantLock();
+    }
+
+    /**
+     * Returns the private key object for the specified SPKI. If the key is not
+     *     cached, it's loaded from the database.
+     * 
+     *     <p>The wait for a key loaded by other thread is limited to the
+     *     deadline of the current request ({@link RequestDeadline#current()}).
+     *     If that load failed because its own deadline expired, the query is
+     *     done again.
+     * @param spki Certificate hash used as database index.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     * @since v0.4.5
+     */
+    public PrivateKey get(String spki) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        if(!isEnabled()){
+            misses.increment();
+            return parse(keyLoader.apply(spki));
+        }
+        try {
+            return lookup(spki);
+        } catch (AbandonedLoad ex) {
+            return retry(spki, ex);
+        }
+    }
+
+    /**
+     * Returns the cached private key or loads it from the database.
+     * @param spki Certificate hash used as database index.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     */
+    private PrivateKey lookup(String spki) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        long now = System.currentTimeMillis();
+        CacheEntry entry = cache.get(spki);
+        if(entry != null){
+            if(!entry.isExpired(now)){
+                countHit(entry);
+                entry.referenced = true;
+                return waitFor(entry.value);
+            }
+            if(cache.remove(spki, entry)){
+                expirations.increment();
+            }
+        }
+        CacheEntry newEntry = new CacheEntry(spki);
+        entry = cache.putIfAbsent(spki, newEntry);
+        if(entry != null){
+            // Other thread is loading (or has loaded) the same private key.
+            countHit(entry);
+            return waitFor(entry.value);
+        }
+        misses.increment();
+        try {
+            PrivateKey key = load(newEntry, now);
+            if(key == null){
+                cache.remove(spki, newEntry);
+            } else {
+                order.offer(newEntry);
+                orderSize.incrementAndGet();
+            }
+            newEntry.value.complete(key);
+            evictIfNeeded();
+            return key;
+        } catch (NoSuchAlgorithmException | InvalidKeySpecException ex) {
+            cache.remove(spki, newEntry);
+            newEntry.value.completeExceptionally(ex);
+            throw ex;
+        } catch (RuntimeException ex) {
+            cache.remove(spki, newEntry);
+            newEntry.value.completeExceptionally(shared(ex));
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns the private key objects for a group of SPKIs. All the keys that
+     *     are not cached are loaded together using a single database query.
+     * 
+     *     <p>Each SPKI has its own result, so a not valid key doesn't affect 
+     *     the other ones. Use {@link #await(CompletableFuture)} to get the
+     *     private key object (keys loaded by other threads could be still 
+     *     pending).
+     * @param spkis Certificate hashes used as database index.
+     * @return Map with the private key result for each SPKI. The value is null
+     *     if the SPKI is not found.
+     * @since v0.4.5
+     */
+    public Map<String, CompletableFuture<PrivateKey>> getAll(Collection<String> spkis){
+        Map<String, CompletableFuture<PrivateKey>> result = new HashMap<>();
+        List<CacheEntry> pending = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for(String spki : spkis){
+            if(result.containsKey(spki)){
+                continue;
+            }
+            if(!isEnabled()){
+                misses.increment();
+                CacheEntry newEntry = new CacheEntry(spki);
+                pending.add(newEntry);
+                result.put(spki, newEntry.value);
+                continue;
+            }
+            CacheEntry entry = cache.get(spki);
+            if(entry != null){
+                if(!entry.isExpired(now)){
+                    countHit(entry);
+                    entry.referenced = true;
+                    result.put(spki, entry.value);
+                    continue;
+                }
+                if(cache.remove(spki, entry)){
+                    expirations.increment();
+                }
+            }
+            CacheEntry newEntry = new CacheEntry(spki);
+            entry = cache.putIfAbsent(spki, newEntry);
+            if(entry != null){
+                // Other thread is loading (or has loaded) the same private key.
+                countHit(entry);
+                result.put(spki, entry.value);
+                continue;
+            }
+            misses.increment();
+            pending.add(newEntry);
+            result.put(spki, newEntry.value);
+        }
+        if(!pending.isEmpty()){
+            loadAll(pending, now);
+        }
+        return result;
+    }
+
+    /**
+     * Removes a private key from the cache.
+     * @param spki Certificate hash used as database index.
+     * @since v0.4.5
+     */
+    public void invalidate(String spki){
+        cache.remove(spki);
+    }
+
+    /**
+     * Removes all cached private keys.
+     * @since v0.4.5
+     */
+    public void clear(){
+        cache.clear();
+    }
+
+    /**
+     * Returns if the cache is enabled.
+     * @return True if the cache is enabled, false if all requests go to the
+     *     database.
+     * @since v0.4.5
+     */
+    public boolean isEnabled(){
+        return (maxSize > 0) && (ttl > 0);
+    }
+
+    /**
+     * Returns the number of cached private keys.
+     * @return Number of cached private keys.
+     * @since v0.4.5
+     */
+    public int size(){
+        return cache.size();
+    }
+
+    /**
+     * Returns the maximum number of cached private keys.
+     * @return Maximum cache size.
+     * @since v0.4.5
+     */
+    public int getMaxSize(){
+        return maxSize;
+    }
+
+    /**
+     * Returns the maximum time that a private key is cached.
+     * @return Time in milliseconds.
+     * @since v0.4.5
+     */
+    public long getTtl(){
+        return ttl;
+    }
+
+    /**
+     * Returns the number of requests served from the cache.
+     * @return Number of cache hits.
+     * @since v0.4.5
+     */
+    public long getHits(){
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of requests that required a database query.
+     * @return Number of cache misses.
+     * @since v0.4.5
+     */
+    public long getMisses(){
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of requests that waited for the same private key 
+     *     loaded by other request (collapsed misses).
+     * @return Number of collapsed requests.
+     * @since v0.4.5
+     */
+    public long getCollapsed(){
+        return collapsed.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because the cache was full.
+     * @return Number of evictions.
+     * @since v0.4.5
+     */
+    public long getEvictions(){
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the number of entries removed because its time to live expired.
+     * @return Number of expirations.
+     * @since v0.4.5
+     */
+    public long getExpirations(){
+        return expirations.sum();
+    }
+
+    /**
+     * Waits until a private key returned by {@link #getAll(Collection)} has 
+     *     been loaded.
+     * @param value Private key future object.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     * @since v0.4.5
+     */
+    public static PrivateKey await(CompletableFuture<PrivateKey> value) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        try {
+            return waitFor(value);
+        } catch (AbandonedLoad ex) {
+            throw ex.error;
+        }
+    }
+
+    /**
+     * Waits until a private key returned by {@link #getAll(Collection)} has 
+     *     been loaded. If it was loaded by other request whose deadline 
+     *     expired during the query, the private key is requested again.
+     * @param spki Certificate hash used as database index.
+     * @param value Private key future object.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     * @since v0.4.5
+     */
+    public PrivateKey await(String spki, CompletableFuture<PrivateKey> value) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        try {
+            return waitFor(value);
+        } catch (AbandonedLoad ex) {
+            return retry(spki, ex);
+        }
+    }
+
+    /**
+     * Waits until a private key has been loaded, until the deadline of the 
+     *     current request at most.
+     * @param value Private key future object.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     */
+    private static PrivateKey waitFor(CompletableFuture<PrivateKey> value) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        RequestDeadline deadline = RequestDeadline.current();
+        try {
+            if(deadline == null){
+                return value.get();
+            }
+            return value.get(Math.max(0, deadline.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException ex) {
+            throw new IllegalStateException("Deadline expired while loading private key.", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading private key.", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof NoSuchAlgorithmException){
+                throw (NoSuchAlgorithmException) cause;
+            }
+            if(cause instanceof InvalidKeySpecException){
+                throw (InvalidKeySpecException) cause;
+            }
+            if(cause instanceof RuntimeException){
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Requests again a private key whose load was abandoned by other request.
+     * @param spki Certificate hash used as database index.
+     * @param abandoned Load failure.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     */
+    private PrivateKey retry(String spki, AbandonedLoad abandoned) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        RequestDeadline deadline = RequestDeadline.current();
+        if((deadline != null) && deadline.isExpired()){
+            // No time left for other query.
+            throw abandoned.error;
+        }
+        LOGGER.trace("Private key load abandoned by other request: {}", spki);
+        return get(spki);
+    }
+
+    /**
+     * Returns the load failure shared with the threads waiting for the same 
+     *     private key. A failure caused by the deadline of the loading request
+     *     (database query timeout limited to its remaining time) is not valid
+     *     for the other requests.
+     * @param ex Load failure.
+     * @return Failure to complete the cache entries.
+     */
+    private static RuntimeException shared(RuntimeException ex){
+        RequestDeadline deadline = RequestDeadline.current();
+        if((deadline != null) && deadline.isExpired()){
+            return new AbandonedLoad(ex);
+        }
+        return ex;
+    }
+
+    /**
+     * Loads the private key from the database and sets the entry expiration
+     *     date.
+     * @param entry Cache entry to initialize.
+     * @param now Current time in milliseconds.
+     * @return Private key object or null if the SPKI is not found.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     */
+    private PrivateKey load(CacheEntry entry, long now) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        PrivateKeyRegister register = registerLoader.apply(entry.spki);
+        PrivateKey key = (register == null) ? null : parse(register.getKey());
+        if(key == null){
+            return null;
+        }
+        long expiresAt = now + ttl;
+        // Respect the expiration date of the Redis register.
+        long remaining = register.getTtl();
+        if(remaining >= 0){
+            expiresAt = Math.min(expiresAt, now + remaining);
+        }
+        entry.expiresAt = expiresAt;
+        LOGGER.trace("Private key cached: {} | Expires at: {}", entry.spki, expiresAt);
+        return key;
+    }
+
+    /**
+     * Loads a group of private keys using a single database query and 
+     *     completes its cache entries.
+     * @param entries Cache entries to initialize.
+     * @param now Current time in milliseconds.
+     */
+    private void loadAll(List<CacheEntry> entries, long now){
+        List<String> spkis = new ArrayList<>(entries.size());
+        for(CacheEntry entry : entries){
+            spkis.add(entry.spki);
+        }
+        List<byte[]> encoded = null;
+        List<PrivateKeyRegister> registers = null;
+        try {
+            if(isEnabled()){
+                registers = registersLoader.apply(spkis);
+            } else {
+                encoded = keysLoader.apply(spkis);
+            }
+        } catch (RuntimeException ex) {
+            RuntimeException error = shared(ex);
+            for(CacheEntry entry : entries){
+                cache.remove(entry.spki, entry);
+                entry.value.completeExceptionally(error);
+            }
+            return;
+        }
+        for(int i = 0; i < entries.size(); i++){
+            CacheEntry entry = entries.get(i);
+            try {
+                PrivateKeyRegister register = (registers == null) ? null : registers.get(i);
+                byte[] encodedKey = (registers == null) ? encoded.get(i) : null;
+                if(register != null){
+                    encodedKey = register.getKey();
+                }
+                PrivateKey key = parse(encodedKey);
+                if(key == null){
+                    cache.remove(entry.spki, entry);
+                } else if(register != null){
+                    long expiresAt = now + ttl;
+                    // Respect the expiration date of the Redis register.
+                    long remaining = register.getTtl();
+                    if(remaining >= 0){
+                        expiresAt = Math.min(expiresAt, now + remaining);
+                    }
+                    entry.expiresAt = expiresAt;
+                    order.offer(entry);
+                    orderSize.incrementAndGet();
+                }
+                entry.value.complete(key);
+            } catch (NoSuchAlgorithmException | InvalidKeySpecException | RuntimeException ex) {
+                cache.remove(entry.spki, entry);
+                entry.value.completeExceptionally(ex);
+            }
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Counts a request served by an existing entry: a hit if the private key
+     *     is already loaded, a collapsed miss if it's still being loaded.
+     * @param entry Cache entry.
+     */
+    private void countHit(CacheEntry entry){
+        if(entry.value.isDone()){
+            hits.increment();
+        } else {
+            collapsed.increment();
+        }
+    }
+
+    /**
+     * Combines a private key loader and a time to live loader (the time to 
+     *     live is only requested for existing private keys).
+     * @param keyLoader Private key loader.
+     * @param ttlLoader Time to live loader.
+     * @return Private key register loader.
+     */
+    private static Function<String, PrivateKeyRegister> registerLoader(Function<String, byte[]> keyLoader, 
+            ToLongFunction<String> ttlLoader){
+        return spki -> {
+            byte[] key = keyLoader.apply(spki);
+            return (key == null) ? null : new PrivateKeyRegister(key, ttlLoader.applyAsLong(spki));
+        };
+    }
+
+    /**
+     * Removes entries while the cache is greater than the maximum size.
+     *     Recently used entries get a second chance before being removed.
+     */
+    private void evictIfNeeded(){
+        if((cache.size() <= maxSize) && (orderSize.get() <= 2 * maxSize)){
+            return;
+        }
+        if(!evictionLock.tryLock()){
+            // Other thread is already removing entries.
+            return;
+        }
+        try {
+            int budget = 2 * orderSize.get();
+            while(((cache.size() > maxSize) || (orderSize.get() > 2 * maxSize)) && (budget-- > 0)){
+                CacheEntry candidate = order.poll();
+                if(candidate == null){
+                    break;
+                }
+                orderSize.decrementAndGet();
+                if(cache.get(candidate.spki) != candidate){
+                    // Entry already removed or replaced.
+                    continue;
+                }
+                if(cache.size() <= maxSize){
+                    // Queue clean up only: keep the entry.
+                    order.offer(candidate);
+                    orderSize.incrementAndGet();
+                } else if(candidate.referenced){
+                    // Second chance.
+                    candidate.referenced = false;
+                    order.offer(candidate);
+                    orderSize.incrementAndGet();
+                } else if(cache.remove(candidate.spki, candidate)){
+                    evictions.increment();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Load private key from byte array.
+     * @param encodePrivateKey Array with private key values.
+     * @return Private key object or null if the input array is null.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws InvalidKeySpecException Key specification not valid.
+     */
+    private static PrivateKey parse(byte[] encodePrivateKey) throws NoSuchAlgorithmException, InvalidKeySpecException{
+        if(encodePrivateKey == null){
+            return null;
+        }
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        return keyFactory.generatePrivate(new PKCS8EncodedKeySpec(encodePrivateKey));
+    }
+
+    /**
+     * Private key cache entry.
+     */
+    private static final class CacheEntry {
+        /**
+         * Certificate hash of this entry.
+         */
+        private final String spki;
+
+        /**
+         * Private key object (completed when the database query ends).
+         */
+        private final CompletableFuture<PrivateKey> value = new CompletableFuture<>();
+
+        /**
+         * Expiration date in milliseconds.
+         */
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        /**
+         * Flag enabled when the entry is used (second chance eviction).
+         */
+        private volatile boolean referenced;
+
+        /**
+         * Entry constructor.
+         * @param spki Certificate hash of this entry.
+         */
+        private CacheEntry(String spki){
+            this.spki = spki;
+        }
+
+        /**
+         * Checks if the entry has expired.
+         * @param now Current time in milliseconds.
+         * @return True if the entry has expired, false if not.
+         */
+        private boolean isExpired(long now){
+            return now >= expiresAt;
+        }
+    }
+
+    /**
+     * Load failure caused by the deadline of the loading request. The 
+     *     requests waiting for the same private key query it again.
+     */
+    private static final class AbandonedLoad extends RuntimeException {
+        /**
+         * Original load failure.
+         */
+        private final RuntimeException error;
+
+        /**
+         * Class constructor.
+         * @param error Original load failure.
+         */
+        private AbandonedLoad(RuntimeException error){
+            super(error.getMessage(), error, false, false);
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * This package contains the in-memory caches placed in front of the REDIS
+ *     database.
+ * 
+ *     <p>Private keys are stored already parsed, so hot certificates don't pay
+ *     for a Redis query and a PKCS#8 decoding on every request.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since 0.4.5
+ */
+package es.tid.keyserver.controllers.cache;
@@ -17,21 +17,28 @@
 package es.tid.keyserver.controllers.db;
 
 import es.tid.keyserver.core.lib.CheckObject;
+import es.tid.keyserver.core.lib.RequestDeadline;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
 import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisConnectionException;
 import redis.clients.jedis.exceptions.JedisDataException;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Function;
 
 /**
  * Database class manipulation.
@@ -41,19 +48,21 @@ import java.util.Set;
 public class DataBase implements CheckObject{
 	
     /**
-     * Redis Database Pool Object.
+     * Redis Database Pool Object. Each query borrows its own connection from
+     *     this pool, so concurrent requests are not serialized on a single
+     *     Redis connection.
      */
-    private static JedisPool pool;
+    private volatile JedisPool pool;
     
     /**
-     * Redis Database Connection Object
+     * Redis Database connection pool parameters.
      */
-    private Jedis dataBaseObj;
+    private final GenericObjectPoolConfig poolConfig;
     
     /**
      * REDIS Database Ping connection monitor object
      */
-    private Jedis monitorDbObj;
+    private volatile Jedis monitorDbObj;
     
     /**
      * Redis Database address.
@@ -70,10 +79,15 @@ public class DataBase implements CheckObject{
      */
     private final String password;
     
+    /**
+     * Redis Database index.
+     */
+    private final int dbIndex;
+    
     /**
      * Flag used to check if the object is correctly connected to Redis database.
      */
-    private boolean isConnected; 
+    private volatile boolean isConnected; 
     
     /**
      * Flag value true while trying to connect to Redis database.
@@ -83,7 +97,7 @@ public class DataBase implements CheckObject{
     /**
      * Flag used to control when the Redis connection will be terminated.
      */
-    private boolean stopFlag = false;
+    private volatile boolean stopFlag = false;
     
     /**
      * Logging object.
@@ -99,14 +113,28 @@ public class DataBase implements CheckObject{
      * @since v0.3.1
      */
     public DataBase(InetAddress serverIp, int port, String password, int dbIndex){
+        this(serverIp, port, password, dbIndex, new GenericObjectPoolConfig());
+    }
+    
+    /**
+     * Constructor of the class with custom connection pool parameters.
+     * @param serverIp Redis server IP.
+     * @param port Redis listener port.
+     * @param password Redis password.
+     * @param dbIndex Redis DB index.
+     * @param poolConfig Redis connection pool parameters.
+     * @since v0.4.5
+     */
+    public DataBase(InetAddress serverIp, int port, String password, int dbIndex, GenericObjectPoolConfig poolConfig){
         // Store database connection parameters inside class attributes.
         this.serverIp = serverIp;
         this.port = port;
         this.password = password;
+        this.dbIndex = dbIndex;
+        this.poolConfig = poolConfig;
         // Try to connect to Redis database.
         try{
             isConnected = connectDb();
-            dataBaseObj.select(dbIndex);
         } catch (JedisConnectionException ex){
             isConnected = false;
             // If the KeyServer can't connect to the Redis database.
@@ -126,22 +154,30 @@ public class DataBase implements CheckObject{
      */
     public void stop(){
         stopFlag = true;
-        dataBaseObj.close();
-        monitorDbObj.close();
-        pool.close();
-        pool.destroy();
+        if(monitorDbObj != null){
+            monitorDbObj.close();
+        }
+        if(pool != null){
+            pool.close();
+        }
     }
     
     /**
      * This class provides a basic mode to get the array of Bytes for the Private
      *     key associated with the input hash certificate value.
+     * 
+     *     <p>This method is thread safe: every call borrows its own connection
+     *     from the Redis connection pool and returns it when the query ends.
+     * 
+     *     <p>The query timeout is limited to the remaining time of the 
+     *     current request (see {@link RequestDeadline}).
      * @param certHash Contains the SHA1 hash of the certificate used to get private key.
      * @return Bytes array associates with the input hash value. Null if hash value is not found.
      * @since v0.1.0
      */
-    public synchronized byte[] getPrivateForHash(String certHash){
+    public byte[] getPrivateForHash(String certHash){
         if(this.isConnected && (!this.stopFlag)){
-            String response = dataBaseObj.get(certHash);
+            String response = query(dataBaseObj -> dataBaseObj.get(certHash));
             LOGGER.debug("REDIS query: {} | REDIS response: {}", certHash, response);
             if (response!=null){
                 // Decode from base64 to bytes and return array of values.
@@ -150,6 +186,120 @@ public class DataBase implements CheckObject{
         }
         return null;
     }
+    
+    /**
+     * This method returns the private key and the remaining time to live 
+     *     associated with the input hash certificate value using a single 
+     *     Redis round trip (pipelined GET and PTTL).
+     * @param certHash SHA1 certificate hash. This field is used as index.
+     * @return Private key register or null if the hash value is not found or
+     *     the database is not available.
+     * @since v0.4.5
+     */
+    public PrivateKeyRegister getPrivateKeyRegister(String certHash){
+        if(this.isConnected && (!this.stopFlag)){
+            return query(dataBaseObj -> {
+                Pipeline pipeline = dataBaseObj.pipelined();
+                Response<String> value = pipeline.get(certHash);
+                Response<Long> ttl = pipeline.pttl(certHash);
+                pipeline.sync();
+                String response = value.get();
+                LOGGER.debug("REDIS query: {} | REDIS key found: {}", certHash, response != null);
+                if(response == null){
+                    return null;
+                }
+                // Decode from base64 to bytes.
+                return new PrivateKeyRegister(Base64.getDecoder().decode(response.trim()), ttl.get());
+            });
+        }
+        return null;
+    }
+    
+    /**
+     * This method returns the private keys associated with a list of hash 
+     *     certificate values using a single Redis query (MGET).
+     * @param certHashes List of SHA1 certificate hashes.
+     * @return List with the private keys bytes (same order as the input). 
+     *     Not found hashes are returned as null values. If the database is not
+     *     available, all values are null.
+     * @since v0.4.5
+     */
+    public List<byte[]> getPrivateForHashes(List<String> certHashes){
+        List<byte[]> keys = new ArrayList<>(certHashes.size());
+        if(this.isConnected && (!this.stopFlag) && !certHashes.isEmpty()){
+            List<String> response = query(dataBaseObj -> 
+                    dataBaseObj.mget(certHashes.toArray(new String[certHashes.size()])));
+            int found = 0;
+            for(String value : response){
+                // Decode from base64 to bytes.
+                keys.add(value == null ? null : Base64.getDecoder().decode(value.trim()));
+                found += (value == null) ? 0 : 1;
+            }
+            LOGGER.debug("REDIS query: {} | REDIS keys found: {}", certHashes, found);
+            return keys;
+        }
+        for(int i = 0; i < certHashes.size(); i++){
+            keys.add(null);
+        }
+        return keys;
+    }
+    
+    /**
+     * Returns the number of Redis connections currently borrowed from the pool.
+     * @return Number of active connections or -1 if the pool is not available.
+     * @since v0.4.5
+     */
+    public int getPoolActiveConnections(){
+        JedisPool current = pool;
+        return (current == null) ? -1 : current.getNumActive();
+    }
+    
+    /**
+     * Returns the number of idle Redis connections inside the pool.
+     * @return Number of idle connections or -1 if the pool is not available.
+     * @since v0.4.5
+     */
+    public int getPoolIdleConnections(){
+        JedisPool current = pool;
+        return (current == null) ? -1 : current.getNumIdle();
+    }
+    
+    /**
+     * Returns the number of threads currently blocked waiting for a Redis 
+     *     connection from the pool.
+     * @return Number of waiting threads or -1 if the pool is not available.
+     * @since v0.4.5
+     */
+    public int getPoolWaiters(){
+        JedisPool current = pool;
+        return (current == null) ? -1 : current.getNumWaiters();
+    }
+    
+    /**
+     * This method returns a Redis connection pool configuration object with
+     *     the KeyServer parameters.
+     * @param maxTotal Maximum number of Redis connections.
+     * @param maxIdle Maximum number of idle Redis connections.
+     * @param minIdle Minimum number of idle Redis connections.
+     * @param maxWait Maximum time in milliseconds to wait for a free connection
+     *     when the pool is exhausted.
+     * @param idleTime Time in milliseconds that a connection can be idle 
+     *     before it is evicted from the pool.
+     * @return Redis connection pool configuration object.
+     * @since v0.4.5
+     */
+    public static GenericObjectPoolConfig poolConfig(int maxTotal, int maxIdle, int minIdle, long maxWait, long idleTime){
+        GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(maxTotal);
+        config.setMaxIdle(maxIdle);
+        config.setMinIdle(minIdle);
+        config.setMaxWaitMillis(maxWait);
+        config.setBlockWhenExhausted(true);
+        config.setMinEvictableIdleTimeMillis(idleTime);
+        config.setTimeBetweenEvictionRunsMillis(idleTime / 2);
+        config.setTestWhileIdle(true);
+        return config;
+    }
 
     /**
      * Check if the current data base object is connected to the Redis Data Base.
@@ -193,11 +343,106 @@ public class DataBase implements CheckObject{
      */
     public String getPrivateKey(String certHash){
         if(this.isConnected && (!this.stopFlag)){
-            return dataBaseObj.get(certHash);
+            try (Jedis dataBaseObj = pool.getResource()) {
+                return dataBaseObj.get(certHash);
+            }
         }
         return null;
     }
     
+    /**
+     * Runs a private key query on a pooled connection. If the current request
+     *     has a deadline (see {@link RequestDeadline}), the wait for a free 
+     *     connection and the socket timeout are limited to the remaining time 
+     *     (the socket timeout is restored after the query).
+     * @param <T> Query result type.
+     * @param command Redis commands.
+     * @return Query result.
+     * @throws JedisConnectionException If the database is not available or 
+     *     the timeout expires.
+     * @since v0.4.5
+     */
+    private <T> T query(Function<Jedis, T> command){
+        try (Jedis dataBaseObj = pool.getResource()) {
+            int timeout = RequestDeadline.capTimeout(Protocol.DEFAULT_TIMEOUT);
+            if(timeout >= Protocol.DEFAULT_TIMEOUT){
+                return command.apply(dataBaseObj);
+            }
+            try {
+                dataBaseObj.getClient().getSocket().setSoTimeout(timeout);
+            } catch (SocketException ex) {
+                throw new JedisConnectionException(ex);
+            }
+            try {
+                return command.apply(dataBaseObj);
+            } finally {
+                // Broken connections are closed by the pool.
+                if(!dataBaseObj.getClient().isBroken()){
+                    dataBaseObj.getClient().rollbackTimeout();
+                }
+            }
+        }
+    }
+    
+    /**
+     * This method returns the remaining time to live of a private key register
+     *     (set using {@link #setExpPK(String, long)}).
+     * @param certHash SHA1 certificate hash. This field is used as index.
+     * @return Remaining time in milliseconds, -1 if the register has not an 
+     *     expiration date or -2 if the register doesn't exist.
+     * @since v0.4.5
+     */
+    public long getPrivateKeyTtl(String certHash){
+        if(this.isConnected && (!this.stopFlag)){
+            return query(dataBaseObj -> dataBaseObj.pttl(certHash));
+        }
+        return -2;
+    }
+    
+    /**
+     * This method returns the private keys and the remaining times to live 
+     *     associated with a list of hash certificate values using a single 
+     *     Redis round trip (pipelined GET and PTTL).
+     * @param certHashes List of SHA1 certificate hashes.
+     * @return List with the private key registers (same order as the input).
+     *     Not found hashes are returned as null values. If the database is not
+     *     available, all values are null.
+     * @since v0.4.5
+     */
+    public List<PrivateKeyRegister> getPrivateKeyRegisters(List<String> certHashes){
+        List<PrivateKeyRegister> registers = new ArrayList<>(certHashes.size());
+        if(this.isConnected && (!this.stopFlag) && !certHashes.isEmpty()){
+            List<Response<String>> values = new ArrayList<>(certHashes.size());
+            List<Response<Long>> ttls = new ArrayList<>(certHashes.size());
+            query(dataBaseObj -> {
+                Pipeline pipeline = dataBaseObj.pipelined();
+                for(String certHash : certHashes){
+                    values.add(pipeline.get(certHash));
+                    ttls.add(pipeline.pttl(certHash));
+                }
+                pipeline.sync();
+                return null;
+            });
+            int found = 0;
+            for(int i = 0; i < certHashes.size(); i++){
+                String value = values.get(i).get();
+                if(value == null){
+                    registers.add(null);
+                } else {
+                    // Decode from base64 to bytes.
+                    registers.add(new PrivateKeyRegister(Base64.getDecoder().decode(value.trim()), ttls.get(i).get()));
+                    found++;
+                }
+            }
+            LOGGER.debug("REDIS query: {} | REDIS keys found: {}", certHashes, found);
+            return registers;
+        }
+        for(int i = 0; i < certHashes.size(); i++){
+            registers.add(null);
+        }
+        return registers;
+    }
+    
     /**
      * This method insert a new PK register using hash certificate as index.
      * @param certHash SHA1 certificate hash. This field is used as index.
@@ -207,7 +452,9 @@ public class DataBase implements CheckObject{
      */
     public boolean setPrivateKey(String certHash, String privKey){
         if(this.isConnected && (!this.stopFlag)){
-            dataBaseObj.set(certHash, privKey);
+            try (Jedis dataBaseObj = pool.getResource()) {
+                dataBaseObj.set(certHash, privKey);
+            }
             String test = this.getPrivateKey(certHash);
             return test.equalsIgnoreCase(privKey);
         }
@@ -224,7 +471,9 @@ public class DataBase implements CheckObject{
      */
     public boolean setExpPK(String certHash, long date){
         if(this.isConnected && (!this.stopFlag)){
-            dataBaseObj.expireAt(certHash, date);
+            try (Jedis dataBaseObj = pool.getResource()) {
+                dataBaseObj.expireAt(certHash, date);
+            }
             return true;
         }
         return false;
@@ -240,7 +489,9 @@ public class DataBase implements CheckObject{
     public boolean deletePrivateKey(String certHash){
         if(this.isConnected){
             if(this.getPrivateKey(certHash)!=null){
-                dataBaseObj.del(certHash);
+                try (Jedis dataBaseObj = pool.getResource()) {
+                    dataBaseObj.del(certHash);
+                }
                 return true;
             } else {
                 return false;
@@ -258,7 +509,9 @@ public class DataBase implements CheckObject{
      */
     public Set<String> getHashList(String pattern){
         if(this.isConnected && (!this.stopFlag)){
-            return dataBaseObj.keys(pattern);
+            try (Jedis dataBaseObj = pool.getResource()) {
+                return dataBaseObj.keys(pattern);
+            }
         }
         return new HashSet<String>();
     }
@@ -282,14 +535,36 @@ public class DataBase implements CheckObject{
      * @since v0.3.1
      */
     private boolean connectDb(){
-        pool = new JedisPool(new GenericObjectPoolConfig(), 
+        JedisPool oldPool = pool;
+        pool = new DeadlinePool(poolConfig, 
                 serverIp.getHostAddress(), 
                 port, 
                 Protocol.DEFAULT_TIMEOUT, 
-                password);
+                password,
+                dbIndex);
+        if(oldPool != null){
+            // Release the connections of the previous (broken) pool.
+            oldPool.close();
+        }
+        if(monitorDbObj != null){
+            monitorDbObj.close();
+        }
+        // Dedicated monitor connection (outside the pool, so it doesn't take 
+        // one of the query connections).
+        Jedis monitor = new Jedis(serverIp.getHostAddress(), port, Protocol.DEFAULT_TIMEOUT);
+        try{
+            if(password != null){
+                monitor.auth(password);
+            }
+            if(dbIndex != Protocol.DEFAULT_DATABASE){
+                monitor.select(dbIndex);
+            }
+        } catch (RuntimeException ex){
+            monitor.close();
+            throw ex;
+        }
         // Redis connected.
-        dataBaseObj = pool.getResource();
-        monitorDbObj = pool.getResource();
+        monitorDbObj = monitor;
         return true;
     }
 }
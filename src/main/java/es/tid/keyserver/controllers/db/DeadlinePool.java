@@ -0,0 +1,86 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.controllers.db;
+
+import es.tid.keyserver.core.lib.RequestDeadline;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import java.util.NoSuchElementException;
+
+/**
+ * Redis connection pool which doesn't wait for a free connection longer than
+ *     the remaining time of the current request (see {@link RequestDeadline}).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+final class DeadlinePool extends JedisPool {
+    /**
+     * Maximum wait for a free connection in milliseconds (negative waits
+     *     without limit).
+     */
+    private final long maxWait;
+
+    /**
+     * Class constructor.
+     * @param poolConfig Connection pool configuration.
+     * @param host Redis server address.
+     * @param port Redis server port.
+     * @param timeout Connection and socket timeout in milliseconds.
+     * @param password Redis password (null if not required).
+     * @param database Redis database index.
+     * @since v0.4.5
+     */
+    DeadlinePool(GenericObjectPoolConfig poolConfig, String host, int port, int timeout, 
+            String password, int database){
+        super(poolConfig, host, port, timeout, password, database);
+        this.maxWait = poolConfig.getMaxWaitMillis();
+    }
+
+    /**
+     * Borrows a connection from the pool. If the current request has a 
+     *     deadline, the wait for a free connection is limited to the 
+     *     remaining time (no wait if it has expired).
+     * @return Redis connection.
+     * @throws JedisException If there isn't a free connection before the 
+     *     timeout.
+     * @throws JedisConnectionException If a new connection can't be 
+     *     established.
+     * @since v0.4.5
+     */
+    @Override
+    public Jedis getResource(){
+        RequestDeadline deadline = RequestDeadline.current();
+        if(deadline == null){
+            return super.getResource();
+        }
+        long remaining = Math.max(0, deadline.remainingMillis());
+        long wait = (maxWait < 0) ? remaining : Math.min(maxWait, remaining);
+        Jedis jedis;
+        try {
+            jedis = internalPool.borrowObject(wait);
+        } catch (NoSuchElementException ex) {
+            throw new JedisException("Could not get a resource from the pool", ex);
+        } catch (Exception ex) {
+            throw new JedisConnectionException("Could not get a resource from the pool", ex);
+        }
+        jedis.setDataSource(this);
+        return jedis;
+    }
+}
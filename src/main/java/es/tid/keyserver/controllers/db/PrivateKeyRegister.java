@@ -0,0 +1,66 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.controllers.db;
+
+/**
+ * Private key register read from the database: encoded private key and its
+ *     remaining time to live.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class PrivateKeyRegister {
+    /**
+     * PKCS#8 encoded private key.
+     */
+    private final byte[] key;
+
+    /**
+     * Remaining time to live in milliseconds (negative if not defined).
+     */
+    private final long ttl;
+
+    /**
+     * Class constructor.
+     * @param key PKCS#8 encoded private key.
+     * @param ttl Remaining time to live in milliseconds (negative if not 
+     *     defined).
+     * @since v0.4.5
+     */
+    public PrivateKeyRegister(byte[] key, long ttl){
+        this.key = key;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the encoded private key.
+     * @return PKCS#8 encoded private key.
+     * @since v0.4.5
+     */
+    public byte[] getKey(){
+        return key;
+    }
+
+    /**
+     * Returns the remaining time to live of the register.
+     * @return Remaining time in milliseconds, negative if the register has 
+     *     not an expiration date.
+     * @since v0.4.5
+     */
+    public long getTtl(){
+        return ttl;
+    }
+}
@@ -67,7 +67,12 @@ public class KeyServer {
         DataBase keyServerDB = new DataBase(softwareConfig.getDbAddress(), 
                 softwareConfig.getDbPort(), 
                 softwareConfig.getDbPassword(),
-                softwareConfig.getDbIndex());
+                softwareConfig.getDbIndex(),
+                DataBase.poolConfig(softwareConfig.getDbPoolMaxTotal(),
+                        softwareConfig.getDbPoolMaxIdle(),
+                        softwareConfig.getDbPoolMinIdle(),
+                        softwareConfig.getDbPoolMaxWait(),
+                        softwareConfig.getDbPoolIdleTime()));
         checkObj(keyServerDB, "Database connection established.",
                 "Can't connect to the database. Please check 'general.properties' file values.");
         
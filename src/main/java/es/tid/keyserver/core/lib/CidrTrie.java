@@ -0,0 +1,302 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.core.lib;
+
+import java.math.BigInteger;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * Set of IPv4 and IPv6 address blocks stored as a binary prefix trie.
+ * 
+ *     <p>Each node has two children (next address bit 0 or 1) and the nodes 
+ *     that end a block are marked. A lookup walks the address bits until it
+ *     finds a marked node, so it costs at most one step per prefix bit (32 
+ *     for IPv4, 128 for IPv6) whatever the number of blocks. The nodes are 
+ *     stored inside an int array (two child indexes per node).
+ * 
+ *     <p>Supported patterns: single address ("192.168.1.10"), CIDR block 
+ *     ("10.0.0.0/8", "2001:db8::/32") and address range 
+ *     ("192.168.1.10-192.168.1.20", stored as the minimum set of CIDR 
+ *     blocks). Only address literals are accepted (no DNS queries).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class CidrTrie implements Predicate<InetAddress> {
+    /**
+     * IPv4 root node index.
+     */
+    private static final int IPV4_ROOT = 0;
+    
+    /**
+     * IPv6 root node index.
+     */
+    private static final int IPV6_ROOT = 1;
+    
+    /**
+     * Child node indexes: node n has children[2n] (bit 0) and 
+     *     children[2n + 1] (bit 1). Zero means no child (root nodes are never
+     *     children).
+     */
+    private int[] children = new int[64];
+    
+    /**
+     * Nodes that end a block.
+     */
+    private final BitSet terminal = new BitSet();
+    
+    /**
+     * Number of nodes (both roots included).
+     */
+    private int nodes = 2;
+    
+    /**
+     * Number of added blocks.
+     */
+    private int blocks;
+    
+    /**
+     * Creates a set with the patterns of a white list.
+     * @param patterns Address patterns or null.
+     * @return Set object or null if there are no patterns.
+     * @throws IllegalArgumentException If a pattern is not valid.
+     */
+    public static CidrTrie of(String[] patterns){
+        if(patterns == null){
+            return null;
+        }
+        CidrTrie set = new CidrTrie();
+        for(String pattern : patterns){
+            set.add(pattern);
+        }
+        return set;
+    }
+    
+    /**
+     * Adds a new pattern.
+     * @param pattern Address, CIDR block or address range (first and last 
+     *     address, or the legacy Jetty form with the last byte bound, for 
+     *     example "192.168.1.10-20").
+     * @throws IllegalArgumentException If the pattern is not valid.
+     */
+    public void add(String pattern){
+        String value = pattern.trim();
+        int slash = value.indexOf('/');
+        int dash = value.indexOf('-');
+        if(slash >= 0){
+            byte[] address = parseAddress(value.substring(0, slash), pattern);
+            int prefix;
+            try {
+                prefix = Integer.parseInt(value.substring(slash + 1).trim());
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Bad CIDR prefix: " + pattern);
+            }
+            if((prefix < 0) || (prefix > address.length * 8)){
+                throw new IllegalArgumentException("Bad CIDR prefix: " + pattern);
+            }
+            insert(address, prefix);
+        } else if(dash >= 0){
+            byte[] first = parseAddress(value.substring(0, dash), pattern);
+            String end = value.substring(dash + 1).trim();
+            byte[] last;
+            if((end.indexOf('.') < 0) && (end.indexOf(':') < 0)){
+                // Legacy Jetty form (192.168.1.10-20): last byte bound.
+                last = lastByteBound(first, end, pattern);
+            } else {
+                last = parseAddress(end, pattern);
+            }
+            addRange(first, last, pattern);
+        } else {
+            byte[] address = parseAddress(value, pattern);
+            insert(address, address.length * 8);
+        }
+    }
+    
+    /**
+     * Checks if an address is inside one of the blocks.
+     * @param address Address object.
+     * @return True if the address is inside the set.
+     */
+    @Override
+    public boolean test(InetAddress address){
+        return (address != null) && contains(address.getAddress());
+    }
+    
+    /**
+     * Checks if an address is inside one of the blocks.
+     * @param address Address bytes (4 bytes for IPv4, 16 bytes for IPv6).
+     * @return True if the address is inside the set.
+     */
+    public boolean contains(byte[] address){
+        int node = root(address);
+        int bits = address.length * 8;
+        for(int i = 0; i < bits; i++){
+            if(terminal.get(node)){
+                return true;
+            }
+            node = children[2 * node + bit(address, i)];
+            if(node == 0){
+                return false;
+            }
+        }
+        return terminal.get(node);
+    }
+    
+    /**
+     * Number of blocks (ranges are split into CIDR blocks).
+     * @return Number of blocks.
+     */
+    public int size(){
+        return blocks;
+    }
+    
+    /**
+     * Number of trie nodes.
+     * @return Number of nodes.
+     */
+    public int getNodes(){
+        return nodes;
+    }
+    
+    /**
+     * Adds the CIDR blocks of an address range.
+     * @param first First address of the range.
+     * @param last Last address of the range.
+     * @param pattern Pattern (for the error message).
+     */
+    private void addRange(byte[] first, byte[] last, String pattern){
+        BigInteger low = new BigInteger(1, first);
+        BigInteger high = new BigInteger(1, last);
+        if((first.length != last.length) || (low.compareTo(high) > 0)){
+            throw new IllegalArgumentException("Bad address range: " + pattern);
+        }
+        int bits = first.length * 8;
+        while(low.compareTo(high) <= 0){
+            // Largest block aligned at low and not after high.
+            int size = (low.signum() == 0) ? bits : low.getLowestSetBit();
+            while(low.add(BigInteger.ONE.shiftLeft(size)).subtract(BigInteger.ONE).compareTo(high) > 0){
+                size--;
+            }
+            insert(toBytes(low, first.length), bits - size);
+            low = low.add(BigInteger.ONE.shiftLeft(size));
+        }
+    }
+    
+    /**
+     * Returns the last address of a legacy range ("192.168.1.10-20"): the 
+     *     first address with a different last byte.
+     * @param first First address of the range (IPv4 only).
+     * @param bound Last byte value (0 to 255).
+     * @param pattern Pattern (for the error message).
+     * @return Last address of the range.
+     */
+    private static byte[] lastByteBound(byte[] first, String bound, String pattern){
+        int value;
+        try {
+            value = Integer.parseInt(bound);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Bad address range: " + pattern);
+        }
+        if((first.length != 4) || (value < 0) || (value > 255)){
+            throw new IllegalArgumentException("Bad address range: " + pattern);
+        }
+        byte[] last = first.clone();
+        last[3] = (byte) value;
+        return last;
+    }
+    
+    /**
+     * Inserts a CIDR block.
+     * @param address Block address.
+     * @param prefix Prefix length in bits.
+     */
+    private void insert(byte[] address, int prefix){
+        int node = root(address);
+        for(int i = 0; i < prefix; i++){
+            if(terminal.get(node)){
+                // Already inside a shorter block.
+                return;
+            }
+            int index = 2 * node + bit(address, i);
+            if(children[index] == 0){
+                if(2 * nodes + 1 >= children.length){
+                    children = Arrays.copyOf(children, children.length * 2);
+                }
+                children[index] = nodes++;
+            }
+            node = children[index];
+        }
+        if(!terminal.get(node)){
+            terminal.set(node);
+            blocks++;
+        }
+    }
+    
+    /**
+     * Root node of the address family.
+     * @param address Address bytes.
+     * @return Root node index.
+     */
+    private static int root(byte[] address){
+        return (address.length == 4) ? IPV4_ROOT : IPV6_ROOT;
+    }
+    
+    /**
+     * Returns an address bit.
+     * @param address Address bytes.
+     * @param index Bit index (0 is the most significant bit).
+     * @return Bit value (0 or 1).
+     */
+    private static int bit(byte[] address, int index){
+        return (address[index >>> 3] >>> (7 - (index & 7))) & 1;
+    }
+    
+    /**
+     * Converts an unsigned number to address bytes.
+     * @param value Address value.
+     * @param length Address length in bytes.
+     * @return Address bytes.
+     */
+    private static byte[] toBytes(BigInteger value, int length){
+        byte[] raw = value.toByteArray();
+        byte[] address = new byte[length];
+        int copy = Math.min(raw.length, length);
+        System.arraycopy(raw, raw.length - copy, address, length - copy, copy);
+        return address;
+    }
+    
+    /**
+     * Parses an address literal.
+     * @param literal IPv4 or IPv6 address literal.
+     * @param pattern Pattern (for the error message).
+     * @return Address bytes.
+     */
+    private static byte[] parseAddress(String literal, String pattern){
+        String value = literal.trim();
+        // Only literals: host names would need a DNS query.
+        if(value.isEmpty() || !(value.indexOf(':') >= 0 || value.matches("[0-9.]+"))){
+            throw new IllegalArgumentException("Bad address: " + pattern);
+        }
+        try {
+            return InetAddress.getByName(value).getAddress();
+        } catch (UnknownHostException ex) {
+            throw new IllegalArgumentException("Bad address: " + pattern);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.core.lib;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Error log entries for exceptions on the request path.
+ * 
+ *     <p>Each message is written at most once per interval: the repeated 
+ *     errors during the interval are counted and the number of suppressed 
+ *     entries is added to the next entry. The exception stack trace is only
+ *     formatted if the debug level is enabled.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class ErrorLogger {
+    /**
+     * Default interval between entries with the same message (ms).
+     */
+    public static final long DEFAULT_INTERVAL = 1000;
+    
+    /**
+     * Logger object.
+     */
+    private final org.slf4j.Logger logger;
+    
+    /**
+     * Minimum time between entries with the same message (ns).
+     */
+    private final long intervalNanos;
+    
+    /**
+     * Rate limit state of each message.
+     */
+    private final ConcurrentMap<String, Window> windows = new ConcurrentHashMap<>();
+    
+    /**
+     * Class constructor using the default interval.
+     * @param logger Logger object.
+     */
+    public ErrorLogger(org.slf4j.Logger logger){
+        this(logger, DEFAULT_INTERVAL);
+    }
+    
+    /**
+     * Class constructor.
+     * @param logger Logger object.
+     * @param interval Minimum time between entries with the same message 
+     *     (ms). Zero disables the rate limit.
+     */
+    public ErrorLogger(org.slf4j.Logger logger, long interval){
+        this.logger = logger;
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(interval);
+    }
+    
+    /**
+     * Writes an error entry with the exception message. The stack trace is 
+     *     written at debug level.
+     * @param message Message with one argument for the exception message 
+     *     (for example "RSA Bad Padding Exception: {}"). It's also the rate 
+     *     limit key, so it should be a constant.
+     * @param ex Exception.
+     * @return True if the entry has been written, false if it has been 
+     *     suppressed.
+     */
+    public boolean error(String message, Exception ex){
+        if(!logger.isErrorEnabled()){
+            return false;
+        }
+        long suppressed = acquire(message);
+        if(suppressed < 0){
+            return false;
+        }
+        if(suppressed == 0){
+            logger.error(message, ex.getMessage());
+        } else {
+            logger.error(message + " ({} similar errors suppressed)", ex.getMessage(), suppressed);
+        }
+        if(logger.isDebugEnabled()){
+            StringWriter errors = new StringWriter();
+            ex.printStackTrace(new PrintWriter(errors));
+            logger.debug(errors.toString());
+        }
+        return true;
+    }
+    
+    /**
+     * Total number of suppressed entries with a message.
+     * @param message Message.
+     * @return Number of suppressed entries since the start.
+     */
+    public long getSuppressed(String message){
+        Window window = windows.get(message);
+        return (window == null) ? 0 : window.total.get();
+    }
+    
+    /**
+     * Checks the rate limit of a message.
+     * @param message Message.
+     * @return Number of entries suppressed since the last written entry, or 
+     *     -1 if this entry must be suppressed.
+     */
+    private long acquire(String message){
+        if(intervalNanos <= 0){
+            return 0;
+        }
+        Window window = windows.computeIfAbsent(message, key -> new Window(System.nanoTime() - intervalNanos));
+        long now = System.nanoTime();
+        long next = window.next.get();
+        if((now - next >= 0) && window.next.compareAndSet(next, now + intervalNanos)){
+            return window.suppressed.getAndSet(0);
+        }
+        window.suppressed.incrementAndGet();
+        window.total.incrementAndGet();
+        return -1;
+    }
+    
+    /**
+     * Rate limit state of a message.
+     */
+    private static final class Window {
+        /**
+         * Time (System.nanoTime) when the next entry can be written.
+         */
+        private final AtomicLong next;
+        
+        /**
+         * Entries suppressed since the last written entry.
+         */
+        private final AtomicLong suppressed = new AtomicLong();
+        
+        /**
+         * Entries suppressed since the start.
+         */
+        private final AtomicLong total = new AtomicLong();
+        
+        /**
+         * Class constructor.
+         * @param next Time when the next entry can be written.
+         */
+        private Window(long next){
+            this.next = new AtomicLong(next);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.core.lib;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time limit of a request, set by the client as a time budget. After the
+ *     deadline the client has abandoned the handshake, so the private key
+ *     query and operation are not useful anymore.
+ *
+ *     <p>The deadline of the request running on the current thread is
+ *     available through {@link #current()}, so the database queries can limit
+ *     their timeout to the remaining time.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class RequestDeadline {
+    /**
+     * Deadline of the request running on each thread.
+     */
+    private static final ThreadLocal<RequestDeadline> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Deadline time (System.nanoTime()).
+     */
+    private final long expires;
+
+    /**
+     * Class constructor.
+     * @param expires Deadline time (System.nanoTime()).
+     */
+    private RequestDeadline(long expires){
+        this.expires = expires;
+    }
+
+    /**
+     * Creates a deadline from a time budget.
+     * @param budget Time budget in milliseconds.
+     * @param elapsed Time already spent by the request in milliseconds (for
+     *     example, waiting for a Jetty thread).
+     * @return Deadline object.
+     */
+    public static RequestDeadline of(long budget, long elapsed){
+        return new RequestDeadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget - Math.max(0, elapsed)));
+    }
+
+    /**
+     * Parses a time budget value.
+     * @param value Time budget in milliseconds (decimal integer).
+     * @param elapsed Time already spent by the request in milliseconds.
+     * @return Deadline object or null if the value is not present or not
+     *     valid (no deadline).
+     */
+    public static RequestDeadline parse(String value, long elapsed){
+        if((value == null) || value.isEmpty()){
+            return null;
+        }
+        try {
+            long budget = Long.parseLong(value.trim());
+            return (budget < 0) ? null : of(budget, elapsed);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Remaining time until the deadline.
+     * @return Remaining time in nanoseconds (negative if it has expired).
+     */
+    public long remainingNanos(){
+        return expires - System.nanoTime();
+    }
+
+    /**
+     * Remaining time until the deadline.
+     * @return Remaining time in milliseconds (rounded down, negative if it
+     *     has expired).
+     */
+    public long remainingMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(remainingNanos());
+    }
+
+    /**
+     * Checks if the deadline has expired.
+     * @return True if there is no remaining time.
+     */
+    public boolean isExpired(){
+        return remainingNanos() <= 0;
+    }
+
+    /**
+     * Checks if a task can finish before the deadline.
+     * @param duration Expected task duration in nanoseconds.
+     * @return True if the remaining time is longer than the duration.
+     */
+    public boolean allows(long duration){
+        return remainingNanos() > duration;
+    }
+
+    /**
+     * Sets the deadline of the request running on the current thread.
+     * @param deadline Deadline object (null no deadline).
+     */
+    public static void set(RequestDeadline deadline){
+        if(deadline == null){
+            CURRENT.remove();
+        } else {
+            CURRENT.set(deadline);
+        }
+    }
+
+    /**
+     * Returns the deadline of the request running on the current thread.
+     * @return Deadline object or null if there is no deadline.
+     */
+    public static RequestDeadline current(){
+        return CURRENT.get();
+    }
+
+    /**
+     * Limits a timeout to the remaining time of the current request.
+     * @param timeout Timeout in milliseconds.
+     * @return The timeout or the remaining time if it's shorter (1ms at
+     *     least, 0 means no timeout on sockets).
+     */
+    public static int capTimeout(int timeout){
+        RequestDeadline deadline = CURRENT.get();
+        if(deadline == null){
+            return timeout;
+        }
+        return (int) Math.max(1, Math.min(timeout, deadline.remainingMillis()));
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.core.status;
+
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Liveness and readiness state for the load balancer probes (GET /health
+ *     and GET /ready). The response bodies are created only once and the
+ *     readiness is evaluated at most once every {@link #REFRESH_NANOS}, so
+ *     frequent probes are cheap.
+ *
+ *     <p>The node is ready when the Redis connection is available (status
+ *     reported by {@link KsMonitor}), the private keys cache has been warmed
+ *     up and the crypto workers queue is below the configured level. The
+ *     cache warm up is checked only until it's reached (idle expirations
+ *     don't make the node not ready again).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class HealthCheck {
+    /**
+     * Liveness target.
+     */
+    public static final String HEALTH_TARGET = "/health";
+
+    /**
+     * Readiness target.
+     */
+    public static final String READY_TARGET = "/ready";
+
+    /**
+     * Not ready reason: Redis connection not available.
+     */
+    public static final String REASON_REDIS = "redis";
+
+    /**
+     * Not ready reason: private keys cache not warmed up.
+     */
+    public static final String REASON_CACHE = "cache";
+
+    /**
+     * Not ready reason: crypto workers queue above the ready level.
+     */
+    public static final String REASON_QUEUE = "queue";
+
+    /**
+     * Minimum time between two readiness evaluations.
+     */
+    static final long REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Liveness response body.
+     */
+    private static final byte[] UP = body("{\"status\":\"up\"}");
+
+    /**
+     * Readiness response body (ready).
+     */
+    private static final byte[] READY = body("{\"status\":\"ready\"}");
+
+    /**
+     * Readiness response body (Redis not available).
+     */
+    private static final byte[] NOT_READY_REDIS = body("{\"status\":\"not ready\",\"reason\":\"" + REASON_REDIS + "\"}");
+
+    /**
+     * Readiness response body (cache not warmed up).
+     */
+    private static final byte[] NOT_READY_CACHE = body("{\"status\":\"not ready\",\"reason\":\"" + REASON_CACHE + "\"}");
+
+    /**
+     * Readiness response body (crypto workers queue full).
+     */
+    private static final byte[] NOT_READY_QUEUE = body("{\"status\":\"not ready\",\"reason\":\"" + REASON_QUEUE + "\"}");
+
+    /**
+     * Private keys cache.
+     */
+    private final PrivateKeyCache keyCache;
+
+    /**
+     * Crypto workers pool.
+     */
+    private final CryptoWorkers cryptoWorkers;
+
+    /**
+     * Number of cached keys needed to be ready (0 no warm up).
+     */
+    private final int cacheWarmKeys;
+
+    /**
+     * Crypto workers queue level (percentage of the queue size) above which
+     *     the node is not ready.
+     */
+    private final int queueLevel;
+
+    /**
+     * Redis connection status reported by the monitor.
+     */
+    private volatile boolean redisAvailable;
+
+    /**
+     * Cache warm up flag (true once it's reached).
+     */
+    private volatile boolean cacheWarm;
+
+    /**
+     * Last readiness response body.
+     */
+    private volatile byte[] readyBody = NOT_READY_REDIS;
+
+    /**
+     * Next readiness evaluation time (System.nanoTime()).
+     */
+    private volatile long refreshAt;
+
+    /**
+     * Number of health and readiness probes.
+     */
+    private final LongAdder probes = new LongAdder();
+
+    /**
+     * Class constructor.
+     * @param keyCache Private keys cache.
+     * @param cryptoWorkers Crypto workers pool.
+     * @param cacheWarmKeys Number of cached keys needed to be ready (0 no
+     *     warm up, limited to the cache size).
+     * @param queueLevel Crypto workers queue level in percent (1 to 100)
+     *     above which the node is not ready.
+     * @param redisAvailable Initial Redis connection status.
+     */
+    public HealthCheck(PrivateKeyCache keyCache, CryptoWorkers cryptoWorkers, int cacheWarmKeys,
+            int queueLevel, boolean redisAvailable){
+        this.keyCache = keyCache;
+        this.cryptoWorkers = cryptoWorkers;
+        this.cacheWarmKeys = keyCache.isEnabled() ? Math.min(cacheWarmKeys, keyCache.getMaxSize()) : 0;
+        this.queueLevel = queueLevel;
+        this.redisAvailable = redisAvailable;
+        this.cacheWarm = this.cacheWarmKeys <= 0;
+        this.refreshAt = System.nanoTime();
+    }
+
+    /**
+     * Sets the Redis connection status (called by the monitor on each
+     *     database check).
+     * @param redisAvailable True if Redis is connected.
+     */
+    public void setRedisAvailable(boolean redisAvailable){
+        if(this.redisAvailable != redisAvailable){
+            this.redisAvailable = redisAvailable;
+            this.refreshAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Liveness response body (the handler is running).
+     * @return JSON response body.
+     */
+    public byte[] getHealthBody(){
+        probes.increment();
+        return UP;
+    }
+
+    /**
+     * Readiness response body.
+     * @return JSON response body.
+     */
+    public byte[] getReadyBody(){
+        probes.increment();
+        long now = System.nanoTime();
+        if(now - refreshAt >= 0){
+            refreshAt = now + REFRESH_NANOS;
+            readyBody = evaluate();
+        }
+        return readyBody;
+    }
+
+    /**
+     * Checks if a readiness response body means ready.
+     * @param body Readiness response body.
+     * @return True if the node is ready.
+     */
+    public static boolean isReady(byte[] body){
+        return body == READY;
+    }
+
+    /**
+     * Returns the readiness status for the status view.
+     * @return "ready" or "not ready" and the reason.
+     */
+    public String getStatus(){
+        byte[] body = evaluate();
+        if(body == READY){
+            return "ready";
+        }
+        return "not ready (" + ((body == NOT_READY_REDIS) ? REASON_REDIS
+                : (body == NOT_READY_CACHE) ? REASON_CACHE : REASON_QUEUE) + ")";
+    }
+
+    /**
+     * Number of health and readiness probes.
+     * @return Number of probes.
+     */
+    public long getProbes(){
+        return probes.sum();
+    }
+
+    /**
+     * Evaluates the readiness conditions.
+     * @return Readiness response body.
+     */
+    private byte[] evaluate(){
+        if(!redisAvailable){
+            return NOT_READY_REDIS;
+        }
+        if(!cacheWarm){
+            if(keyCache.size() < cacheWarmKeys){
+                return NOT_READY_CACHE;
+            }
+            cacheWarm = true;
+        }
+        int queueSize = cryptoWorkers.getQueueSize();
+        if(cryptoWorkers.isEnabled() && (queueSize > 0)
+                && ((long) cryptoWorkers.getQueueDepth() * 100 >= (long) queueLevel * queueSize)){
+            return NOT_READY_QUEUE;
+        }
+        return READY;
+    }
+
+    /**
+     * Creates a response body.
+     * @param json JSON string.
+     * @return UTF-8 bytes.
+     */
+    private static byte[] body(String json){
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -17,16 +17,26 @@
 package es.tid.keyserver.core.status;
 
 import es.tid.keyserver.config.ConfigController;
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
 import es.tid.keyserver.controllers.db.DataBase;
 import es.tid.keyserver.core.lib.CheckObject;
 import es.tid.keyserver.core.lib.LastVersionAvailable;
 import es.tid.keyserver.https.HttpsServerController;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.binary.BinarySkiServer;
 import es.tid.keyserver.https.certificate.HttpsCert;
+import es.tid.keyserver.https.jetty.SessionTicketKeys;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.Date;
 import javax.swing.Timer;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -132,6 +142,8 @@ public class KsMonitor implements CheckObject{
                 Thread.currentThread().setName("THDBMon");
                 // Redis Data Base status.
                 dbStatus = dataBaseObj.isConnected();
+                // Readiness probe state.
+                httpsServer.getHealthCheck().setRedisAvailable(dbStatus);
                 if(!dbStatus && !dBnotified){
                      dBnotified = true;
                     // Error level.
@@ -208,6 +220,83 @@ public class KsMonitor implements CheckObject{
         return this.httpsServer.getStatus();
     }
     
+    /**
+     * This method returns the application protocols accepted by the HTTPS 
+     *     server (for example h2 and http/1.1).
+     * @return String with the protocol names.
+     * @since v0.4.5
+     */
+    public String httpsServerProtocols(){
+        return this.httpsServer.getProtocols();
+    }
+    
+    /**
+     * This method returns the TLS settings of the HTTPS server (provider, 
+     *     cipher suites order, session cache and session tickets).
+     * @return String with the TLS settings.
+     * @since v0.4.5
+     */
+    public String httpsServerTlsSettings(){
+        return this.httpsServer.getTlsSettings();
+    }
+    
+    /**
+     * This method returns the local cleartext HTTP listener address.
+     * @return String with the address and port or "disabled".
+     * @since v0.4.5
+     */
+    public String httpsServerLocalListener(){
+        return this.httpsServer.getLocalListener();
+    }
+    
+    /**
+     * This method returns the client time budgets control (discarded 
+     *     requests).
+     * @return Deadline control object.
+     * @since v0.4.5
+     */
+    public DeadlineControl getDeadlineControl(){
+        return this.httpsServer.getDeadlineControl();
+    }
+    
+    /**
+     * This method returns the health and readiness state of the load 
+     *     balancer probes.
+     * @return Health check object.
+     * @since v0.4.5
+     */
+    public HealthCheck getHealthCheck(){
+        return this.httpsServer.getHealthCheck();
+    }
+    
+    /**
+     * This method returns the session ticket keys shared by the KeyServer 
+     *     nodes.
+     * @return Session ticket keys object.
+     * @since v0.4.5
+     */
+    public SessionTicketKeys getTicketKeys(){
+        return this.httpsServer.getTicketKeys();
+    }
+    
+    /**
+     * This method returns the number of full TLS handshakes.
+     * @return Full handshakes.
+     * @since v0.4.5
+     */
+    public long getFullHandshakes(){
+        return this.httpsServer.getFullHandshakes();
+    }
+    
+    /**
+     * This method returns the number of resumed TLS handshakes.
+     * @return Resumed handshakes.
+     * @since v0.4.5
+     */
+    public long getResumedHandshakes(){
+        return this.httpsServer.getResumedHandshakes();
+    }
+    
     /**
      * This method is used to get the Date object with the HTTPs server 
      *     certificate expiration date.
@@ -278,6 +367,96 @@ public class KsMonitor implements CheckObject{
         return this.httpsServer.getStatistics();
     }
 
+    /**
+     * This method returns the private keys cache object.
+     * @return Private keys cache object.
+     * @since v0.4.5
+     */
+    public PrivateKeyCache getKeyCache(){
+        return this.httpsServer.getKeyCache();
+    }
+
+    /**
+     * This method returns the private key operations workers pool.
+     * @return Crypto workers pool object.
+     * @since v0.4.5
+     */
+    public CryptoWorkers getCryptoWorkers(){
+        return this.httpsServer.getCryptoWorkers();
+    }
+
+    /**
+     * This method returns the request threads object.
+     * @return Request threads object (platform or virtual mode).
+     * @since v0.4.5
+     */
+    public RequestThreads getRequestThreads(){
+        return this.httpsServer.getRequestThreads();
+    }
+
+    /**
+     * This method returns the adaptive concurrency limit object.
+     * @return Concurrency limit object.
+     * @since v0.4.5
+     */
+    public ConcurrencyLimit getConcurrencyLimit(){
+        return this.httpsServer.getConcurrencyLimit();
+    }
+
+    /**
+     * This method returns the security audit log.
+     * @return Security audit log object.
+     * @since v0.4.5
+     */
+    public AuditLog getAuditLog(){
+        return this.httpsServer.getAuditLog();
+    }
+
+    /**
+     * This method returns the Jetty worker threads pool.
+     * @return Thread pool object.
+     * @since v0.4.5
+     */
+    public QueuedThreadPool getThreadPool(){
+        return this.httpsServer.getThreadPool();
+    }
+
+    /**
+     * This method returns the HTTPS connector.
+     * @return HTTPS connector object.
+     * @since v0.4.5
+     */
+    public ServerConnector getConnector(){
+        return this.httpsServer.getConnector();
+    }
+
+    /**
+     * This method returns the HTTPS connectors listening on the same port.
+     * @return HTTPS connectors array.
+     * @since v0.4.5
+     */
+    public ServerConnector[] getConnectors(){
+        return this.httpsServer.getConnectors();
+    }
+
+    /**
+     * This method returns the maximum number of open HTTPS connections.
+     * @return Maximum number of connections (0 no limit).
+     * @since v0.4.5
+     */
+    public int getMaxConnections(){
+        return this.httpsServer.getMaxConnections();
+    }
+
+    /**
+     * This method returns the binary SKI protocol listener.
+     * @return Binary listener object or null if it's disabled.
+     * @since v0.4.5
+     */
+    public BinarySkiServer getBinaryServer(){
+        return this.httpsServer.getBinaryServer();
+    }
+
     /**
      * Object initialization status.
      * @return Returns true if the object is correctly initialized or false if 
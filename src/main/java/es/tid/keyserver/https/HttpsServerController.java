@@ -16,12 +16,23 @@
 package es.tid.keyserver.https;
 
 import es.tid.keyserver.config.ConfigController;
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
 import es.tid.keyserver.controllers.db.DataBase;
 import es.tid.keyserver.core.lib.CheckObject;
+import es.tid.keyserver.core.status.HealthCheck;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.binary.BinarySkiServer;
 import es.tid.keyserver.https.jetty.KsJetty;
+import es.tid.keyserver.https.jetty.SessionTicketKeys;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.LoggerFactory;
 
 /**
@@ -106,6 +117,173 @@ public class HttpsServerController implements CheckObject{
         return this.jettyserver.getStatistics();
     }
     
+    /**
+     * This method returns the private keys cache object.
+     * @return Private keys cache object.
+     * @since v0.4.5
+     */
+    public PrivateKeyCache getKeyCache(){
+        return this.jettyserver.getKeyCache();
+    }
+    
+    /**
+     * This method returns the private key operations workers pool.
+     * @return Crypto workers pool object.
+     * @since v0.4.5
+     */
+    public CryptoWorkers getCryptoWorkers(){
+        return this.jettyserver.getCryptoWorkers();
+    }
+    
+    /**
+     * This method returns the request threads object.
+     * @return Request threads object (platform or virtual mode).
+     * @since v0.4.5
+     */
+    public RequestThreads getRequestThreads(){
+        return this.jettyserver.getRequestThreads();
+    }
+    
+    /**
+     * This method returns the adaptive concurrency limit object.
+     * @return Concurrency limit object.
+     * @since v0.4.5
+     */
+    public ConcurrencyLimit getConcurrencyLimit(){
+        return this.jettyserver.getConcurrencyLimit();
+    }
+    
+    /**
+     * This method returns the security audit log.
+     * @return Security audit log object.
+     * @since v0.4.5
+     */
+    public AuditLog getAuditLog(){
+        return this.jettyserver.getAuditLog();
+    }
+    
+    /**
+     * This method returns the application protocols accepted by the HTTPS 
+     *     connector.
+     * @return String with the protocol names.
+     * @since v0.4.5
+     */
+    public String getProtocols(){
+        return this.jettyserver.getProtocols();
+    }
+    
+    /**
+     * This method returns the TLS settings of the HTTPS connector.
+     * @return String with the provider, cipher suites order, session cache 
+     *     and session tickets values.
+     * @since v0.4.5
+     */
+    public String getTlsSettings(){
+        return this.jettyserver.getTlsSettings();
+    }
+    
+    /**
+     * This method returns the local cleartext HTTP listener address.
+     * @return String with the address and port or "disabled".
+     * @since v0.4.5
+     */
+    public String getLocalListener(){
+        return this.jettyserver.getLocalListener();
+    }
+    
+    /**
+     * This method returns the client time budgets control (discarded 
+     *     requests).
+     * @return Deadline control object.
+     * @since v0.4.5
+     */
+    public DeadlineControl getDeadlineControl(){
+        return this.jettyserver.getDeadlineControl();
+    }
+    
+    /**
+     * This method returns the health and readiness state of the load 
+     *     balancer probes.
+     * @return Health check object.
+     * @since v0.4.5
+     */
+    public HealthCheck getHealthCheck(){
+        return this.jettyserver.getHealthCheck();
+    }
+    
+    /**
+     * This method returns the session ticket keys shared by the KeyServer 
+     *     nodes.
+     * @return Session ticket keys object.
+     * @since v0.4.5
+     */
+    public SessionTicketKeys getTicketKeys(){
+        return this.jettyserver.getTicketKeys();
+    }
+    
+    /**
+     * This method returns the number of full TLS handshakes.
+     * @return Full handshakes.
+     * @since v0.4.5
+     */
+    public long getFullHandshakes(){
+        return this.jettyserver.getFullHandshakes();
+    }
+    
+    /**
+     * This method returns the number of resumed TLS handshakes.
+     * @return Resumed handshakes.
+     * @since v0.4.5
+     */
+    public long getResumedHandshakes(){
+        return this.jettyserver.getResumedHandshakes();
+    }
+    
+    /**
+     * This method returns the Jetty worker threads pool.
+     * @return Thread pool object.
+     * @since v0.4.5
+     */
+    public QueuedThreadPool getThreadPool(){
+        return this.jettyserver.getThreadPool();
+    }
+    
+    /**
+     * This method returns the HTTPS connector.
+     * @return HTTPS connector object.
+     * @since v0.4.5
+     */
+    public ServerConnector getConnector(){
+        return this.jettyserver.getConnector();
+    }
+    
+    /**
+     * This method returns the HTTPS connectors listening on the same port.
+     * @return HTTPS connectors array.
+     * @since v0.4.5
+     */
+    public ServerConnector[] getConnectors(){
+        return this.jettyserver.getConnectors();
+    }
+    
+    /**
+     * This method returns the maximum number of open HTTPS connections.
+     * @return Maximum number of connections (0 no limit).
+     * @since v0.4.5
+     */
+    public int getMaxConnections(){
+        return this.jettyserver.getMaxConnections();
+    }
+    
+    /**
+     * This method returns the binary SKI protocol listener.
+     * @return Binary listener object or null if it's disabled.
+     * @since v0.4.5
+     */
+    public BinarySkiServer getBinaryServer(){
+        return this.jettyserver.getBinaryServer();
+    }
+    
     /**
      * Object initialization status.
      * @return Returns true if the object is correctly initialized or false if 
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.audit;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Security audit log entry types. Each type has a fixed layout with the 
+ *     event time, remote address, HTTP method, target and an extra field.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public enum AuditEvent {
+    /**
+     * Processed SKI request (extra field: certificate fingerprint).
+     */
+    REQUEST(Level.INFO, "Remote IP address: {} | Authorized: {} | Target: {} | Certificate Fingerprint: {}"),
+    
+    /**
+     * Not valid target or HTTP method (extra field: first bytes of the body).
+     */
+    NOT_VALID_REQUEST(Level.WARN, "Not valid HTTPS request: {} | Remote address: {} | Target: {} | Body content: {}"),
+    
+    /**
+     * Request body longer than the maximum size.
+     */
+    BODY_TOO_LONG(Level.WARN, "Not valid HTTPS request: body too long | Remote address: {} | Type: {} | Target: {}"),
+    
+    /**
+     * Not valid batch request.
+     */
+    NOT_VALID_BATCH(Level.WARN, "Not valid HTTPS batch request | Remote address: {} | Type: {} | Target: {}"),
+    
+    /**
+     * Request from an IP address not included in the white list.
+     */
+    UNAUTHORIZED(Level.ERROR, "Incoming request for unauthorized IP: {} | Type: {} | Target: {}"),
+    
+    /**
+     * Jetty error response (extra field: HTTP status code).
+     */
+    UNDEFINED_ERROR(Level.ERROR, "Undefined error Code: {} | IP: {} | Type: {} | Target: {}");
+    
+    /**
+     * Event time format (the time when the entry was added, not when it was 
+     *     written by the writer thread).
+     */
+    private static final DateTimeFormatter TIME_FORMAT = 
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    
+    /**
+     * Log levels used by the audit entries.
+     */
+    private enum Level {
+        /**
+         * Info log level.
+         */
+        INFO,
+        
+        /**
+         * Warn log level.
+         */
+        WARN,
+        
+        /**
+         * Error log level.
+         */
+        ERROR
+    }
+    
+    /**
+     * Log level.
+     */
+    private final Level level;
+    
+    /**
+     * Log message pattern (SLF4J format).
+     */
+    private final String pattern;
+    
+    /**
+     * Enum constructor.
+     * @param level Log level.
+     * @param pattern Log message pattern.
+     */
+    AuditEvent(Level level, String pattern){
+        this.level = level;
+        this.pattern = "Event time: {} | " + pattern;
+    }
+    
+    /**
+     * Writes an entry of this type.
+     * @param logger Security logger.
+     * @param time Event time in milliseconds since the epoch.
+     * @param remoteAddr Remote IP address.
+     * @param method HTTP method.
+     * @param target Request target.
+     * @param extra Extra field (can be null).
+     */
+    void write(org.slf4j.Logger logger, long time, String remoteAddr, String method, String target, Object extra){
+        String eventTime = TIME_FORMAT.format(Instant.ofEpochMilli(time));
+        Object[] arguments;
+        switch(this){
+            case REQUEST:
+                arguments = new Object[] {eventTime, remoteAddr, method, target, extra};
+                break;
+            case NOT_VALID_REQUEST:
+                arguments = new Object[] {eventTime, method, remoteAddr, target, extra};
+                break;
+            case UNDEFINED_ERROR:
+                arguments = new Object[] {eventTime, extra, remoteAddr, method, target};
+                break;
+            default:
+                arguments = new Object[] {eventTime, remoteAddr, method, target};
+                break;
+        }
+        switch(level){
+            case ERROR:
+                logger.error(pattern, arguments);
+                break;
+            case WARN:
+                logger.warn(pattern, arguments);
+                break;
+            default:
+                logger.info(pattern, arguments);
+                break;
+        }
+    }
+}
@@ -0,0 +1,411 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.audit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous security audit log.
+ * 
+ *     <p>The request threads copy the entry fields and the event time into a
+ *     preallocated slot of a lock-free ring buffer (no formatting and no 
+ *     I/O). A background 
+ *     writer thread takes the entries in batches, formats them and writes 
+ *     them to the "security" logger. When the ring buffer is full, the 
+ *     configured overflow policy is applied.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class AuditLog {
+    /**
+     * Overflow policy: the request thread waits until there is free space
+     *     (no entries are lost).
+     */
+    public static final String OVERFLOW_BLOCK = "block";
+    
+    /**
+     * Overflow policy: the entry is discarded and the number of discarded 
+     *     entries is written to the security log when there is free space.
+     */
+    public static final String OVERFLOW_DROP = "drop";
+    
+    /**
+     * Overflow policy: the entry is discarded and only the counter of 
+     *     discarded entries is updated.
+     */
+    public static final String OVERFLOW_COUNT = "count";
+    
+    /**
+     * Maximum number of entries written by the writer thread in each batch.
+     */
+    private static final int BATCH_SIZE = 256;
+    
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(AuditLog.class);
+    
+    /**
+     * Security logger object.
+     */
+    private static final org.slf4j.Logger SECURITY = LoggerFactory.getLogger("security");
+    
+    /**
+     * Logger used to write the entries.
+     */
+    private final org.slf4j.Logger security;
+    
+    /**
+     * Ring buffer slots. Null if the audit log is synchronous.
+     */
+    private final Slot[] slots;
+    
+    /**
+     * Sequence number of each slot: it is equal to the next producer 
+     *     position when the slot is free, and one more when the slot has an 
+     *     entry ready to be written.
+     */
+    private final AtomicLongArray sequences;
+    
+    /**
+     * Ring buffer positions mask (capacity - 1).
+     */
+    private final int mask;
+    
+    /**
+     * Next producer position.
+     */
+    private final AtomicLong tail = new AtomicLong();
+    
+    /**
+     * Next position to be written (only updated by the writer thread).
+     */
+    private volatile long head = 0;
+    
+    /**
+     * Overflow policy (one of the OVERFLOW_* values).
+     */
+    private final String overflowPolicy;
+    
+    /**
+     * Number of discarded entries.
+     */
+    private final LongAdder dropped = new LongAdder();
+    
+    /**
+     * Number of discarded entries already reported on the security log.
+     */
+    private long droppedReported = 0;
+    
+    /**
+     * Number of written entries.
+     */
+    private final LongAdder written = new LongAdder();
+    
+    /**
+     * Writer thread. Null if the audit log is synchronous.
+     */
+    private final Thread writer;
+    
+    /**
+     * True while the writer thread is parked waiting for entries.
+     */
+    private volatile boolean writerWaiting = false;
+    
+    /**
+     * False when the audit log is stopped.
+     */
+    private volatile boolean running = true;
+    
+    /**
+     * Class constructor.
+     * @param capacity Ring buffer size (rounded up to a power of two). Zero 
+     *     disables the ring buffer and the entries are written by the 
+     *     request thread.
+     * @param overflowPolicy Overflow policy (one of the OVERFLOW_* values).
+     */
+    public AuditLog(int capacity, String overflowPolicy){
+        this(capacity, overflowPolicy, SECURITY);
+    }
+    
+    /**
+     * Class constructor with a custom security logger.
+     * @param capacity Ring buffer size (rounded up to a power of two). Zero 
+     *     disables the ring buffer.
+     * @param overflowPolicy Overflow policy (one of the OVERFLOW_* values).
+     * @param security Logger used to write the entries.
+     */
+    AuditLog(int capacity, String overflowPolicy, org.slf4j.Logger security){
+        this.overflowPolicy = overflowPolicy;
+        this.security = security;
+        if(capacity <= 0){
+            slots = null;
+            sequences = null;
+            mask = 0;
+            writer = null;
+            LOGGER.info("Security audit log: synchronous.");
+            return;
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30));
+        if(size < capacity){
+            size <<= 1;
+        }
+        slots = new Slot[size];
+        sequences = new AtomicLongArray(size);
+        for(int i = 0; i < size; i++){
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        mask = size - 1;
+        writer = new Thread(this::writeLoop, "THAUDIT");
+        writer.setDaemon(true);
+        writer.start();
+        LOGGER.info("Security audit log: ring buffer size {}, overflow policy {}.", size, overflowPolicy);
+    }
+    
+    /**
+     * Adds an entry to the security audit log.
+     * @param event Entry type.
+     * @param remoteAddr Remote IP address.
+     * @param method HTTP method.
+     * @param target Request target.
+     * @param extra Extra field of the entry type (can be null).
+     */
+    public void log(AuditEvent event, String remoteAddr, String method, String target, Object extra){
+        if(slots == null || !running){
+            event.write(security, System.currentTimeMillis(), remoteAddr, method, target, extra);
+            written.increment();
+            return;
+        }
+        long position = tail.get();
+        while(true){
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if(difference == 0){
+                if(tail.compareAndSet(position, position + 1)){
+                    Slot slot = slots[index];
+                    slot.time = System.currentTimeMillis();
+                    slot.event = event;
+                    slot.remoteAddr = remoteAddr;
+                    slot.method = method;
+                    slot.target = target;
+                    slot.extra = extra;
+                    sequences.set(index, position + 1);
+                    if(writerWaiting){
+                        LockSupport.unpark(writer);
+                    }
+                    return;
+                }
+                position = tail.get();
+            } else if(difference < 0){
+                // Ring buffer full.
+                if(!OVERFLOW_BLOCK.equals(overflowPolicy)){
+                    dropped.increment();
+                    return;
+                }
+                if(!running){
+                    // Writer thread stopped.
+                    event.write(security, System.currentTimeMillis(), remoteAddr, method, target, extra);
+                    written.increment();
+                    return;
+                }
+                if(writerWaiting){
+                    LockSupport.unpark(writer);
+                }
+                LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+                position = tail.get();
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+    
+    /**
+     * Stops the writer thread. The pending entries are written before.
+     */
+    public void stop(){
+        running = false;
+        if(writer != null){
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * Checks if the entries are written by the background writer thread.
+     * @return True if the ring buffer is enabled.
+     */
+    public boolean isAsync(){
+        return slots != null;
+    }
+    
+    /**
+     * Ring buffer size.
+     * @return Maximum number of pending entries (zero if it's synchronous).
+     */
+    public int getCapacity(){
+        return (slots == null) ? 0 : slots.length;
+    }
+    
+    /**
+     * Number of entries waiting for the writer thread.
+     * @return Number of pending entries.
+     */
+    public int getPending(){
+        return (slots == null) ? 0 : (int) Math.max(0, Math.min(slots.length, tail.get() - head));
+    }
+    
+    /**
+     * Overflow policy.
+     * @return One of the OVERFLOW_* values.
+     */
+    public String getOverflowPolicy(){
+        return overflowPolicy;
+    }
+    
+    /**
+     * Number of discarded entries because the ring buffer was full.
+     * @return Number of discarded entries.
+     */
+    public long getDroppedEvents(){
+        return dropped.sum();
+    }
+    
+    /**
+     * Number of entries written to the security log.
+     * @return Number of written entries.
+     */
+    public long getWrittenEvents(){
+        return written.sum();
+    }
+    
+    /**
+     * Writer thread main loop.
+     */
+    private void writeLoop(){
+        while(true){
+            int count = writeBatch();
+            if(count > 0){
+                continue;
+            }
+            if(!running){
+                // Entries added while stopping.
+                if(writeBatch() == 0){
+                    return;
+                }
+                continue;
+            }
+            writerWaiting = true;
+            if(sequences.get((int) head & mask) != head + 1){
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            writerWaiting = false;
+        }
+    }
+    
+    /**
+     * Writes the available entries (up to the batch size).
+     * @return Number of written entries.
+     */
+    private int writeBatch(){
+        long position = head;
+        int count = 0;
+        while(count < BATCH_SIZE){
+            int index = (int) position & mask;
+            if(sequences.get(index) != position + 1){
+                break;
+            }
+            Slot slot = slots[index];
+            try {
+                slot.event.write(security, slot.time, slot.remoteAddr, slot.method, slot.target, slot.extra);
+            } catch (RuntimeException ex) {
+                LOGGER.error("Security audit log write error: {}", ex.getMessage());
+            }
+            slot.clear();
+            position++;
+            // Slot free for the next round of the ring buffer.
+            sequences.lazySet(index, position + mask);
+            head = position;
+            count++;
+        }
+        if(count > 0){
+            written.add(count);
+        }
+        if(OVERFLOW_DROP.equals(overflowPolicy)){
+            long total = dropped.sum();
+            if(total != droppedReported){
+                security.warn("Security audit log full: {} entries discarded.", total - droppedReported);
+                droppedReported = total;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Ring buffer slot (entry fields).
+     */
+    private static final class Slot {
+        /**
+         * Event time in milliseconds since the epoch.
+         */
+        private long time;
+        
+        /**
+         * Entry type.
+         */
+        private AuditEvent event;
+        
+        /**
+         * Remote IP address.
+         */
+        private String remoteAddr;
+        
+        /**
+         * HTTP method.
+         */
+        private String method;
+        
+        /**
+         * Request target.
+         */
+        private String target;
+        
+        /**
+         * Extra field.
+         */
+        private Object extra;
+        
+        /**
+         * Removes the references to the entry fields.
+         */
+        private void clear(){
+            event = null;
+            remoteAddr = null;
+            method = null;
+            target = null;
+            extra = null;
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.binary;
+
+import es.tid.keyserver.core.lib.ErrorLogger;
+import es.tid.keyserver.https.audit.AuditEvent;
+import es.tid.keyserver.https.jetty.exceptions.KeyServerException;
+import es.tid.keyserver.https.protocol.SkiBinary;
+import es.tid.keyserver.https.protocol.SkiRequest;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.PrivateKey;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Binary SKI protocol connection. The reader thread decodes the frames and 
+ *     queues the operations. Responses are written by the thread that 
+ *     finishes each operation.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+final class BinarySkiConnection implements Runnable{
+    /**
+     * Socket buffers size in bytes.
+     */
+    private static final int BUFFER_SIZE = 16384;
+
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(BinarySkiConnection.class);
+
+    /**
+     * Rate limited error log entries.
+     */
+    private static final ErrorLogger ERRORS = new ErrorLogger(LOGGER);
+
+    /**
+     * Listener object.
+     */
+    private final BinarySkiServer server;
+
+    /**
+     * TLS socket.
+     */
+    private final Socket socket;
+
+    /**
+     * Client address.
+     */
+    private final String remoteAddr;
+
+    /**
+     * Requests in flight limit.
+     */
+    private final Semaphore inFlight;
+
+    /**
+     * Closed flag.
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * Response frames output (writes are synchronized on this object).
+     */
+    private DataOutputStream out;
+
+    /**
+     * Class constructor.
+     * @param server Listener object.
+     * @param socket Accepted TLS socket.
+     */
+    BinarySkiConnection(BinarySkiServer server, Socket socket){
+        this.server = server;
+        this.socket = socket;
+        this.remoteAddr = socket.getInetAddress().getHostAddress();
+        this.inFlight = new Semaphore(server.getMaxInFlight());
+    }
+
+    /**
+     * Reader thread: reads request frames until the client closes the 
+     *     connection or sends a frame that is not valid.
+     */
+    @Override
+    public void run(){
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE));
+            while(true){
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                int bodyLength = length - BinarySkiServer.ID_SIZE;
+                if((bodyLength < 0) || (bodyLength > server.getMaxRequestSize())){
+                    // The frames can't be delimited anymore.
+                    server.countMalformed();
+                    server.getAuditLog().log(AuditEvent.BODY_TOO_LONG, remoteAddr, 
+                            BinarySkiServer.AUDIT_METHOD, BinarySkiServer.AUDIT_TARGET, null);
+                    break;
+                }
+                int id = in.readInt();
+                byte[] body = new byte[bodyLength];
+                in.readFully(body);
+                inFlight.acquire();
+                process(id, body);
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Binary SKI connection from {} closed: {}", remoteAddr, ex.getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Decodes a request, gets the private key and queues the operation.
+     * @param id Request id.
+     * @param body Request body.
+     */
+    private void process(int id, byte[] body){
+        server.countRequest();
+        SkiRequest request = SkiBinary.decodeRequest(body, 0, body.length);
+        if(request == null){
+            server.countMalformed();
+            send(id, SkiBinary.STATUS_MALFORMED_REQUEST, null);
+            server.getAuditLog().log(AuditEvent.NOT_VALID_REQUEST, remoteAddr, 
+                    BinarySkiServer.AUDIT_METHOD, BinarySkiServer.AUDIT_TARGET, null);
+            return;
+        }
+        server.getAuditLog().log(AuditEvent.REQUEST, remoteAddr, 
+                BinarySkiServer.AUDIT_METHOD, BinarySkiServer.AUDIT_TARGET, request.getSpki());
+        PrivateKey privKey;
+        try {
+            privKey = server.getOperations().getPrivKey(request.getSpki());
+        } catch (KeyServerException e) {
+            LOGGER.debug("KeyServer custom exception message: {}", e.getMessage());
+            send(id, SkiBinary.getStatus(e.getMessage()), null);
+            return;
+        } catch (RuntimeException e) {
+            // Database not available during the private key query.
+            ERRORS.error("Binary SKI: Private key query error: {}", e);
+            send(id, SkiBinary.STATUS_UNSPECIFIED, null);
+            return;
+        }
+        Runnable task = () -> {
+            try {
+                send(id, SkiBinary.STATUS_OK, server.getOperations().execute(request, privKey));
+            } catch (KeyServerException e) {
+                send(id, SkiBinary.getStatus(e.getMessage()), null);
+            }
+        };
+        CryptoWorkers cryptoWorkers = server.getCryptoWorkers();
+        if(cryptoWorkers.submit(remoteAddr, task)){
+            return;
+        }
+        if(!cryptoWorkers.isEnabled() || CryptoWorkers.QUEUE_FULL_INLINE.equals(cryptoWorkers.getQueueFullResponse())){
+            task.run();
+        } else {
+            LOGGER.warn("Crypto workers queue full. Request from {} discarded.", remoteAddr);
+            send(id, CryptoWorkers.QUEUE_FULL_ERROR.equals(cryptoWorkers.getQueueFullResponse()) 
+                    ? SkiBinary.STATUS_UNSPECIFIED : SkiBinary.STATUS_BUSY, null);
+        }
+    }
+
+    /**
+     * Writes a response frame and releases the request in flight.
+     * @param id Request id.
+     * @param status Response status.
+     * @param output Operation output (null for errors).
+     */
+    private void send(int id, byte status, byte[] output){
+        int outputLength = (output == null) ? 0 : output.length;
+        try {
+            synchronized(out){
+                out.writeInt(BinarySkiServer.ID_SIZE + 1 + outputLength);
+                out.writeInt(id);
+                out.writeByte(status);
+                if(output != null){
+                    out.write(output);
+                }
+                out.flush();
+            }
+        } catch (IOException ex) {
+            LOGGER.debug("Can't send the binary response to {}: {}", remoteAddr, ex.getMessage());
+            close();
+        } finally {
+            inFlight.release();
+        }
+    }
+
+    /**
+     * Closes the connection (only the first call has effect).
+     */
+    void close(){
+        if(closed.compareAndSet(false, true)){
+            closeQuietly(socket);
+            server.remove(this);
+        }
+    }
+
+    /**
+     * Closes a socket ignoring the errors.
+     * @param socket Socket object.
+     */
+    static void closeQuietly(Socket socket){
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            LOGGER.trace("Socket close error: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.binary;
+
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.core.lib.CidrTrie;
+import es.tid.keyserver.https.audit.AuditEvent;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.keyprocess.SkiOperations;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Binary SKI protocol listener. Each TLS connection carries length prefixed
+ *     frames with a request id, so a client can send many requests without
+ *     waiting and the responses are sent when each operation finishes (out 
+ *     of order).
+ * 
+ *     <p>Request frame: length (4 bytes, big endian, id and body size), 
+ *     request id (4 bytes) and the request body. Response frame: length (4 
+ *     bytes), request id (4 bytes) and the response body. Request and 
+ *     response bodies are described in 
+ *     {@link es.tid.keyserver.https.protocol.SkiBinary}.
+ * 
+ *     <p>Each connection has a reader thread. The private key lookup is done
+ *     by the reader thread and the RSA/ECDHE operation by the crypto workers
+ *     pool (same as the HTTPS handler). Connections above the maximum are 
+ *     closed when they are accepted, before the TLS handshake.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class BinarySkiServer implements Runnable{
+    /**
+     * Request id field size in bytes.
+     */
+    public static final int ID_SIZE = 4;
+
+    /**
+     * Method field used for the security log entries.
+     */
+    static final String AUDIT_METHOD = "BINARY";
+
+    /**
+     * Target field used for the security log entries.
+     */
+    static final String AUDIT_TARGET = "/";
+
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(BinarySkiServer.class);
+
+    /**
+     * TLS configuration object.
+     */
+    private final SslContextFactory sslContextFactory;
+
+    /**
+     * Listener address.
+     */
+    private final InetAddress address;
+
+    /**
+     * Listener port.
+     */
+    private final int port;
+
+    /**
+     * Private key lookup and operations.
+     */
+    private final SkiOperations operations;
+
+    /**
+     * Worker threads for the private key operations.
+     */
+    private final CryptoWorkers cryptoWorkers;
+
+    /**
+     * Security audit log.
+     */
+    private final AuditLog auditLog;
+
+    /**
+     * Maximum request body size in bytes.
+     */
+    private final int maxRequestSize;
+
+    /**
+     * Maximum number of requests in flight for each connection.
+     */
+    private final int maxInFlight;
+
+    /**
+     * Idle timeout in milliseconds (zero for no timeout).
+     */
+    private int idleTimeout;
+
+    /**
+     * Allowed client addresses (null allows all addresses).
+     */
+    private CidrTrie whiteList;
+
+    /**
+     * Maximum number of open connections (zero for no limit).
+     */
+    private int maxConnections;
+
+    /**
+     * Server socket (null until the listener is started).
+     */
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Open connections.
+     */
+    private final Set<BinarySkiConnection> connections = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Number of accepted connections.
+     */
+    private final LongAdder acceptedConnections = new LongAdder();
+
+    /**
+     * Number of connections rejected by the white list.
+     */
+    private final LongAdder rejectedConnections = new LongAdder();
+
+    /**
+     * Number of connections closed because the limit was reached.
+     */
+    private final LongAdder limitedConnections = new LongAdder();
+
+    /**
+     * Number of received requests.
+     */
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Number of malformed requests and frames.
+     */
+    private final LongAdder malformedRequests = new LongAdder();
+
+    /**
+     * Class constructor.
+     * @param sslContextFactory TLS configuration object (it's started by the
+     *     listener).
+     * @param address Listener address.
+     * @param port Listener port (zero for a random port).
+     * @param keyCache Private keys cache object.
+     * @param cryptoWorkers Private key operations workers pool.
+     * @param auditLog Security audit log.
+     * @param maxRequestSize Maximum request body size in bytes.
+     * @param maxInFlight Maximum number of requests in flight for each 
+     *     connection. The connection is not read while this limit is reached.
+     * @since v0.4.5
+     */
+    public BinarySkiServer(SslContextFactory sslContextFactory, InetAddress address, int port, 
+            PrivateKeyCache keyCache, CryptoWorkers cryptoWorkers, AuditLog auditLog, 
+            int maxRequestSize, int maxInFlight){
+        this.sslContextFactory = sslContextFactory;
+        this.address = address;
+        this.port = port;
+        this.operations = new SkiOperations(keyCache);
+        this.cryptoWorkers = cryptoWorkers;
+        this.auditLog = auditLog;
+        this.maxRequestSize = maxRequestSize;
+        this.maxInFlight = Math.max(1, maxInFlight);
+    }
+
+    /**
+     * Sets the connections idle timeout.
+     * @param idleTimeout Time in milliseconds. Zero disables the timeout.
+     * @since v0.4.5
+     */
+    public void setIdleTimeout(int idleTimeout){
+        this.idleTimeout = Math.max(0, idleTimeout);
+    }
+
+    /**
+     * Sets the allowed client addresses. Connections from other addresses 
+     *     are closed before the TLS handshake.
+     * @param patterns Address patterns (same format as the HTTPS white 
+     *     list) or null to allow all addresses.
+     * @since v0.4.5
+     */
+    public void setWhiteList(String[] patterns){
+        this.whiteList = CidrTrie.of(patterns);
+    }
+
+    /**
+     * Sets the maximum number of open connections. New connections are 
+     *     closed while the limit is reached.
+     * @param maxConnections Number of connections. Zero disables the limit.
+     * @since v0.4.5
+     */
+    public void setMaxConnections(int maxConnections){
+        this.maxConnections = Math.max(0, maxConnections);
+    }
+
+    /**
+     * Opens the listener socket. After this method the local port is known.
+     * @throws Exception If the TLS configuration or the socket is not valid.
+     * @since v0.4.5
+     */
+    public synchronized void open() throws Exception{
+        if(serverSocket != null){
+            return;
+        }
+        if(!sslContextFactory.isStarted()){
+            sslContextFactory.start();
+        }
+        serverSocket = sslContextFactory.newSslServerSocket(address.getHostAddress(), port, 0);
+        LOGGER.info("Binary SKI listener: {}:{}", address.getHostAddress(), serverSocket.getLocalPort());
+    }
+
+    /**
+     * Run method for Thread execution (accept loop).
+     * @since v0.4.5
+     */
+    @Override
+    public void run(){
+        try {
+            open();
+        } catch (Exception ex) {
+            LOGGER.error("Binary SKI listener bad initialization error: {}", ex.getMessage());
+            return;
+        }
+        ServerSocket listener = serverSocket;
+        while(!listener.isClosed()){
+            try {
+                accept(listener.accept());
+            } catch (IOException ex) {
+                if(!listener.isClosed()){
+                    LOGGER.debug("Binary SKI listener accept error: {}", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the listener and closes all the connections.
+     * @since v0.4.5
+     */
+    public void stop(){
+        ServerSocket listener = serverSocket;
+        if(listener != null){
+            try {
+                listener.close();
+            } catch (IOException ex) {
+                LOGGER.debug("Binary SKI listener close error: {}", ex.getMessage());
+            }
+        }
+        for(BinarySkiConnection connection : connections){
+            connection.close();
+        }
+        try {
+            sslContextFactory.stop();
+        } catch (Exception ex) {
+            LOGGER.debug("Binary SKI listener TLS stop error: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Checks the client address and the connections limit and starts the 
+     *     connection reader thread.
+     * @param socket Accepted socket (TLS handshake not done yet).
+     */
+    private void accept(Socket socket){
+        InetAddress remote = socket.getInetAddress();
+        if((whiteList != null) && !whiteList.test(remote)){
+            rejectedConnections.increment();
+            auditLog.log(AuditEvent.UNAUTHORIZED, remote.getHostAddress(), AUDIT_METHOD, AUDIT_TARGET, null);
+            BinarySkiConnection.closeQuietly(socket);
+            return;
+        }
+        // Only this thread adds connections, so the limit can't be exceeded.
+        if((maxConnections > 0) && (connections.size() >= maxConnections)){
+            limitedConnections.increment();
+            LOGGER.debug("Binary SKI connections limit reached ({}). Connection from {} closed.", 
+                    maxConnections, remote.getHostAddress());
+            BinarySkiConnection.closeQuietly(socket);
+            return;
+        }
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(idleTimeout);
+        } catch (IOException ex) {
+            LOGGER.debug("Binary SKI socket options error: {}", ex.getMessage());
+            BinarySkiConnection.closeQuietly(socket);
+            return;
+        }
+        acceptedConnections.increment();
+        BinarySkiConnection connection = new BinarySkiConnection(this, socket);
+        connections.add(connection);
+        Thread th = new Thread(connection, "THBINARY_" + remote.getHostAddress() + ":" + socket.getPort());
+        th.setDaemon(true);
+        th.start();
+    }
+
+    /**
+     * Removes a closed connection.
+     * @param connection Connection object.
+     */
+    void remove(BinarySkiConnection connection){
+        connections.remove(connection);
+    }
+
+    /**
+     * Counts a received request.
+     */
+    void countRequest(){
+        requests.increment();
+    }
+
+    /**
+     * Counts a malformed request or frame.
+     */
+    void countMalformed(){
+        malformedRequests.increment();
+    }
+
+    /**
+     * Private key lookup and operations.
+     * @return Operations object.
+     */
+    SkiOperations getOperations(){
+        return operations;
+    }
+
+    /**
+     * Worker threads for the private key operations.
+     * @return Crypto workers pool object.
+     */
+    CryptoWorkers getCryptoWorkers(){
+        return cryptoWorkers;
+    }
+
+    /**
+     * Security audit log.
+     * @return Security audit log object.
+     */
+    AuditLog getAuditLog(){
+        return auditLog;
+    }
+
+    /**
+     * This method returns the maximum request body size.
+     * @return Size in bytes.
+     * @since v0.4.5
+     */
+    public int getMaxRequestSize(){
+        return maxRequestSize;
+    }
+
+    /**
+     * This method returns the maximum number of requests in flight for each
+     *     connection.
+     * @return Number of requests.
+     * @since v0.4.5
+     */
+    public int getMaxInFlight(){
+        return maxInFlight;
+    }
+
+    /**
+     * This method returns the listener port.
+     * @return Local port or -1 if the listener is not open.
+     * @since v0.4.5
+     */
+    public int getLocalPort(){
+        ServerSocket listener = serverSocket;
+        return (listener == null) ? -1 : listener.getLocalPort();
+    }
+
+    /**
+     * This method returns if the listener is accepting connections.
+     * @return True if the listener is open.
+     * @since v0.4.5
+     */
+    public boolean isRunning(){
+        ServerSocket listener = serverSocket;
+        return (listener != null) && !listener.isClosed();
+    }
+
+    /**
+     * This method returns the number of open connections.
+     * @return Number of connections.
+     * @since v0.4.5
+     */
+    public int getConnections(){
+        return connections.size();
+    }
+
+    /**
+     * This method returns the number of accepted connections.
+     * @return Number of connections.
+     * @since v0.4.5
+     */
+    public long getAcceptedConnections(){
+        return acceptedConnections.sum();
+    }
+
+    /**
+     * This method returns the number of connections rejected by the white 
+     *     list.
+     * @return Number of connections.
+     * @since v0.4.5
+     */
+    public long getRejectedConnections(){
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * This method returns the maximum number of open connections.
+     * @return Number of connections (zero means no limit).
+     * @since v0.4.5
+     */
+    public int getMaxConnections(){
+        return maxConnections;
+    }
+
+    /**
+     * This method returns the number of connections closed because the 
+     *     limit was reached.
+     * @return Number of connections.
+     * @since v0.4.5
+     */
+    public long getLimitedConnections(){
+        return limitedConnections.sum();
+    }
+
+    /**
+     * This method returns the number of received requests.
+     * @return Number of requests.
+     * @since v0.4.5
+     */
+    public long getRequests(){
+        return requests.sum();
+    }
+
+    /**
+     * This method returns the number of malformed requests and frames.
+     * @return Number of requests.
+     * @since v0.4.5
+     */
+    public long getMalformedRequests(){
+        return malformedRequests.sum();
+    }
+}
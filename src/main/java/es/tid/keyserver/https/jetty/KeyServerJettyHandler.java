@@ -16,33 +16,44 @@
 
 package es.tid.keyserver.https.jetty;
 
-import es.tid.keyserver.controllers.db.DataBase;
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.core.lib.ErrorLogger;
+import es.tid.keyserver.core.lib.RequestDeadline;
+import es.tid.keyserver.core.status.HealthCheck;
+import es.tid.keyserver.https.audit.AuditEvent;
+import es.tid.keyserver.https.audit.AuditLog;
 import es.tid.keyserver.https.jetty.exceptions.KeyServerException;
-import es.tid.keyserver.https.keyprocess.Ecdhe;
-import es.tid.keyserver.https.keyprocess.Rsa;
+import es.tid.keyserver.https.keyprocess.SkiOperations;
+import es.tid.keyserver.https.protocol.BatchInputJSON;
+import es.tid.keyserver.https.protocol.BatchOutputJSON;
 import es.tid.keyserver.https.protocol.ErrorJSON;
 import es.tid.keyserver.https.protocol.InputJSON;
-import es.tid.keyserver.https.protocol.OutputJSON;
+import es.tid.keyserver.https.protocol.SkiFormat;
+import es.tid.keyserver.https.protocol.SkiRequest;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.AbstractHandler;
 import org.slf4j.LoggerFactory;
 
-import javax.crypto.BadPaddingException;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.security.PrivateKey;
-import java.security.SignatureException;
-import java.security.spec.InvalidKeySpecException;
-import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Class for custom management of Jetty server requests.
@@ -56,22 +67,99 @@ public class KeyServerJettyHandler extends AbstractHandler{
     private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(KeyServerJettyHandler.class);
 
     /**
-     * Security logger object
+     * Rate limited error log entries (private key operation exceptions).
      */
-    private static final org.slf4j.Logger SECURITY = LoggerFactory.getLogger("security");
+    private static final ErrorLogger ERRORS = new ErrorLogger(LOGGER);
 
     /**
-     * Redis database object.
+     * Target used for batch requests.
      */
-    private DataBase keyServerDB;
+    public static final String BATCH_TARGET = "/batch";
+
+    /**
+     * Private keys cache (backed by the Redis database).
+     */
+    private final PrivateKeyCache keyCache;
+
+    /**
+     * Private key lookup and operations (shared with other listeners).
+     */
+    private final SkiOperations operations;
+
+    /**
+     * Worker threads for the private key operations.
+     */
+    private final CryptoWorkers cryptoWorkers;
+
+    /**
+     * Maximum number of items inside a batch request.
+     */
+    private final int batchMaxItems;
+
+    /**
+     * Request body reader.
+     */
+    private final RequestBodyReader bodyReader;
+
+    /**
+     * Maximum batch request body size (maximum body size for each item).
+     */
+    private final int batchMaxBodySize;
+
+    /**
+     * Security audit log.
+     */
+    private final AuditLog auditLog;
+
+    /**
+     * Request threads (virtual threads for the private key queries).
+     */
+    private final RequestThreads requestThreads;
+
+    /**
+     * Adaptive in-flight limit of the private key operations.
+     */
+    private final ConcurrencyLimit concurrencyLimit;
+
+    /**
+     * Liveness and readiness state for the load balancer probes.
+     */
+    private final HealthCheck healthCheck;
+
+    /**
+     * Early discard of requests whose time budget has expired.
+     */
+    private final DeadlineControl deadlineControl;
 
     /**
      * Jetty handler class constructor.
-     * @param objDB Redis database object.
-     * @since v0.4.0
+     * @param keyCache Private keys cache object.
+     * @param cryptoWorkers Private key operations workers pool.
+     * @param batchMaxItems Maximum number of items inside a batch request.
+     * @param maxBodySize Maximum request body size in bytes.
+     * @param auditLog Security audit log.
+     * @param requestThreads Request threads (platform or virtual mode).
+     * @param concurrencyLimit Adaptive in-flight limit of the private key 
+     *     operations.
+     * @param healthCheck Health and readiness state (GET /health and 
+     *     GET /ready targets).
+     * @param deadlineControl Time budget header and discarded requests.
+     * @since v0.4.5
      */
-    public KeyServerJettyHandler(DataBase objDB){
-        this.keyServerDB = objDB;
+    public KeyServerJettyHandler(PrivateKeyCache keyCache, CryptoWorkers cryptoWorkers, int batchMaxItems, 
+            int maxBodySize, AuditLog auditLog, RequestThreads requestThreads, ConcurrencyLimit concurrencyLimit, 
+            HealthCheck healthCheck, DeadlineControl deadlineControl){
+        this.keyCache = keyCache;
+        this.operations = new SkiOperations(keyCache);
+        this.cryptoWorkers = cryptoWorkers;
+        this.batchMaxItems = batchMaxItems;
+        this.bodyReader = new RequestBodyReader(maxBodySize);
+        this.batchMaxBodySize = (int) Math.min(Integer.MAX_VALUE, (long) maxBodySize * batchMaxItems);
+        this.auditLog = auditLog;
+        this.requestThreads = requestThreads;
+        this.concurrencyLimit = concurrencyLimit;
+        this.healthCheck = healthCheck;
+        this.deadlineControl = deadlineControl;
     }
     
     /**
@@ -86,269 +174,724 @@ public class KeyServerJettyHandler extends AbstractHandler{
      */
     @Override
     public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException{
+        // Load balancer probes: cached state only (no body read, no audit entry).
+        if(isProbe(request.getMethod()) && (HealthCheck.HEALTH_TARGET.equals(target) 
+                || HealthCheck.READY_TARGET.equals(target))){
+            sendProbeResponse(target, baseRequest, response);
+            return;
+        }
         Thread.currentThread().setName("THHTTPS_" + request.getRemoteAddr()+ ":" + request.getRemotePort());
-        // JSON incoming data Object.
-        InputJSON jsonData;
         if("/".equalsIgnoreCase(target) && "POST".equals(request.getMethod())){
             LOGGER.trace("Inside HTTP handle: {} | Type: {}", request.getRemoteAddr(), request.getMethod());
-            // Reading POST body for get the JSON string.
-            String jsonString = readHttpBody(request);
-            LOGGER.trace("POST data received: {}", jsonString);
-            // Creating JSON Object for incoming data.
-            jsonData = new InputJSON(jsonString);
-            // Process the JSON for the correct type
-            String responseString = processIncomingJson(jsonData);
-            LOGGER.trace("Response String: {}", responseString);
-            // Send response to the client
-            sendKeyServerResponse(baseRequest, response, responseString);
-            // Security log entry
-            SECURITY.info("Remote IP address: {} | Authorized: {} | Target: {} | Certificate Fingerprint: {}", 
-                    request.getRemoteAddr(), 
-                    request.getMethod(), 
-                    target, 
-                    jsonData.getSpki());
+            // Request format by Content-Type and response format by Accept (JSON by default).
+            SkiFormat requestFormat = SkiFormat.fromContentType(request.getContentType());
+            SkiFormat responseFormat = SkiFormat.fromAccept(request.getHeader(HttpHeader.ACCEPT.asString()), requestFormat);
+            // Reading POST body into the thread buffer (null if it's too long).
+            ByteBuffer body = bodyReader.read(request.getInputStream(), request.getContentLength());
+            if(body == null){
+                sendBodyTooLong(target, baseRequest, request, response, responseFormat);
+                return;
+            }
+            // Validate the request and get the private key on the Jetty thread 
+            // (the body buffer is not used after the checks).
+            byte[] responseBody = null;
+            PrivateKey privKey = null;
+            SkiRequest skiRequest;
+            String spki;
+            if(requestFormat == SkiFormat.JSON){
+                if(LOGGER.isTraceEnabled()){
+                    LOGGER.trace("POST data received: {}", new String(body.array(), 0, body.limit(), StandardCharsets.UTF_8));
+                }
+                // Creating JSON Object for incoming data.
+                InputJSON jsonData = new InputJSON(body.array(), 0, body.limit(), bodyReader.getMaxBodySize());
+                skiRequest = jsonData.getRequest();
+                spki = jsonData.getSpki();
+                if(skiRequest == null){ // If not is valid
+                    // Generate output error object.
+                    LOGGER.debug("IncomingJSON Processor: Not valid JSON received. Returns error to the HTTP IncomingProcessor thread.");
+                    responseBody = responseFormat.getErrorBody(jsonData.checkValidJSON());
+                }
+            } else {
+                skiRequest = requestFormat.decodeRequest(body.array(), 0, body.limit());
+                spki = (skiRequest == null) ? null : skiRequest.getSpki();
+                if(skiRequest == null){
+                    LOGGER.debug("Incoming Processor: Not valid {} request received.", requestFormat.getMediaType());
+                    responseBody = responseFormat.getErrorBody(ErrorJSON.ERR_MALFORMED_REQUEST);
+                }
+            }
+            // Client time budget: nothing is done if it has already expired.
+            RequestDeadline deadline = (responseBody == null) ? readDeadline(baseRequest, request) : null;
+            if(!deadlineControl.beforeLookup(deadline)){
+                sendExpired(baseRequest, response, request.getRemoteAddr(), responseFormat);
+                return;
+            }
+            // Adaptive in-flight limit: requests above it are rejected at once.
+            if(responseBody == null && !concurrencyLimit.tryAcquire()){
+                sendOverloaded(baseRequest, response, request.getRemoteAddr(), responseFormat);
+                return;
+            }
+            long started = System.nanoTime();
+            // Released here unless the request is suspended (released on complete).
+            boolean release = responseBody == null;
+            try {
+                if(responseBody == null && requestThreads.isEnabled()){
+                    // Private key query (blocking Redis call) on a virtual thread.
+                    release = false;
+                    processVirtual(target, baseRequest, request, response, skiRequest, responseFormat, started, 
+                            deadline);
+                    return;
+                }
+                if(responseBody == null){
+                    LOGGER.trace("Incoming Processor: Input request valid.");
+                    try {
+                        privKey = getPrivKey(skiRequest.getSpki(), deadline);
+                    } catch (KeyServerException e) {
+                        // If something goes wrong during Private Key extraction from Redis DB.
+                        LOGGER.debug("KeyServer custom exception message: {}", e.getMessage());
+                        responseBody = responseFormat.getErrorBody(e.getMessage());
+                    }
+                    if(responseBody == null && privKey == null){
+                        // Deadline expired during the Redis query.
+                        sendExpired(baseRequest, response, request.getRemoteAddr(), responseFormat);
+                        return;
+                    }
+                }
+                if(responseBody == null && cryptoWorkers.isEnabled()){
+                    // Private key operation on the crypto workers pool.
+                    release = false;
+                    processAsync(target, baseRequest, request, response, skiRequest, privKey, responseFormat, started, 
+                            deadline);
+                    return;
+                }
+                if(responseBody == null){
+                    // Process the request for the correct type
+                    sendOperation(target, baseRequest, response, request.getRemoteAddr(), request.getMethod(), 
+                            skiRequest, privKey, responseFormat, deadline);
+                    return;
+                }
+                // Send response to the client
+                sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_OK, responseBody, responseFormat);
+                // Security log entry
+                securityLog(request.getRemoteAddr(), request.getMethod(), target, spki);
+            } finally {
+                if(release){
+                    concurrencyLimit.release(started);
+                }
+            }
+        } else if(BATCH_TARGET.equalsIgnoreCase(target) && "POST".equals(request.getMethod())){
+            LOGGER.trace("Inside HTTP batch handle: {} | Type: {}", request.getRemoteAddr(), request.getMethod());
+            byte[] body = bodyReader.readFully(request.getInputStream(), request.getContentLength(), batchMaxBodySize);
+            if(body == null){
+                sendBodyTooLong(target, baseRequest, request, response, SkiFormat.JSON);
+                return;
+            }
+            processBatch(target, baseRequest, request, response, new String(body, StandardCharsets.UTF_8));
         } else {
             // If not POST request (Nothing to do).
             LOGGER.trace("HTTP IncomingRequest not valid: {} from IP: {}", request.getMethod(), request.getRemoteAddr());
-            SECURITY.warn("Not valid HTTPS request: {} | Remote address: {} | Target: {} | Body content: {}", 
-                    request.getMethod(), 
-                    request.getRemoteAddr(), 
-                    target, 
-                    readHttpBody(request));
+            auditLog.log(AuditEvent.NOT_VALID_REQUEST, request.getRemoteAddr(), request.getMethod(), target, 
+                    bodyReader.preview(request.getInputStream()));
+        }
+    }
+    
+    /**
+     * Checks if the request method is valid for the health and readiness 
+     *     targets.
+     * @param method HTTP request method.
+     * @return True for GET and HEAD requests.
+     * @since v0.4.5
+     */
+    private static boolean isProbe(String method){
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+    
+    /**
+     * Sends the health or readiness response: 200 if the node is alive (or 
+     *     ready), 503 if it's not ready. Probe responses are never cached.
+     * @param target Health or readiness target.
+     * @param baseRequest This is the base request.
+     * @param response Response to the client.
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
+     */
+    private void sendProbeResponse(String target, Request baseRequest, HttpServletResponse response) throws IOException{
+        int status = HttpServletResponse.SC_OK;
+        byte[] body;
+        if(HealthCheck.HEALTH_TARGET.equals(target)){
+            body = healthCheck.getHealthBody();
+        } else {
+            body = healthCheck.getReadyBody();
+            if(!HealthCheck.isReady(body)){
+                status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+            }
         }
+        response.setHeader(HttpHeader.CACHE_CONTROL.asString(), "no-store");
+        sendKeyServerResponse(baseRequest, response, status, body);
     }
     
     /**
-     * This method reads the HTTP request body data.
-     * @param request Jetty HTTP request object.
-     * @return String with the data content.
-     * @throws IOException Exception if can't read.
-     */
-    private String readHttpBody(HttpServletRequest request) throws IOException{
-        BufferedReader reader = request.getReader();
-        String data = "";
-        String line;
-        while ((line = reader.readLine()) != null){
-            data+=(line);
+     * Sends the "malformed request" response for request bodies longer than 
+     *     the maximum size. The rest of the body is not read and the 
+     *     HTTP/1.1 connection is closed after the response.
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param request Request from the client.
+     * @param response Response to the client.
+     * @param format Response body format.
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
+     */
+    private void sendBodyTooLong(String target, Request baseRequest, HttpServletRequest request, 
+            HttpServletResponse response, SkiFormat format) throws IOException{
+        // Connection specific headers are not valid on HTTP/2 (RFC 7540).
+        if(baseRequest.getHttpVersion() != HttpVersion.HTTP_2){
+            response.setHeader(HttpHeader.CONNECTION.asString(), HttpHeaderValue.CLOSE.asString());
         }
-        return data;
+        sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_OK, 
+                format.getErrorBody(ErrorJSON.ERR_MALFORMED_REQUEST), format);
+        auditLog.log(AuditEvent.BODY_TOO_LONG, request.getRemoteAddr(), request.getMethod(), target, null);
     }
-
+    
     /**
-     * This method provides the main functionality to send to the client the
-     *     request data.
-     * @param baseRequest HTTP exchange object with headers and data from the Proxy.
-     * @param response String for send to the client.
-     * @param responseString String with the response body.
+     * This method suspends the request and queues the private key operation
+     *     on the crypto workers pool. The response is sent from the worker 
+     *     thread when the operation finishes.
+     * 
+     *     <p>If the queue is full, the configured queue full response is used.
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param request Request from the client.
+     * @param response Response to the client.
+     * @param skiRequest Validated request.
+     * @param privKey Private key object.
+     * @param format Response body format.
+     * @param started Concurrency limit acquire time (System.nanoTime()).
+     * @param deadline Client deadline (null if there is no time budget).
      * @throws IOException Exception if can't write the response.
-     * @since v0.4.0
+     * @since v0.4.5
      */
-    private void sendKeyServerResponse(Request baseRequest, HttpServletResponse response, String responseString) throws IOException{
-        response.setCharacterEncoding("UTF-8");
-        response.setContentType("application/json");
-        response.setStatus(HttpServletResponse.SC_OK);
+    private void processAsync(String target, Request baseRequest, HttpServletRequest request, 
+            HttpServletResponse response, SkiRequest skiRequest, PrivateKey privKey, SkiFormat format, 
+            long started, RequestDeadline deadline) throws IOException{
         baseRequest.setHandled(true);
-        response.getWriter().println(responseString);
+        AsyncContext async = suspend(request, started);
+        queueOperation(target, baseRequest, response, request.getRemoteAddr(), request.getMethod(), 
+                skiRequest, privKey, format, async, deadline);
     }
     
     /**
-     * This function call to the correct method processor for the incoming JSON
-     *     petition.
-     * @param jsonObj JSON Object with the proxy data.
-     * @return Returns a String with the response to the client.
-     */
-    private String processIncomingJson(InputJSON jsonObj){
-        // Check if JSON is valid.
-        if(jsonObj.checkValidJSON()!=null){ // If not is valid
-            // Generate JSON Output error object and return it as string.
-            LOGGER.debug("IncomingJSON Processor: Not valid JSON received. Returns error to the HTTP IncomingProcessor thread.");
-            return new ErrorJSON(jsonObj.checkValidJSON()).toString();
+     * Suspends the request without timeout (the crypto workers queue is 
+     *     bounded, so the operation always finishes). The concurrency limit is
+     *     released when the request is completed.
+     * @param request Request from the client.
+     * @param started Concurrency limit acquire time (System.nanoTime()).
+     * @return Asynchronous context of the request.
+     * @since v0.4.5
+     */
+    private AsyncContext suspend(HttpServletRequest request, long started){
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        if(concurrencyLimit.isEnabled()){
+            async.addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event){
+                    concurrencyLimit.release(started);
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event){
+                    // No timeout.
+                }
+
+                @Override
+                public void onError(AsyncEvent event){
+                    // Released on complete.
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event){
+                    // Not used.
+                }
+            });
         }
-        LOGGER.trace("IncomingJSON Processor: Input JSON valid.");
-        // If JSON is valid, process response.
-        String responseString;
-        PrivateKey privKey;
+        return async;
+    }
+    
+    /**
+     * Reads the client time budget header.
+     * @param baseRequest This is the base request.
+     * @param request Request from the client.
+     * @return Request deadline or null if there is no valid time budget.
+     * @since v0.4.5
+     */
+    private RequestDeadline readDeadline(Request baseRequest, HttpServletRequest request){
+        if(!deadlineControl.isEnabled()){
+            return null;
+        }
+        // The budget starts when the request has been received.
+        return deadlineControl.read(request.getHeader(deadlineControl.getHeader()), 
+                System.currentTimeMillis() - baseRequest.getTimeStamp());
+    }
+    
+    /**
+     * Gets the private key with the request deadline set on the current 
+     *     thread, so the Redis query timeout (or the wait for the same key 
+     *     loaded by other request) is limited to the remaining time.
+     * @param spki Certificate hash to find the private key inside Redis DB.
+     * @param deadline Client deadline (null if there is no time budget).
+     * @return Private key object or null if the deadline has expired during
+     *     the query.
+     * @throws KeyServerException Exception with the error message generated.
+     * @since v0.4.5
+     */
+    private PrivateKey getPrivKey(String spki, RequestDeadline deadline) throws KeyServerException{
+        if(deadline == null){
+            return operations.getPrivKey(spki);
+        }
+        RequestDeadline.set(deadline);
         try {
-            privKey = this.getPrivKey(jsonObj.getSpki());
-            switch (jsonObj.getMethod()){
-                case InputJSON.ECDHE: // ECDHE Mode
-                    LOGGER.debug("Response from KeyServer for ECDH.");
-                    responseString = modeECDH(jsonObj.getHash(), jsonObj.getInput(), privKey);
-                    break;
-                case InputJSON.RSA: // RSA Mode
-                    LOGGER.debug("Response from KeyServer for RSA.");
-                    responseString = modeRSA(jsonObj.getInput(), privKey);
-                    if(responseString == null){
-                        responseString = ErrorJSON.ERR_UNSPECIFIED;
-                    }
-                    break;
-                default:
-                    // Not valid method.
-                    LOGGER.error("HTTP Incoming Request Processor: Not valid 'method' value={}.", jsonObj.getMethod());
-                    responseString = ErrorJSON.ERR_MALFORMED_REQUEST;
-                    break;
+            return operations.getPrivKey(spki);
+        } catch (RuntimeException ex) {
+            if(!deadline.isExpired()){
+                throw ex;
             }
-            // Debug logger info:
-            LOGGER.debug("HTTP Incoming Request Processor: Valid={}, Method={}, Hash={}, Spki={}, Input={}",
-            jsonObj.checkValidJSON(), jsonObj.getMethod(), jsonObj.getHash(), jsonObj.getSpki(), jsonObj.getInput());
-        } catch (KeyServerException e) {
-            // If something goes wrong during Private Key extraction from Redis DB.
-            responseString = e.getMessage();
-            LOGGER.debug("KeyServer custom exception message: ", responseString);
-        }
-        // Check if responseString is an error and returns the correct object as JSON string.
-        if(responseString.equalsIgnoreCase(ErrorJSON.ERR_MALFORMED_REQUEST) || 
-                responseString.equalsIgnoreCase(ErrorJSON.ERR_NOT_FOUND) ||
-                responseString.equalsIgnoreCase(ErrorJSON.ERR_REQUEST_DENIED) || 
-                responseString.equalsIgnoreCase(ErrorJSON.ERR_UNSPECIFIED)){
-            return new ErrorJSON(responseString).toString();
-        } else {
-            return new OutputJSON(responseString).toString();
+            deadlineControl.discardedLookup();
+            return null;
+        } finally {
+            RequestDeadline.set(null);
         }
     }
-
+    
     /**
-     * This method is used to sing the 'input' data.
-     * @param hash Hash algorithm used for sign data.
-     * @param input Data to be signed.
+     * Executes the private key operation and sends the response, unless the 
+     *     operation can't finish before the client deadline.
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param response Response to the client.
+     * @param remoteAddr Client address.
+     * @param method HTTP method.
+     * @param skiRequest Validated request.
      * @param privKey Private key object.
-     * @return String with the data signed and encoded using base64.
+     * @param format Response body format.
+     * @param deadline Client deadline (null if there is no time budget).
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
+     */
+    private void sendOperation(String target, Request baseRequest, HttpServletResponse response, 
+            String remoteAddr, String method, SkiRequest skiRequest, PrivateKey privKey, SkiFormat format, 
+            RequestDeadline deadline) throws IOException{
+        if(!deadlineControl.beforeCrypto(deadline)){
+            sendExpired(baseRequest, response, remoteAddr, format);
+            return;
+        }
+        sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_OK, 
+                processIncoming(skiRequest, privKey, format), format);
+        securityLog(remoteAddr, method, target, skiRequest.getSpki());
+    }
+    
+    /**
+     * Sends the "unspecified error" response with HTTP 503 (Service 
+     *     Unavailable) to the requests discarded because the client time 
+     *     budget has expired. There is no audit entry (no private key 
+     *     operation has been done).
+     * @param baseRequest This is the base request.
+     * @param response Response to the client.
+     * @param remoteAddr Client address.
+     * @param format Response body format.
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
+     */
+    private void sendExpired(Request baseRequest, HttpServletResponse response, String remoteAddr, 
+            SkiFormat format) throws IOException{
+        LOGGER.debug("Time budget expired. Request from {} discarded.", remoteAddr);
+        sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+                format.getErrorBody(ErrorJSON.ERR_UNSPECIFIED), format);
+    }
+    
+    /**
+     * Sends the "unspecified error" response with HTTP 503 (Service 
+     *     Unavailable) to the requests above the concurrency limit. The 
+     *     response body is created only once and there is no audit entry.
+     * @param baseRequest This is the base request.
+     * @param response Response to the client.
+     * @param remoteAddr Client address.
+     * @param format Response body format.
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
      */
-    private String modeECDH(String hash, String input, PrivateKey privKey) {
+    private void sendOverloaded(Request baseRequest, HttpServletResponse response, String remoteAddr, 
+            SkiFormat format) throws IOException{
+        LOGGER.debug("Concurrency limit reached ({}). Request from {} rejected.", 
+                concurrencyLimit.getLimit(), remoteAddr);
+        sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 
+                format.getErrorBody(ErrorJSON.ERR_UNSPECIFIED), format);
+    }
+    
+    /**
+     * This method suspends the request and gets the private key on a virtual
+     *     thread, so the Jetty thread is not blocked by the Redis query. The 
+     *     private key operation is queued on the crypto workers pool (or 
+     *     executed on the virtual thread if the pool is disabled).
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param request Request from the client.
+     * @param response Response to the client.
+     * @param skiRequest Validated request.
+     * @param format Response body format.
+     * @param started Concurrency limit acquire time (System.nanoTime()).
+     * @param deadline Client deadline (null if there is no time budget).
+     * @since v0.4.5
+     */
+    private void processVirtual(String target, Request baseRequest, HttpServletRequest request, 
+            HttpServletResponse response, SkiRequest skiRequest, SkiFormat format, long started, 
+            RequestDeadline deadline){
+        String remoteAddr = request.getRemoteAddr();
+        String method = request.getMethod();
+        baseRequest.setHandled(true);
+        AsyncContext async = suspend(request, started);
+        Runnable task = () -> {
+            boolean queued = false;
+            try {
+                PrivateKey privKey;
+                try {
+                    privKey = getPrivKey(skiRequest.getSpki(), deadline);
+                } catch (KeyServerException e) {
+                    LOGGER.debug("KeyServer custom exception message: {}", e.getMessage());
+                    sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_OK, 
+                            format.getErrorBody(e.getMessage()), format);
+                    securityLog(remoteAddr, method, target, skiRequest.getSpki());
+                    return;
+                }
+                if(privKey == null){
+                    // Deadline expired during the Redis query.
+                    sendExpired(baseRequest, response, remoteAddr, format);
+                } else if(cryptoWorkers.isEnabled()){
+                    // The worker (or the queue full response) completes the request.
+                    queued = true;
+                    queueOperation(target, baseRequest, response, remoteAddr, method, 
+                            skiRequest, privKey, format, async, deadline);
+                } else {
+                    sendOperation(target, baseRequest, response, remoteAddr, method, 
+                            skiRequest, privKey, format, deadline);
+                }
+            } catch (IOException ex) {
+                LOGGER.debug("Can't send the response to {}: {}", remoteAddr, ex.getMessage());
+            } catch (RuntimeException ex) {
+                // Database not available (same response as the Jetty error handler).
+                sendServerError(target, baseRequest, response, remoteAddr, method, format, ex);
+            } finally {
+                if(!queued){
+                    async.complete();
+                }
+            }
+        };
+        if(!requestThreads.submit(task)){
+            // Executor stopped: the Jetty thread runs the request.
+            task.run();
+        }
+    }
+    
+    /**
+     * Sends the "unspecified error" response with HTTP 500 for unexpected 
+     *     errors of suspended requests (for example, Redis not available). 
+     *     Requests running on Jetty threads get the same response from 
+     *     {@link KsJettyErrors}.
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param response Response to the client.
+     * @param remoteAddr Client address.
+     * @param method HTTP method.
+     * @param format Response body format.
+     * @param ex Error.
+     * @since v0.4.5
+     */
+    private void sendServerError(String target, Request baseRequest, HttpServletResponse response, 
+            String remoteAddr, String method, SkiFormat format, RuntimeException ex){
+        ERRORS.error("Private key query error: {}", ex);
+        auditLog.log(AuditEvent.UNDEFINED_ERROR, remoteAddr, method, target, 
+                HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        if(response.isCommitted()){
+            return;
+        }
         try {
-            // Sign data
-            return Ecdhe.calcOutput(input, privKey, hash);
-        } catch (NoSuchAlgorithmException ex) {
-            // Error level.
-            LOGGER.error("ECDH No Such Algorithm Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (InvalidKeySpecException ex) {
-            // Error level
-            LOGGER.error("ECDH Invalid Key Espec Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (InvalidKeyException ex) {
-            // Error level.
-            LOGGER.error("ECDH Invalid Key Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (SignatureException ex) {
-            // Error level.
-            LOGGER.error("ECDH Signature Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
+            sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, 
+                    format.getErrorBody(ErrorJSON.ERR_UNSPECIFIED), format);
+        } catch (IOException io) {
+            LOGGER.debug("Can't send the response to {}: {}", remoteAddr, io.getMessage());
         }
-        return ErrorJSON.ERR_UNSPECIFIED;
     }
-
+    
     /**
-     * This method provide an easy way to decode a PreMaster secret codified
-     *     using RSA.
-     * @param input Codified PremasterSecret with public key on base64.
+     * This method queues the private key operation of a suspended request on
+     *     the crypto workers pool. If the queue is full, the configured queue
+     *     full response is used.
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param response Response to the client.
+     * @param remoteAddr Client address.
+     * @param method HTTP method.
+     * @param skiRequest Validated request.
      * @param privKey Private key object.
-     * @return PremasterSecret decoded using private key and encoded using base64.
+     * @param format Response body format.
+     * @param async Asynchronous context of the request (completed when the 
+     *     response has been sent).
+     * @param deadline Client deadline (null if there is no time budget).
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
      */
-    private String modeRSA(String input, PrivateKey privKey) {
+    private void queueOperation(String target, Request baseRequest, HttpServletResponse response, 
+            String remoteAddr, String method, SkiRequest skiRequest, PrivateKey privKey, SkiFormat format, 
+            AsyncContext async, RequestDeadline deadline) throws IOException{
+        boolean queued = cryptoWorkers.submit(remoteAddr, () -> {
+            try {
+                // Checked again after the queue wait.
+                sendOperation(target, baseRequest, response, remoteAddr, method, 
+                        skiRequest, privKey, format, deadline);
+            } catch (IOException ex) {
+                LOGGER.debug("Can't send the response to {}: {}", remoteAddr, ex.getMessage());
+            } finally {
+                async.complete();
+            }
+        });
+        if(queued){
+            return;
+        }
         try {
-            return Rsa.calcDecodedOutput(input, privKey);
-        } catch (NoSuchAlgorithmException ex) {
-            // Error level.
-            LOGGER.error("RSA No Such Algorithm Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (NoSuchPaddingException ex) {
-            // Error level.
-            LOGGER.error("RSA No Such Padding Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (InvalidKeyException ex) {
-            // Error level.
-            LOGGER.error("RSA Invalid Key Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (IllegalBlockSizeException ex) {
-            // Error level.
-            LOGGER.error("RSA Illegal Blocks Size Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (BadPaddingException ex) {
-            // Error level.
-            LOGGER.error("RSA Bad Padding Exception: {}", ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
+            switch (cryptoWorkers.getQueueFullResponse()){
+                case CryptoWorkers.QUEUE_FULL_INLINE:
+                    sendOperation(target, baseRequest, response, remoteAddr, method, 
+                            skiRequest, privKey, format, deadline);
+                    break;
+                case CryptoWorkers.QUEUE_FULL_ERROR:
+                    LOGGER.warn("Crypto workers queue full. Request from {} discarded.", remoteAddr);
+                    sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_OK, 
+                            format.getErrorBody(ErrorJSON.ERR_UNSPECIFIED), format);
+                    break;
+                default:
+                    LOGGER.warn("Crypto workers queue full. Request from {} discarded.", remoteAddr);
+                    sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                            format.getErrorBody(ErrorJSON.ERR_UNSPECIFIED), format);
+                    break;
+            }
+        } finally {
+            async.complete();
         }
-        return ErrorJSON.ERR_UNSPECIFIED;
     }
-
+    
     /**
-     * Get private key from Redis DB and check if it's valid.
-     * @param spki Certificate hash to find the private key inside Redis DB.
-     * @return Private key object.
-     * @since v0.4.2
-     * @throws KeyServerException Exception with the error message generated.
+     * This method processes a batch request. Items are checked independently,
+     *     the private keys of all items are fetched together and the 
+     *     operations are queued on the crypto workers pool (so they run in 
+     *     parallel). The response is sent when the last item finishes.
+     * 
+     *     <p>If the queue is full, the item is executed on the Jetty thread 
+     *     (inline queue full response) or it returns an "unspecified error".
+     *     Each item operation takes a slot of the concurrency limit: items 
+     *     above the limit return an "unspecified error".
+     * @param target Target for the request.
+     * @param baseRequest This is the base request.
+     * @param request Request from the client.
+     * @param response Response to the client.
+     * @param jsonString Request body.
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
      */
-    private PrivateKey getPrivKey(String spki) throws KeyServerException {
-        // Execute REDIS query trying to found private key for the incoming SKI.
-        byte[] encodePrivateKey = this.keyServerDB.getPrivateForHash(spki);
-        if(encodePrivateKey == null){
-            throw new KeyServerException(ErrorJSON.ERR_NOT_FOUND);
+    private void processBatch(String target, Request baseRequest, HttpServletRequest request, 
+            HttpServletResponse response, String jsonString) throws IOException{
+        BatchInputJSON batch = new BatchInputJSON(jsonString, batchMaxItems);
+        if(batch.checkValidJSON() != null){
+            LOGGER.debug("Batch Processor: Not valid batch received.");
+            sendKeyServerResponse(baseRequest, response, ErrorJSON.getResponseBody(batch.checkValidJSON()));
+            auditLog.log(AuditEvent.NOT_VALID_BATCH, request.getRemoteAddr(), request.getMethod(), target, null);
+            return;
         }
-        // Generate Private Key object.
-        PrivateKey privKey = null;
+        String remoteAddr = request.getRemoteAddr();
+        String method = request.getMethod();
+        // Client time budget (one for the whole batch).
+        RequestDeadline deadline = readDeadline(baseRequest, request);
+        if(!deadlineControl.beforeLookup(deadline)){
+            sendExpired(baseRequest, response, remoteAddr, SkiFormat.JSON);
+            return;
+        }
+        // Private keys of all valid items (single Redis query limited to the deadline).
+        Map<String, CompletableFuture<PrivateKey>> batchKeys;
+        RequestDeadline.set(deadline);
         try {
-            privKey = loadPrivateKey(encodePrivateKey);
-        } catch (NoSuchAlgorithmException ex) {
-            // Error level.
-            LOGGER.error("RSA Invalid Algorithm exception: {}",ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
-        } catch (InvalidKeySpecException ex) {
-            // Error level.
-            LOGGER.error("RSA Invalid Key exception: {}",ex.getMessage());
-            // Debug level.
-            StringWriter errors = new StringWriter();
-            ex.printStackTrace(new PrintWriter(errors));
-            LOGGER.debug(errors.toString());
+            batchKeys = keyCache.getAll(batch.getSpkis());
+        } finally {
+            RequestDeadline.set(null);
         }
-        // Check if privKey is valid.
-        if(privKey == null){
-            throw new KeyServerException(ErrorJSON.ERR_UNSPECIFIED);
+        BatchOutputJSON results = new BatchOutputJSON(batch.size());
+        baseRequest.setHandled(true);
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        // One extra unit until all items have been dispatched.
+        AtomicInteger pending = new AtomicInteger(batch.size() + 1);
+        Runnable itemDone = () -> {
+            if(pending.decrementAndGet() == 0){
+                try {
+                    sendKeyServerResponse(baseRequest, response, results.toResponseBody());
+                } catch (IOException ex) {
+                    LOGGER.debug("Can't send the batch response to {}: {}", remoteAddr, ex.getMessage());
+                } finally {
+                    async.complete();
+                }
+            }
+        };
+        for(int i = 0; i < batch.size(); i++){
+            int index = i;
+            Object id = batch.getId(i);
+            String error = batch.checkValidItem(i);
+            if(error != null){
+                results.setError(index, id, error);
+                itemDone.run();
+                continue;
+            }
+            SkiRequest item = batch.getItem(i).getRequest();
+            PrivateKey privKey;
+            // Waits for keys loaded by other requests limited to the deadline.
+            RequestDeadline.set(deadline);
+            try {
+                privKey = operations.getPrivKey(item.getSpki(), batchKeys);
+            } catch (KeyServerException e) {
+                LOGGER.debug("KeyServer custom exception message: {}", e.getMessage());
+                results.setError(index, id, e.getMessage());
+                itemDone.run();
+                continue;
+            } catch (RuntimeException e) {
+                // Database not available during the private keys query.
+                ERRORS.error("Batch Processor: Private key query error: {}", e);
+                results.setError(index, id, ErrorJSON.ERR_UNSPECIFIED);
+                itemDone.run();
+                continue;
+            } finally {
+                RequestDeadline.set(null);
+            }
+            // Adaptive in-flight limit: one operation for each item.
+            if(!concurrencyLimit.tryAcquire()){
+                LOGGER.debug("Concurrency limit reached ({}). Batch item from {} rejected.", 
+                        concurrencyLimit.getLimit(), remoteAddr);
+                results.setError(index, id, ErrorJSON.ERR_UNSPECIFIED);
+                itemDone.run();
+                continue;
+            }
+            long started = System.nanoTime();
+            securityLog(remoteAddr, method, target, item.getSpki());
+            Runnable task = () -> {
+                try {
+                    if(!deadlineControl.beforeCrypto(deadline)){
+                        results.setError(index, id, ErrorJSON.ERR_UNSPECIFIED);
+                        return;
+                    }
+                    long operationStarted = System.nanoTime();
+                    String responseString = operations.process(item, privKey);
+                    deadlineControl.recordOperation(System.nanoTime() - operationStarted);
+                    if(ErrorJSON.isErrorCode(responseString)){
+                        results.setError(index, id, responseString);
+                    } else {
+                        results.setOutput(index, id, responseString);
+                    }
+                } finally {
+                    concurrencyLimit.release(started);
+                    itemDone.run();
+                }
+            };
+            if(!cryptoWorkers.submit(remoteAddr, task)){
+                if(!cryptoWorkers.isEnabled() || CryptoWorkers.QUEUE_FULL_INLINE.equals(cryptoWorkers.getQueueFullResponse())){
+                    task.run();
+                } else {
+                    LOGGER.warn("Crypto workers queue full. Batch item from {} discarded.", remoteAddr);
+                    results.setError(index, id, ErrorJSON.ERR_UNSPECIFIED);
+                    concurrencyLimit.release(started);
+                    itemDone.run();
+                }
+            }
         }
-        return privKey;
+        itemDone.run();
     }
-
+    
     /**
-     * Load private key from byte array.
-     * @param encodePrivateKey Array with private key values.
-     * @return Private key object.
-     * @throws NoSuchAlgorithmException Algorithm not valid.
-     * @throws InvalidKeySpecException Key specification not valid.
-     */
-    private PrivateKey loadPrivateKey(byte[] encodePrivateKey) throws NoSuchAlgorithmException, InvalidKeySpecException{
-        java.security.KeyFactory keyFactory = java.security.KeyFactory.getInstance("RSA");
-        PKCS8EncodedKeySpec privatekeySpec = new PKCS8EncodedKeySpec(encodePrivateKey);
-        PrivateKey prikey = keyFactory.generatePrivate(privatekeySpec);
-        return prikey;
+     * Security log entry for processed requests.
+     * @param remoteAddr Remote IP address.
+     * @param method HTTP method.
+     * @param target Target for the request.
+     * @param spki Certificate fingerprint.
+     */
+    private void securityLog(String remoteAddr, String method, String target, String spki){
+        auditLog.log(AuditEvent.REQUEST, remoteAddr, method, target, spki);
+    }
+    
+    /**
+     * This method provides the main functionality to send to the client the
+     *     request data.
+     * @param baseRequest HTTP exchange object with headers and data from the Proxy.
+     * @param response String for send to the client.
+     * @param responseBody Array of bytes with the UTF-8 response body.
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.0
+     */
+    private void sendKeyServerResponse(Request baseRequest, HttpServletResponse response, byte[] responseBody) throws IOException{
+        sendKeyServerResponse(baseRequest, response, HttpServletResponse.SC_OK, responseBody);
+    }
+    
+    /**
+     * This method sends to the client the request data using a specific HTTP
+     *     status code.
+     * @param baseRequest HTTP exchange object with headers and data from the Proxy.
+     * @param response String for send to the client.
+     * @param status HTTP status code.
+     * @param responseBody Array of bytes with the UTF-8 response body. It's
+     *     written with an explicit Content-Length (no chunked encoding).
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
+     */
+    private void sendKeyServerResponse(Request baseRequest, HttpServletResponse response, int status, byte[] responseBody) throws IOException{
+        sendKeyServerResponse(baseRequest, response, status, responseBody, SkiFormat.JSON);
+    }
+    
+    /**
+     * This method sends to the client the request data using a specific HTTP
+     *     status code and body format.
+     * @param baseRequest HTTP exchange object with headers and data from the Proxy.
+     * @param response String for send to the client.
+     * @param status HTTP status code.
+     * @param responseBody Array of bytes with the response body. It's
+     *     written with an explicit Content-Length (no chunked encoding).
+     * @param format Response body format (Content-Type header).
+     * @throws IOException Exception if can't write the response.
+     * @since v0.4.5
+     */
+    private void sendKeyServerResponse(Request baseRequest, HttpServletResponse response, int status, 
+            byte[] responseBody, SkiFormat format) throws IOException{
+        if(format == SkiFormat.JSON){
+            if(LOGGER.isTraceEnabled()){
+                LOGGER.trace("Response String: {}", new String(responseBody, StandardCharsets.UTF_8));
+            }
+            response.setCharacterEncoding("UTF-8");
+        }
+        response.setContentType(format.getMediaType());
+        response.setStatus(status);
+        response.setContentLength(responseBody.length);
+        baseRequest.setHandled(true);
+        response.getOutputStream().write(responseBody);
+    }
+    
+    /**
+     * This function executes the private key operation of the incoming 
+     *     request and encodes the response body.
+     * @param skiRequest Validated request.
+     * @param privKey Private key object.
+     * @param format Response body format.
+     * @return Returns the response body to the client.
+     */
+    private byte[] processIncoming(SkiRequest skiRequest, PrivateKey privKey, SkiFormat format){
+        long operationStarted = System.nanoTime();
+        try {
+            return format.getOutputBody(operations.execute(skiRequest, privKey));
+        } catch (KeyServerException e) {
+            return format.getErrorBody(e.getMessage());
+        } finally {
+            deadlineControl.recordOperation(System.nanoTime() - operationStarted);
+        }
     }
 }
@@ -17,20 +17,45 @@
 package es.tid.keyserver.https.jetty;
 
 import es.tid.keyserver.config.ConfigController;
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
 import es.tid.keyserver.controllers.db.DataBase;
+import es.tid.keyserver.core.lib.CidrTrie;
+import es.tid.keyserver.core.status.HealthCheck;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.binary.BinarySkiServer;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
 import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ssl.ALPNProcessor;
 import org.eclipse.jetty.server.*;
-import org.eclipse.jetty.server.handler.InetAccessHandler;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.slf4j.LoggerFactory;
 
+import java.util.Comparator;
+
 /**
  * Jetty Server Class.
  * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
  * @since v0.4.0
  */
 public class KsJetty implements Runnable{
+    /**
+     * HTTP/1.1 only connector.
+     */
+    public static final String HTTP_1_1 = "http/1.1";
+
+    /**
+     * HTTP/2 connector (ALPN negotiated, HTTP/1.1 fallback).
+     */
+    public static final String HTTP_2 = "h2";
+
     /**
      * Jetty Server Object.
      */
@@ -41,6 +66,87 @@ public class KsJetty implements Runnable{
      */
     private StatisticsHandler stats;
 
+    /**
+     * Private keys cache object.
+     */
+    private final PrivateKeyCache keyCache;
+
+    /**
+     * Private key operations workers pool.
+     */
+    private final CryptoWorkers cryptoWorkers;
+
+    /**
+     * Request threads (platform or virtual mode).
+     */
+    private final RequestThreads requestThreads;
+
+    /**
+     * Adaptive in-flight limit of the private key operations.
+     */
+    private final ConcurrencyLimit concurrencyLimit;
+
+    /**
+     * Security audit log.
+     */
+    private final AuditLog auditLog;
+
+    /**
+     * Binary SKI protocol listener (null if it's disabled).
+     */
+    private final BinarySkiServer binaryServer;
+
+    /**
+     * Jetty worker threads pool.
+     */
+    private final QueuedThreadPool threadPool;
+
+    /**
+     * First HTTPS connector (white list checked when a connection is 
+     *     accepted).
+     */
+    private final KsServerConnector sslConnector;
+
+    /**
+     * HTTPS connectors listening on the same port.
+     */
+    private final KsServerConnector[] sslConnectors;
+
+    /**
+     * Local cleartext HTTP connector (null if it's disabled).
+     */
+    private final ServerConnector localConnector;
+
+    /**
+     * Maximum number of open HTTPS connections (0 no limit).
+     */
+    private final int maxConnections;
+
+    /**
+     * TLS configuration of the HTTPS connector.
+     */
+    private final KsSslContextFactory sslContextFactory;
+
+    /**
+     * Session ticket keys shared by the KeyServer nodes.
+     */
+    private final SessionTicketKeys ticketKeys;
+
+    /**
+     * Health and readiness state for the load balancer probes.
+     */
+    private final HealthCheck healthCheck;
+
+    /**
+     * Client time budgets (early discard of expired requests).
+     */
+    private final DeadlineControl deadlineControl;
+
+    /**
+     * Application protocols accepted by the HTTPS connector.
+     */
+    private final String protocols;
+
     /**
      * Jetty initialization flag
      */
@@ -58,41 +164,134 @@ public class KsJetty implements Runnable{
      * @since v0.4.0
      */
     public KsJetty(ConfigController parameters, DataBase objDB){
-        server = new Server();
+        // Jetty worker threads (acceptors and selectors included).
+        int minThreads = parameters.getServerMinThreads();
+        int maxThreads = parameters.getServerMaxThreads();
+        if(maxThreads < minThreads){
+            LOGGER.warn("Jetty maximum threads ({}) lower than minimum threads. Using {}.", maxThreads, minThreads);
+            maxThreads = minThreads;
+        }
+        threadPool = new QueuedThreadPool(maxThreads, minThreads);
+        server = new Server(threadPool);
         // User custom configuration fields
-        HttpConfiguration https = getHttpStaticConfig();
-        SslContextFactory sslContextFactory = new SslContextFactory();
-        sslContextFactory.setKeyStorePath(parameters.getServerKeyStoreFile());
-        sslContextFactory.setSessionCachingEnabled(true);
-        sslContextFactory.setKeyStorePassword(parameters.getServerKeyStorePassword());
-        sslContextFactory.setKeyManagerPassword(parameters.getServerKeyManagerPassword());
-        // Set the SSL configuration fields.
-        ServerConnector sslConnector = new ServerConnector(server,
-                new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.toString()),
-                new HttpConnectionFactory(https));
-        // Server listener address and port.
-        sslConnector.setPort(parameters.getServerPort());
-        sslConnector.setHost(parameters.getServerAddress().getHostAddress());
-        sslConnector.setIdleTimeout(parameters.getIdleTimeout());
-        server.setConnectors(new Connector[] {sslConnector});
+        HttpConfiguration https = getHttpStaticConfig(parameters);
+        sslContextFactory = getSslContextFactory(parameters);
+        // HTTPS connectors (several connectors on the same port with 
+        // SO_REUSEPORT, each one with its own acceptors and selectors).
+        int connectors = parameters.getServerConnectors();
+        if((connectors > 1) && !KsServerConnector.isReusePortSupported()){
+            LOGGER.warn("SO_REUSEPORT is not supported on this JVM. Using 1 HTTPS connector instead of {}.", 
+                    connectors);
+            connectors = 1;
+        }
+        sslConnectors = new KsServerConnector[connectors];
+        boolean http2 = HTTP_2.equals(parameters.getHttpVersion());
+        for(int i = 0; i < connectors; i++){
+            sslConnectors[i] = new KsServerConnector(server, parameters.getServerAcceptors(), 
+                    parameters.getServerSelectors(), getConnectionFactories(parameters, https, sslContextFactory, http2));
+            // Same protocols on all the connectors (ALPN is checked once).
+            http2 = sslConnectors[i].getConnectionFactory(HTTP_2) != null;
+            sslConnectors[i].setReusePort(connectors > 1);
+            sslConnectors[i].setAcceptQueueSize(parameters.getServerAcceptQueueSize());
+            sslConnectors[i].getSelectorManager().setReservedThreads(parameters.getServerReservedThreads());
+            // Server listener address and port.
+            sslConnectors[i].setPort(parameters.getServerPort());
+            sslConnectors[i].setHost(parameters.getServerAddress().getHostAddress());
+            sslConnectors[i].setIdleTimeout(parameters.getIdleTimeout());
+            // Full and resumed handshakes counter.
+            sslConnectors[i].addBean(sslContextFactory.getHandshakeListener());
+        }
+        sslConnector = sslConnectors[0];
+        if(http2){
+            // RFC 7540 forbidden cipher suites are moved to the end of the 
+            // list (the configured order is kept for the rest).
+            Comparator<String> cipherOrder = sslContextFactory.getCipherComparator();
+            sslContextFactory.setCipherComparator((cipherOrder == null) ? HTTP2Cipher.COMPARATOR : 
+                    HTTP2Cipher.COMPARATOR.thenComparing(cipherOrder));
+            sslContextFactory.setUseCipherSuitesOrder(true);
+        }
+        protocols = String.join(", ", sslConnector.getProtocols());
+        LOGGER.info("HTTPS connector protocols: {}", protocols);
+        if(connectors > 1){
+            LOGGER.info("HTTPS connectors: {} (SO_REUSEPORT).", connectors);
+        }
+        server.setConnectors(sslConnectors);
+        // Local cleartext connector for edge proxies on the same host (no 
+        // TLS, bound to a loopback address).
+        if(parameters.getLocalPort() > 0){
+            localConnector = new ServerConnector(server, 1, 1, new HttpConnectionFactory(https));
+            localConnector.setHost(parameters.getLocalAddress().getHostAddress());
+            localConnector.setPort(parameters.getLocalPort());
+            localConnector.setIdleTimeout(parameters.getIdleTimeout());
+            server.addConnector(localConnector);
+            LOGGER.info("Local cleartext listener: {}", getLocalListener());
+        } else {
+            localConnector = null;
+        }
+        // Connections limit (the connector stops accepting while it's reached).
+        maxConnections = parameters.getServerMaxConnections();
+        if(maxConnections > 0){
+            server.addBean(new ConnectionLimit(maxConnections, server));
+        }
+        // Parsed private keys cache.
+        keyCache = new PrivateKeyCache(objDB, parameters.getKeyCacheMaxSize(), parameters.getKeyCacheTtl());
+        // Private key operations workers pool.
+        cryptoWorkers = new CryptoWorkers(parameters.getCryptoWorkers(), 
+                parameters.getCryptoQueueSize(), parameters.getCryptoQueueFullResponse(),
+                parameters.getCryptoScheduler(), parameters.getCryptoClientWeights());
+        // Private key queries on virtual threads (Java 21 or newer).
+        requestThreads = new RequestThreads(parameters.getServerThreadMode());
+        // Adaptive in-flight limit (load shedding).
+        concurrencyLimit = new ConcurrencyLimit(parameters.getCryptoLimit(), 
+                parameters.getCryptoLimitMax(), parameters.getCryptoLimitLatency());
+        // Security audit log.
+        auditLog = new AuditLog(parameters.getAuditQueueSize(), parameters.getAuditOverflowPolicy());
+        // Session ticket keys shared by the KeyServer nodes.
+        ticketKeys = new SessionTicketKeys(parameters.getTlsTicketKeySource(), 
+                parameters.getTlsTicketKeyRotation() * 1000L, objDB);
+        ticketKeys.addContext(sslContextFactory);
+        if(ticketKeys.isEnabled() && !(KsSslContextFactory.PROVIDER_CONSCRYPT.equalsIgnoreCase(parameters.getTlsProvider())
+                && KsSslContextFactory.TICKETS_ON.equals(parameters.getTlsSessionTickets()))){
+            LOGGER.warn("Shared session ticket keys need tlsProvider=conscrypt and tlsSessionTickets=on.");
+        }
+        // Binary SKI protocol listener (same keys cache, workers and audit log).
+        if(parameters.getBinaryPort() > 0){
+            KsSslContextFactory binaryContext = getSslContextFactory(parameters);
+            ticketKeys.addContext(binaryContext);
+            binaryServer = new BinarySkiServer(binaryContext, parameters.getServerAddress(), 
+                    parameters.getBinaryPort(), keyCache, cryptoWorkers, auditLog, 
+                    parameters.getHttpMaxBodySize(), parameters.getBinaryMaxInFlight());
+            binaryServer.setIdleTimeout((int) Math.min(Integer.MAX_VALUE, parameters.getIdleTimeout()));
+            binaryServer.setWhiteList(parameters.getServerIpWhiteList());
+            binaryServer.setMaxConnections(maxConnections);
+        } else {
+            binaryServer = null;
+        }
+        // Health and readiness probes (Redis status updated by the monitor).
+        healthCheck = new HealthCheck(keyCache, cryptoWorkers, parameters.getReadyCacheKeys(), 
+                parameters.getReadyQueueLevel(), objDB.isConnected());
+        // Client time budget header.
+        deadlineControl = new DeadlineControl(parameters.getDeadlineHeader());
         // Jetty incoming requests handler.
-        KeyServerJettyHandler ksHandler = new KeyServerJettyHandler(objDB);
+        KeyServerJettyHandler ksHandler = new KeyServerJettyHandler(keyCache, cryptoWorkers, 
+                parameters.getBatchMaxItems(), parameters.getHttpMaxBodySize(), auditLog, requestThreads, 
+                concurrencyLimit, healthCheck, deadlineControl);
         // Error Handler
-        KsJettyErrors ksErrors = new KsJettyErrors();
+        KsJettyErrors ksErrors = new KsJettyErrors(auditLog);
         ksErrors.setServer(server);
         server.addBean(ksErrors);
-        // Security Whitelist filter
-        if(parameters.getServerIpWhiteList() != null){
-            InetAccessHandler accessControl = new InetAccessHandler();
-            for (String tmp :parameters.getServerIpWhiteList()) {
-                accessControl.include(tmp.trim());
+        server.setHandler(ksHandler);
+        // Security Whitelist filter (connections are closed before the TLS
+        // handshake).
+        CidrTrie whiteList = CidrTrie.of(parameters.getServerIpWhiteList());
+        if(whiteList != null){
+            for(KsServerConnector connector : sslConnectors){
+                connector.setWhiteList(whiteList, auditLog);
             }
-            accessControl.setHandler(ksHandler);
-            server.setHandler(accessControl);
+            LOGGER.info("HTTPS white list: {} address blocks ({} trie nodes).", 
+                    whiteList.size(), whiteList.getNodes());
         } else {
-            server.setHandler(ksHandler);
             org.slf4j.Logger SECURITY = LoggerFactory.getLogger("security");
-            org.slf4j.Logger LOGGER = LoggerFactory.getLogger(KsJetty.class);
             String msg = "There is no 'white list' field defined inside config file."
                     + "\n\t\tAllowing KeyServer access to all IPs!";
             SECURITY.warn(msg);
@@ -112,6 +311,12 @@ public class KsJetty implements Runnable{
     @Override
     public synchronized void run() {
         try {
+            if(binaryServer != null){
+                Thread binaryThread = new Thread(binaryServer, "THBINARY");
+                binaryThread.setDaemon(true);
+                binaryThread.start();
+            }
+            ticketKeys.start();
             server.start();
             this.ready = true;
             server.join();
@@ -138,6 +343,13 @@ public class KsJetty implements Runnable{
         try {
             this.ready = false;
             server.stop();
+            if(binaryServer != null){
+                binaryServer.stop();
+            }
+            ticketKeys.stop();
+            cryptoWorkers.stop();
+            requestThreads.stop();
+            auditLog.stop();
         } catch (Exception ex) {
             LOGGER.error("Jetty bad stop error: {}", ex.getMessage());
         }
@@ -161,16 +373,287 @@ public class KsJetty implements Runnable{
         return this.stats;
     }
 
+    /**
+     * This method returns the private keys cache object.
+     * @return Private keys cache object.
+     * @since v0.4.5
+     */
+    public PrivateKeyCache getKeyCache(){
+        return this.keyCache;
+    }
+
+    /**
+     * This method returns the private key operations workers pool.
+     * @return Crypto workers pool object.
+     * @since v0.4.5
+     */
+    public CryptoWorkers getCryptoWorkers(){
+        return this.cryptoWorkers;
+    }
+
+    /**
+     * This method returns the request threads object.
+     * @return Request threads object (platform or virtual mode).
+     * @since v0.4.5
+     */
+    public RequestThreads getRequestThreads(){
+        return this.requestThreads;
+    }
+
+    /**
+     * This method returns the adaptive concurrency limit object.
+     * @return Concurrency limit object.
+     * @since v0.4.5
+     */
+    public ConcurrencyLimit getConcurrencyLimit(){
+        return this.concurrencyLimit;
+    }
+
+    /**
+     * This method returns the security audit log.
+     * @return Security audit log object.
+     * @since v0.4.5
+     */
+    public AuditLog getAuditLog(){
+        return this.auditLog;
+    }
+
+    /**
+     * This method returns the binary SKI protocol listener.
+     * @return Binary listener object or null if it's disabled.
+     * @since v0.4.5
+     */
+    public BinarySkiServer getBinaryServer(){
+        return this.binaryServer;
+    }
+
+    /**
+     * This method returns a TLS configuration object with the KeyServer 
+     *     certificate and the TLS tuning fields (provider, cipher suites 
+     *     order, session cache and session tickets).
+     * @param parameters Jetty HTTPS service configuration object.
+     * @return SslContextFactory object (not started).
+     * @since v0.4.5
+     */
+    private static KsSslContextFactory getSslContextFactory(ConfigController parameters){
+        KsSslContextFactory sslContextFactory = new KsSslContextFactory();
+        sslContextFactory.setKeyStorePath(parameters.getServerKeyStoreFile());
+        sslContextFactory.setSessionCachingEnabled(true);
+        sslContextFactory.setKeyStorePassword(parameters.getServerKeyStorePassword());
+        sslContextFactory.setKeyManagerPassword(parameters.getServerKeyManagerPassword());
+        sslContextFactory.setTlsProvider(parameters.getTlsProvider());
+        sslContextFactory.setCipherOrder(parameters.getTlsCipherOrder());
+        sslContextFactory.setSslSessionCacheSize(parameters.getTlsSessionCacheSize());
+        sslContextFactory.setSslSessionTimeout(parameters.getTlsSessionTimeout());
+        sslContextFactory.setSessionTickets(parameters.getTlsSessionTickets());
+        return sslContextFactory;
+    }
+
+    /**
+     * This method returns the Jetty worker threads pool.
+     * @return Thread pool object.
+     * @since v0.4.5
+     */
+    public QueuedThreadPool getThreadPool(){
+        return this.threadPool;
+    }
+
+    /**
+     * This method returns the HTTPS connector.
+     * @return HTTPS connector object.
+     * @since v0.4.5
+     */
+    public KsServerConnector getConnector(){
+        return this.sslConnector;
+    }
+
+    /**
+     * This method returns the HTTPS connectors listening on the same port 
+     *     (more than one with SO_REUSEPORT).
+     * @return HTTPS connectors array.
+     * @since v0.4.5
+     */
+    public KsServerConnector[] getConnectors(){
+        return this.sslConnectors.clone();
+    }
+
+    /**
+     * This method returns the local cleartext HTTP connector.
+     * @return Local connector object or null if it's disabled.
+     * @since v0.4.5
+     */
+    public ServerConnector getLocalConnector(){
+        return this.localConnector;
+    }
+
+    /**
+     * This method returns the local cleartext HTTP listener address.
+     * @return String with the address and port or "disabled".
+     * @since v0.4.5
+     */
+    public String getLocalListener(){
+        if(this.localConnector == null){
+            return "disabled";
+        }
+        int port = (this.localConnector.getLocalPort() > 0) ? this.localConnector.getLocalPort() 
+                : this.localConnector.getPort();
+        return this.localConnector.getHost() + ":" + port + " (cleartext, loopback only)";
+    }
+
+    /**
+     * This method returns the maximum number of open HTTPS connections.
+     * @return Maximum number of connections (0 no limit).
+     * @since v0.4.5
+     */
+    public int getMaxConnections(){
+        return this.maxConnections;
+    }
+
+    /**
+     * This method returns the TLS settings of the HTTPS connector.
+     * @return String with the provider, cipher suites order, session cache 
+     *     and session tickets values.
+     * @since v0.4.5
+     */
+    public String getTlsSettings(){
+        return this.sslContextFactory.getSettings();
+    }
+
+    /**
+     * This method returns the session ticket keys shared by the KeyServer 
+     *     nodes.
+     * @return Session ticket keys object.
+     * @since v0.4.5
+     */
+    public SessionTicketKeys getTicketKeys(){
+        return this.ticketKeys;
+    }
+
+    /**
+     * This method returns the health and readiness state of the load 
+     *     balancer probes.
+     * @return Health check object.
+     * @since v0.4.5
+     */
+    public HealthCheck getHealthCheck(){
+        return this.healthCheck;
+    }
+
+    /**
+     * This method returns the client time budgets control (discarded 
+     *     requests).
+     * @return Deadline control object.
+     * @since v0.4.5
+     */
+    public DeadlineControl getDeadlineControl(){
+        return this.deadlineControl;
+    }
+
+    /**
+     * This method returns the number of full TLS handshakes of the HTTPS 
+     *     connectors.
+     * @return Full handshakes.
+     * @since v0.4.5
+     */
+    public long getFullHandshakes(){
+        return this.sslContextFactory.getFullHandshakes();
+    }
+
+    /**
+     * This method returns the number of resumed TLS handshakes of the HTTPS
+     *     connectors.
+     * @return Resumed handshakes.
+     * @since v0.4.5
+     */
+    public long getResumedHandshakes(){
+        return this.sslContextFactory.getResumedHandshakes();
+    }
+
+    /**
+     * This method returns the application protocols accepted by the HTTPS 
+     *     connector.
+     * @return String with the protocol names (for example "ssl, alpn, h2, 
+     *     http/1.1").
+     * @since v0.4.5
+     */
+    public String getProtocols(){
+        return this.protocols;
+    }
+
+    /**
+     * This method returns new connection factories for a HTTPS connector 
+     *     (HTTP/2 if it's selected and ALPN is available, HTTP/1.1 if not).
+     * @param parameters Jetty HTTPS service configuration object.
+     * @param https HTTP configuration object.
+     * @param sslContextFactory TLS configuration object.
+     * @param http2 True to use HTTP/2.
+     * @return Connection factories array.
+     * @since v0.4.5
+     */
+    private ConnectionFactory[] getConnectionFactories(ConfigController parameters, 
+            HttpConfiguration https, SslContextFactory sslContextFactory, boolean http2){
+        HttpConnectionFactory http1 = new HttpConnectionFactory(https);
+        ConnectionFactory[] factories = null;
+        if(http2){
+            factories = getHttp2Factories(parameters, https, http1, sslContextFactory);
+        }
+        if(factories == null){
+            factories = new ConnectionFactory[] {
+                new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.toString()), 
+                http1};
+        }
+        return factories;
+    }
+
+    /**
+     * This method returns the HTTPS connector factories for HTTP/2. The 
+     *     protocol is selected with ALPN during the TLS handshake and clients
+     *     without h2 support use HTTP/1.1.
+     * @param parameters Jetty HTTPS service configuration object.
+     * @param https HTTP configuration object.
+     * @param http1 HTTP/1.1 connection factory (ALPN fallback).
+     * @param sslContextFactory TLS configuration object.
+     * @return Connection factories array or null if ALPN is not available 
+     *     on this JVM.
+     * @since v0.4.5
+     */
+    private ConnectionFactory[] getHttp2Factories(ConfigController parameters, 
+            HttpConfiguration https, HttpConnectionFactory http1, 
+            SslContextFactory sslContextFactory){
+        HTTP2ServerConnectionFactory h2 = new HTTP2ServerConnectionFactory(https);
+        h2.setMaxConcurrentStreams(parameters.getHttp2MaxConcurrentStreams());
+        h2.setInitialStreamRecvWindow(parameters.getHttp2StreamWindow());
+        h2.setInitialSessionRecvWindow(parameters.getHttp2SessionWindow());
+        ALPNServerConnectionFactory alpn;
+        try {
+            alpn = new ALPNServerConnectionFactory(h2.getProtocol(), http1.getProtocol());
+        } catch (IllegalStateException ex) {
+            LOGGER.warn("ALPN not available ({}). Using HTTP/1.1 only.", ex.getMessage());
+            return null;
+        }
+        if(alpn.getALPNProcessor() == ALPNProcessor.Server.NOOP){
+            LOGGER.warn("ALPN provider not found on the classpath. Using HTTP/1.1 only.");
+            return null;
+        }
+        alpn.setDefaultProtocol(http1.getProtocol());
+        return new ConnectionFactory[] {
+            new SslConnectionFactory(sslContextFactory, alpn.getProtocol()), 
+            alpn, h2, http1};
+    }
+
     /**
      * This class returns a HTTP configuration object with specific fields.
+     * @param parameters Jetty HTTPS service configuration object.
      * @return HttpConfiguration file with the KeyServer parameters.
      * @since v0.4.0
      */
-    private HttpConfiguration getHttpStaticConfig(){
+    private HttpConfiguration getHttpStaticConfig(ConfigController parameters){
         HttpConfiguration https = new HttpConfiguration();
         // Set the configuration parameters.
         https.setPersistentConnectionsEnabled(true);
-        https.setIdleTimeout(0);
+        // Blocking reads and writes use the connection idle timeout.
+        https.setIdleTimeout(parameters.getIdleTimeout());
+        https.setOutputBufferSize(parameters.getHttpOutputBufferSize());
         https.addCustomizer(new SecureRequestCustomizer());
         https.setSendServerVersion(false);
         https.setSendDateHeader(false);
@@ -16,10 +16,11 @@
 
 package es.tid.keyserver.https.jetty;
 
+import es.tid.keyserver.https.audit.AuditEvent;
+import es.tid.keyserver.https.audit.AuditLog;
 import es.tid.keyserver.https.protocol.ErrorJSON;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.handler.ErrorHandler;
-import org.slf4j.LoggerFactory;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -32,9 +33,18 @@ import java.io.IOException;
  */
 public class KsJettyErrors extends ErrorHandler {
     /**
-     * Security logger object
+     * Security audit log.
      */
-    private static final org.slf4j.Logger SECURITY = LoggerFactory.getLogger("security");
+    private final AuditLog auditLog;
+    
+    /**
+     * Class constructor.
+     * @param auditLog Security audit log.
+     * @since v0.4.5
+     */
+    public KsJettyErrors(AuditLog auditLog){
+        this.auditLog = auditLog;
+    }
     
     /**
      * Jetty error handler for customize output.
@@ -48,28 +58,13 @@ public class KsJettyErrors extends ErrorHandler {
     @Override
     public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException {
         Thread.currentThread().setName("THJETTYERR_" + request.getRemoteAddr() + ":" + request.getRemotePort());
-        String jsonOut;
         response.setCharacterEncoding("UTF-8");
         response.addHeader("Content-Type","application/json");
-        switch(response.getStatus()){
-            case 403:
-                // Unauthorized requests.
-                jsonOut = new ErrorJSON(ErrorJSON.ERR_REQUEST_DENIED).toString();
-                SECURITY.error("Incoming request for unauthorized IP: {} | Type: {} | Target: {}",
-                        request.getRemoteAddr(), 
-                        request.getMethod(), 
-                        target);
-                break;
-            default:
-                // Message for not defined errors.
-                jsonOut = new ErrorJSON(ErrorJSON.ERR_UNSPECIFIED).toString();
-                SECURITY.error("Undefined error Code: {} | IP: {} | Type: {} | Target: {}", 
-                        response.getStatus(), 
-                        request.getRemoteAddr(), 
-                        request.getMethod(), 
-                        target);
-                break;
-        }
+        // Message for not defined errors (not allowed clients are closed by 
+        // the connector before any request is read).
+        String jsonOut = new ErrorJSON(ErrorJSON.ERR_UNSPECIFIED).toString();
+        auditLog.log(AuditEvent.UNDEFINED_ERROR, request.getRemoteAddr(), request.getMethod(), target, 
+                response.getStatus());
         response.getWriter().append(jsonOut);
     }
 }
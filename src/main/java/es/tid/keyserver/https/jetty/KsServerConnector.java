@@ -0,0 +1,276 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import es.tid.keyserver.core.lib.CidrTrie;
+import es.tid.keyserver.https.audit.AuditEvent;
+import es.tid.keyserver.https.audit.AuditLog;
+import org.eclipse.jetty.io.SelectorManager;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTPS connector with the client addresses white list checked when the 
+ *     connection is accepted. Connections from other addresses are closed 
+ *     before any TLS byte is read, so they don't cost a TLS handshake.
+ * 
+ *     <p>Both accept paths are checked: the acceptor threads 
+ *     ({@link #accept(int)}) and the selector threads when there are no 
+ *     acceptors.
+ * 
+ *     <p>With SO_REUSEPORT (Java 9 or newer on Linux and BSD) several 
+ *     connectors can listen on the same address and port. Each one has its
+ *     own accept queue, acceptors and selectors and the kernel spreads the 
+ *     new connections between them.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class KsServerConnector extends ServerConnector {
+    /**
+     * Audit entry method for rejected connections.
+     */
+    static final String AUDIT_METHOD = "CONNECT";
+
+    /**
+     * Audit entry target for rejected connections.
+     */
+    static final String AUDIT_TARGET = "-";
+
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(KsServerConnector.class);
+
+    /**
+     * SO_REUSEPORT socket option (null before Java 9). It's read by 
+     *     reflection, so the Java 8 build can use it on newer runtimes.
+     */
+    private static final SocketOption<Boolean> SO_REUSEPORT = getReusePortOption();
+
+    /**
+     * Allowed client addresses (null allows all).
+     */
+    private volatile CidrTrie whiteList;
+
+    /**
+     * Security audit log (null if rejected connections are not logged).
+     */
+    private volatile AuditLog auditLog;
+
+    /**
+     * Number of connections closed by the white list.
+     */
+    private final LongAdder rejectedConnections = new LongAdder();
+
+    /**
+     * SO_REUSEPORT flag of the listener socket.
+     */
+    private volatile boolean reusePort;
+
+    /**
+     * Class constructor.
+     * @param server Jetty server object.
+     * @param acceptors Number of acceptor threads (-1 Jetty heuristic).
+     * @param selectors Number of selector threads (-1 Jetty heuristic).
+     * @param factories Connection factories.
+     */
+    public KsServerConnector(Server server, int acceptors, int selectors, ConnectionFactory... factories){
+        super(server, acceptors, selectors, factories);
+    }
+
+    /**
+     * Sets the allowed client addresses.
+     * @param whiteList Address blocks or null to allow all addresses.
+     * @param auditLog Security audit log for the rejected connections.
+     */
+    public void setWhiteList(CidrTrie whiteList, AuditLog auditLog){
+        this.whiteList = whiteList;
+        this.auditLog = auditLog;
+    }
+
+    /**
+     * Number of connections closed by the white list.
+     * @return Number of rejected connections.
+     */
+    public long getRejectedConnections(){
+        return rejectedConnections.sum();
+    }
+
+    /**
+     * Sets the SO_REUSEPORT flag of the listener socket (it must be set 
+     *     before the connector is opened).
+     * @param reusePort True to share the address and port with other 
+     *     connectors.
+     */
+    public void setReusePort(boolean reusePort){
+        this.reusePort = reusePort;
+    }
+
+    /**
+     * Returns the SO_REUSEPORT flag of the listener socket.
+     * @return True if the address and port can be shared.
+     */
+    public boolean getReusePort(){
+        return reusePort;
+    }
+
+    /**
+     * Checks if the listener sockets support SO_REUSEPORT on this JVM and 
+     *     OS.
+     * @return True if SO_REUSEPORT is supported.
+     */
+    public static boolean isReusePortSupported(){
+        if(SO_REUSEPORT == null){
+            return false;
+        }
+        try (ServerSocketChannel channel = ServerSocketChannel.open()) {
+            return channel.supportedOptions().contains(SO_REUSEPORT);
+        } catch (IOException ex) {
+            LOGGER.debug("Can't check the SO_REUSEPORT support: {}", ex.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Opens the listener socket (same steps as ServerConnector, with the 
+     *     SO_REUSEPORT flag).
+     * @return Listener channel.
+     * @throws IOException If the address can't be bound or SO_REUSEPORT is
+     *     not supported.
+     */
+    @Override
+    protected ServerSocketChannel openAcceptChannel() throws IOException{
+        if(!reusePort){
+            return super.openAcceptChannel();
+        }
+        if(SO_REUSEPORT == null){
+            throw new IOException("SO_REUSEPORT is not supported on this JVM.");
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, getReuseAddress());
+            channel.setOption(SO_REUSEPORT, true);
+            InetSocketAddress bindAddress = (getHost() == null) ? new InetSocketAddress(getPort()) 
+                    : new InetSocketAddress(getHost(), getPort());
+            channel.bind(bindAddress, getAcceptQueueSize());
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw new IOException("Failed to bind to " + getHost() + ":" + getPort() 
+                    + " with SO_REUSEPORT: " + ex.getMessage(), ex);
+        }
+        return channel;
+    }
+
+    /**
+     * Accepts a new connection on an acceptor thread (same steps as 
+     *     ServerConnector, with the white list check first).
+     * @param acceptorID Acceptor thread id.
+     * @throws IOException If the accept fails.
+     */
+    @Override
+    public void accept(int acceptorID) throws IOException{
+        ServerSocketChannel serverChannel = (ServerSocketChannel) getTransport();
+        if((serverChannel != null) && serverChannel.isOpen()){
+            SocketChannel channel = serverChannel.accept();
+            if(!isAllowed(channel)){
+                return;
+            }
+            channel.configureBlocking(false);
+            configure(channel.socket());
+            getSelectorManager().accept(channel);
+        }
+    }
+
+    /**
+     * Creates the selector manager (white list check for the connections 
+     *     accepted by the selector threads).
+     * @param executor Threads executor.
+     * @param scheduler Scheduler object.
+     * @param selectors Number of selector threads.
+     * @return Selector manager object.
+     */
+    @Override
+    protected SelectorManager newSelectorManager(Executor executor, Scheduler scheduler, int selectors){
+        return new ServerConnectorManager(executor, scheduler, selectors){
+            @Override
+            protected SelectableChannel doAccept(SelectableChannel server) throws IOException{
+                while(true){
+                    SelectableChannel channel = super.doAccept(server);
+                    if((channel == null) || isAllowed((SocketChannel) channel)){
+                        return channel;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Checks the client address of a new connection. Not allowed 
+     *     connections are closed.
+     * @param channel Accepted channel.
+     * @return True if the address is allowed.
+     */
+    private boolean isAllowed(SocketChannel channel){
+        CidrTrie allowed = whiteList;
+        if(allowed == null){
+            return true;
+        }
+        InetAddress remote = channel.socket().getInetAddress();
+        if(allowed.test(remote)){
+            return true;
+        }
+        rejectedConnections.increment();
+        AuditLog audit = auditLog;
+        if(audit != null){
+            audit.log(AuditEvent.UNAUTHORIZED, (remote == null) ? null : remote.getHostAddress(), 
+                    AUDIT_METHOD, AUDIT_TARGET, null);
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            LOGGER.debug("Can't close the rejected connection: {}", ex.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the SO_REUSEPORT socket option.
+     * @return Socket option or null if the JVM doesn't define it.
+     */
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> getReusePortOption(){
+        try {
+            return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT").get(null);
+        } catch (ReflectiveOperationException ex) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import java.lang.reflect.Method;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TLS configuration of the KeyServer listeners: JSSE provider (Conscrypt if 
+ *     it's present on the classpath), cipher suites order, session cache,
+ *     session tickets and shared session ticket keys.
+ * 
+ *     <p>The full and resumed handshakes are counted by the listener 
+ *     returned by {@link #getHandshakeListener()} (it must be added to the 
+ *     connectors). A session created before the TLS engine of the 
+ *     connection is a resumed session.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class KsSslContextFactory extends SslContextFactory {
+    /**
+     * Default JSSE provider of the JVM.
+     */
+    public static final String PROVIDER_DEFAULT = "default";
+
+    /**
+     * Conscrypt (BoringSSL) provider.
+     */
+    public static final String PROVIDER_CONSCRYPT = "conscrypt";
+
+    /**
+     * Client cipher suites order (JSSE default).
+     */
+    public static final String CIPHER_ORDER_CLIENT = "client";
+
+    /**
+     * Server cipher suites order: ECDHE-ECDSA first and AES-GCM first.
+     */
+    public static final String CIPHER_ORDER_SERVER = "server";
+
+    /**
+     * Session tickets: provider default.
+     */
+    public static final String TICKETS_DEFAULT = "default";
+
+    /**
+     * Session tickets enabled.
+     */
+    public static final String TICKETS_ON = "on";
+
+    /**
+     * Session tickets disabled (stateful sessions cache).
+     */
+    public static final String TICKETS_OFF = "off";
+
+    /**
+     * JDK (13 or newer) session tickets property. It's read once, when the 
+     *     first TLS object of the JVM is created.
+     */
+    static final String JDK_TICKETS_PROPERTY = "jdk.tls.server.enableSessionTicketExtension";
+
+    /**
+     * Server cipher suites order (stable, so the JSSE order is used for 
+     *     suites with the same rank).
+     */
+    static final Comparator<String> SERVER_CIPHER_ORDER = Comparator
+            .comparingInt(KsSslContextFactory::keyExchangeRank)
+            .thenComparingInt(KsSslContextFactory::cipherRank);
+
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(KsSslContextFactory.class);
+
+    /**
+     * Configured provider name (for the status view).
+     */
+    private String tlsProvider = PROVIDER_DEFAULT;
+
+    /**
+     * Configured cipher suites order.
+     */
+    private String cipherOrder = CIPHER_ORDER_CLIENT;
+
+    /**
+     * Configured session tickets value.
+     */
+    private String sessionTickets = TICKETS_DEFAULT;
+
+    /**
+     * Conscrypt.setUseSessionTickets(SSLEngine, boolean) method (null if 
+     *     the provider is not Conscrypt or tickets use the default value).
+     */
+    private Method conscryptTickets;
+
+    /**
+     * Session ticket keys shared by the KeyServer nodes (null to use the 
+     *     provider keys).
+     */
+    private volatile byte[] ticketKeys;
+
+    /**
+     * Creation time of the TLS engines with a handshake in progress (weak 
+     *     keys, so closed connections are not kept).
+     */
+    private final Map<SSLEngine, Long> handshakeStart = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Number of full handshakes.
+     */
+    private final LongAdder fullHandshakes = new LongAdder();
+
+    /**
+     * Number of resumed handshakes.
+     */
+    private final LongAdder resumedHandshakes = new LongAdder();
+
+    /**
+     * Handshakes counter listener.
+     */
+    private final SslHandshakeListener handshakeListener = new SslHandshakeListener() {
+        @Override
+        public void handshakeSucceeded(Event event){
+            SSLEngine engine = event.getSSLEngine();
+            Long start = handshakeStart.remove(engine);
+            SSLSession session = engine.getSession();
+            if((start != null) && (session != null) && (session.getCreationTime() < start)){
+                resumedHandshakes.increment();
+            } else {
+                fullHandshakes.increment();
+            }
+        }
+
+        @Override
+        public void handshakeFailed(Event event, Throwable failure){
+            handshakeStart.remove(event.getSSLEngine());
+        }
+    };
+
+    /**
+     * Selects the JSSE provider. Unknown providers (or Conscrypt without its
+     *     native library) use the default provider.
+     * @param name Provider name: "default", "conscrypt" or the name of a 
+     *     registered provider.
+     */
+    public void setTlsProvider(String name){
+        tlsProvider = PROVIDER_DEFAULT;
+        setProvider(null);
+        if(PROVIDER_DEFAULT.equalsIgnoreCase(name)){
+            return;
+        }
+        Provider provider;
+        if(PROVIDER_CONSCRYPT.equalsIgnoreCase(name)){
+            provider = getConscrypt();
+        } else {
+            provider = Security.getProvider(name);
+            if(provider == null){
+                LOGGER.warn("TLS provider not found ({}). Using the default JSSE provider.", name);
+            }
+        }
+        if(provider == null){
+            return;
+        }
+        if(provider.getService("SSLContext", getProtocol()) == null){
+            LOGGER.warn("TLS provider {} doesn't support {}. Using the default JSSE provider.",
+                    provider.getName(), getProtocol());
+            return;
+        }
+        tlsProvider = provider.getName();
+        setProvider(provider.getName());
+    }
+
+    /**
+     * Selects the cipher suites order.
+     * @param order {@link #CIPHER_ORDER_CLIENT} or 
+     *     {@link #CIPHER_ORDER_SERVER}.
+     */
+    public void setCipherOrder(String order){
+        cipherOrder = order;
+        if(CIPHER_ORDER_SERVER.equals(order)){
+            setCipherComparator(SERVER_CIPHER_ORDER);
+            setUseCipherSuitesOrder(true);
+        }
+    }
+
+    /**
+     * Enables or disables the session tickets. For the JDK provider it's a
+     *     JVM wide property (JDK 13 or newer, Java 8 servers don't send 
+     *     tickets). For Conscrypt it's set on each connection.
+     * @param tickets {@link #TICKETS_DEFAULT}, {@link #TICKETS_ON} or 
+     *     {@link #TICKETS_OFF}.
+     */
+    public void setSessionTickets(String tickets){
+        sessionTickets = tickets;
+        if(TICKETS_DEFAULT.equals(tickets)){
+            return;
+        }
+        System.setProperty(JDK_TICKETS_PROPERTY, String.valueOf(TICKETS_ON.equals(tickets)));
+        try {
+            conscryptTickets = Class.forName("org.conscrypt.Conscrypt")
+                    .getMethod("setUseSessionTickets", SSLEngine.class, boolean.class);
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            conscryptTickets = null;
+        }
+    }
+
+    /**
+     * Sets the session ticket keys shared by the KeyServer nodes, so a 
+     *     session can be resumed on any node. Only the Conscrypt provider 
+     *     accepts external keys (the JDK provider uses its own random keys).
+     * @param keys Ticket keys (16 bytes name, 16 bytes HMAC key and 16 bytes
+     *     AES key).
+     * @return True if the keys are used by the TLS context (false if the 
+     *     context is not started yet or the provider doesn't support them).
+     */
+    public boolean setTicketKeys(byte[] keys){
+        this.ticketKeys = keys.clone();
+        return isStarted() && applyTicketKeys();
+    }
+
+    /**
+     * Returns the listener that counts the full and resumed handshakes.
+     * @return Handshake listener (connector bean).
+     */
+    public SslHandshakeListener getHandshakeListener(){
+        return handshakeListener;
+    }
+
+    /**
+     * Number of full handshakes.
+     * @return Full handshakes.
+     */
+    public long getFullHandshakes(){
+        return fullHandshakes.sum();
+    }
+
+    /**
+     * Number of resumed handshakes (session cache or session ticket).
+     * @return Resumed handshakes.
+     */
+    public long getResumedHandshakes(){
+        return resumedHandshakes.sum();
+    }
+
+    /**
+     * Returns the TLS settings for the status view.
+     * @return String with the provider, cipher order, session cache and 
+     *     session tickets values.
+     */
+    public String getSettings(){
+        return "provider " + tlsProvider + ", cipher order " + cipherOrder 
+                + ", session cache " + getSslSessionCacheSize() + " (" + getSslSessionTimeout() 
+                + " s), tickets " + sessionTickets;
+    }
+
+    /**
+     * Customizes each new connection (Conscrypt session tickets).
+     * @param sslEngine TLS engine of the connection.
+     */
+    @Override
+    public void customize(SSLEngine sslEngine){
+        super.customize(sslEngine);
+        handshakeStart.put(sslEngine, System.currentTimeMillis());
+        if((conscryptTickets != null) && sslEngine.getClass().getName().startsWith("org.conscrypt.")){
+            try {
+                conscryptTickets.invoke(null, sslEngine, TICKETS_ON.equals(sessionTickets));
+            } catch (ReflectiveOperationException | RuntimeException ex) {
+                LOGGER.debug("Can't set Conscrypt session tickets: {}", ex.toString());
+            }
+        }
+    }
+
+    /**
+     * Starts the TLS context (with the shared ticket keys if they are set).
+     * @throws Exception If the TLS context can't be created.
+     */
+    @Override
+    protected void doStart() throws Exception{
+        super.doStart();
+        if(ticketKeys != null){
+            applyTicketKeys();
+        }
+    }
+
+    /**
+     * Sets the shared ticket keys on the server sessions context (Conscrypt
+     *     ServerSessionContext.setTicketKeys, called by reflection).
+     * @return True if the keys are used.
+     */
+    private boolean applyTicketKeys(){
+        SSLSessionContext context = getSslContext().getServerSessionContext();
+        try {
+            context.getClass().getMethod("setTicketKeys", byte[].class).invoke(context, (Object) ticketKeys);
+            return true;
+        } catch (NoSuchMethodException ex) {
+            LOGGER.debug("TLS provider {} doesn't support shared session ticket keys.", tlsProvider);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            LOGGER.warn("Can't set the session ticket keys: {}", ex.toString());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the Conscrypt provider (registered if it's not).
+     * @return Provider or null if it's not available.
+     */
+    private static Provider getConscrypt(){
+        Provider provider = Security.getProvider("Conscrypt");
+        if(provider != null){
+            return provider;
+        }
+        try {
+            provider = (Provider) Class.forName("org.conscrypt.Conscrypt").getMethod("newProvider").invoke(null);
+            Security.addProvider(provider);
+            return provider;
+        } catch (ReflectiveOperationException | LinkageError ex) {
+            LOGGER.warn("Conscrypt TLS provider not available ({}). Using the default JSSE provider.", ex.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Cipher suite key exchange rank (TLS 1.3 suites, ECDHE-ECDSA, 
+     *     ECDHE-RSA and the rest).
+     * @param suite Cipher suite name.
+     * @return Rank (lower first).
+     */
+    private static int keyExchangeRank(String suite){
+        if(suite.startsWith("TLS_AES_") || suite.startsWith("TLS_CHACHA20_")){
+            return 0;
+        } else if(suite.startsWith("TLS_ECDHE_ECDSA_")){
+            return 1;
+        } else if(suite.startsWith("TLS_ECDHE_RSA_")){
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * Cipher suite encryption rank (AES-GCM, ChaCha20-Poly1305 and the 
+     *     rest).
+     * @param suite Cipher suite name.
+     * @return Rank (lower first).
+     */
+    private static int cipherRank(String suite){
+        if(suite.contains("_AES_128_GCM_")){
+            return 0;
+        } else if(suite.contains("_AES_256_GCM_")){
+            return 1;
+        } else if(suite.contains("_CHACHA20_POLY1305_")){
+            return 2;
+        }
+        return 3;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.jetty;
+
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bounded HTTP request body reader. Single SKI request bodies are read as 
+ *     raw bytes into a buffer reused by the current thread (sized to the 
+ *     maximum body size), so memory doesn't grow with the number of requests.
+ * 
+ *     <p>Bodies are never read after the maximum size: if the Content-Length 
+ *     is too long, nothing is read.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class RequestBodyReader {
+    /**
+     * Logging object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(RequestBodyReader.class);
+    
+    /**
+     * Maximum number of bytes read for log entries of not valid requests.
+     */
+    public static final int PREVIEW_SIZE = 256;
+    
+    /**
+     * Maximum body size in bytes.
+     */
+    private final int maxBodySize;
+    
+    /**
+     * Body buffer of each thread.
+     */
+    private final ThreadLocal<ByteBuffer> buffers;
+    
+    /**
+     * Class constructor.
+     * @param maxBodySize Maximum body size in bytes.
+     */
+    public RequestBodyReader(int maxBodySize){
+        this.maxBodySize = maxBodySize;
+        this.buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(Math.max(maxBodySize, PREVIEW_SIZE)));
+    }
+    
+    /**
+     * Maximum body size.
+     * @return Maximum body size in bytes.
+     */
+    public int getMaxBodySize(){
+        return maxBodySize;
+    }
+    
+    /**
+     * Reads the body into the buffer of the current thread. The buffer is 
+     *     reused by the next call on the same thread, so the content must be 
+     *     processed (or copied) before that.
+     * @param in Body input stream.
+     * @param contentLength Content-Length header value (-1 if not present).
+     * @return Buffer with the body (from position to limit) or null if the 
+     *     body is longer than the maximum body size.
+     * @throws IOException Exception if can't read.
+     */
+    public ByteBuffer read(InputStream in, int contentLength) throws IOException{
+        if(contentLength > maxBodySize){
+            LOGGER.debug("HTTP body too long: {} bytes.", contentLength);
+            return null;
+        }
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        buffer.limit((contentLength >= 0) ? contentLength : maxBodySize);
+        // If the buffer is full, the body can't have more bytes.
+        if(fill(in, buffer) && (contentLength < 0) && (in.read() != -1)){
+            LOGGER.debug("HTTP body too long: more than {} bytes.", maxBodySize);
+            return null;
+        }
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Reads a body that can be longer than the maximum body size (batch 
+     *     requests) into a new array. The body is read using the buffer of the
+     *     current thread and the array grows as the bytes arrive, so a long 
+     *     Content-Length without body doesn't allocate memory.
+     * @param in Body input stream.
+     * @param contentLength Content-Length header value (-1 if not present).
+     * @param maxLength Maximum body length in bytes.
+     * @return Array with the body or null if the body is longer than the 
+     *     maximum length.
+     * @throws IOException Exception if can't read.
+     */
+    public byte[] readFully(InputStream in, int contentLength, int maxLength) throws IOException{
+        if(contentLength > maxLength){
+            LOGGER.debug("HTTP body too long: {} bytes.", contentLength);
+            return null;
+        }
+        byte[] chunk = buffers.get().array();
+        ByteArrayOutputStream body = new ByteArrayOutputStream((contentLength >= 0) 
+                ? Math.min(contentLength, chunk.length) : chunk.length);
+        int read;
+        while(((contentLength < 0) || (body.size() < contentLength)) && ((read = in.read(chunk, 0, 
+                (contentLength < 0) ? chunk.length : Math.min(chunk.length, contentLength - body.size()))) != -1)){
+            if(body.size() + read > maxLength){
+                LOGGER.debug("HTTP body too long: more than {} bytes.", maxLength);
+                return null;
+            }
+            body.write(chunk, 0, read);
+        }
+        return body.toByteArray();
+    }
+    
+    /**
+     * Reads the first bytes of a not valid request body for log entries (the 
+     *     rest of the body is not read).
+     * @param in Body input stream.
+     * @return String with the first bytes of the body.
+     * @throws IOException Exception if can't read.
+     */
+    public String preview(InputStream in) throws IOException{
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+        buffer.limit(PREVIEW_SIZE);
+        fill(in, buffer);
+        buffer.flip();
+        return new String(buffer.array(), 0, buffer.limit(), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Reads from the input stream until the buffer is full or the end of the 
+     *     stream.
+     * @param in Input stream.
+     * @param buffer Buffer (position is updated).
+     * @return True if the buffer is full, false if the end of the stream was 
+     *     found before.
+     */
+    private static boolean fill(InputStream in, ByteBuffer buffer) throws IOException{
+        int read;
+        while(buffer.hasRemaining()){
+            read = in.read(buffer.array(), buffer.position(), buffer.remaining());
+            if(read == -1){
+                return false;
+            }
+            buffer.position(buffer.position() + read);
+        }
+        return true;
+    }
+}
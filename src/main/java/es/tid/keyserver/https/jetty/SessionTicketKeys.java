@@ -0,0 +1,328 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import es.tid.keyserver.controllers.db.DataBase;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session ticket keys shared by the KeyServer nodes, so an edge server can
+ *     resume its TLS session on any node behind the load balancer.
+ *
+ *     <p>All the nodes read the same secret (base64) from a file or from a
+ *     Redis key and derive the ticket keys of the current time slot
+ *     (HMAC-SHA256 of the secret and the slot number). The keys change at
+ *     each slot boundary on every node at the same time, without any other
+ *     coordination. The secret is read again on each check, so it can be
+ *     replaced without restarting the nodes.
+ *
+ *     <p>Tickets issued in the previous slot can't be decrypted after the
+ *     rotation (the provider keeps only one key), so those clients do one
+ *     full handshake. Only the Conscrypt provider accepts external keys.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SessionTicketKeys implements Runnable {
+    /**
+     * Shared keys disabled (provider keys).
+     */
+    public static final String SOURCE_OFF = "off";
+
+    /**
+     * File source prefix ("file:" and the file path).
+     */
+    public static final String SOURCE_FILE = "file:";
+
+    /**
+     * Redis source prefix ("redis:" and the key name).
+     */
+    public static final String SOURCE_REDIS = "redis:";
+
+    /**
+     * Ticket keys size: 16 bytes name, 16 bytes HMAC key and 16 bytes AES
+     *     key.
+     */
+    public static final int KEYS_SIZE = 48;
+
+    /**
+     * Minimum secret size in bytes.
+     */
+    public static final int MIN_SECRET_SIZE = 32;
+
+    /**
+     * Maximum time between two secret checks in milliseconds.
+     */
+    static final long MAX_CHECK_INTERVAL = 60000;
+
+    /**
+     * Key derivation label.
+     */
+    private static final byte[] LABEL = "KeyServer session ticket keys".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SessionTicketKeys.class);
+
+    /**
+     * Secret source ("off", "file:path" or "redis:key").
+     */
+    private final String source;
+
+    /**
+     * Keys rotation interval (time slot) in milliseconds.
+     */
+    private final long rotation;
+
+    /**
+     * Redis database object (Redis source).
+     */
+    private final DataBase dataBase;
+
+    /**
+     * TLS contexts that use the keys.
+     */
+    private final List<KsSslContextFactory> contexts = new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of keys changes.
+     */
+    private final AtomicLong rotations = new AtomicLong();
+
+    /**
+     * Current time slot (-1 before the first keys).
+     */
+    private volatile long slot = -1;
+
+    /**
+     * Secret of the current keys.
+     */
+    private byte[] secret;
+
+    /**
+     * True if the current keys are used by all the TLS contexts.
+     */
+    private volatile boolean applied;
+
+    /**
+     * Rotation thread (null until started).
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Class constructor.
+     * @param source Secret source ("off", "file:path" or "redis:key").
+     * @param rotation Keys rotation interval in milliseconds.
+     * @param dataBase Redis database object (used by the Redis source).
+     */
+    public SessionTicketKeys(String source, long rotation, DataBase dataBase){
+        this.source = source;
+        this.rotation = Math.max(1, rotation);
+        this.dataBase = dataBase;
+    }
+
+    /**
+     * Adds a TLS context that uses the shared keys.
+     * @param context TLS context.
+     */
+    public void addContext(KsSslContextFactory context){
+        contexts.add(context);
+    }
+
+    /**
+     * Checks if the shared keys are enabled.
+     * @return True if a secret source is set.
+     */
+    public boolean isEnabled(){
+        return !SOURCE_OFF.equals(source);
+    }
+
+    /**
+     * Sets the keys of the current time slot and starts the rotation thread.
+     */
+    public synchronized void start(){
+        if(!isEnabled() || (scheduler != null)){
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "THTICKETKEYS");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this, 0, Math.min(rotation, MAX_CHECK_INTERVAL), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the rotation thread.
+     */
+    public synchronized void stop(){
+        if(scheduler != null){
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Reads the secret and changes the keys if the time slot or the secret
+     *     have changed (rotation thread).
+     */
+    @Override
+    public void run(){
+        try {
+            update(System.currentTimeMillis());
+        } catch (RuntimeException ex) {
+            LOGGER.warn("Session ticket keys update error: {}", ex.toString());
+        }
+    }
+
+    /**
+     * Changes the keys if the time slot or the secret have changed.
+     * @param now Current time in milliseconds.
+     * @return True if the keys have been changed.
+     */
+    synchronized boolean update(long now){
+        byte[] current = loadSecret();
+        if(current == null){
+            return false;
+        }
+        long currentSlot = now / rotation;
+        if((currentSlot == slot) && Arrays.equals(current, secret) && applied){
+            return false;
+        }
+        byte[] keys = deriveKeys(current, currentSlot);
+        boolean all = true;
+        for(KsSslContextFactory context : contexts){
+            all &= context.setTicketKeys(keys);
+        }
+        Arrays.fill(keys, (byte) 0);
+        if((currentSlot != slot) || !Arrays.equals(current, secret)){
+            rotations.incrementAndGet();
+            LOGGER.info("Session ticket keys changed (slot {}, source {}).", currentSlot, source);
+        }
+        slot = currentSlot;
+        secret = current;
+        applied = all;
+        return true;
+    }
+
+    /**
+     * Derives the ticket keys of a time slot.
+     * @param secret Shared secret.
+     * @param slot Time slot number.
+     * @return Ticket keys ({@link #KEYS_SIZE} bytes).
+     */
+    static byte[] deriveKeys(byte[] secret, long slot){
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+            byte[] keys = new byte[KEYS_SIZE];
+            int offset = 0;
+            for(byte counter = 1; offset < KEYS_SIZE; counter++){
+                mac.update(LABEL);
+                for(int i = 7; i >= 0; i--){
+                    mac.update((byte) (slot >>> (8 * i)));
+                }
+                mac.update(counter);
+                byte[] block = mac.doFinal();
+                int length = Math.min(block.length, KEYS_SIZE - offset);
+                System.arraycopy(block, 0, keys, offset, length);
+                offset += length;
+            }
+            return keys;
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException("HmacSHA256 not available: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Reads the shared secret from the file or the Redis key.
+     * @return Secret bytes or null if it's not available or not valid.
+     */
+    byte[] loadSecret(){
+        byte[] value;
+        try {
+            if(source.startsWith(SOURCE_FILE)){
+                String text = new String(Files.readAllBytes(Paths.get(source.substring(SOURCE_FILE.length()))),
+                        StandardCharsets.US_ASCII);
+                value = Base64.getMimeDecoder().decode(text.trim());
+            } else if(source.startsWith(SOURCE_REDIS) && (dataBase != null)){
+                // Base64 value (same format as the private keys).
+                value = dataBase.getPrivateForHash(source.substring(SOURCE_REDIS.length()));
+            } else {
+                value = null;
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            LOGGER.warn("Can't read the session ticket keys secret ({}): {}", source, ex.toString());
+            return null;
+        }
+        if((value == null) || (value.length < MIN_SECRET_SIZE)){
+            LOGGER.warn("Session ticket keys secret not found or shorter than {} bytes ({}).",
+                    MIN_SECRET_SIZE, source);
+            return null;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the secret source.
+     * @return Source value.
+     */
+    public String getSource(){
+        return source;
+    }
+
+    /**
+     * Returns the keys rotation interval.
+     * @return Rotation interval in milliseconds.
+     */
+    public long getRotation(){
+        return rotation;
+    }
+
+    /**
+     * Number of keys changes.
+     * @return Keys changes since the start.
+     */
+    public long getRotations(){
+        return rotations.get();
+    }
+
+    /**
+     * Checks if the current keys are used by all the TLS contexts.
+     * @return False if the secret is not available or the TLS provider
+     *     doesn't accept external keys.
+     */
+    public boolean isApplied(){
+        return applied;
+    }
+}
@@ -17,7 +17,9 @@
 package es.tid.keyserver.https.jetty.exceptions;
 
 /**
- * Class for custom KeyServer exception.
+ * Class for custom KeyServer exception. The exception doesn't have stack 
+ *     trace, so it's cheap to create and the same object can be thrown many 
+ *     times.
  * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
  * @since v0.4.2
  */
@@ -30,6 +32,7 @@ public class KeyServerException extends Exception{
      * @since v0.4.2
      */
     public KeyServerException(String msg) {
-        super(msg);
+        // Without stack trace: it's only used to return error codes.
+        super(msg, null, false, false);
     }
 }
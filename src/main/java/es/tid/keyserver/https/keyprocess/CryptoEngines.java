@@ -0,0 +1,117 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.keyprocess;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+
+/**
+ * Per thread store of reusable JCA engine objects (Cipher, Signature and 
+ *     MessageDigest).
+ *
+ *     <p>The JCA provider lookup is done only the first time that a thread 
+ *     asks for an algorithm. After that, the same engine object is returned 
+ *     and the caller must initialize it with the request key before using it
+ *     ({@code Cipher.init}, {@code Signature.initSign}). Engine objects are 
+ *     not thread safe, so they must not be shared with other threads.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class CryptoEngines {
+    /**
+     * Cipher objects of the current thread indexed by transformation.
+     */
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Signature objects of the current thread indexed by algorithm.
+     */
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Message digest objects of the current thread indexed by algorithm.
+     */
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+
+    /**
+     * Private constructor (only static methods).
+     */
+    private CryptoEngines(){
+    }
+
+    /**
+     * Returns the Cipher object of the current thread for the specified 
+     *     transformation.
+     * @param transformation Cipher transformation name (for example "RSA").
+     * @return Cipher object. It must be initialized before each use.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws NoSuchPaddingException Padding not valid.
+     * @since v0.4.5
+     */
+    public static Cipher cipher(String transformation) throws NoSuchAlgorithmException, NoSuchPaddingException{
+        Map<String, Cipher> ciphers = CIPHERS.get();
+        Cipher cipher = ciphers.get(transformation);
+        if(cipher == null){
+            cipher = Cipher.getInstance(transformation);
+            ciphers.put(transformation, cipher);
+        }
+        return cipher;
+    }
+
+    /**
+     * Returns the Signature object of the current thread for the specified
+     *     algorithm.
+     * @param algorithm Signature algorithm name (for example "SHA256withRSA").
+     * @return Signature object. It must be initialized before each use.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @since v0.4.5
+     */
+    public static Signature signature(String algorithm) throws NoSuchAlgorithmException{
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+        if(signature == null){
+            signature = Signature.getInstance(algorithm);
+            signatures.put(algorithm, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the MessageDigest object of the current thread for the 
+     *     specified algorithm. The returned object is always reset.
+     * @param algorithm Message digest algorithm name (for example "MD5").
+     * @return MessageDigest object.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @since v0.4.5
+     */
+    public static MessageDigest digest(String algorithm) throws NoSuchAlgorithmException{
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest digest = digests.get(algorithm);
+        if(digest == null){
+            digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+}
@@ -17,6 +17,8 @@
 package es.tid.keyserver.https.keyprocess;
 
 import es.tid.keyserver.https.protocol.InputJSON;
+import es.tid.keyserver.https.protocol.SkiHash;
+import es.tid.keyserver.https.protocol.SkiRequest;
 import org.slf4j.LoggerFactory;
 
 import java.security.*;
@@ -54,10 +56,75 @@ public class Ecdhe {
         if((dsa == null) || (hash == null)){
             return null;
         }
+        return sign(data, key, dsa, hash.equalsIgnoreCase(InputJSON.SHA1));
+    }
+    
+    /**
+     * This method signs the data of a validated request (the "input" field is
+     *     already base64 decoded).
+     * @param request Validated ECDHE request.
+     * @param key PrivateKey object with the private key used to sign incoming data.
+     * @return Signed data encoded using base64.
+     * @throws NoSuchAlgorithmException The specified algorithm is not valid.
+     * @throws java.security.InvalidKeyException Invalid Key.
+     * @throws java.security.SignatureException Not valid signature name.
+     * @since v0.4.5
+     */
+    static public String calcOutput(SkiRequest request, PrivateKey key) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException{
+        return Base64.getEncoder().encodeToString(calcRawOutput(request, key));
+    }
+    
+    /**
+     * This method signs the data of a validated request without base64 
+     *     encoding (binary protocols).
+     * @param request Validated ECDHE request.
+     * @param key PrivateKey object with the private key used to sign incoming data.
+     * @return Array of bytes with the signed data.
+     * @throws NoSuchAlgorithmException The specified algorithm is not valid.
+     * @throws java.security.InvalidKeyException Invalid Key.
+     * @throws java.security.SignatureException Not valid signature name.
+     * @since v0.4.5
+     */
+    static public byte[] calcRawOutput(SkiRequest request, PrivateKey key) throws NoSuchAlgorithmException, InvalidKeyException, SignatureException{
+        SkiHash hash = request.getHash();
+        if(LOGGER.isDebugEnabled()){
+            LOGGER.debug("Key used to sign: {} | Hash: {} | Data Bytes to sign: {}", key.getAlgorithm(), hash, request.getInput().length);
+        }
+        Signature dsa = CryptoEngines.signature(hash.getSignatureAlgorithm());
+        return signRaw(request.getInput(), key, dsa, hash == SkiHash.SHA1);
+    }
+    
+    /**
+     * Signs the data using the signature object.
+     * @param data Data to sign.
+     * @param key Private key used to sign the data.
+     * @param dsa Signature object.
+     * @param md5 True if the MD5 of the data must be signed (SHA1 hash).
+     * @return Signed data encoded using base64 or null if something goes wrong.
+     */
+    private static String sign(byte[] data, PrivateKey key, Signature dsa, boolean md5) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException{
+        byte signedData[] = signRaw(data, key, dsa, md5);
+        // Check if something goes wrong when decrypts.
+        if (signedData == null){
+            return null;
+        }
+        // Encode signed data using base64.
+        return Base64.getEncoder().encodeToString(signedData);
+    }
+    
+    /**
+     * Signs the data using the signature object.
+     * @param data Data to sign.
+     * @param key Private key used to sign the data.
+     * @param dsa Signature object.
+     * @param md5 True if the MD5 of the data must be signed (SHA1 hash).
+     * @return Array of bytes with the signed data.
+     */
+    private static byte[] signRaw(byte[] data, PrivateKey key, Signature dsa, boolean md5) throws InvalidKeyException, SignatureException, NoSuchAlgorithmException{
         dsa.initSign(key);
         // Calculate MD5 if hash is SHA1
-        if(hash.equalsIgnoreCase(InputJSON.SHA1)){
-            MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        if(md5){
+            MessageDigest messageDigest = CryptoEngines.digest("MD5");
             messageDigest.update(data);
             data = messageDigest.digest();
             LOGGER.debug("ECDH SHA1: Calculated MD5 for base64 decoded data.");
@@ -65,18 +132,13 @@ public class Ecdhe {
         // Set the data to sign.
         dsa.update(data);
         // Sign and return data
-        byte signedData[] = dsa.sign();
-        // Check if something goes wrong when decrypts.
-        if (signedData == null){
-            return null;
-        }
-        // Encode signed data using base64.
-        return Base64.getEncoder().encodeToString(signedData);
+        return dsa.sign();
     }
 
     /**
      * This method receive an string with the incoming hash type and returns a
-     *     signature object.
+     *     signature object. The signature objects are reused by the current 
+     *     thread.
      * @param hash String with the HASH tag.
      * @see <a href="http://docs.oracle.com/javase/7/docs/technotes/guides/security/StandardNames.html#Signature">Java Standard Names: Signature Algorithms</a>
      * @return Signature object or null if the specified signature algorithm is not specified.
@@ -85,25 +147,25 @@ public class Ecdhe {
     private static Signature getSignature(String hash) throws NoSuchAlgorithmException {
         // If JSON "hash" field is not present.
         if(hash==null){
-           return Signature.getInstance("SHA1withRSA");
+           return CryptoEngines.signature("SHA1withRSA");
         }
         // If JSON "hash" field is present.
         Signature dsa = null;
         switch(hash){
             case InputJSON.SHA1:
-                dsa = Signature.getInstance("SHA1withRSA");
+                dsa = CryptoEngines.signature("SHA1withRSA");
                 break;
             case InputJSON.SHA_224:
-                dsa = Signature.getInstance("SHA224withRSA");
+                dsa = CryptoEngines.signature("SHA224withRSA");
                 break;
             case InputJSON.SHA_256:
-                dsa = Signature.getInstance("SHA256withRSA");
+                dsa = CryptoEngines.signature("SHA256withRSA");
                 break;
             case InputJSON.SHA_384:
-                dsa = Signature.getInstance("SHA384withRSA"); 
+                dsa = CryptoEngines.signature("SHA384withRSA"); 
                 break;
             case InputJSON.SHA_512:
-                dsa = Signature.getInstance("SHA512withRSA");
+                dsa = CryptoEngines.signature("SHA512withRSA");
                 break;    
             default:
                 LOGGER.error("ECDHE: not valid Hash value ({})", hash);
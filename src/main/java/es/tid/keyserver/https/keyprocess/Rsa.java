@@ -16,6 +16,8 @@
 
 package es.tid.keyserver.https.keyprocess;
 
+import es.tid.keyserver.https.protocol.SkiRequest;
+
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
 import javax.crypto.IllegalBlockSizeException;
@@ -45,6 +47,50 @@ public class Rsa {
     static public String calcDecodedOutput(String data, PrivateKey key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException{
         // Decode incoming "data" from base64 (base64 decoder).
         byte[] codifiedData = Base64.getDecoder().decode(data.trim());
+        return calcDecodedOutput(codifiedData, key);
+    }
+    
+    /**
+     * This static method decodes the PremasterSecret of a validated request 
+     *     (the "input" field is already base64 decoded).
+     * @param request Validated RSA request.
+     * @param key Private key used for extract the PremasterSecret.
+     * @return String with the PremasterSecret decoded. This output is base64 encoded.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws NoSuchPaddingException Problem with padding.
+     * @throws InvalidKeyException Key not valid.
+     * @throws IllegalBlockSizeException Block size not valid.
+     * @throws BadPaddingException Bad padding.
+     * @since v0.4.5
+     */
+    static public String calcDecodedOutput(SkiRequest request, PrivateKey key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException{
+        return calcDecodedOutput(request.getInput(), key);
+    }
+    
+    /**
+     * This static method decodes the PremasterSecret of a validated request 
+     *     without base64 encoding (binary protocols).
+     * @param request Validated RSA request.
+     * @param key Private key used for extract the PremasterSecret.
+     * @return Array of bytes with the PremasterSecret decoded.
+     * @throws NoSuchAlgorithmException Algorithm not valid.
+     * @throws NoSuchPaddingException Problem with padding.
+     * @throws InvalidKeyException Key not valid.
+     * @throws IllegalBlockSizeException Block size not valid.
+     * @throws BadPaddingException Bad padding.
+     * @since v0.4.5
+     */
+    static public byte[] calcRawOutput(SkiRequest request, PrivateKey key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException{
+        return decrypt(request.getInput(), key);
+    }
+    
+    /**
+     * Decodes the PremasterSecret from an array of bytes.
+     * @param codifiedData Encrypted PremasterSecret.
+     * @param key Private key used for extract the PremasterSecret.
+     * @return String with the PremasterSecret decoded. This output is base64 encoded.
+     */
+    private static String calcDecodedOutput(byte[] codifiedData, PrivateKey key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException{
         // Decoding incoming data using PrivateKey and gets the PremasterSecret decoded.
         byte[] decodifiedData = decrypt(codifiedData, key);
         // Check if something goes wrong when decrypts.
@@ -63,8 +109,8 @@ public class Rsa {
      */
     private static byte[] decrypt(byte[] text, PrivateKey key) throws NoSuchAlgorithmException, NoSuchPaddingException, InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
         byte[] dectyptedText;
-        // Get RSA cipher object
-        Cipher cipher = Cipher.getInstance("RSA");
+        // Get RSA cipher object (reused by the current thread).
+        Cipher cipher = CryptoEngines.cipher("RSA");
         // Decrypts text using the private key
         cipher.init(Cipher.DECRYPT_MODE, key);
         dectyptedText = cipher.doFinal(text);
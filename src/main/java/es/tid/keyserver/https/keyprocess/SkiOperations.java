@@ -0,0 +1,222 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.keyprocess;
+
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.core.lib.ErrorLogger;
+import es.tid.keyserver.https.jetty.exceptions.KeyServerException;
+import es.tid.keyserver.https.protocol.ErrorJSON;
+import es.tid.keyserver.https.protocol.SkiRequest;
+import org.slf4j.LoggerFactory;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.SignatureException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Private key lookup and SKI operations (RSA and ECDHE) shared by all the 
+ *     KeyServer listeners (JSON over HTTPS and binary protocol).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SkiOperations {
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SkiOperations.class);
+
+    /**
+     * Rate limited error log entries (private key operation exceptions).
+     */
+    private static final ErrorLogger ERRORS = new ErrorLogger(LOGGER);
+
+    /**
+     * Private key not found (shared stackless exception).
+     */
+    private static final KeyServerException NOT_FOUND = new KeyServerException(ErrorJSON.ERR_NOT_FOUND);
+
+    /**
+     * Private key or operation not valid (shared stackless exception).
+     */
+    private static final KeyServerException UNSPECIFIED = new KeyServerException(ErrorJSON.ERR_UNSPECIFIED);
+
+    /**
+     * Private keys cache (backed by the Redis database).
+     */
+    private final PrivateKeyCache keyCache;
+
+    /**
+     * Class constructor.
+     * @param keyCache Private keys cache object.
+     * @since v0.4.5
+     */
+    public SkiOperations(PrivateKeyCache keyCache){
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * Get private key from the private keys cache (or Redis DB) and check if
+     *     it's valid.
+     * @param spki Certificate hash to find the private key inside Redis DB.
+     * @return Private key object.
+     * @throws KeyServerException Exception with the error message generated.
+     * @since v0.4.5
+     */
+    public PrivateKey getPrivKey(String spki) throws KeyServerException {
+        return getPrivKey(spki, null);
+    }
+
+    /**
+     * Get private key from the private keys cache (or Redis DB) and check if
+     *     it's valid.
+     * @param spki Certificate hash to find the private key inside Redis DB.
+     * @param batchKeys Private keys already requested for a batch (null to 
+     *     query the cache).
+     * @return Private key object.
+     * @throws KeyServerException Exception with the error message generated.
+     * @since v0.4.5
+     */
+    public PrivateKey getPrivKey(String spki, Map<String, CompletableFuture<PrivateKey>> batchKeys) throws KeyServerException {
+        PrivateKey privKey;
+        try {
+            // Execute REDIS query (if not cached) trying to found private key for the incoming SKI.
+            if(batchKeys == null){
+                privKey = this.keyCache.get(spki);
+            } else {
+                privKey = this.keyCache.await(spki, batchKeys.get(spki));
+            }
+        } catch (NoSuchAlgorithmException ex) {
+            ERRORS.error("RSA Invalid Algorithm exception: {}", ex);
+            throw UNSPECIFIED;
+        } catch (InvalidKeySpecException ex) {
+            ERRORS.error("RSA Invalid Key exception: {}", ex);
+            throw UNSPECIFIED;
+        }
+        if(privKey == null){
+            throw NOT_FOUND;
+        }
+        return privKey;
+    }
+
+    /**
+     * This method executes the private key operation of a valid request 
+     *     (JSON protocol).
+     * @param skiRequest Validated request.
+     * @param privKey Private key object.
+     * @return Returns the output data encoded using base64 or the error code.
+     * @since v0.4.5
+     */
+    public String process(SkiRequest skiRequest, PrivateKey privKey){
+        try {
+            return Base64.getEncoder().encodeToString(execute(skiRequest, privKey));
+        } catch (KeyServerException e) {
+            return e.getMessage();
+        }
+    }
+
+    /**
+     * This method executes the private key operation of a valid request 
+     *     (binary protocols, the output is not base64 encoded).
+     * @param skiRequest Validated request.
+     * @param privKey Private key object.
+     * @return Array of bytes with the operation output.
+     * @throws KeyServerException Exception with the error code if the 
+     *     operation fails.
+     * @since v0.4.5
+     */
+    public byte[] execute(SkiRequest skiRequest, PrivateKey privKey) throws KeyServerException {
+        byte[] output;
+        try {
+            switch (skiRequest.getMethod()){
+                case ECDHE: // ECDHE Mode
+                    LOGGER.debug("Response from KeyServer for ECDH.");
+                    output = modeECDH(skiRequest, privKey);
+                    break;
+                case RSA: // RSA Mode
+                    LOGGER.debug("Response from KeyServer for RSA.");
+                    output = modeRSA(skiRequest, privKey);
+                    break;
+                default:
+                    // Not valid method.
+                    LOGGER.error("Incoming Request Processor: Not valid 'method' value={}.", skiRequest.getMethod());
+                    throw new KeyServerException(ErrorJSON.ERR_MALFORMED_REQUEST);
+            }
+            // Debug logger info:
+            LOGGER.debug("Incoming Request Processor: {}", skiRequest);
+        } catch (RuntimeException e) {
+            // Unexpected error inside the private key operation.
+            ERRORS.error("Incoming Request Processor: Unexpected error: {}", e);
+            throw UNSPECIFIED;
+        }
+        if(output == null){
+            throw UNSPECIFIED;
+        }
+        return output;
+    }
+
+    /**
+     * This method is used to sing the 'input' data.
+     * @param skiRequest Validated ECDHE request with the data to be signed.
+     * @param privKey Private key object.
+     * @return Signed data or null if something goes wrong.
+     */
+    private byte[] modeECDH(SkiRequest skiRequest, PrivateKey privKey) {
+        try {
+            // Sign data
+            return Ecdhe.calcRawOutput(skiRequest, privKey);
+        } catch (NoSuchAlgorithmException ex) {
+            ERRORS.error("ECDH No Such Algorithm Exception: {}", ex);
+        } catch (InvalidKeyException ex) {
+            ERRORS.error("ECDH Invalid Key Exception: {}", ex);
+        } catch (SignatureException ex) {
+            ERRORS.error("ECDH Signature Exception: {}", ex);
+        }
+        return null;
+    }
+
+    /**
+     * This method provide an easy way to decode a PreMaster secret codified
+     *     using RSA.
+     * @param skiRequest Validated RSA request with the codified PremasterSecret.
+     * @param privKey Private key object.
+     * @return PremasterSecret decoded or null if something goes wrong.
+     */
+    private byte[] modeRSA(SkiRequest skiRequest, PrivateKey privKey) {
+        try {
+            return Rsa.calcRawOutput(skiRequest, privKey);
+        } catch (NoSuchAlgorithmException ex) {
+            ERRORS.error("RSA No Such Algorithm Exception: {}", ex);
+        } catch (NoSuchPaddingException ex) {
+            ERRORS.error("RSA No Such Padding Exception: {}", ex);
+        } catch (InvalidKeyException ex) {
+            ERRORS.error("RSA Invalid Key Exception: {}", ex);
+        } catch (IllegalBlockSizeException ex) {
+            ERRORS.error("RSA Illegal Blocks Size Exception: {}", ex);
+        } catch (BadPaddingException ex) {
+            ERRORS.error("RSA Bad Padding Exception: {}", ex);
+        }
+        return null;
+    }
+}
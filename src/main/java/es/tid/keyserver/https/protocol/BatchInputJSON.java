@@ -0,0 +1,167 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Batch request from Proxy server: JSON array of InputJSON items, each one 
+ *     with a client "id" field.
+ * 
+ *     <p>Example: [{"id": 1, "protocol": "TLS 1.2", "method": "RSA", 
+ *     "spki": "...", "input": "..."}, ...]
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class BatchInputJSON {
+    /**
+     * Logging object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(BatchInputJSON.class);
+    
+    /**
+     * ID - Label of the client identifier field for each item.
+     */
+    public static final String ID = "id";
+    
+    /**
+     * Client identifiers of each item (String or Number).
+     */
+    private final List<Object> ids = new ArrayList<>();
+    
+    /**
+     * Request items. Null values for the items that are not JSON objects.
+     */
+    private final List<InputJSON> items = new ArrayList<>();
+    
+    /**
+     * Batch error code or null if the batch structure is valid.
+     */
+    private String error = null;
+    
+    /**
+     * Constructor using a String with the JSON array definition.
+     * @param stringData Contains the JSON array as String.
+     * @param maxItems Maximum number of items inside a batch request.
+     */
+    public BatchInputJSON(String stringData, int maxItems){
+        Object parsed;
+        try {
+            parsed = new JSONParser().parse(stringData);
+        } catch (ParseException ex) {
+            LOGGER.debug("Not valid batch input JSON: {}.", ex.toString());
+            error = ErrorJSON.ERR_MALFORMED_REQUEST;
+            return;
+        }
+        if(!(parsed instanceof JSONArray) || ((JSONArray) parsed).isEmpty()){
+            LOGGER.debug("Batch input JSON is not an array or it's empty.");
+            error = ErrorJSON.ERR_MALFORMED_REQUEST;
+            return;
+        }
+        JSONArray array = (JSONArray) parsed;
+        if(array.size() > maxItems){
+            LOGGER.debug("Batch input JSON: too many items ({} > {}).", array.size(), maxItems);
+            error = ErrorJSON.ERR_MALFORMED_REQUEST;
+            return;
+        }
+        for(Object element : array){
+            Object id = null;
+            InputJSON item = null;
+            if(element instanceof JSONObject){
+                JSONObject jsonItem = (JSONObject) element;
+                id = jsonItem.get(ID);
+                if((id instanceof String) || (id instanceof Number)){
+                    item = new InputJSON(jsonItem);
+                } else {
+                    id = null;
+                }
+            }
+            ids.add(id);
+            items.add(item);
+        }
+    }
+    
+    /**
+     * This method is used to verify the batch structure.
+     * @return Null if the batch is a non empty JSON array with less items than
+     *     the maximum. Otherwise this method returns the error name.
+     */
+    public String checkValidJSON(){
+        return error;
+    }
+    
+    /**
+     * This method is used to verify a single item of the batch.
+     * @param index Item index.
+     * @return Null if all item fields are correct, otherwise this method 
+     *     returns the error name.
+     */
+    public String checkValidItem(int index){
+        InputJSON item = items.get(index);
+        if(item == null){
+            return ErrorJSON.ERR_MALFORMED_REQUEST;
+        }
+        return item.checkValidJSON();
+    }
+    
+    /**
+     * Number of items inside the batch.
+     * @return Number of items.
+     */
+    public int size(){
+        return items.size();
+    }
+    
+    /**
+     * Get the client identifier of an item.
+     * @param index Item index.
+     * @return String or Number with the "id" field value. Null if not valid.
+     */
+    public Object getId(int index){
+        return ids.get(index);
+    }
+    
+    /**
+     * Get an item of the batch.
+     * @param index Item index.
+     * @return Item object or null if the item is not valid.
+     */
+    public InputJSON getItem(int index){
+        return items.get(index);
+    }
+    
+    /**
+     * Get the SPKI values of the valid items (without duplicates).
+     * @return Set of SPKI values.
+     */
+    public Set<String> getSpkis(){
+        Set<String> spkis = new LinkedHashSet<>();
+        for(int i = 0; i < items.size(); i++){
+            if(checkValidItem(i) == null){
+                spkis.add(items.get(i).getSpki());
+            }
+        }
+        return spkis;
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Batch response to Proxy server: JSON array with an "output" or "error" 
+ *     object for each request item, in the same order and with the same "id".
+ * 
+ *     <p>Example: [{"id": 1, "output": "..."}, {"id": 2, "error": "spki not
+ *     found"}]
+ * 
+ *     <p>Each item can be set from a different thread. The caller must 
+ *     guarantee that all items are set before calling {@link #toString()}.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class BatchOutputJSON {
+    /**
+     * Result of each item.
+     */
+    private final JSONObject[] results;
+    
+    /**
+     * Class constructor.
+     * @param size Number of items.
+     */
+    public BatchOutputJSON(int size){
+        results = new JSONObject[size];
+    }
+    
+    /**
+     * Sets the output data of an item.
+     * @param index Item index.
+     * @param id Client identifier of the item.
+     * @param data Output data.
+     */
+    public void setOutput(int index, Object id, String data){
+        setResult(index, id, new OutputJSON(data));
+    }
+    
+    /**
+     * Sets the error of an item.
+     * @param index Item index.
+     * @param id Client identifier of the item.
+     * @param errorCode Error code name. Please use static variables of 
+     *     {@link ErrorJSON}.
+     */
+    public void setError(int index, Object id, String errorCode){
+        setResult(index, id, new ErrorJSON(errorCode));
+    }
+    
+    /**
+     * This method returns the JSON array as String.
+     * @return JSON as string.
+     */
+    @Override
+    public String toString(){
+        JSONArray array = new JSONArray();
+        for(JSONObject result : results){
+            array.add(result);
+        }
+        return array.toJSONString();
+    }
+    
+    /**
+     * Returns the HTTP response body (JSON array followed by a line 
+     *     separator).
+     * @return Array of bytes with the UTF-8 response body.
+     * @since v0.4.5
+     */
+    public byte[] toResponseBody(){
+        return (toString() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Sets the result of an item.
+     * @param index Item index.
+     * @param id Client identifier of the item.
+     * @param response Output or error object.
+     */
+    private void setResult(int index, Object id, ResponseJSON response){
+        JSONObject result = response.toJSON();
+        result.put(BatchInputJSON.ID, id);
+        results[index] = result;
+    }
+}
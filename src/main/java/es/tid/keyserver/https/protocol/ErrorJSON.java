@@ -18,6 +18,8 @@ package es.tid.keyserver.https.protocol;
 
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Class for JSON Error structure.
  * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
@@ -47,6 +49,24 @@ public class ErrorJSON extends ResponseJSON {
      * Ericsson error code definition for unspecified error.
      */
     public static final String ERR_UNSPECIFIED = "unspecified error";
+    
+    /**
+     * Valid error codes.
+     */
+    private static final String[] ERROR_CODES = {ERR_MALFORMED_REQUEST, 
+        ERR_NOT_FOUND, ERR_REQUEST_DENIED, ERR_UNSPECIFIED};
+    
+    /**
+     * HTTP response body for each error code (same order as the error codes).
+     */
+    private static final byte[][] RESPONSE_BODIES = new byte[ERROR_CODES.length][];
+    
+    static {
+        for(int i = 0; i < ERROR_CODES.length; i++){
+            RESPONSE_BODIES[i] = (new ErrorJSON(ERROR_CODES[i]).toString() + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+    }
 
     /**
      * Create JSON output error using defined error codes.
@@ -63,15 +83,67 @@ public class ErrorJSON extends ResponseJSON {
         }
     }
     
+    /**
+     * Returns the HTTP response body (JSON followed by a line separator) for 
+     *     an error code. The bodies are created only one time, so the 
+     *     returned array is shared and must not be modified.
+     * @param errorCode Error code name. Please use static variables of this
+     *     class. If the error code is not valid, the "unspecified error" 
+     *     response is returned.
+     * @return Array of bytes with the UTF-8 response body.
+     * @since v0.4.5
+     */
+    public static byte[] getResponseBody(String errorCode){
+        int index = indexOf(errorCode);
+        if(index < 0){
+            LOGGER.warn("Not valid Error code for JSON Error.");
+            LOGGER.trace("Error User label: {}", errorCode);
+            index = indexOf(ERR_UNSPECIFIED);
+        }
+        return RESPONSE_BODIES[index];
+    }
+    
+    /**
+     * Checks if a string is one of the error codes of this class (for 
+     *     example, the result of a private key operation).
+     * @param errorCode String to check.
+     * @return True if it's one of the error codes.
+     * @since v0.4.5
+     */
+    public static boolean isErrorCode(String errorCode){
+        return indexOf(errorCode) >= 0;
+    }
+    
     /**
      * This method check if the current object is valid or not.
      * @param errorCode String with Ericsson API error names.
      * @return True if it's valid or false if not.
      */
     private boolean checkIfValid(String errorCode){
-        return errorCode.equalsIgnoreCase(ErrorJSON.ERR_MALFORMED_REQUEST) || 
-                errorCode.equalsIgnoreCase(ErrorJSON.ERR_NOT_FOUND) || 
-                errorCode.equalsIgnoreCase(ErrorJSON.ERR_REQUEST_DENIED) ||
-                errorCode.equalsIgnoreCase(ErrorJSON.ERR_UNSPECIFIED);
+        return isErrorCode(errorCode);
+    }
+    
+    /**
+     * Returns the position of an error code. The constants of this class 
+     *     are compared by reference first, so the usual lookup doesn't need 
+     *     string comparisons.
+     * @param errorCode Error code name.
+     * @return Error code position or -1 if it's not valid.
+     */
+    private static int indexOf(String errorCode){
+        if(errorCode == null){
+            return -1;
+        }
+        for(int i = 0; i < ERROR_CODES.length; i++){
+            if(ERROR_CODES[i] == errorCode){
+                return i;
+            }
+        }
+        for(int i = 0; i < ERROR_CODES.length; i++){
+            if(ERROR_CODES[i].equalsIgnoreCase(errorCode)){
+                return i;
+            }
+        }
+        return -1;
     }
 }
@@ -16,10 +16,10 @@
 package es.tid.keyserver.https.protocol;
 
 import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 
 /**
@@ -93,14 +93,14 @@ public class InputJSON {
     public final static String SHA_512 = "SHA-512";
     
     /**
-     * Contains the JSON object for the input JSON String.
+     * Parser error or null if the request is valid JSON.
      */
-    private JSONObject inputData;
+    private String parseError = null;
     
     /**
      * Protocol JSON field value.
      */
-    private String protocol = null;
+    private SkiProtocol protocol = null;
     
     /**
      * SPKI JSON field value.
@@ -110,30 +110,119 @@ public class InputJSON {
     /**
      * Method JSON field value.
      */
-    private String method = null;
+    private SkiMethod method = null;
     
     /**
      * Hash JSON field value.
      */
-    private String hash = null;
+    private SkiHash hash = null;
     
     /**
-     * Input JSON field value.
+     * Array that contains the input JSON field value.
+     */
+    private byte[] inputData = null;
+    
+    /**
+     * Input JSON field first byte.
+     */
+    private int inputOffset = 0;
+    
+    /**
+     * Input JSON field length.
+     */
+    private int inputLength = 0;
+    
+    /**
+     * Input JSON field value as String (created on demand).
      */
     private String input = null;
     
+    /**
+     * True after the first request check.
+     */
+    private boolean checked = false;
+    
+    /**
+     * Request check result (null if the request is valid).
+     */
+    private String checkError = null;
+    
+    /**
+     * Validated request (null if the request is not valid).
+     */
+    private SkiRequest request = null;
+    
     /**
      * Constructor using a String with the JSON definition.
      * @param stringData Contains the JSON as String.
      */
     public InputJSON(String stringData){
-        inputData = new JSONObject();  
-        try {
-            JSONParser parser = new JSONParser();
-            inputData = (JSONObject) parser.parse(stringData);
-            readFields();
-        } catch (ParseException ex) {
-            LOGGER.debug("Not valid input JSON: {}.", ex.toString());
+        this(stringData.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Constructor using the UTF-8 request body.
+     * @param data Request body.
+     * @since v0.4.5
+     */
+    public InputJSON(byte[] data){
+        this(data, 0, data.length, SkiRequestParser.MAX_REQUEST_SIZE);
+    }
+    
+    /**
+     * Constructor using a slice of an array with the UTF-8 request body.
+     * @param data Array with the request body.
+     * @param offset First byte of the request body.
+     * @param length Request body length.
+     * @param maxLength Maximum request body length. Longer requests are not 
+     *     valid.
+     * @since v0.4.5
+     */
+    public InputJSON(byte[] data, int offset, int length, int maxLength){
+        SkiRequestParser parser = SkiRequestParser.parse(data, offset, length, maxLength);
+        this.parseError = parser.getError();
+        this.protocol = parser.getProtocol();
+        this.spki = parser.getSpki();
+        this.method = parser.getMethod();
+        this.inputData = parser.getInputData();
+        this.inputOffset = parser.getInputOffset();
+        this.inputLength = parser.getInputLength();
+        if(this.method == SkiMethod.ECDHE){
+            // SHA1 is used if the hash field is not present.
+            this.hash = parser.isHashPresent() ? parser.getHash() : SkiHash.SHA1;
+        }
+    }
+    
+    /**
+     * Constructor using an already parsed JSON object (for example, an item 
+     *     of a batch request).
+     * @param jsonData JSON object with the request fields.
+     * @since v0.4.5
+     */
+    public InputJSON(JSONObject jsonData){
+        Object value = jsonData.get("protocol");
+        this.protocol = (value instanceof String) ? SkiProtocol.fromLabel((String) value) : null;
+        value = jsonData.get("method");
+        this.method = (value instanceof String) ? SkiMethod.fromLabel((String) value) : null;
+        value = jsonData.get("spki");
+        this.spki = (value instanceof String) ? (String) value : null;
+        value = jsonData.get("input");
+        if(value instanceof String){
+            this.input = (String) value;
+            this.inputData = this.input.getBytes(StandardCharsets.UTF_8);
+            this.inputLength = this.inputData.length;
+        }
+        if(this.method == SkiMethod.ECDHE){
+            value = jsonData.get("hash");
+            // SHA1 is used if the hash field is not present.
+            this.hash = (value == null) ? SkiHash.SHA1 : 
+                    (value instanceof String) ? SkiHash.fromLabel((String) value) : null;
+        }
+        for(String field : new String[] {"protocol", "method", "hash", "spki", "input"}){
+            if(jsonData.containsKey(field) && !(jsonData.get(field) instanceof String)){
+                LOGGER.debug("Not valid input JSON: '{}' field is not a string.", field);
+                this.parseError = ErrorJSON.ERR_MALFORMED_REQUEST;
+            }
         }
     }
     
@@ -142,6 +231,15 @@ public class InputJSON {
      * @return Method string ECDHE or RSA. Null is returned if is not defined.
      */
     public String getMethod(){
+        return (this.method == null) ? null : this.method.getLabel();
+    }
+    
+    /**
+     * Get "method" field from an input JSON message.
+     * @return Method value. Null is returned if is not defined or not valid.
+     * @since v0.4.5
+     */
+    public SkiMethod getMethodType(){
         return this.method;
     }
     
@@ -164,6 +262,16 @@ public class InputJSON {
      *     valid, this method returns null value.
      */
     public String getHash(){
+        return (this.hash == null) ? null : this.hash.getLabel();
+    }
+    
+    /**
+     * Get "hash" field from the input JSON message (see {@link #getHash()}).
+     * @return Hash value. If the read field is not valid, this method returns 
+     *     null value.
+     * @since v0.4.5
+     */
+    public SkiHash getHashType(){
         return this.hash;
     }
     
@@ -175,6 +283,16 @@ public class InputJSON {
      *     valid, this method returns 'null' value.
      */
     public String getProtocol(){
+        return (this.protocol == null) ? null : this.protocol.getLabel();
+    }
+    
+    /**
+     * Get "protocol" field from the input JSON message.
+     * @return Protocol value. If the read field is not valid, this method 
+     *     returns 'null' value.
+     * @since v0.4.5
+     */
+    public SkiProtocol getProtocolType(){
         return this.protocol;
     }
     
@@ -183,186 +301,114 @@ public class InputJSON {
      * @return String with the data content.
      */
     public String getInput(){
+        if((this.input == null) && (this.inputData != null)){
+            this.input = new String(this.inputData, this.inputOffset, this.inputLength, StandardCharsets.UTF_8);
+        }
         return this.input;
     }
     
     /**
-     * This method is used to verify the integrity of the JSON
+     * This method is used to verify the integrity of the JSON. The checks are
+     *     executed only the first time, next calls return the same result.
      * @return Null if all fields are correct, Otherwise this method returns the
      *     error name.
      */
     public String checkValidJSON(){
+        if(!checked){
+            checkError = validate();
+            checked = true;
+        }
+        return checkError;
+    }
+    
+    /**
+     * Returns the validated request with the "input" field already decoded.
+     * @return Validated request or null if the request is not valid.
+     * @since v0.4.5
+     */
+    public SkiRequest getRequest(){
+        checkValidJSON();
+        return request;
+    }
+
+    /**
+     * Request checks. If the request is valid, the validated request object 
+     *     is created.
+     * @return Null if all fields are correct, Otherwise this method returns the
+     *     error name.
+     * @since v0.4.5
+     */
+    private String validate(){
+        if(parseError != null){
+            return parseError;
+        }
         // Logger trace output
-        LOGGER.trace("Method CheckJSON (fields): protocol='{}', method='{}', hash='{}', spki='{}', input='{}'",
-                protocol, method, hash, spki, input);
+        if(LOGGER.isTraceEnabled()){
+            LOGGER.trace("Method CheckJSON (fields): protocol='{}', method='{}', hash='{}', spki='{}', input='{}'",
+                    protocol, method, hash, spki, inputLength);
+        }
         // Check if the JSON contains all fields "protocol", "method", "hash", "spki" and "input" fields.
-        if((protocol == null) || (method == null) || (spki == null) || (input == null)){
+        if((protocol == null) || (method == null) || (spki == null) || (inputData == null)){
             LOGGER.debug("Input JSON: Some required fields are not present.");
             return ErrorJSON.ERR_MALFORMED_REQUEST;
         } else {
             LOGGER.debug("Input JSON: 'Mehtod', 'spky' and 'input' fields are present.");
         }
         // Parsing input field from base64 to array of bytes
-        LOGGER.debug("JSON Input data to decode from base64: {}", input);
-        byte inputDataB[] = Base64.getDecoder().decode(input.trim());
-        LOGGER.trace("JSON Input Field number of Bytes: {}", inputDataB);
+        byte inputDataB[] = decodeInput();
+        if(inputDataB == null){
+            LOGGER.debug("Input JSON: 'input' field is not valid base64.");
+            return ErrorJSON.ERR_MALFORMED_REQUEST;
+        }
+        LOGGER.trace("JSON Input Field number of Bytes: {}", inputDataB.length);
         // Check the length of input
         switch(method){
-            case InputJSON.RSA:
-                if(inputDataB.length<10){ // If it has some bytes (less than 10 for example)
+            case RSA:
+                if(inputDataB.length<SkiRequest.RSA_MIN_INPUT){ // If it has some bytes (less than 10 for example)
                     LOGGER.debug("Input JSON: RSA length too short ({} bytes).", inputDataB.length);
                     return ErrorJSON.ERR_MALFORMED_REQUEST;
                 }
                 break;
-            case InputJSON.ECDHE:
+            default:
                 // Check if HASH field is present (not null) and valid.
                 if (hash == null){
                     LOGGER.debug("Input JSON: Hash field not valid ('{}').", hash);
                     return ErrorJSON.ERR_MALFORMED_REQUEST;
                 }
                 // Check JSON input length.
-                if(inputDataB.length!=133){ // 32+32+69 = 133 bytes 
+                if(inputDataB.length!=SkiRequest.ECDHE_INPUT){ // 32+32+69 = 133 bytes 
                     LOGGER.debug("Input JSON: ECDH length not valid ({} bytes).", inputDataB.length);
                     return ErrorJSON.ERR_MALFORMED_REQUEST;
                 }
                 break;
-            default:
-                LOGGER.debug("Input JSON: Not valid 'method' field for this input JSON ('{}').", method);
-                return ErrorJSON.ERR_MALFORMED_REQUEST;
         }
+        request = new SkiRequest(protocol, method, hash, spki, inputDataB);
         return null;
     }
 
     /**
-     * This method is used for extract information included inside JSON.
-     * @since v0.4.2
-     */
-    private void readFields() {
-        this.protocol = readProtocolField();
-        this.spki = readSpkiField();
-        this.method = readMethodField();
-        this.hash = readHashField();
-        this.input = readInputField();
-        this.inputData=null;    // Clean JSON variable.
-    }
-
-    /**
-     * Method used for read JSON "protocol" field.
-     * @return Protocol field value or null if it's not present.
-     * @since v0.4.2
-     */
-    private String readProtocolField() {
-        String readedProtocol = null;
-        if(inputData.containsKey("protocol")){
-            switch ((String) inputData.get("protocol")){
-                case InputJSON.TLS_1_0:
-                    readedProtocol = InputJSON.TLS_1_0;
-                    break;
-                case InputJSON.TLS_1_1:
-                    readedProtocol = InputJSON.TLS_1_1;
-                    break;
-                case InputJSON.TLS_1_2:
-                    readedProtocol = InputJSON.TLS_1_2;
-                    break;
-                case InputJSON.DTLS_1_0:
-                    readedProtocol = InputJSON.DTLS_1_0;
-                    break;
-                case InputJSON.DTLS_1_2:
-                    readedProtocol = InputJSON.DTLS_1_2;
-                    break;
-                default:
-                    LOGGER.debug("Not valid 'protocol' field {}.", inputData.get("protocol"));
-                    readedProtocol = null;
-                    break;
-            }
-        }
-        return readedProtocol;
-    }
-
-    /**
-     * Method used for read JSON "spki" field.
-     * @return Spki field value or null if it's not present.
-     * @since v0.4.2
+     * Decodes the "input" field from base64 (leading and trailing white 
+     *     spaces are ignored).
+     * @return Array of bytes or null if the field is not valid base64.
+     * @since v0.4.5
      */
-    private String readSpkiField() {
-        if(inputData.containsKey("spki")){
-            return (String) inputData.get("spki");
+    private byte[] decodeInput(){
+        int start = inputOffset;
+        int stop = inputOffset + inputLength;
+        while((start < stop) && ((inputData[start] & 0xFF) <= ' ')){
+            start++;
         }
-        return null;
-    }
-
-    /**
-     * Method used for read JSON "method" field.
-     * @return Method field value or null if it's not present.
-     * @since v0.4.2
-     */
-    private String readMethodField() {
-        String readedMethod = null;
-        if(inputData.containsKey("method")){
-            switch ((String) inputData.get("method")){
-                case InputJSON.ECDHE:
-                    readedMethod = InputJSON.ECDHE;
-                    break;
-                case InputJSON.RSA:
-                    readedMethod = InputJSON.RSA;
-                    break;
-                default:
-                    readedMethod = null;
-                    break;
-            }
+        while((stop > start) && ((inputData[stop - 1] & 0xFF) <= ' ')){
+            stop--;
         }
-        return readedMethod;
-    }
-
-    /**
-     * Method used for read JSON "hash" field.
-     * @return Hash field value or null if it's not present.
-     * @since v0.4.2
-     */
-    private String readHashField() {
-        if(this.method==null){
+        try {
+            ByteBuffer decoded = Base64.getDecoder().decode(ByteBuffer.wrap(inputData, start, stop - start));
+            byte[] output = new byte[decoded.remaining()];
+            decoded.get(output);
+            return output;
+        } catch (IllegalArgumentException ex) {
+            LOGGER.trace("Base64 decoder error: {}", ex.getMessage());
             return null;
         }
-        String readedHash = null;
-        if(this.getMethod().equalsIgnoreCase(ECDHE)){
-            if(inputData.containsKey("hash")){
-                switch ((String) inputData.get("hash")){
-                    case InputJSON.SHA1:
-                        readedHash = InputJSON.SHA1;
-                        break;
-                    case InputJSON.SHA_224:
-                        readedHash = InputJSON.SHA_224;
-                        break;
-                    case InputJSON.SHA_256:
-                        readedHash = InputJSON.SHA_256;
-                        break;
-                    case InputJSON.SHA_384:
-                        readedHash = InputJSON.SHA_384;
-                        break;
-                    case InputJSON.SHA_512:
-                        readedHash = InputJSON.SHA_512;
-                        break;
-                    default:
-                        LOGGER.debug("ECDHE not valid 'hash' field {}.", inputData.get("hash"));
-                        readedHash = null;
-                        break;
-                }
-            } else {
-                readedHash = SHA1;
-            }
-        }
-        return readedHash;
-    }
-
-    /**
-     * Method used for read JSON "input" field.
-     * @return Input field value or null if it's not present.
-     * @since v0.4.2
-     */
-    private String readInputField() {
-        if(inputData.containsKey("input")){
-            return (String) inputData.get("input");
-        }
-        return null;
     }
 }
@@ -15,6 +15,8 @@
  */
 package es.tid.keyserver.https.protocol;
 
+import java.nio.charset.StandardCharsets;
+
 /**
  * Class for JSON output data structure.
  * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
@@ -27,4 +29,58 @@ public class OutputJSON extends ResponseJSON{
     public OutputJSON(String data){
         super(ResponseJSON.OUTPUT, data);
     }
+    
+    /**
+     * Response body start.
+     */
+    private static final byte[] BODY_START = "{\"output\":\"".getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * Response body end (including the line separator).
+     */
+    private static final byte[] BODY_END = ("\"}" + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+    
+    /**
+     * Returns the HTTP response body (JSON followed by a line separator) for
+     *     the output data. Base64 data is written directly into an array with
+     *     the exact response length (the same JSON text of 
+     *     {@link #toString()}, "/" is escaped as "\/").
+     * @param data Output data (base64 encoded).
+     * @return Array of bytes with the UTF-8 response body.
+     * @since v0.4.5
+     */
+    public static byte[] toResponseBody(String data){
+        int length = BODY_START.length + data.length() + BODY_END.length;
+        for(int i = 0; i < data.length(); i++){
+            char c = data.charAt(i);
+            if(c == '/'){
+                length++;
+            } else if(!isBase64(c)){
+                // Not base64 data: JSON escaping is needed.
+                return (new OutputJSON(data).toString() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        byte[] body = new byte[length];
+        System.arraycopy(BODY_START, 0, body, 0, BODY_START.length);
+        int position = BODY_START.length;
+        for(int i = 0; i < data.length(); i++){
+            char c = data.charAt(i);
+            if(c == '/'){
+                body[position++] = '\\';
+            }
+            body[position++] = (byte) c;
+        }
+        System.arraycopy(BODY_END, 0, body, position, BODY_END.length);
+        return body;
+    }
+    
+    /**
+     * Checks if a character is part of the base64 alphabet.
+     * @param c Character.
+     * @return True if it's a base64 character.
+     */
+    private static boolean isBase64(char c){
+        return ((c >= 'A') && (c <= 'Z')) || ((c >= 'a') && (c <= 'z')) || 
+                ((c >= '0') && (c <= '9')) || (c == '+') || (c == '/') || (c == '=');
+    }
 }
@@ -55,6 +55,15 @@ class ResponseJSON {
         outputData.put(label, data);
     }
     
+    /**
+     * This method returns the JSON object with the output data.
+     * @return JSON object.
+     * @since v0.4.5
+     */
+    JSONObject toJSON(){
+        return outputData;
+    }
+    
     /**
      * This method returns an JSON as String.
      * @return JSON as string.
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+/**
+ * Binary encoding of the SKI requests and responses. The "spki", "input" 
+ *     and "output" fields are raw bytes (no JSON parse and no base64).
+ * 
+ *     <p>Request: protocol (1 byte), method (1 byte), hash (1 byte, zero for
+ *     RSA requests), spki (20 bytes, certificate SHA1) and input (the rest of
+ *     the bytes).
+ * 
+ *     <p>Response: status (1 byte) and output (the rest of the bytes, empty 
+ *     for errors).
+ * 
+ *     <p>Field codes are the position of the value inside the
+ *     {@link #PROTOCOLS}, {@link #METHODS} and {@link #HASHES} arrays plus 
+ *     one.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class SkiBinary {
+    /**
+     * SPKI field size in bytes (SHA1).
+     */
+    public static final int SPKI_SIZE = 20;
+    
+    /**
+     * Request size without the "input" field.
+     */
+    public static final int REQUEST_HEADER_SIZE = 3 + SPKI_SIZE;
+    
+    /**
+     * Response status: operation executed, the output is present.
+     */
+    public static final byte STATUS_OK = 0;
+    
+    /**
+     * Response status: "malformed request" error.
+     */
+    public static final byte STATUS_MALFORMED_REQUEST = 1;
+    
+    /**
+     * Response status: "spki not found" error.
+     */
+    public static final byte STATUS_NOT_FOUND = 2;
+    
+    /**
+     * Response status: "request denied" error.
+     */
+    public static final byte STATUS_REQUEST_DENIED = 3;
+    
+    /**
+     * Response status: "unspecified error".
+     */
+    public static final byte STATUS_UNSPECIFIED = 4;
+    
+    /**
+     * Response status: server busy (crypto workers queue full).
+     */
+    public static final byte STATUS_BUSY = 5;
+    
+    /**
+     * Protocol field values (code 1 is TLS 1.0).
+     */
+    private static final SkiProtocol[] PROTOCOLS = {SkiProtocol.TLS_1_0, 
+        SkiProtocol.TLS_1_1, SkiProtocol.TLS_1_2, SkiProtocol.DTLS_1_0, 
+        SkiProtocol.DTLS_1_2};
+    
+    /**
+     * Method field values (code 1 is RSA).
+     */
+    private static final SkiMethod[] METHODS = {SkiMethod.RSA, SkiMethod.ECDHE};
+    
+    /**
+     * Hash field values (code 1 is SHA1, code 0 means not present).
+     */
+    private static final SkiHash[] HASHES = {SkiHash.SHA1, SkiHash.SHA_224, 
+        SkiHash.SHA_256, SkiHash.SHA_384, SkiHash.SHA_512};
+    
+    /**
+     * Error responses indexed by status.
+     */
+    private static final byte[][] ERROR_RESPONSES = new byte[STATUS_BUSY + 1][];
+    
+    static {
+        for(int i = 0; i < ERROR_RESPONSES.length; i++){
+            ERROR_RESPONSES[i] = new byte[] {(byte) i};
+        }
+    }
+    
+    /**
+     * Upper case HEX digits.
+     */
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+    
+    /**
+     * Private constructor (static methods only).
+     */
+    private SkiBinary(){
+    }
+    
+    /**
+     * Decodes and checks a binary request (same checks as the JSON request).
+     * @param data Array with the request.
+     * @param offset Request first byte.
+     * @param length Request length.
+     * @return Validated request or null if it's malformed. The "input" field
+     *     is copied, so the array can be reused.
+     */
+    public static SkiRequest decodeRequest(byte[] data, int offset, int length){
+        if(length < REQUEST_HEADER_SIZE){
+            return null;
+        }
+        SkiProtocol protocol = fromCode(PROTOCOLS, data[offset]);
+        SkiMethod method = fromCode(METHODS, data[offset + 1]);
+        SkiHash hash = fromCode(HASHES, data[offset + 2]);
+        if((protocol == null) || (method == null)){
+            return null;
+        }
+        int inputLength = length - REQUEST_HEADER_SIZE;
+        if((method == SkiMethod.RSA) ? (inputLength < SkiRequest.RSA_MIN_INPUT) : 
+                (inputLength != SkiRequest.ECDHE_INPUT)){
+            // Checked before the copy.
+            return null;
+        }
+        byte[] input = new byte[inputLength];
+        System.arraycopy(data, offset + REQUEST_HEADER_SIZE, input, 0, inputLength);
+        return SkiRequest.create(protocol, method, hash, toHex(data, offset + 3, SPKI_SIZE), input);
+    }
+    
+    /**
+     * Encodes a binary request (clients and tests).
+     * @param protocol Protocol field value.
+     * @param method Method field value.
+     * @param hash Hash field value (null for RSA requests).
+     * @param spki Certificate SHA1 (20 bytes).
+     * @param input Input field value.
+     * @return Array of bytes with the request.
+     */
+    public static byte[] encodeRequest(SkiProtocol protocol, SkiMethod method, SkiHash hash, 
+            byte[] spki, byte[] input){
+        if(spki.length != SPKI_SIZE){
+            throw new IllegalArgumentException("SPKI must be " + SPKI_SIZE + " bytes.");
+        }
+        byte[] request = new byte[REQUEST_HEADER_SIZE + input.length];
+        request[0] = toCode(PROTOCOLS, protocol);
+        request[1] = toCode(METHODS, method);
+        request[2] = toCode(HASHES, hash);
+        System.arraycopy(spki, 0, request, 3, SPKI_SIZE);
+        System.arraycopy(input, 0, request, REQUEST_HEADER_SIZE, input.length);
+        return request;
+    }
+    
+    /**
+     * Encodes a binary response with the operation output.
+     * @param output Operation output.
+     * @return Array of bytes with the response.
+     * @since v0.4.5
+     */
+    public static byte[] encodeResponse(byte[] output){
+        byte[] response = new byte[1 + output.length];
+        response[0] = STATUS_OK;
+        System.arraycopy(output, 0, response, 1, output.length);
+        return response;
+    }
+    
+    /**
+     * Returns the binary response for an error code. The responses are 
+     *     created only one time, so the returned array is shared and must 
+     *     not be modified.
+     * @param errorCode Error code (see {@link ErrorJSON}).
+     * @return Array of bytes with the response (status only).
+     * @since v0.4.5
+     */
+    public static byte[] getErrorResponse(String errorCode){
+        return ERROR_RESPONSES[getStatus(errorCode)];
+    }
+    
+    /**
+     * Returns the response status for an error code.
+     * @param errorCode Error code (see {@link ErrorJSON}).
+     * @return Response status. Unknown errors return 
+     *     {@link #STATUS_UNSPECIFIED}.
+     */
+    public static byte getStatus(String errorCode){
+        if(ErrorJSON.ERR_MALFORMED_REQUEST.equals(errorCode)){
+            return STATUS_MALFORMED_REQUEST;
+        } else if(ErrorJSON.ERR_NOT_FOUND.equals(errorCode)){
+            return STATUS_NOT_FOUND;
+        } else if(ErrorJSON.ERR_REQUEST_DENIED.equals(errorCode)){
+            return STATUS_REQUEST_DENIED;
+        }
+        return STATUS_UNSPECIFIED;
+    }
+    
+    /**
+     * Returns the upper case HEX string of the data (SPKI format used as 
+     *     database index).
+     * @param data Array with the data.
+     * @param offset First byte.
+     * @param length Number of bytes.
+     * @return HEX string.
+     */
+    public static String toHex(byte[] data, int offset, int length){
+        char[] hex = new char[length * 2];
+        for(int i = 0; i < length; i++){
+            int value = data[offset + i] & 0xFF;
+            hex[i * 2] = HEX[value >>> 4];
+            hex[i * 2 + 1] = HEX[value & 0x0F];
+        }
+        return new String(hex);
+    }
+    
+    /**
+     * Returns the field value for a code.
+     * @param values Field values.
+     * @param code Field code.
+     * @return Field value or null if the code is not valid (or zero).
+     */
+    private static <T> T fromCode(T[] values, byte code){
+        int index = (code & 0xFF) - 1;
+        return ((index >= 0) && (index < values.length)) ? values[index] : null;
+    }
+    
+    /**
+     * Returns the code for a field value.
+     * @param values Field values.
+     * @param value Field value (null for zero).
+     * @return Field code.
+     */
+    private static byte toCode(Object[] values, Object value){
+        for(int i = 0; i < values.length; i++){
+            if(values[i] == value){
+                return (byte) (i + 1);
+            }
+        }
+        return 0;
+    }
+}
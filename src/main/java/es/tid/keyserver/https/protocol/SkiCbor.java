@@ -0,0 +1,381 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CBOR (RFC 7049) encoding of the SKI requests and responses. Only the 
+ *     subset used by the SKI messages is supported (definite length maps, 
+ *     text and byte strings, integers and simple values), so no external 
+ *     library is needed.
+ * 
+ *     <p>Request: map with the same field names as the JSON request. The
+ *     "protocol", "method" and "hash" fields are text strings with the JSON
+ *     values, "spki" is a byte string (20 bytes, certificate SHA1) and 
+ *     "input" is a byte string (no base64). Unknown fields are ignored.
+ * 
+ *     <p>Response: map with the "output" byte string or the "error" text 
+ *     string (same error codes as the JSON response).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class SkiCbor {
+    /**
+     * Major type: unsigned integer.
+     */
+    private static final int UNSIGNED = 0;
+    
+    /**
+     * Major type: negative integer.
+     */
+    private static final int NEGATIVE = 1;
+    
+    /**
+     * Major type: byte string.
+     */
+    private static final int BYTES = 2;
+    
+    /**
+     * Major type: text string.
+     */
+    private static final int TEXT = 3;
+    
+    /**
+     * Major type: map.
+     */
+    private static final int MAP = 5;
+    
+    /**
+     * Major type: simple values (false, true, null).
+     */
+    private static final int SIMPLE = 7;
+    
+    /**
+     * Maximum number of fields inside a request map.
+     */
+    private static final int MAX_FIELDS = 16;
+    
+    /**
+     * Request field names (UTF-8).
+     */
+    private static final byte[][] FIELDS = {utf8("protocol"), utf8("method"), 
+        utf8("hash"), utf8("spki"), utf8("input")};
+    
+    /**
+     * Response body start for the output (map with one field and its name).
+     */
+    private static final byte[] OUTPUT_START = concat(new byte[] {(byte) 0xA1}, 
+            textString(ResponseJSON.OUTPUT));
+    
+    /**
+     * Error codes (same order as the error responses).
+     */
+    private static final String[] ERROR_CODES = {ErrorJSON.ERR_MALFORMED_REQUEST, 
+        ErrorJSON.ERR_NOT_FOUND, ErrorJSON.ERR_REQUEST_DENIED, ErrorJSON.ERR_UNSPECIFIED};
+    
+    /**
+     * Error response for each error code.
+     */
+    private static final byte[][] ERROR_RESPONSES = new byte[ERROR_CODES.length][];
+    
+    static {
+        for(int i = 0; i < ERROR_CODES.length; i++){
+            ERROR_RESPONSES[i] = concat(new byte[] {(byte) 0xA1}, 
+                    concat(textString(ResponseJSON.ERROR), textString(ERROR_CODES[i])));
+        }
+    }
+    
+    /**
+     * Private constructor (static methods only).
+     */
+    private SkiCbor(){
+    }
+    
+    /**
+     * Decodes and checks a CBOR request (same checks as the JSON request, 
+     *     SHA1 is used if the "hash" field is not present).
+     * @param data Array with the request.
+     * @param offset Request first byte.
+     * @param length Request length.
+     * @return Validated request or null if it's malformed. The "input" field
+     *     is copied, so the array can be reused.
+     */
+    public static SkiRequest decodeRequest(byte[] data, int offset, int length){
+        Decoder decoder = new Decoder(data, offset, offset + length);
+        int fields = decoder.readHead(MAP);
+        if((fields < 0) || (fields > MAX_FIELDS)){
+            return null;
+        }
+        SkiProtocol protocol = null;
+        SkiMethod method = null;
+        SkiHash hash = null;
+        boolean hashPresent = false;
+        String spki = null;
+        byte[] input = null;
+        for(int i = 0; i < fields; i++){
+            int keyLength = decoder.readHead(TEXT);
+            if((keyLength < 0) || !decoder.skip(keyLength)){
+                return null;
+            }
+            int field = fieldIndex(data, decoder.pos - keyLength, keyLength);
+            int valueType = decoder.peekType();
+            int valueLength = decoder.readHead(valueType);
+            if((valueLength < 0) || ((valueType == BYTES || valueType == TEXT) && !decoder.skip(valueLength))){
+                return null;
+            }
+            int valueStart = decoder.pos - valueLength;
+            switch(field){
+                case 0:
+                    protocol = (valueType == TEXT) ? SkiProtocol.fromBytes(data, valueStart, valueLength) : null;
+                    break;
+                case 1:
+                    method = (valueType == TEXT) ? SkiMethod.fromBytes(data, valueStart, valueLength) : null;
+                    break;
+                case 2:
+                    hashPresent = true;
+                    hash = (valueType == TEXT) ? SkiHash.fromBytes(data, valueStart, valueLength) : null;
+                    break;
+                case 3:
+                    spki = ((valueType == BYTES) && (valueLength == SkiBinary.SPKI_SIZE)) ? 
+                            SkiBinary.toHex(data, valueStart, valueLength) : null;
+                    break;
+                case 4:
+                    if(valueType == BYTES){
+                        input = new byte[valueLength];
+                        System.arraycopy(data, valueStart, input, 0, valueLength);
+                    }
+                    break;
+                default:
+                    // Unknown field: only scalar values are skipped.
+                    if((valueType != UNSIGNED) && (valueType != NEGATIVE) && (valueType != BYTES) 
+                            && (valueType != TEXT) && (valueType != SIMPLE)){
+                        return null;
+                    }
+                    break;
+            }
+        }
+        if((decoder.pos != decoder.end) || (hashPresent && (hash == null))){
+            return null;
+        }
+        if(!hashPresent && (method == SkiMethod.ECDHE)){
+            hash = SkiHash.SHA1;
+        }
+        return SkiRequest.create(protocol, method, hash, spki, input);
+    }
+    
+    /**
+     * Encodes a CBOR request (clients and tests).
+     * @param protocol Protocol field value.
+     * @param method Method field value.
+     * @param hash Hash field value (null if not present).
+     * @param spki Certificate SHA1 (20 bytes).
+     * @param input Input field value.
+     * @return Array of bytes with the request.
+     */
+    public static byte[] encodeRequest(SkiProtocol protocol, SkiMethod method, SkiHash hash, 
+            byte[] spki, byte[] input){
+        byte[] request = concat(new byte[] {(byte) (0xA0 | ((hash == null) ? 4 : 5))}, 
+                concat(textString("protocol"), textString(protocol.getLabel())));
+        request = concat(request, concat(textString("method"), textString(method.getLabel())));
+        if(hash != null){
+            request = concat(request, concat(textString("hash"), textString(hash.getLabel())));
+        }
+        request = concat(request, concat(textString("spki"), byteString(spki)));
+        return concat(request, concat(textString("input"), byteString(input)));
+    }
+    
+    /**
+     * Encodes a CBOR response with the operation output.
+     * @param output Operation output.
+     * @return Array of bytes with the response.
+     */
+    public static byte[] encodeResponse(byte[] output){
+        return concat(OUTPUT_START, byteString(output));
+    }
+    
+    /**
+     * Returns the CBOR response for an error code. The responses are created 
+     *     only one time, so the returned array is shared and must not be 
+     *     modified.
+     * @param errorCode Error code (see {@link ErrorJSON}). Unknown error 
+     *     codes return the "unspecified error" response.
+     * @return Array of bytes with the response.
+     */
+    public static byte[] getErrorResponse(String errorCode){
+        for(int i = 0; i < ERROR_CODES.length; i++){
+            if(ERROR_CODES[i].equals(errorCode)){
+                return ERROR_RESPONSES[i];
+            }
+        }
+        return ERROR_RESPONSES[ERROR_CODES.length - 1];
+    }
+    
+    /**
+     * Returns the request field index for a field name.
+     * @param data Array with the field name.
+     * @param offset Field name first byte.
+     * @param length Field name length.
+     * @return Field index or -1 if it's not a request field.
+     */
+    private static int fieldIndex(byte[] data, int offset, int length){
+        for(int i = 0; i < FIELDS.length; i++){
+            if(SkiRequestParser.matches(FIELDS[i], data, offset, length)){
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Encodes a data item head.
+     * @param majorType Major type.
+     * @param value Length or value.
+     * @return Array of bytes with the head.
+     */
+    private static byte[] head(int majorType, int value){
+        int type = majorType << 5;
+        if(value < 24){
+            return new byte[] {(byte) (type | value)};
+        } else if(value < 0x100){
+            return new byte[] {(byte) (type | 24), (byte) value};
+        } else if(value < 0x10000){
+            return new byte[] {(byte) (type | 25), (byte) (value >>> 8), (byte) value};
+        }
+        return new byte[] {(byte) (type | 26), (byte) (value >>> 24), (byte) (value >>> 16), 
+            (byte) (value >>> 8), (byte) value};
+    }
+    
+    /**
+     * Encodes a text string.
+     * @param value String value.
+     * @return Array of bytes with the text string.
+     */
+    private static byte[] textString(String value){
+        byte[] text = utf8(value);
+        return concat(head(TEXT, text.length), text);
+    }
+    
+    /**
+     * Encodes a byte string.
+     * @param value Byte string value.
+     * @return Array of bytes with the byte string.
+     */
+    private static byte[] byteString(byte[] value){
+        return concat(head(BYTES, value.length), value);
+    }
+    
+    /**
+     * Returns the UTF-8 bytes of a string.
+     * @param value String value.
+     * @return Array of bytes.
+     */
+    private static byte[] utf8(String value){
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Concatenates two arrays.
+     * @param first First array.
+     * @param second Second array.
+     * @return New array with both arrays.
+     */
+    private static byte[] concat(byte[] first, byte[] second){
+        byte[] result = new byte[first.length + second.length];
+        System.arraycopy(first, 0, result, 0, first.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+    
+    /**
+     * CBOR data items reader.
+     */
+    private static final class Decoder {
+        /**
+         * Array with the data items.
+         */
+        private final byte[] data;
+        
+        /**
+         * Position of the next byte.
+         */
+        private int pos;
+        
+        /**
+         * Position after the last byte.
+         */
+        private final int end;
+        
+        /**
+         * Class constructor.
+         * @param data Array with the data items.
+         * @param pos First byte.
+         * @param end Position after the last byte.
+         */
+        Decoder(byte[] data, int pos, int end){
+            this.data = data;
+            this.pos = pos;
+            this.end = end;
+        }
+        
+        /**
+         * Returns the major type of the next data item.
+         * @return Major type or -1 if there are no more bytes.
+         */
+        int peekType(){
+            return (pos < end) ? (data[pos] & 0xFF) >>> 5 : -1;
+        }
+        
+        /**
+         * Reads a data item head.
+         * @param majorType Expected major type.
+         * @return Head value (length for strings and maps) or -1 if the type 
+         *     is not the expected one, the length is indefinite or the value 
+         *     is too big.
+         */
+        int readHead(int majorType){
+            if((pos >= end) || (((data[pos] & 0xFF) >>> 5) != majorType)){
+                return -1;
+            }
+            int info = data[pos++] & 0x1F;
+            if(info < 24){
+                return info;
+            }
+            int size = (info == 24) ? 1 : (info == 25) ? 2 : (info == 26) ? 4 : 0;
+            if((size == 0) || (end - pos < size)){
+                return -1;
+            }
+            long value = 0;
+            for(int i = 0; i < size; i++){
+                value = (value << 8) | (data[pos++] & 0xFF);
+            }
+            return (value > Integer.MAX_VALUE) ? -1 : (int) value;
+        }
+        
+        /**
+         * Skips the bytes of a string.
+         * @param length String length.
+         * @return False if there are not enough bytes.
+         */
+        boolean skip(int length){
+            if(end - pos < length){
+                return false;
+            }
+            pos += length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.util.Base64;
+
+/**
+ * SKI request and response body formats of the HTTPS endpoint. The request
+ *     format is selected by the Content-Type header and the response format 
+ *     by the Accept header (JSON is the default format).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public enum SkiFormat {
+    /**
+     * JSON body (base64 "input" and "output" fields).
+     */
+    JSON("application/json"),
+    
+    /**
+     * Binary body (see {@link SkiBinary}).
+     */
+    BINARY("application/octet-stream"),
+    
+    /**
+     * CBOR body (see {@link SkiCbor}).
+     */
+    CBOR("application/cbor");
+    
+    /**
+     * Media type.
+     */
+    private final String mediaType;
+    
+    /**
+     * Enum constructor.
+     * @param mediaType Media type.
+     */
+    SkiFormat(String mediaType){
+        this.mediaType = mediaType;
+    }
+    
+    /**
+     * Returns the media type (Content-Type header value).
+     * @return Media type.
+     */
+    public String getMediaType(){
+        return mediaType;
+    }
+    
+    /**
+     * Returns the request format for a Content-Type header value.
+     * @param contentType Content-Type header value (may be null).
+     * @return Request format. Unknown or missing media types return
+     *     {@link #JSON}.
+     */
+    public static SkiFormat fromContentType(String contentType){
+        if(contentType == null){
+            return JSON;
+        }
+        SkiFormat format = fromMediaType(contentType, 0, contentType.length());
+        return (format == null) ? JSON : format;
+    }
+    
+    /**
+     * Returns the response format for an Accept header value. The first 
+     *     supported media type of the list is used (quality values are not 
+     *     compared).
+     * @param accept Accept header value (may be null).
+     * @param requestFormat Request format, used if the Accept header is not
+     *     present, it's a wildcard or it doesn't contain a supported type.
+     * @return Response format.
+     */
+    public static SkiFormat fromAccept(String accept, SkiFormat requestFormat){
+        if(accept == null){
+            return requestFormat;
+        }
+        int start = 0;
+        while(start < accept.length()){
+            int end = accept.indexOf(',', start);
+            if(end < 0){
+                end = accept.length();
+            }
+            SkiFormat format = fromMediaType(accept, start, end);
+            if(format != null){
+                return format;
+            }
+            start = end + 1;
+        }
+        return requestFormat;
+    }
+    
+    /**
+     * Decodes and checks a request body.
+     * @param data Array with the request body.
+     * @param offset Body first byte.
+     * @param length Body length.
+     * @return Validated request or null if it's malformed.
+     */
+    public SkiRequest decodeRequest(byte[] data, int offset, int length){
+        switch(this){
+            case BINARY:
+                return SkiBinary.decodeRequest(data, offset, length);
+            case CBOR:
+                return SkiCbor.decodeRequest(data, offset, length);
+            default:
+                return new InputJSON(data, offset, length, length).getRequest();
+        }
+    }
+    
+    /**
+     * Returns the response body for the private key operation output.
+     * @param output Operation output (not base64 encoded).
+     * @return Array of bytes with the response body.
+     */
+    public byte[] getOutputBody(byte[] output){
+        switch(this){
+            case BINARY:
+                return SkiBinary.encodeResponse(output);
+            case CBOR:
+                return SkiCbor.encodeResponse(output);
+            default:
+                return OutputJSON.toResponseBody(Base64.getEncoder().encodeToString(output));
+        }
+    }
+    
+    /**
+     * Returns the response body for an error code. The returned array is 
+     *     shared and must not be modified.
+     * @param errorCode Error code (see {@link ErrorJSON}).
+     * @return Array of bytes with the response body.
+     */
+    public byte[] getErrorBody(String errorCode){
+        switch(this){
+            case BINARY:
+                return SkiBinary.getErrorResponse(errorCode);
+            case CBOR:
+                return SkiCbor.getErrorResponse(errorCode);
+            default:
+                return ErrorJSON.getResponseBody(errorCode);
+        }
+    }
+    
+    /**
+     * Returns the format of a media type (parameters and spaces are 
+     *     ignored).
+     * @param value Header value.
+     * @param start Media type first char.
+     * @param end Position after the media type last char.
+     * @return Format or null if the media type is not supported.
+     */
+    private static SkiFormat fromMediaType(String value, int start, int end){
+        int parameters = value.indexOf(';', start);
+        if((parameters >= 0) && (parameters < end)){
+            end = parameters;
+        }
+        while((start < end) && (value.charAt(start) == ' ')){
+            start++;
+        }
+        while((end > start) && (value.charAt(end - 1) == ' ')){
+            end--;
+        }
+        for(SkiFormat format : values()){
+            if((format.mediaType.length() == end - start) 
+                    && value.regionMatches(true, start, format.mediaType, 0, end - start)){
+                return format;
+            }
+        }
+        return null;
+    }
+}
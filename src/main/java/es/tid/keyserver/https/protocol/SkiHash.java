@@ -0,0 +1,123 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Values of the SKI request "hash" field (ECDHE only).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public enum SkiHash {
+    /**
+     * SHA1 (MD5 + SHA1 signature).
+     */
+    SHA1(InputJSON.SHA1, "SHA1withRSA"),
+    
+    /**
+     * SHA-224.
+     */
+    SHA_224(InputJSON.SHA_224, "SHA224withRSA"),
+    
+    /**
+     * SHA-256.
+     */
+    SHA_256(InputJSON.SHA_256, "SHA256withRSA"),
+    
+    /**
+     * SHA-384.
+     */
+    SHA_384(InputJSON.SHA_384, "SHA384withRSA"),
+    
+    /**
+     * SHA-512.
+     */
+    SHA_512(InputJSON.SHA_512, "SHA512withRSA");
+    
+    /**
+     * Field value inside the JSON request.
+     */
+    private final String label;
+    
+    /**
+     * Field value as UTF-8 bytes.
+     */
+    private final byte[] labelBytes;
+    
+    /**
+     * Java signature algorithm name.
+     */
+    private final String signatureAlgorithm;
+    
+    /**
+     * Enum constructor.
+     * @param label Field value inside the JSON request.
+     * @param signatureAlgorithm Java signature algorithm name.
+     */
+    SkiHash(String label, String signatureAlgorithm){
+        this.label = label;
+        this.labelBytes = label.getBytes(StandardCharsets.UTF_8);
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+    
+    /**
+     * Field value inside the JSON request.
+     * @return String with the field value.
+     */
+    public String getLabel(){
+        return label;
+    }
+    
+    /**
+     * Java signature algorithm name for this hash.
+     * @see <a href="http://docs.oracle.com/javase/7/docs/technotes/guides/security/StandardNames.html#Signature">Java Standard Names: Signature Algorithms</a>
+     * @return String with the algorithm name (for example SHA256withRSA).
+     */
+    public String getSignatureAlgorithm(){
+        return signatureAlgorithm;
+    }
+    
+    /**
+     * Returns the hash for a JSON field value.
+     * @param label Field value.
+     * @return Hash or null if the value is not valid.
+     */
+    public static SkiHash fromLabel(String label){
+        for(SkiHash value : values()){
+            if(value.label.equals(label)){
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the hash for a JSON field value without creating a String.
+     * @param data Array with the field value.
+     * @param offset Field value first byte.
+     * @param length Field value length.
+     * @return Hash or null if the value is not valid.
+     */
+    static SkiHash fromBytes(byte[] data, int offset, int length){
+        for(SkiHash value : values()){
+            if(SkiRequestParser.matches(value.labelBytes, data, offset, length)){
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Values of the SKI request "protocol" field.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public enum SkiProtocol {
+    /**
+     * TLS 1.0.
+     */
+    TLS_1_0(InputJSON.TLS_1_0),
+    
+    /**
+     * TLS 1.1.
+     */
+    TLS_1_1(InputJSON.TLS_1_1),
+    
+    /**
+     * TLS 1.2.
+     */
+    TLS_1_2(InputJSON.TLS_1_2),
+    
+    /**
+     * DTLS 1.0.
+     */
+    DTLS_1_0(InputJSON.DTLS_1_0),
+    
+    /**
+     * DTLS 1.2.
+     */
+    DTLS_1_2(InputJSON.DTLS_1_2);
+    
+    /**
+     * Field value inside the JSON request.
+     */
+    private final String label;
+    
+    /**
+     * Field value as UTF-8 bytes.
+     */
+    private final byte[] labelBytes;
+    
+    /**
+     * Enum constructor.
+     * @param label Field value inside the JSON request.
+     */
+    SkiProtocol(String label){
+        this.label = label;
+        this.labelBytes = label.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Field value inside the JSON request.
+     * @return String with the field value.
+     */
+    public String getLabel(){
+        return label;
+    }
+    
+    /**
+     * Returns the protocol for a JSON field value.
+     * @param label Field value.
+     * @return Protocol or null if the value is not valid.
+     */
+    public static SkiProtocol fromLabel(String label){
+        for(SkiProtocol value : values()){
+            if(value.label.equals(label)){
+                return value;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the protocol for a JSON field value without creating a String.
+     * @param data Array with the field value.
+     * @param offset Field value first byte.
+     * @param length Field value length.
+     * @return Protocol or null if the value is not valid.
+     */
+    static SkiProtocol fromBytes(byte[] data, int offset, int length){
+        for(SkiProtocol value : values()){
+            if(SkiRequestParser.matches(value.labelBytes, data, offset, length)){
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+/**
+ * Validated SKI request. It's created once by {@link InputJSON#getRequest()}
+ *     (or by the binary and CBOR decoders) after the request checks, and it's used by the private key operations 
+ *     so the "input" field is decoded only one time.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class SkiRequest {
+    /**
+     * Minimum RSA "input" length in bytes (encrypted PremasterSecret).
+     */
+    static final int RSA_MIN_INPUT = 10;
+    
+    /**
+     * ECDHE "input" length in bytes (32 + 32 + 69: client random, server 
+     *     random and server parameters).
+     */
+    static final int ECDHE_INPUT = 133;
+    
+    /**
+     * Protocol field value.
+     */
+    private final SkiProtocol protocol;
+    
+    /**
+     * Method field value.
+     */
+    private final SkiMethod method;
+    
+    /**
+     * Hash field value (null for RSA requests).
+     */
+    private final SkiHash hash;
+    
+    /**
+     * SPKI field value (HEX encoded).
+     */
+    private final String spki;
+    
+    /**
+     * Input field value decoded from base64.
+     */
+    private final byte[] input;
+    
+    /**
+     * Class constructor.
+     * @param protocol Protocol field value.
+     * @param method Method field value.
+     * @param hash Hash field value (null for RSA requests).
+     * @param spki SPKI field value.
+     * @param input Input field value decoded from base64. The array is not 
+     *     copied.
+     */
+    SkiRequest(SkiProtocol protocol, SkiMethod method, SkiHash hash, String spki, byte[] input){
+        this.protocol = protocol;
+        this.method = method;
+        this.hash = hash;
+        this.spki = spki;
+        this.input = input;
+    }
+    
+    /**
+     * Creates a request after the checks shared by the binary encodings 
+     *     (the JSON request checks its fields while they are parsed).
+     * @param protocol Protocol field value.
+     * @param method Method field value.
+     * @param hash Hash field value (null for RSA requests).
+     * @param spki SPKI field value.
+     * @param input Input field value. The array is not copied.
+     * @return Validated request or null if a field is not valid.
+     */
+    static SkiRequest create(SkiProtocol protocol, SkiMethod method, SkiHash hash, String spki, byte[] input){
+        if((protocol == null) || (method == null) || (spki == null) || (input == null)){
+            return null;
+        }
+        switch(method){
+            case RSA:
+                if(input.length < RSA_MIN_INPUT){
+                    return null;
+                }
+                break;
+            default:
+                if((hash == null) || (input.length != ECDHE_INPUT)){
+                    return null;
+                }
+                break;
+        }
+        return new SkiRequest(protocol, method, hash, spki, input);
+    }
+    
+    /**
+     * Get "protocol" field value.
+     * @return Protocol value.
+     */
+    public SkiProtocol getProtocol(){
+        return protocol;
+    }
+    
+    /**
+     * Get "method" field value.
+     * @return Method value.
+     */
+    public SkiMethod getMethod(){
+        return method;
+    }
+    
+    /**
+     * Get "hash" field value. If an ECDHE request doesn't contain the "hash" 
+     *     field, SHA1 is returned.
+     * @return Hash value or null for RSA requests.
+     */
+    public SkiHash getHash(){
+        return hash;
+    }
+    
+    /**
+     * Get "spki" field value.
+     * @return SPKI value HEX encoded.
+     */
+    public String getSpki(){
+        return spki;
+    }
+    
+    /**
+     * Get "input" field value decoded from base64. The returned array is 
+     *     shared and must not be modified.
+     * @return Array of bytes with the input data.
+     */
+    public byte[] getInput(){
+        return input;
+    }
+    
+    /**
+     * Returns the request fields for log entries (the input is not included).
+     * @return String with the request fields.
+     */
+    @Override
+    public String toString(){
+        return "protocol=" + protocol + ", method=" + method + ", hash=" + hash + 
+                ", spki=" + spki + ", input=" + input.length + " bytes";
+    }
+}
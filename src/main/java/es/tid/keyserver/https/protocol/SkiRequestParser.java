@@ -0,0 +1,676 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Single pass parser for the SKI JSON request.
+ * 
+ *     <p>The parser reads the UTF-8 request bytes directly. The "protocol", 
+ *     "method" and "hash" values are matched against the valid values 
+ *     without creating intermediate strings, and the "input" field is 
+ *     returned as a slice of the request array. Unknown fields are skipped.
+ * 
+ *     <p>Not valid JSON, oversized bodies, duplicated fields and not string
+ *     values for the SKI fields are rejected as "malformed request" as soon as
+ *     they are found.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class SkiRequestParser {
+    /**
+     * Logging object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(SkiRequestParser.class);
+    
+    /**
+     * Default maximum request size in bytes.
+     */
+    public static final int MAX_REQUEST_SIZE = 8192;
+    
+    /**
+     * Maximum nesting level inside unknown fields.
+     */
+    private static final int MAX_DEPTH = 16;
+    
+    /**
+     * Index of the "protocol" field.
+     */
+    private static final int PROTOCOL = 0;
+    
+    /**
+     * Index of the "method" field.
+     */
+    private static final int METHOD = 1;
+    
+    /**
+     * Index of the "hash" field.
+     */
+    private static final int HASH = 2;
+    
+    /**
+     * Index of the "spki" field.
+     */
+    private static final int SPKI = 3;
+    
+    /**
+     * Index of the "input" field.
+     */
+    private static final int INPUT = 4;
+    
+    /**
+     * SKI field names (same order as the field indexes).
+     */
+    private static final String[] FIELDS = {"protocol", "method", "hash", "spki", "input"};
+    
+    /**
+     * SKI field names as UTF-8 bytes.
+     */
+    private static final byte[][] FIELDS_BYTES = new byte[FIELDS.length][];
+    
+    static {
+        for(int i = 0; i < FIELDS.length; i++){
+            FIELDS_BYTES[i] = FIELDS[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * Request data.
+     */
+    private final byte[] data;
+    
+    /**
+     * End of the request data (exclusive).
+     */
+    private final int end;
+    
+    /**
+     * Current parser position.
+     */
+    private int pos;
+    
+    /**
+     * True if the last scanned string contains escape sequences.
+     */
+    private boolean escaped;
+    
+    /**
+     * Bit mask of the SKI fields found.
+     */
+    private int found;
+    
+    /**
+     * Error code or null if the request is valid JSON.
+     */
+    private String error;
+    
+    /**
+     * "protocol" field value.
+     */
+    private SkiProtocol protocol;
+    
+    /**
+     * "method" field value.
+     */
+    private SkiMethod method;
+    
+    /**
+     * "hash" field value.
+     */
+    private SkiHash hash;
+    
+    /**
+     * "spki" field value.
+     */
+    private String spki;
+    
+    /**
+     * Array that contains the "input" field value.
+     */
+    private byte[] inputData;
+    
+    /**
+     * "input" field first byte.
+     */
+    private int inputOffset;
+    
+    /**
+     * "input" field length.
+     */
+    private int inputLength;
+    
+    /**
+     * Private constructor. Use {@link #parse(byte[], int, int, int)}.
+     * @param data Request data.
+     * @param offset First byte of the request.
+     * @param length Request length.
+     */
+    private SkiRequestParser(byte[] data, int offset, int length){
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+    }
+    
+    /**
+     * Parses a SKI JSON request using the default maximum size.
+     * @param data Request data (UTF-8).
+     * @param offset First byte of the request.
+     * @param length Request length.
+     * @return Parser object with the request fields.
+     */
+    public static SkiRequestParser parse(byte[] data, int offset, int length){
+        return parse(data, offset, length, MAX_REQUEST_SIZE);
+    }
+    
+    /**
+     * Parses a SKI JSON request.
+     * @param data Request data (UTF-8).
+     * @param offset First byte of the request.
+     * @param length Request length.
+     * @param maxLength Maximum request size in bytes.
+     * @return Parser object with the request fields.
+     */
+    public static SkiRequestParser parse(byte[] data, int offset, int length, int maxLength){
+        SkiRequestParser parser = new SkiRequestParser(data, offset, length);
+        if(length > maxLength){
+            parser.fail("request too long (" + length + " bytes)");
+        } else {
+            parser.readObject();
+        }
+        return parser;
+    }
+    
+    /**
+     * Parser result.
+     * @return Null if the request is valid JSON, otherwise the error name.
+     */
+    public String getError(){
+        return error;
+    }
+    
+    /**
+     * "protocol" field value.
+     * @return Protocol or null if the field is not present or not valid.
+     */
+    public SkiProtocol getProtocol(){
+        return protocol;
+    }
+    
+    /**
+     * "method" field value.
+     * @return Method or null if the field is not present or not valid.
+     */
+    public SkiMethod getMethod(){
+        return method;
+    }
+    
+    /**
+     * "hash" field value.
+     * @return Hash or null if the field is not present or not valid.
+     */
+    public SkiHash getHash(){
+        return hash;
+    }
+    
+    /**
+     * Checks if the "hash" field is present.
+     * @return True if the field is present (even if the value is not valid).
+     */
+    public boolean isHashPresent(){
+        return (error == null) && ((found & (1 << HASH)) != 0);
+    }
+    
+    /**
+     * "spki" field value.
+     * @return String with the field value or null if it's not present.
+     */
+    public String getSpki(){
+        return spki;
+    }
+    
+    /**
+     * Array that contains the "input" field value.
+     * @return Array or null if the field is not present.
+     */
+    public byte[] getInputData(){
+        return inputData;
+    }
+    
+    /**
+     * "input" field first byte inside {@link #getInputData()}.
+     * @return Index of the first byte.
+     */
+    public int getInputOffset(){
+        return inputOffset;
+    }
+    
+    /**
+     * "input" field length inside {@link #getInputData()}.
+     * @return Number of bytes.
+     */
+    public int getInputLength(){
+        return inputLength;
+    }
+    
+    /**
+     * Compares a label with a slice of an array.
+     * @param label Label bytes.
+     * @param data Array.
+     * @param offset Slice first byte.
+     * @param length Slice length.
+     * @return True if both are equal.
+     */
+    static boolean matches(byte[] label, byte[] data, int offset, int length){
+        if(label.length != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(label[i] != data[offset + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Reads the request object: '{' members '}'.
+     */
+    private void readObject(){
+        skipWhitespaces();
+        if(!consume('{')){
+            fail("object expected");
+            return;
+        }
+        skipWhitespaces();
+        if(!consume('}')){
+            while(true){
+                skipWhitespaces();
+                if(!readMember()){
+                    return;
+                }
+                skipWhitespaces();
+                if(consume(',')){
+                    continue;
+                }
+                if(consume('}')){
+                    break;
+                }
+                fail("',' or '}' expected");
+                return;
+            }
+        }
+        skipWhitespaces();
+        if(pos != end){
+            fail("unexpected data after the object");
+        }
+    }
+    
+    /**
+     * Reads an object member: "name" ':' value.
+     * @return True if the member is valid.
+     */
+    private boolean readMember(){
+        int keyEnd = scanString();
+        if(keyEnd < 0){
+            return fail("field name expected");
+        }
+        int field = fieldIndex(pos + 1, keyEnd, escaped);
+        pos = keyEnd + 1;
+        skipWhitespaces();
+        if(!consume(':')){
+            return fail("':' expected");
+        }
+        skipWhitespaces();
+        if(field < 0){
+            return skipValue(0);
+        }
+        if((found & (1 << field)) != 0){
+            return fail("duplicated field '" + FIELDS[field] + "'");
+        }
+        found |= 1 << field;
+        int valueEnd = scanString();
+        if(valueEnd < 0){
+            return fail("string value expected for '" + FIELDS[field] + "'");
+        }
+        int start = pos + 1;
+        int length = valueEnd - start;
+        boolean valueEscaped = escaped;
+        pos = valueEnd + 1;
+        switch(field){
+            case PROTOCOL:
+                protocol = valueEscaped ? SkiProtocol.fromLabel(decode(start, valueEnd)) 
+                        : SkiProtocol.fromBytes(data, start, length);
+                break;
+            case METHOD:
+                method = valueEscaped ? SkiMethod.fromLabel(decode(start, valueEnd)) 
+                        : SkiMethod.fromBytes(data, start, length);
+                break;
+            case HASH:
+                hash = valueEscaped ? SkiHash.fromLabel(decode(start, valueEnd)) 
+                        : SkiHash.fromBytes(data, start, length);
+                break;
+            case SPKI:
+                spki = valueEscaped ? decode(start, valueEnd) 
+                        : new String(data, start, length, StandardCharsets.UTF_8);
+                break;
+            default:
+                if(valueEscaped){
+                    inputData = decode(start, valueEnd).getBytes(StandardCharsets.UTF_8);
+                    inputOffset = 0;
+                    inputLength = inputData.length;
+                } else {
+                    inputData = data;
+                    inputOffset = start;
+                    inputLength = length;
+                }
+                break;
+        }
+        return true;
+    }
+    
+    /**
+     * Skips a JSON value of an unknown field.
+     * @param depth Current nesting level.
+     * @return True if the value is valid.
+     */
+    private boolean skipValue(int depth){
+        if(depth > MAX_DEPTH){
+            return fail("too many nested values");
+        }
+        if(pos >= end){
+            return fail("value expected");
+        }
+        switch(data[pos]){
+            case '"':
+                int stringEnd = scanString();
+                if(stringEnd < 0){
+                    return fail("not valid string");
+                }
+                pos = stringEnd + 1;
+                return true;
+            case '{':
+                pos++;
+                skipWhitespaces();
+                if(consume('}')){
+                    return true;
+                }
+                while(true){
+                    skipWhitespaces();
+                    int keyEnd = scanString();
+                    if(keyEnd < 0){
+                        return fail("field name expected");
+                    }
+                    pos = keyEnd + 1;
+                    skipWhitespaces();
+                    if(!consume(':')){
+                        return fail("':' expected");
+                    }
+                    skipWhitespaces();
+                    if(!skipValue(depth + 1)){
+                        return false;
+                    }
+                    skipWhitespaces();
+                    if(consume('}')){
+                        return true;
+                    }
+                    if(!consume(',')){
+                        return fail("',' or '}' expected");
+                    }
+                }
+            case '[':
+                pos++;
+                skipWhitespaces();
+                if(consume(']')){
+                    return true;
+                }
+                while(true){
+                    skipWhitespaces();
+                    if(!skipValue(depth + 1)){
+                        return false;
+                    }
+                    skipWhitespaces();
+                    if(consume(']')){
+                        return true;
+                    }
+                    if(!consume(',')){
+                        return fail("',' or ']' expected");
+                    }
+                }
+            case 't':
+                return consumeLiteral("true");
+            case 'f':
+                return consumeLiteral("false");
+            case 'n':
+                return consumeLiteral("null");
+            default:
+                int start = pos;
+                while((pos < end) && isNumberChar(data[pos])){
+                    pos++;
+                }
+                return (pos > start) || fail("value expected");
+        }
+    }
+    
+    /**
+     * Scans a JSON string starting at the current position (without moving
+     *     it). Sets the {@link #escaped} flag.
+     * @return Index of the closing quote or -1 if the string is not valid.
+     */
+    private int scanString(){
+        escaped = false;
+        if((pos >= end) || (data[pos] != '"')){
+            return -1;
+        }
+        int i = pos + 1;
+        while(i < end){
+            int b = data[i] & 0xFF;
+            if(b == '"'){
+                return i;
+            }
+            if(b == '\\'){
+                escaped = true;
+                if(i + 1 >= end){
+                    return -1;
+                }
+                switch(data[i + 1]){
+                    case '"': case '\\': case '/': case 'b': case 'f': case 'n': case 'r': case 't':
+                        i += 2;
+                        break;
+                    case 'u':
+                        if((i + 5 >= end) || (hexValue(i + 2) < 0)){
+                            return -1;
+                        }
+                        i += 6;
+                        break;
+                    default:
+                        return -1;
+                }
+            } else if(b < 0x20){
+                // Control characters must be escaped.
+                return -1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Decodes a JSON string with escape sequences (already validated by 
+     *     {@link #scanString()}).
+     * @param start First byte after the opening quote.
+     * @param stringEnd Index of the closing quote.
+     * @return Decoded string.
+     */
+    private String decode(int start, int stringEnd){
+        StringBuilder sb = new StringBuilder(stringEnd - start);
+        int runStart = start;
+        int i = start;
+        while(i < stringEnd){
+            if(data[i] != '\\'){
+                i++;
+                continue;
+            }
+            sb.append(new String(data, runStart, i - runStart, StandardCharsets.UTF_8));
+            byte e = data[i + 1];
+            switch(e){
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'u':
+                    sb.append((char) hexValue(i + 2));
+                    i += 4;
+                    break;
+                default:
+                    sb.append((char) e);
+                    break;
+            }
+            i += 2;
+            runStart = i;
+        }
+        sb.append(new String(data, runStart, stringEnd - runStart, StandardCharsets.UTF_8));
+        return sb.toString();
+    }
+    
+    /**
+     * Reads four hexadecimal digits.
+     * @param start First digit index.
+     * @return Value or -1 if not valid.
+     */
+    private int hexValue(int start){
+        int value = 0;
+        for(int i = start; i < start + 4; i++){
+            int digit = Character.digit(data[i], 16);
+            if(digit < 0){
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+    
+    /**
+     * Returns the SKI field index for a field name.
+     * @param start First byte of the name.
+     * @param nameEnd Index of the closing quote.
+     * @param nameEscaped True if the name contains escape sequences.
+     * @return Field index or -1 if it's not a SKI field.
+     */
+    private int fieldIndex(int start, int nameEnd, boolean nameEscaped){
+        if(nameEscaped){
+            String name = decode(start, nameEnd);
+            for(int i = 0; i < FIELDS.length; i++){
+                if(FIELDS[i].equals(name)){
+                    return i;
+                }
+            }
+            return -1;
+        }
+        for(int i = 0; i < FIELDS_BYTES.length; i++){
+            if(matches(FIELDS_BYTES[i], data, start, nameEnd - start)){
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Skips JSON white spaces.
+     */
+    private void skipWhitespaces(){
+        while(pos < end){
+            byte b = data[pos];
+            if((b != ' ') && (b != '\t') && (b != '\n') && (b != '\r')){
+                return;
+            }
+            pos++;
+        }
+    }
+    
+    /**
+     * Consumes a character if it's the next one.
+     * @param c Expected character.
+     * @return True if the character has been consumed.
+     */
+    private boolean consume(char c){
+        if((pos < end) && (data[pos] == c)){
+            pos++;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Consumes a JSON literal (true, false or null).
+     * @param literal Expected literal.
+     * @return True if the literal is valid.
+     */
+    private boolean consumeLiteral(String literal){
+        if(end - pos < literal.length()){
+            return fail("not valid literal");
+        }
+        for(int i = 0; i < literal.length(); i++){
+            if(data[pos + i] != literal.charAt(i)){
+                return fail("not valid literal");
+            }
+        }
+        pos += literal.length();
+        return true;
+    }
+    
+    /**
+     * Checks if a character can be part of a JSON number.
+     * @param b Character.
+     * @return True if it's valid.
+     */
+    private static boolean isNumberChar(byte b){
+        return ((b >= '0') && (b <= '9')) || (b == '-') || (b == '+') || (b == '.') || (b == 'e') || (b == 'E');
+    }
+    
+    /**
+     * Marks the request as malformed and discards the fields already read.
+     * @param reason Error description for log purposes.
+     * @return Always false.
+     */
+    private boolean fail(String reason){
+        if(error == null){
+            LOGGER.debug("Not valid input JSON: {} at byte {}.", reason, pos);
+        }
+        error = ErrorJSON.ERR_MALFORMED_REQUEST;
+        protocol = null;
+        method = null;
+        hash = null;
+        spki = null;
+        inputData = null;
+        inputOffset = 0;
+        inputLength = 0;
+        return false;
+    }
+}
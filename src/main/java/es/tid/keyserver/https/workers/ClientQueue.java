@@ -0,0 +1,185 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crypto workers queue of a client (fair scheduler). The values are updated
+ *     by the scheduler and read without lock by the status view.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class ClientQueue {
+    /**
+     * Client remote address.
+     */
+    private final String client;
+    
+    /**
+     * Client weight.
+     */
+    private final int weight;
+    
+    /**
+     * Virtual finish time of the last queued task.
+     */
+    double lastFinish;
+    
+    /**
+     * Number of queued tasks.
+     */
+    private volatile int depth;
+    
+    /**
+     * Number of executed tasks.
+     */
+    private volatile long served;
+    
+    /**
+     * Number of tasks rejected because the client share of the queue was 
+     *     full.
+     */
+    private volatile long rejected;
+    
+    /**
+     * Sum of the queue wait times in nanoseconds.
+     */
+    private volatile long waitTotal;
+    
+    /**
+     * Maximum queue wait time in nanoseconds.
+     */
+    private volatile long waitMax;
+    
+    /**
+     * Class constructor.
+     * @param client Client remote address.
+     * @param weight Client weight (1 or more).
+     */
+    ClientQueue(String client, int weight){
+        this.client = client;
+        this.weight = weight;
+    }
+    
+    /**
+     * A new task has been queued (called with the scheduler lock).
+     */
+    void queued(){
+        depth++;
+    }
+    
+    /**
+     * A task has left the queue (called with the scheduler lock).
+     * @param wait Queue wait time in nanoseconds.
+     */
+    void dequeued(long wait){
+        depth--;
+        served++;
+        waitTotal += wait;
+        if(wait > waitMax){
+            waitMax = wait;
+        }
+    }
+    
+    /**
+     * A task has been rejected because the client share of the queue is full
+     *     (called with the scheduler lock).
+     */
+    void rejected(){
+        rejected++;
+    }
+    
+    /**
+     * A queued task has been discarded (called with the scheduler lock).
+     */
+    void discarded(){
+        depth--;
+    }
+    
+    /**
+     * Adds the statistics of a removed client queue (called with the 
+     *     scheduler lock).
+     * @param other Client queue without queued tasks.
+     */
+    void merge(ClientQueue other){
+        served += other.served;
+        rejected += other.rejected;
+        waitTotal += other.waitTotal;
+        if(other.waitMax > waitMax){
+            waitMax = other.waitMax;
+        }
+    }
+    
+    /**
+     * Client remote address.
+     * @return Address string.
+     */
+    public String getClient(){
+        return client;
+    }
+    
+    /**
+     * Client weight (share of the crypto workers when several clients have
+     *     queued tasks).
+     * @return Weight value.
+     */
+    public int getWeight(){
+        return weight;
+    }
+    
+    /**
+     * Number of queued tasks.
+     * @return Current queue depth.
+     */
+    public int getDepth(){
+        return depth;
+    }
+    
+    /**
+     * Number of executed tasks.
+     * @return Number of tasks.
+     */
+    public long getServed(){
+        return served;
+    }
+    
+    /**
+     * Number of tasks rejected because the client share of the queue was 
+     *     full.
+     * @return Number of tasks.
+     */
+    public long getRejected(){
+        return rejected;
+    }
+    
+    /**
+     * Mean queue wait time.
+     * @return Time in milliseconds.
+     */
+    public double getWaitMean(){
+        long count = served;
+        return (count == 0) ? 0 : (waitTotal / (double) count) / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+    
+    /**
+     * Maximum queue wait time.
+     * @return Time in milliseconds.
+     */
+    public long getWaitMax(){
+        return TimeUnit.NANOSECONDS.toMillis(waitMax);
+    }
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit of in-flight private key operations (AIMD).
+ * 
+ *     <p>Each finished operation is a latency sample. If it's slower than the
+ *     target latency the limit is multiplied by {@link #BACKOFF_RATIO}; if 
+ *     it's faster and at least half of the limit is in use, the limit grows
+ *     by one. Requests above the limit are rejected at once, so a traffic 
+ *     spike doesn't queue requests until the clients time out.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class ConcurrencyLimit {
+    /**
+     * Multiplicative decrease factor for slow samples.
+     */
+    static final double BACKOFF_RATIO = 0.9;
+    
+    /**
+     * Minimum value of the limit.
+     */
+    static final int MIN_LIMIT = 1;
+    
+    /**
+     * Number of in-flight operations.
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    /**
+     * Number of rejected requests.
+     */
+    private final LongAdder rejected = new LongAdder();
+    
+    /**
+     * Maximum value of the limit.
+     */
+    private final int maxLimit;
+    
+    /**
+     * Target latency in nanoseconds.
+     */
+    private final long targetLatency;
+    
+    /**
+     * True if the limit is enabled.
+     */
+    private final boolean enabled;
+    
+    /**
+     * Current limit (estimate rounded down).
+     */
+    private volatile int limit;
+    
+    /**
+     * Current limit estimate (guarded by this object).
+     */
+    private double estimate;
+    
+    /**
+     * Class constructor.
+     * @param initialLimit Initial in-flight limit. Zero disables the limit.
+     * @param maxLimit Maximum in-flight limit.
+     * @param targetLatency Target latency of the operations in milliseconds.
+     */
+    public ConcurrencyLimit(int initialLimit, int maxLimit, long targetLatency){
+        this.enabled = initialLimit > 0;
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.targetLatency = TimeUnit.MILLISECONDS.toNanos(Math.max(1, targetLatency));
+        this.estimate = Math.min(this.maxLimit, Math.max(MIN_LIMIT, initialLimit));
+        this.limit = (int) this.estimate;
+    }
+    
+    /**
+     * Reserves an in-flight operation.
+     * @return True if the operation can be executed (it must be released 
+     *     with {@link #release(long)}), false if the limit is reached.
+     */
+    public boolean tryAcquire(){
+        if(!enabled){
+            return true;
+        }
+        while(true){
+            int current = inFlight.get();
+            if(current >= limit){
+                rejected.increment();
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)){
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Releases an in-flight operation and updates the limit with its latency.
+     * @param started System.nanoTime() value when the operation was 
+     *     acquired.
+     */
+    public void release(long started){
+        if(!enabled){
+            return;
+        }
+        int current = inFlight.getAndDecrement();
+        onSample(System.nanoTime() - started, current);
+    }
+    
+    /**
+     * Updates the limit with a new latency sample.
+     * @param latency Operation latency in nanoseconds.
+     * @param current In-flight operations when the sample was taken.
+     */
+    synchronized void onSample(long latency, int current){
+        if(latency > targetLatency){
+            estimate = Math.max(MIN_LIMIT, estimate * BACKOFF_RATIO);
+        } else if(current * 2 >= estimate){
+            estimate = Math.min(maxLimit, estimate + 1);
+        }
+        limit = (int) estimate;
+    }
+    
+    /**
+     * This method returns if the limit is enabled.
+     * @return True if the requests above the limit are rejected.
+     */
+    public boolean isEnabled(){
+        return enabled;
+    }
+    
+    /**
+     * Current in-flight limit.
+     * @return Number of operations.
+     */
+    public int getLimit(){
+        return limit;
+    }
+    
+    /**
+     * Maximum in-flight limit.
+     * @return Number of operations.
+     */
+    public int getMaxLimit(){
+        return maxLimit;
+    }
+    
+    /**
+     * Target latency of the operations.
+     * @return Latency in milliseconds.
+     */
+    public long getTargetLatency(){
+        return TimeUnit.NANOSECONDS.toMillis(targetLatency);
+    }
+    
+    /**
+     * Number of in-flight operations.
+     * @return Current number of operations.
+     */
+    public int getInFlight(){
+        return inFlight.get();
+    }
+    
+    /**
+     * Number of rejected requests because the limit was reached.
+     * @return Number of rejected requests.
+     */
+    public long getRejected(){
+        return rejected.sum();
+    }
+}
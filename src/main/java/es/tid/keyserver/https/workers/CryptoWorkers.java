@@ -0,0 +1,294 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded pool of threads for the CPU heavy private key operations.
+ * 
+ *     <p>The Jetty connector threads suspend the request, queue the RSA or 
+ *     ECDHE operation here and go back to serve other connections. The queue 
+ *     has a fixed capacity: when it is full the task is rejected and the 
+ *     caller applies the configured queue full response.
+ * 
+ *     <p>With the "fair" scheduler the tasks are queued by client address 
+ *     and executed with weighted fair queuing ({@link FairScheduler}), so one
+ *     edge server can't starve the others.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class CryptoWorkers {
+    /**
+     * Queue full response: HTTP 503 (Service Unavailable) with an 
+     *     "unspecified error" JSON body.
+     */
+    public static final String QUEUE_FULL_BUSY = "busy";
+    
+    /**
+     * Queue full response: HTTP 200 with an "unspecified error" JSON body.
+     */
+    public static final String QUEUE_FULL_ERROR = "error";
+    
+    /**
+     * Queue full response: the operation is executed on the Jetty thread.
+     */
+    public static final String QUEUE_FULL_INLINE = "inline";
+    
+    /**
+     * Scheduler: one FIFO queue for all the clients.
+     */
+    public static final String SCHEDULER_FIFO = "fifo";
+    
+    /**
+     * Scheduler: weighted fair queuing by client address.
+     */
+    public static final String SCHEDULER_FAIR = "fair";
+    
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(CryptoWorkers.class);
+    
+    /**
+     * Thread pool executor. Null if the pool is disabled.
+     */
+    private final ThreadPoolExecutor executor;
+    
+    /**
+     * Maximum number of queued tasks.
+     */
+    private final int queueSize;
+    
+    /**
+     * Queue full response (one of the QUEUE_FULL_* values).
+     */
+    private final String queueFullResponse;
+    
+    /**
+     * Number of rejected tasks because the queue was full.
+     */
+    private final LongAdder rejected = new LongAdder();
+    
+    /**
+     * Fair scheduler. Null for the FIFO scheduler.
+     */
+    private final FairScheduler fairScheduler;
+    
+    /**
+     * Class constructor (FIFO scheduler).
+     * @param threads Number of worker threads. Zero disables the pool and all
+     *     the operations run on the Jetty threads.
+     * @param queueSize Maximum number of queued tasks.
+     * @param queueFullResponse Response used when the queue is full (one of 
+     *     the QUEUE_FULL_* values).
+     */
+    public CryptoWorkers(int threads, int queueSize, String queueFullResponse){
+        this(threads, queueSize, queueFullResponse, SCHEDULER_FIFO, null);
+    }
+    
+    /**
+     * Class constructor.
+     * @param threads Number of worker threads. Zero disables the pool and all
+     *     the operations run on the Jetty threads.
+     * @param queueSize Maximum number of queued tasks.
+     * @param queueFullResponse Response used when the queue is full (one of 
+     *     the QUEUE_FULL_* values).
+     * @param scheduler Queue scheduler ({@link #SCHEDULER_FIFO} or 
+     *     {@link #SCHEDULER_FAIR}).
+     * @param clientWeights Fair scheduler weight by client address (1 if the
+     *     client is not present).
+     */
+    public CryptoWorkers(int threads, int queueSize, String queueFullResponse, String scheduler, 
+            Map<String, Integer> clientWeights){
+        this.queueSize = Math.max(1, queueSize);
+        this.queueFullResponse = queueFullResponse;
+        this.fairScheduler = (threads > 0) && SCHEDULER_FAIR.equals(scheduler) 
+                ? new FairScheduler(this.queueSize, clientWeights) : null;
+        if(threads > 0){
+            AtomicInteger counter = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(this.queueSize), 
+                    task -> {
+                        Thread th = new Thread(task, "THCRYPTO_" + counter.incrementAndGet());
+                        th.setDaemon(true);
+                        return th;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            executor.prestartAllCoreThreads();
+        } else {
+            executor = null;
+        }
+    }
+    
+    /**
+     * Queues a new private key operation.
+     * @param task Task to be executed.
+     * @return True if the task has been queued, false if the queue is full or
+     *     the pool is disabled or stopped.
+     */
+    public boolean submit(Runnable task){
+        return submit(null, task);
+    }
+    
+    /**
+     * Queues a new private key operation of a client.
+     * @param client Client remote address (used by the fair scheduler).
+     * @param task Task to be executed.
+     * @return True if the task has been queued, false if the queue is full or
+     *     the pool is disabled or stopped.
+     */
+    public boolean submit(String client, Runnable task){
+        if(executor == null){
+            return false;
+        }
+        if(fairScheduler == null){
+            try {
+                executor.execute(task);
+                return true;
+            } catch (RejectedExecutionException ex) {
+                rejected.increment();
+                LOGGER.debug("Crypto workers queue full ({} tasks). Task rejected.", queueSize);
+                return false;
+            }
+        }
+        if(!fairScheduler.offer(client, task)){
+            rejected.increment();
+            LOGGER.debug("Crypto workers queue full ({} tasks). Task from {} rejected.", queueSize, client);
+            return false;
+        }
+        // Each queued task adds one dispatch to the pool, which runs the task
+        // selected by the fair scheduler (not always the same one).
+        try {
+            executor.execute(this::runNext);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            fairScheduler.remove(task);
+            return false;
+        }
+    }
+    
+    /**
+     * Runs the next task of the fair scheduler.
+     */
+    private void runNext(){
+        Runnable task = fairScheduler.poll();
+        if(task != null){
+            task.run();
+        }
+    }
+    
+    /**
+     * Stops the worker threads. Queued operations are executed before exit.
+     */
+    public void stop(){
+        if(executor != null){
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * This method returns if the worker pool is enabled.
+     * @return True if the private key operations run on the worker threads.
+     */
+    public boolean isEnabled(){
+        return executor != null;
+    }
+    
+    /**
+     * Response used when the queue is full.
+     * @return One of the QUEUE_FULL_* values.
+     */
+    public String getQueueFullResponse(){
+        return queueFullResponse;
+    }
+    
+    /**
+     * Number of worker threads.
+     * @return Number of threads (zero if disabled).
+     */
+    public int getThreads(){
+        return executor == null ? 0 : executor.getMaximumPoolSize();
+    }
+    
+    /**
+     * Number of worker threads executing a task.
+     * @return Number of busy threads.
+     */
+    public int getActiveThreads(){
+        return executor == null ? 0 : executor.getActiveCount();
+    }
+    
+    /**
+     * Number of tasks waiting inside the queue.
+     * @return Current queue depth.
+     */
+    public int getQueueDepth(){
+        if(fairScheduler != null){
+            return fairScheduler.size();
+        }
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+    
+    /**
+     * Queue scheduler in use.
+     * @return {@link #SCHEDULER_FIFO} or {@link #SCHEDULER_FAIR}.
+     */
+    public String getScheduler(){
+        return fairScheduler == null ? SCHEDULER_FIFO : SCHEDULER_FAIR;
+    }
+    
+    /**
+     * Queues of the clients (fair scheduler).
+     * @return Client queues (empty for the FIFO scheduler).
+     */
+    public Collection<ClientQueue> getClientQueues(){
+        return fairScheduler == null ? Collections.emptyList() : fairScheduler.getClientQueues();
+    }
+    
+    /**
+     * Maximum number of tasks waiting inside the queue.
+     * @return Queue capacity.
+     */
+    public int getQueueSize(){
+        return queueSize;
+    }
+    
+    /**
+     * Number of completed tasks.
+     * @return Approximate number of completed tasks.
+     */
+    public long getCompletedTasks(){
+        return executor == null ? 0 : executor.getCompletedTaskCount();
+    }
+    
+    /**
+     * Number of rejected tasks because the queue was full.
+     * @return Number of rejected tasks.
+     */
+    public long getRejectedTasks(){
+        return rejected.sum();
+    }
+}
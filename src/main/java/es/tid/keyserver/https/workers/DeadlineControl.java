@@ -0,0 +1,194 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import es.tid.keyserver.core.lib.RequestDeadline;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Early discard of requests whose client has already given up.
+ *
+ *     <p>The client sends its remaining time budget (milliseconds) inside a
+ *     request header. The request is discarded if the budget has expired
+ *     before the private key query, or if the remaining time is shorter than
+ *     the average private key operation before the crypto step (after the
+ *     crypto workers queue wait).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class DeadlineControl {
+    /**
+     * Default time budget header.
+     */
+    public static final String DEFAULT_HEADER = "X-KeyServer-Budget";
+
+    /**
+     * Weight of each sample in the operation time average (1/8).
+     */
+    static final int AVERAGE_SHIFT = 3;
+
+    /**
+     * Time budget header (null if it's disabled).
+     */
+    private final String header;
+
+    /**
+     * Number of requests with a time budget.
+     */
+    private final LongAdder requests = new LongAdder();
+
+    /**
+     * Requests discarded before the private key query.
+     */
+    private final LongAdder discardedLookup = new LongAdder();
+
+    /**
+     * Requests discarded before the private key operation.
+     */
+    private final LongAdder discardedCrypto = new LongAdder();
+
+    /**
+     * Average private key operation time in nanoseconds.
+     */
+    private volatile long operationTime;
+
+    /**
+     * Class constructor.
+     * @param header Time budget header name (null disables the deadlines).
+     */
+    public DeadlineControl(String header){
+        this.header = header;
+    }
+
+    /**
+     * Checks if the time budget header is read.
+     * @return True if the deadlines are enabled.
+     */
+    public boolean isEnabled(){
+        return header != null;
+    }
+
+    /**
+     * Returns the time budget header name.
+     * @return Header name (null if it's disabled).
+     */
+    public String getHeader(){
+        return header;
+    }
+
+    /**
+     * Reads the deadline of a request.
+     * @param value Time budget header value (null if not present).
+     * @param elapsed Time already spent by the request in milliseconds.
+     * @return Deadline object or null if the request has no valid budget.
+     */
+    public RequestDeadline read(String value, long elapsed){
+        if(header == null){
+            return null;
+        }
+        RequestDeadline deadline = RequestDeadline.parse(value, elapsed);
+        if(deadline != null){
+            requests.increment();
+        }
+        return deadline;
+    }
+
+    /**
+     * Check done before the private key query.
+     * @param deadline Request deadline (null no deadline).
+     * @return False if the request must be discarded.
+     */
+    public boolean beforeLookup(RequestDeadline deadline){
+        if((deadline == null) || !deadline.isExpired()){
+            return true;
+        }
+        discardedLookup.increment();
+        return false;
+    }
+
+    /**
+     * Check done before the private key operation. The request is discarded
+     *     if the operation can't finish in time.
+     * @param deadline Request deadline (null no deadline).
+     * @return False if the request must be discarded.
+     */
+    public boolean beforeCrypto(RequestDeadline deadline){
+        if((deadline == null) || deadline.allows(operationTime)){
+            return true;
+        }
+        discardedCrypto.increment();
+        return false;
+    }
+
+    /**
+     * Counts a request discarded because the deadline expired during the
+     *     private key query (database timeout).
+     */
+    public void discardedLookup(){
+        discardedLookup.increment();
+    }
+
+    /**
+     * Adds a private key operation time sample to the average.
+     * @param duration Operation time in nanoseconds.
+     */
+    public void recordOperation(long duration){
+        long average = operationTime;
+        // Races only lose samples.
+        operationTime = average + ((duration - average) >> AVERAGE_SHIFT);
+    }
+
+    /**
+     * Average private key operation time.
+     * @return Average time in nanoseconds.
+     */
+    public long getOperationTime(){
+        return operationTime;
+    }
+
+    /**
+     * Number of requests with a time budget.
+     * @return Requests with a valid budget header.
+     */
+    public long getRequests(){
+        return requests.sum();
+    }
+
+    /**
+     * Number of requests discarded before (or during) the private key query.
+     * @return Discarded requests.
+     */
+    public long getDiscardedLookup(){
+        return discardedLookup.sum();
+    }
+
+    /**
+     * Number of requests discarded before the private key operation.
+     * @return Discarded requests.
+     */
+    public long getDiscardedCrypto(){
+        return discardedCrypto.sum();
+    }
+
+    /**
+     * Total number of discarded requests.
+     * @return Discarded requests.
+     */
+    public long getDiscarded(){
+        return getDiscardedLookup() + getDiscardedCrypto();
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Weighted fair queuing of the crypto workers tasks (self clocked fair 
+ *     queuing).
+ * 
+ *     <p>Each task gets a virtual finish time: the start time is the 
+ *     maximum of the scheduler virtual time and the finish time of the 
+ *     previous task of the same client, and the finish time adds 
+ *     1 / weight. Tasks are executed by finish time, so a client with 
+ *     weight 2 gets twice the workers of a client with weight 1 while both 
+ *     have queued tasks, and a client flooding the server only delays its 
+ *     own tasks.
+ * 
+ *     <p>Each client can only fill a weighted share of the queue 
+ *     (capacity * weight / (weight + 1), half of the queue for weight 1), so
+ *     a client flooding the server can't fill the whole queue and the tasks
+ *     of the other clients are still accepted.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+class FairScheduler {
+    /**
+     * Client name used for tasks without remote address.
+     */
+    static final String UNKNOWN_CLIENT = "unknown";
+    
+    /**
+     * Client name used for the statistics of the removed clients.
+     */
+    static final String OTHER_CLIENTS = "others";
+    
+    /**
+     * Queued tasks ordered by virtual finish time.
+     */
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    
+    /**
+     * Clients queues. Clients without queued tasks are removed, unless they
+     *     have a configured weight.
+     */
+    private final Map<String, ClientQueue> clients = new ConcurrentHashMap<>();
+    
+    /**
+     * Statistics of the removed clients.
+     */
+    private final ClientQueue others = new ClientQueue(OTHER_CLIENTS, 1);
+    
+    /**
+     * Configured weights by client address.
+     */
+    private final Map<String, Integer> weights;
+    
+    /**
+     * Maximum number of queued tasks.
+     */
+    private final int capacity;
+    
+    /**
+     * Virtual time (finish time of the last dequeued task).
+     */
+    private double virtualTime;
+    
+    /**
+     * Arrival order of the tasks (tie breaker).
+     */
+    private long sequence;
+    
+    /**
+     * Class constructor.
+     * @param capacity Maximum number of queued tasks.
+     * @param weights Weight by client address (1 if it's not present).
+     */
+    FairScheduler(int capacity, Map<String, Integer> weights){
+        this.capacity = capacity;
+        this.weights = weights == null ? Collections.emptyMap() : weights;
+    }
+    
+    /**
+     * Queues a new task.
+     * @param client Client remote address.
+     * @param task Task to be executed.
+     * @return True if the task has been queued, false if the queue is full.
+     */
+    synchronized boolean offer(String client, Runnable task){
+        if(queue.size() >= capacity){
+            return false;
+        }
+        String name = (client == null) ? UNKNOWN_CLIENT : client;
+        int weight = Math.max(1, weights.getOrDefault(name, 1));
+        ClientQueue clientQueue = clients.get(name);
+        if((clientQueue != null) && (clientQueue.getDepth() >= clientCapacity(weight))){
+            // Client share full: the queue is left for the other clients.
+            clientQueue.rejected();
+            return false;
+        }
+        if(clientQueue == null){
+            clientQueue = new ClientQueue(name, weight);
+            clients.put(name, clientQueue);
+        }
+        double start = Math.max(virtualTime, clientQueue.lastFinish);
+        clientQueue.lastFinish = start + 1.0 / clientQueue.getWeight();
+        queue.add(new Entry(clientQueue, task, clientQueue.lastFinish, sequence++, System.nanoTime()));
+        clientQueue.queued();
+        return true;
+    }
+    
+    /**
+     * Maximum number of queued tasks of a client.
+     * @param weight Client weight.
+     * @return Weighted share of the queue (1 at least).
+     */
+    int clientCapacity(int weight){
+        return (int) Math.max(1, (long) capacity * weight / (weight + 1));
+    }
+    
+    /**
+     * Returns the next task.
+     * @return Task with the lowest virtual finish time or null if the queue
+     *     is empty.
+     */
+    synchronized Runnable poll(){
+        Entry entry = queue.poll();
+        if(entry == null){
+            return null;
+        }
+        virtualTime = entry.finish;
+        entry.clientQueue.dequeued(System.nanoTime() - entry.queued);
+        releaseIfIdle(entry.clientQueue);
+        return entry.task;
+    }
+    
+    /**
+     * Removes a queued task (it couldn't be dispatched to the workers).
+     * @param task Task object.
+     */
+    synchronized void remove(Runnable task){
+        Iterator<Entry> it = queue.iterator();
+        while(it.hasNext()){
+            Entry entry = it.next();
+            if(entry.task == task){
+                it.remove();
+                entry.clientQueue.discarded();
+                releaseIfIdle(entry.clientQueue);
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Number of queued tasks.
+     * @return Current queue depth.
+     */
+    synchronized int size(){
+        return queue.size();
+    }
+    
+    /**
+     * Clients queues.
+     * @return Collection of client queues (and the statistics of the removed
+     *     clients if they have executed or rejected tasks).
+     */
+    Collection<ClientQueue> getClientQueues(){
+        List<ClientQueue> result = new ArrayList<>(clients.values());
+        if((others.getServed() > 0) || (others.getRejected() > 0)){
+            result.add(others);
+        }
+        return Collections.unmodifiableList(result);
+    }
+    
+    /**
+     * Removes a client without queued tasks, so the clients map doesn't grow
+     *     with every remote address. Its statistics are added to the other 
+     *     clients. The virtual finish time is not lost: it's not greater 
+     *     than the virtual time when the last task has been dequeued.
+     * @param clientQueue Client queue.
+     */
+    private void releaseIfIdle(ClientQueue clientQueue){
+        if((clientQueue.getDepth() == 0) && !weights.containsKey(clientQueue.getClient())){
+            clients.remove(clientQueue.getClient());
+            others.merge(clientQueue);
+        }
+    }
+    
+    /**
+     * Queued task.
+     */
+    private static final class Entry implements Comparable<Entry> {
+        /**
+         * Client queue.
+         */
+        private final ClientQueue clientQueue;
+        
+        /**
+         * Task to be executed.
+         */
+        private final Runnable task;
+        
+        /**
+         * Virtual finish time.
+         */
+        private final double finish;
+        
+        /**
+         * Arrival order.
+         */
+        private final long sequence;
+        
+        /**
+         * System.nanoTime() value when the task was queued.
+         */
+        private final long queued;
+        
+        /**
+         * Class constructor.
+         * @param clientQueue Client queue.
+         * @param task Task to be executed.
+         * @param finish Virtual finish time.
+         * @param sequence Arrival order.
+         * @param queued Queue time (System.nanoTime()).
+         */
+        Entry(ClientQueue clientQueue, Runnable task, double finish, long sequence, long queued){
+            this.clientQueue = clientQueue;
+            this.task = task;
+            this.finish = finish;
+            this.sequence = sequence;
+            this.queued = queued;
+        }
+        
+        @Override
+        public int compareTo(Entry other){
+            int result = Double.compare(finish, other.finish);
+            return (result != 0) ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Threads used for the blocking part of the HTTPS requests (private key 
+ *     query to Redis).
+ * 
+ *     <p>In "platform" mode the request runs on the Jetty thread. In 
+ *     "virtual" mode (Java 21 or newer) the Jetty thread suspends the 
+ *     request and a new virtual thread gets the private key, so a slow Redis
+ *     query doesn't hold a thread of the Jetty pool. The RSA and ECDHE 
+ *     operations are still queued on the bounded {@link CryptoWorkers} pool.
+ * 
+ *     <p>Virtual threads are created by reflection, so the same Java 8 build
+ *     uses them when it runs on a Java 21 JVM. Older JVMs use the platform 
+ *     mode.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class RequestThreads {
+    /**
+     * Requests are executed on the Jetty threads.
+     */
+    public static final String MODE_PLATFORM = "platform";
+    
+    /**
+     * Requests are executed on virtual threads (Java 21 or newer).
+     */
+    public static final String MODE_VIRTUAL = "virtual";
+    
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(RequestThreads.class);
+    
+    /**
+     * Virtual threads executor. Null in platform mode.
+     */
+    private final ExecutorService executor;
+    
+    /**
+     * Number of running tasks.
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    
+    /**
+     * Number of executed tasks.
+     */
+    private final LongAdder started = new LongAdder();
+    
+    /**
+     * Class constructor.
+     * @param mode Execution mode ({@link #MODE_PLATFORM} or 
+     *     {@link #MODE_VIRTUAL}).
+     */
+    public RequestThreads(String mode){
+        ExecutorService virtualExecutor = null;
+        if(MODE_VIRTUAL.equals(mode)){
+            virtualExecutor = newVirtualThreadExecutor("THVIRTUAL_");
+            if(virtualExecutor == null){
+                LOGGER.warn("Virtual threads need Java 21 or newer (current: {}). Using Jetty threads.", 
+                        System.getProperty("java.version"));
+            }
+        }
+        executor = virtualExecutor;
+    }
+    
+    /**
+     * Starts a new request task.
+     * @param task Task to be executed.
+     * @return True if the task has been started on a virtual thread, false 
+     *     in platform mode or if it's stopped (the caller runs the task).
+     */
+    public boolean submit(Runnable task){
+        if(executor == null){
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                active.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    active.decrementAndGet();
+                }
+            });
+            started.increment();
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+    
+    /**
+     * Stops the executor. Running requests are not interrupted.
+     */
+    public void stop(){
+        if(executor != null){
+            executor.shutdown();
+        }
+    }
+    
+    /**
+     * This method returns if the requests run on virtual threads.
+     * @return True if virtual mode is enabled and supported by the JVM.
+     */
+    public boolean isEnabled(){
+        return executor != null;
+    }
+    
+    /**
+     * Execution mode in use.
+     * @return {@link #MODE_VIRTUAL} or {@link #MODE_PLATFORM}.
+     */
+    public String getMode(){
+        return executor == null ? MODE_PLATFORM : MODE_VIRTUAL;
+    }
+    
+    /**
+     * Number of requests running on virtual threads.
+     * @return Current number of virtual threads.
+     */
+    public int getActiveTasks(){
+        return active.get();
+    }
+    
+    /**
+     * Number of requests started on virtual threads.
+     * @return Number of started tasks.
+     */
+    public long getStartedTasks(){
+        return started.sum();
+    }
+    
+    /**
+     * Creates a new virtual thread per task executor 
+     *     (Executors.newThreadPerTaskExecutor with a Thread.ofVirtual() 
+     *     factory).
+     * @param prefix Threads name prefix.
+     * @return Executor or null if the JVM doesn't support virtual threads.
+     */
+    static ExecutorService newVirtualThreadExecutor(String prefix){
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newExecutor.invoke(null, factory);
+        } catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            // Java 8-18, or Java 19-20 without --enable-preview.
+            LOGGER.debug("Virtual threads not available: {}", ex.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/**
+ * This package contains the worker pools used to run the private key
+ *     operations outside of the Jetty connector threads.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since 0.4.5
+ */
+package es.tid.keyserver.https.workers;
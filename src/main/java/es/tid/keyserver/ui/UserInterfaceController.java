@@ -82,10 +82,12 @@ public class UserInterfaceController {
             case "P":
                 // Provision: Insert a new private key inside KeyServer database."
                 this.pkCtrl.menuInsertRegisters();
+                this.monObj.getKeyCache().clear();
                 break;
             case "D":
                 //Delete: Remove a private key from the KeyServer database."
                 this.pkCtrl.menuRemoveRegisters();
+                this.monObj.getKeyCache().clear();
                 break;
             case "F":
                 // Find: Search a specific SHA1 register on KeyServer database."
@@ -102,6 +104,17 @@ public class UserInterfaceController {
             case "S":
                 // Shows KeyServer status and details.
                 StatusController.showKsStats(this.monObj.getStatistics());
+                StatusController.showConcurrencyLimitStats(this.monObj.getConcurrencyLimit());
+                StatusController.showDeadlineStats(this.monObj.getDeadlineControl());
+                StatusController.showJettyThreadsStats(this.monObj.getThreadPool(), 
+                        this.monObj.getConnectors(), this.monObj.getMaxConnections());
+                StatusController.showTlsSessionStats(this.monObj.getFullHandshakes(), 
+                        this.monObj.getResumedHandshakes(), this.monObj.getTicketKeys());
+                StatusController.showRequestThreadsStats(this.monObj.getRequestThreads());
+                StatusController.showKeyCacheStats(this.monObj.getKeyCache());
+                StatusController.showCryptoWorkersStats(this.monObj.getCryptoWorkers());
+                StatusController.showAuditLogStats(this.monObj.getAuditLog());
+                StatusController.showBinaryServerStats(this.monObj.getBinaryServer());
                 break;
             default:
                 // Not valid option.
@@ -16,8 +16,22 @@
 
 package es.tid.keyserver.ui.controls;
 
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
 import es.tid.keyserver.core.status.KsMonitor;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.binary.BinarySkiServer;
+import es.tid.keyserver.https.jetty.KsServerConnector;
+import es.tid.keyserver.https.jetty.SessionTicketKeys;
+import es.tid.keyserver.https.workers.ClientQueue;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.StatisticsHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 /**
  * This class contains the statics method for KeyServer status user interface.
@@ -70,6 +84,21 @@ public class StatusController {
                 + "  - Redis Status:\n"
                 + "  \tConnection active: " + mon.isRedisConnectionAvailable() + "\n"
                 + "  - Jetty HTTPS Server Status: " + mon.httpsServerStatus() + "\n"
+                + "  \tProtocols: " + mon.httpsServerProtocols() + "\n"
+                + "  \tTLS: " + mon.httpsServerTlsSettings() + "\n"
+                + "  \tLocal listener: " + mon.httpsServerLocalListener() + "\n"
+                + "  \tReadiness (GET /ready): " + mon.getHealthCheck().getStatus() 
+                        + " | Probes: " + mon.getHealthCheck().getProbes() + "\n"
+                + "  \tThreads (Min / Max / Reserved): " + mon.getThreadPool().getMinThreads() + " / " 
+                        + mon.getThreadPool().getMaxThreads() + " / " 
+                        + orDefault(mon.getConnector().getSelectorManager().getReservedThreads()) 
+                        + " | Requests on " + mon.getRequestThreads().getMode() + " threads\n"
+                + "  \tConnectors / Acceptors / Selectors: " + mon.getConnectors().length + " / " 
+                        + mon.getConnector().getAcceptors() + " / " 
+                        + mon.getConnector().getSelectorManager().getSelectorCount() + " (per connector)\n"
+                + "  \tAccept queue: " + orDefault(mon.getConnector().getAcceptQueueSize())
+                        + " | Output buffer: " + getOutputBufferSize(mon.getConnector()) + " bytes"
+                        + " | Max connections: " + orNoLimit(mon.getMaxConnections()) + "\n"
                 + "  \tCertificate expiration date: " + mon.getHttpsCertificateExpDate() + "\n"
                 + "  \tCertificate remaining days: " + mon.getHttpsCertificateRemainDays() + "\n"
                 + "\n");
@@ -103,4 +132,236 @@ public class StatusController {
                 + "   - 4xx (Client Error):\t" + statistics.getResponses4xx() + "\n"
                 + "   - 5xx (Server Error):\t" + statistics.getResponses5xx() + "\n");
     }
+
+    /**
+     * This method shows a formated message with the adaptive concurrency 
+     *     limit status (load shedding).
+     * @param concurrencyLimit Concurrency limit object.
+     * @since v0.4.5
+     */
+    public static void showConcurrencyLimitStats(ConcurrencyLimit concurrencyLimit) {
+        System.out.println("  Concurrency Limit" + "\n"
+                + "  -----------------" + "\n"
+                + "   - Enabled: " + concurrencyLimit.isEnabled() + "\n"
+                + "   - In-flight (Current / Limit / Max): " + concurrencyLimit.getInFlight() + " / " 
+                        + concurrencyLimit.getLimit() + " / " + concurrencyLimit.getMaxLimit() + "\n"
+                + "   - Target latency: " + concurrencyLimit.getTargetLatency() + "ms\n"
+                + "   - Rejected (HTTP 503):\t" + concurrencyLimit.getRejected() + "\n");
+    }
+
+    /**
+     * This method shows a formated message with the client time budgets and
+     *     the requests discarded because they have expired.
+     * @param deadlineControl Deadline control object.
+     * @since v0.4.5
+     */
+    public static void showDeadlineStats(DeadlineControl deadlineControl) {
+        System.out.println("  Client Deadlines" + "\n"
+                + "  ----------------" + "\n"
+                + "   - Budget header: " + (deadlineControl.isEnabled() ? deadlineControl.getHeader() : "off") + "\n"
+                + "   - Requests with budget:\t" + deadlineControl.getRequests() + "\n"
+                + "   - Discarded (Before query / Before operation): " + deadlineControl.getDiscardedLookup() 
+                        + " / " + deadlineControl.getDiscardedCrypto() + "\n"
+                + "   - Average operation time: " 
+                        + String.format("%.3f", deadlineControl.getOperationTime() / 1e6) + "ms\n");
+    }
+
+    /**
+     * This method shows a formated message with the Jetty worker threads and
+     *     HTTPS connections status.
+     * @param threadPool Jetty worker threads pool.
+     * @param connectors HTTPS connectors (more than one with SO_REUSEPORT).
+     * @param maxConnections Maximum number of open connections (0 no limit).
+     * @since v0.4.5
+     */
+    public static void showJettyThreadsStats(QueuedThreadPool threadPool, ServerConnector[] connectors, int maxConnections) {
+        long current = 0;
+        long rejected = 0;
+        for(ServerConnector connector : connectors){
+            current += getConnections(connector);
+            if(connector instanceof KsServerConnector){
+                rejected += ((KsServerConnector) connector).getRejectedConnections();
+            }
+        }
+        System.out.println("  Jetty Threads" + "\n"
+                + "  -------------" + "\n"
+                + "   - Threads (Busy / Idle / Total / Max): " + threadPool.getBusyThreads() + " / " 
+                        + threadPool.getIdleThreads() + " / " + threadPool.getThreads() + " / " 
+                        + threadPool.getMaxThreads() + "\n"
+                + "   - Queued jobs: " + threadPool.getQueueSize() + "\n"
+                + "   - Low on threads: " + threadPool.isLowOnThreads() + "\n"
+                + "   - Connections (Current / Max): " + current + " / " + orNoLimit(maxConnections) + "\n"
+                + "   - Rejected connections (white list): " + rejected);
+        if(connectors.length > 1){
+            for(int i = 0; i < connectors.length; i++){
+                ConnectionStatistics connections = connectors[i].getBean(ConnectionStatistics.class);
+                System.out.println("   - Connector " + i + " (SO_REUSEPORT): Current " + getConnections(connectors[i])
+                        + " | Total " + ((connections == null) ? "-" : connections.getConnectionsTotal()));
+            }
+        }
+        System.out.println();
+    }
+
+    /**
+     * This method shows a formated message with the TLS session resumption 
+     *     statistics of the HTTPS connectors.
+     * @param fullHandshakes Number of full handshakes.
+     * @param resumedHandshakes Number of resumed handshakes.
+     * @param ticketKeys Session ticket keys shared by the KeyServer nodes.
+     * @since v0.4.5
+     */
+    public static void showTlsSessionStats(long fullHandshakes, long resumedHandshakes, SessionTicketKeys ticketKeys) {
+        long total = fullHandshakes + resumedHandshakes;
+        System.out.println("  TLS Sessions" + "\n"
+                + "  ------------" + "\n"
+                + "   - Handshakes (Full / Resumed): " + fullHandshakes + " / " + resumedHandshakes + "\n"
+                + "   - Resumption hit rate: " + ((total == 0) ? "-" 
+                        : String.format("%.1f%%", 100.0 * resumedHandshakes / total)) + "\n"
+                + "   - Shared ticket keys: " + (ticketKeys.isEnabled() 
+                        ? ticketKeys.getSource() + " (rotation " + (ticketKeys.getRotation() / 1000) + " s, "
+                                + ticketKeys.getRotations() + " changes, in use: " + ticketKeys.isApplied() + ")"
+                        : "off") + "\n");
+    }
+
+    /**
+     * This method shows a formated message with the private keys cache 
+     *     statistics.
+     * @param keyCache Private keys cache object.
+     * @since v0.4.5
+     */
+    public static void showKeyCacheStats(PrivateKeyCache keyCache) {
+        System.out.println("  Private Keys Cache" + "\n"
+                + "  ------------------" + "\n"
+                + "   - Enabled: " + keyCache.isEnabled() + "\n"
+                + "   - Cached keys (Current / Max): " + keyCache.size() + " / " + keyCache.getMaxSize() + "\n"
+                + "   - Time to live: " + keyCache.getTtl() + "ms\n"
+                + "   - Hits:\t\t" + keyCache.getHits() + "\n"
+                + "   - Misses:\t\t" + keyCache.getMisses() + "\n"
+                + "   - Collapsed misses:\t" + keyCache.getCollapsed() + "\n"
+                + "   - Evictions:\t\t" + keyCache.getEvictions() + "\n"
+                + "   - Expirations:\t" + keyCache.getExpirations() + "\n");
+    }
+
+    /**
+     * This method shows a formated message with the request threads 
+     *     statistics (virtual threads used for the private key queries).
+     * @param requestThreads Request threads object.
+     * @since v0.4.5
+     */
+    public static void showRequestThreadsStats(RequestThreads requestThreads) {
+        System.out.println("  Request Threads" + "\n"
+                + "  ---------------" + "\n"
+                + "   - Mode: " + requestThreads.getMode() + "\n"
+                + "   - Virtual threads (Running / Started): " + requestThreads.getActiveTasks() 
+                        + " / " + requestThreads.getStartedTasks() + "\n");
+    }
+
+    /**
+     * This method shows a formated message with the private key operations
+     *     workers pool statistics.
+     * @param cryptoWorkers Crypto workers pool object.
+     * @since v0.4.5
+     */
+    public static void showCryptoWorkersStats(CryptoWorkers cryptoWorkers) {
+        System.out.println("  Crypto Workers" + "\n"
+                + "  --------------" + "\n"
+                + "   - Enabled: " + cryptoWorkers.isEnabled() + "\n"
+                + "   - Threads (Busy / Total): " + cryptoWorkers.getActiveThreads() + " / " + cryptoWorkers.getThreads() + "\n"
+                + "   - Queue (Current / Max): " + cryptoWorkers.getQueueDepth() + " / " + cryptoWorkers.getQueueSize() + "\n"
+                + "   - Queue full response: " + cryptoWorkers.getQueueFullResponse() + "\n"
+                + "   - Scheduler: " + cryptoWorkers.getScheduler() + "\n"
+                + "   - Completed:\t\t" + cryptoWorkers.getCompletedTasks() + "\n"
+                + "   - Rejected:\t\t" + cryptoWorkers.getRejectedTasks() + "\n");
+        for(ClientQueue queue : cryptoWorkers.getClientQueues()){
+            System.out.println("   - Client " + queue.getClient() + " (weight " + queue.getWeight() + "):"
+                    + " Queued " + queue.getDepth() + " | Served " + queue.getServed() 
+                    + " | Rejected " + queue.getRejected()
+                    + " | Wait (Max / Mean): " + queue.getWaitMax() + "ms / " 
+                    + String.format("%.3f", queue.getWaitMean()) + "ms");
+        }
+        if(!cryptoWorkers.getClientQueues().isEmpty()){
+            System.out.println();
+        }
+    }
+
+    /**
+     * This method shows a formated message with the security audit log 
+     *     statistics.
+     * @param auditLog Security audit log object.
+     * @since v0.4.5
+     */
+    public static void showAuditLogStats(AuditLog auditLog) {
+        System.out.println("  Security Audit Log" + "\n"
+                + "  ------------------" + "\n"
+                + "   - Asynchronous: " + auditLog.isAsync() + "\n"
+                + "   - Queue (Current / Max): " + auditLog.getPending() + " / " + auditLog.getCapacity() + "\n"
+                + "   - Overflow policy: " + auditLog.getOverflowPolicy() + "\n"
+                + "   - Written:\t\t" + auditLog.getWrittenEvents() + "\n"
+                + "   - Dropped:\t\t" + auditLog.getDroppedEvents() + "\n");
+    }
+
+    /**
+     * This method shows a formated message with the binary SKI protocol 
+     *     listener statistics.
+     * @param binaryServer Binary listener object (null if it's disabled).
+     * @since v0.4.5
+     */
+    public static void showBinaryServerStats(BinarySkiServer binaryServer) {
+        if(binaryServer == null){
+            System.out.println("  Binary SKI Listener" + "\n"
+                    + "  -------------------" + "\n"
+                    + "   - Enabled: false" + "\n");
+            return;
+        }
+        System.out.println("  Binary SKI Listener" + "\n"
+                + "  -------------------" + "\n"
+                + "   - Enabled: true (port " + binaryServer.getLocalPort() + ")\n"
+                + "   - Connections (Current / Total): " + binaryServer.getConnections() + " / " + binaryServer.getAcceptedConnections() + "\n"
+                + "   - Max connections: " + (binaryServer.getMaxConnections() > 0 
+                        ? binaryServer.getMaxConnections() + " (" + binaryServer.getLimitedConnections() + " closed)" 
+                        : "unlimited") + "\n"
+                + "   - Max requests in flight per connection: " + binaryServer.getMaxInFlight() + "\n"
+                + "   - Requests:\t\t" + binaryServer.getRequests() + "\n"
+                + "   - Malformed:\t\t" + binaryServer.getMalformedRequests() + "\n"
+                + "   - Rejected connections: " + binaryServer.getRejectedConnections() + "\n");
+    }
+
+    /**
+     * Returns the number of open connections of a connector.
+     * @param connector HTTPS connector.
+     * @return Open connections (0 if the connector has no statistics).
+     */
+    private static long getConnections(ServerConnector connector){
+        ConnectionStatistics connections = connector.getBean(ConnectionStatistics.class);
+        return (connections == null) ? 0 : connections.getConnections();
+    }
+
+    /**
+     * Returns the HTTP response output buffer size of a connector.
+     * @param connector HTTPS connector.
+     * @return Output buffer size in bytes or -1 if the connector has no HTTP
+     *     connection factory.
+     */
+    private static int getOutputBufferSize(ServerConnector connector){
+        HttpConnectionFactory http = connector.getConnectionFactory(HttpConnectionFactory.class);
+        return (http == null) ? -1 : http.getHttpConfiguration().getOutputBufferSize();
+    }
+
+    /**
+     * Returns a configuration value or "default" if it's not positive.
+     * @param value Configuration value.
+     * @return String with the value.
+     */
+    private static String orDefault(int value){
+        return (value > 0) ? String.valueOf(value) : "default";
+    }
+
+    /**
+     * Returns a limit value or "no limit" if it's not positive.
+     * @param value Limit value.
+     * @return String with the value.
+     */
+    private static String orNoLimit(int value){
+        return (value > 0) ? String.valueOf(value) : "no limit";
+    }
 }
@@ -15,9 +15,15 @@
  */
 package es.tid.keyserver.config;
 
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.jetty.KsJetty;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
 import org.junit.Test;
 
 import java.net.InetAddress;
+import java.util.Map;
 
 import static org.junit.Assert.*;
 
@@ -643,4 +649,446 @@ public class ConfigControllerTest {
         String[] result = this.testObj6.getServerIpWhiteList();
         assertNull(result);
     }
+    
+    /**
+     * Test of getDbPoolMaxTotal method, of class ConfigController.
+     */
+    @Test
+    public void testGetDbPoolMaxTotal1() {
+        System.out.println("getDbPoolMaxTotal1");
+        int expResult = 32;
+        int result = this.testObj1.getDbPoolMaxTotal();
+        assertEquals(expResult, result);
+    }
+    
+    /**
+     * Test of getDbPoolMaxTotal method, of class ConfigController.
+     */
+    @Test
+    public void testGetDbPoolMaxTotal2() {
+        System.out.println("getDbPoolMaxTotal2");
+        int expResult = Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+        int result = this.testObj3.getDbPoolMaxTotal();
+        assertEquals(expResult, result);
+    }
+    
+    /**
+     * Test of getDbPoolMaxIdle method, of class ConfigController.
+     */
+    @Test
+    public void testGetDbPoolMaxIdle() {
+        System.out.println("getDbPoolMaxIdle");
+        assertEquals(16, this.testObj1.getDbPoolMaxIdle());
+        assertEquals(this.testObj3.getDbPoolMaxTotal(), this.testObj3.getDbPoolMaxIdle());
+    }
+    
+    /**
+     * Test of getDbPoolMinIdle method, of class ConfigController.
+     */
+    @Test
+    public void testGetDbPoolMinIdle() {
+        System.out.println("getDbPoolMinIdle");
+        assertEquals(4, this.testObj1.getDbPoolMinIdle());
+        assertEquals(0, this.testObj3.getDbPoolMinIdle());
+        assertEquals(0, this.testObj6.getDbPoolMinIdle());
+    }
+    
+    /**
+     * Test of getDbPoolMaxWait method, of class ConfigController.
+     */
+    @Test
+    public void testGetDbPoolMaxWait() {
+        System.out.println("getDbPoolMaxWait");
+        assertEquals(500, this.testObj1.getDbPoolMaxWait());
+        assertEquals(2000, this.testObj3.getDbPoolMaxWait());
+    }
+    
+    /**
+     * Test of getDbPoolIdleTime method, of class ConfigController.
+     */
+    @Test
+    public void testGetDbPoolIdleTime() {
+        System.out.println("getDbPoolIdleTime");
+        assertEquals(30000, this.testObj1.getDbPoolIdleTime());
+        assertEquals(60000, this.testObj3.getDbPoolIdleTime());
+    }
+    
+    /**
+     * Test of getKeyCacheMaxSize method, of class ConfigController.
+     */
+    @Test
+    public void testGetKeyCacheMaxSize() {
+        System.out.println("getKeyCacheMaxSize");
+        assertEquals(5000, this.testObj1.getKeyCacheMaxSize());
+        assertEquals(10000, this.testObj3.getKeyCacheMaxSize());
+        assertEquals(10000, this.testObj6.getKeyCacheMaxSize());
+    }
+    
+    /**
+     * Test of getKeyCacheTtl method, of class ConfigController.
+     */
+    @Test
+    public void testGetKeyCacheTtl() {
+        System.out.println("getKeyCacheTtl");
+        assertEquals(0, this.testObj1.getKeyCacheTtl());
+        assertEquals(60000, this.testObj3.getKeyCacheTtl());
+    }
+    
+    /**
+     * Test of getCryptoWorkers method, of class ConfigController.
+     */
+    @Test
+    public void testGetCryptoWorkers() {
+        System.out.println("getCryptoWorkers");
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Zero workers with virtual request threads: bounded pool.
+        assertEquals(cores, this.testObj1.getCryptoWorkers());
+        assertEquals(cores, this.testObj3.getCryptoWorkers());
+        assertEquals(cores, this.testObj6.getCryptoWorkers());
+    }
+    
+    /**
+     * Test of getCryptoQueueSize method, of class ConfigController.
+     */
+    @Test
+    public void testGetCryptoQueueSize() {
+        System.out.println("getCryptoQueueSize");
+        assertEquals(64, this.testObj1.getCryptoQueueSize());
+        assertEquals(1024, this.testObj3.getCryptoQueueSize());
+    }
+    
+    /**
+     * Test of getCryptoQueueFullResponse method, of class ConfigController.
+     */
+    @Test
+    public void testGetCryptoQueueFullResponse() {
+        System.out.println("getCryptoQueueFullResponse");
+        assertEquals(CryptoWorkers.QUEUE_FULL_INLINE, this.testObj1.getCryptoQueueFullResponse());
+        assertEquals(CryptoWorkers.QUEUE_FULL_BUSY, this.testObj3.getCryptoQueueFullResponse());
+        assertEquals(CryptoWorkers.QUEUE_FULL_BUSY, this.testObj6.getCryptoQueueFullResponse());
+    }
+    
+    /**
+     * Test of getBatchMaxItems method, of class ConfigController.
+     */
+    @Test
+    public void testGetBatchMaxItems() {
+        System.out.println("getBatchMaxItems");
+        assertEquals(16, this.testObj1.getBatchMaxItems());
+        assertEquals(64, this.testObj3.getBatchMaxItems());
+        assertEquals(64, this.testObj6.getBatchMaxItems());
+    }
+    
+    /**
+     * Test of getHttpMaxBodySize method, of class ConfigController.
+     */
+    @Test
+    public void testGetHttpMaxBodySize() {
+        System.out.println("getHttpMaxBodySize");
+        assertEquals(4096, this.testObj1.getHttpMaxBodySize());
+        assertEquals(8192, this.testObj3.getHttpMaxBodySize());
+        assertEquals(8192, this.testObj6.getHttpMaxBodySize());
+    }
+    
+    /**
+     * Test of getAuditQueueSize method, of class ConfigController.
+     */
+    @Test
+    public void testGetAuditQueueSize() {
+        System.out.println("getAuditQueueSize");
+        assertEquals(1024, this.testObj1.getAuditQueueSize());
+        assertEquals(8192, this.testObj3.getAuditQueueSize());
+        assertEquals(8192, this.testObj6.getAuditQueueSize());
+    }
+    
+    /**
+     * Test of getAuditOverflowPolicy method, of class ConfigController.
+     */
+    @Test
+    public void testGetAuditOverflowPolicy() {
+        System.out.println("getAuditOverflowPolicy");
+        assertEquals(AuditLog.OVERFLOW_COUNT, this.testObj1.getAuditOverflowPolicy());
+        assertEquals(AuditLog.OVERFLOW_BLOCK, this.testObj3.getAuditOverflowPolicy());
+        assertEquals(AuditLog.OVERFLOW_BLOCK, this.testObj6.getAuditOverflowPolicy());
+    }
+    
+    /**
+     * Test of getHttpVersion method, of class ConfigController.
+     */
+    @Test
+    public void testGetHttpVersion() {
+        System.out.println("getHttpVersion");
+        assertEquals(KsJetty.HTTP_2, this.testObj1.getHttpVersion());
+        assertEquals(KsJetty.HTTP_1_1, this.testObj3.getHttpVersion());
+        assertEquals(KsJetty.HTTP_1_1, this.testObj6.getHttpVersion());
+    }
+    
+    /**
+     * Test of getHttp2MaxConcurrentStreams method, of class ConfigController.
+     */
+    @Test
+    public void testGetHttp2MaxConcurrentStreams() {
+        System.out.println("getHttp2MaxConcurrentStreams");
+        assertEquals(512, this.testObj1.getHttp2MaxConcurrentStreams());
+        assertEquals(256, this.testObj3.getHttp2MaxConcurrentStreams());
+        assertEquals(256, this.testObj6.getHttp2MaxConcurrentStreams());
+    }
+    
+    /**
+     * Test of getHttp2StreamWindow method, of class ConfigController.
+     */
+    @Test
+    public void testGetHttp2StreamWindow() {
+        System.out.println("getHttp2StreamWindow");
+        assertEquals(131072, this.testObj1.getHttp2StreamWindow());
+        assertEquals(65535, this.testObj3.getHttp2StreamWindow());
+        assertEquals(65535, this.testObj6.getHttp2StreamWindow());
+    }
+    
+    /**
+     * Test of getHttp2SessionWindow method, of class ConfigController.
+     */
+    @Test
+    public void testGetHttp2SessionWindow() {
+        System.out.println("getHttp2SessionWindow");
+        assertEquals(4194304, this.testObj1.getHttp2SessionWindow());
+        assertEquals(1048576, this.testObj3.getHttp2SessionWindow());
+        assertEquals(1048576, this.testObj6.getHttp2SessionWindow());
+    }
+    
+    /**
+     * Test of getBinaryPort method, of class ConfigController.
+     */
+    @Test
+    public void testGetBinaryPort() {
+        System.out.println("getBinaryPort");
+        assertEquals(1444, this.testObj1.getBinaryPort());
+        assertEquals(0, this.testObj3.getBinaryPort());
+        assertEquals(0, this.testObj6.getBinaryPort());
+    }
+    
+    /**
+     * Test of getBinaryMaxInFlight method, of class ConfigController.
+     */
+    @Test
+    public void testGetBinaryMaxInFlight() {
+        System.out.println("getBinaryMaxInFlight");
+        assertEquals(64, this.testObj1.getBinaryMaxInFlight());
+        assertEquals(256, this.testObj3.getBinaryMaxInFlight());
+        assertEquals(256, this.testObj6.getBinaryMaxInFlight());
+    }
+    
+    /**
+     * Test of getTlsProvider method, of class ConfigController.
+     */
+    @Test
+    public void testGetTlsProvider() {
+        System.out.println("getTlsProvider");
+        assertEquals("SunJSSE", this.testObj1.getTlsProvider());
+        // Unknown providers are checked when the TLS listener is created.
+        assertEquals("NotAProvider", this.testObj3.getTlsProvider());
+        assertEquals("default", this.testObj6.getTlsProvider());
+    }
+    
+    /**
+     * Test of getTlsCipherOrder method, of class ConfigController.
+     */
+    @Test
+    public void testGetTlsCipherOrder() {
+        System.out.println("getTlsCipherOrder");
+        assertEquals("server", this.testObj1.getTlsCipherOrder());
+        assertEquals("client", this.testObj3.getTlsCipherOrder());
+        assertEquals("client", this.testObj6.getTlsCipherOrder());
+    }
+    
+    /**
+     * Test of getTlsSessionCacheSize and getTlsSessionTimeout methods, of 
+     *     class ConfigController.
+     */
+    @Test
+    public void testGetTlsSessionCache() {
+        System.out.println("getTlsSessionCacheSize / getTlsSessionTimeout");
+        assertEquals(4096, this.testObj1.getTlsSessionCacheSize());
+        assertEquals(20480, this.testObj3.getTlsSessionCacheSize());
+        assertEquals(20480, this.testObj6.getTlsSessionCacheSize());
+        assertEquals(3600, this.testObj1.getTlsSessionTimeout());
+        assertEquals(86400, this.testObj3.getTlsSessionTimeout());
+        assertEquals(86400, this.testObj6.getTlsSessionTimeout());
+    }
+    
+    /**
+     * Test of getTlsSessionTickets method, of class ConfigController.
+     */
+    @Test
+    public void testGetTlsSessionTickets() {
+        System.out.println("getTlsSessionTickets");
+        assertEquals("off", this.testObj1.getTlsSessionTickets());
+        assertEquals("default", this.testObj3.getTlsSessionTickets());
+        assertEquals("default", this.testObj6.getTlsSessionTickets());
+    }
+    
+    /**
+     * Test of getTlsTicketKeySource and getTlsTicketKeyRotation methods, of 
+     *     class ConfigController.
+     */
+    @Test
+    public void testGetTlsTicketKeys() {
+        System.out.println("getTlsTicketKeySource / getTlsTicketKeyRotation");
+        assertEquals("redis:ks:ticketsecret", this.testObj1.getTlsTicketKeySource());
+        assertEquals("off", this.testObj3.getTlsTicketKeySource());
+        assertEquals("off", this.testObj6.getTlsTicketKeySource());
+        assertEquals(600, this.testObj1.getTlsTicketKeyRotation());
+        assertEquals(3600, this.testObj3.getTlsTicketKeyRotation());
+        assertEquals(3600, this.testObj6.getTlsTicketKeyRotation());
+    }
+    
+    /**
+     * Test of getServerMinThreads, getServerMaxThreads and 
+     *     getServerReservedThreads methods, of class ConfigController.
+     */
+    @Test
+    public void testGetServerThreads() {
+        System.out.println("getServerMinThreads / getServerMaxThreads / getServerReservedThreads");
+        assertEquals(16, this.testObj1.getServerMinThreads());
+        assertEquals(8, this.testObj3.getServerMinThreads());
+        assertEquals(8, this.testObj6.getServerMinThreads());
+        assertEquals(400, this.testObj1.getServerMaxThreads());
+        assertEquals(200, this.testObj3.getServerMaxThreads());
+        assertEquals(200, this.testObj6.getServerMaxThreads());
+        assertEquals(4, this.testObj1.getServerReservedThreads());
+        assertEquals(-1, this.testObj3.getServerReservedThreads());
+        assertEquals(-1, this.testObj6.getServerReservedThreads());
+    }
+    
+    /**
+     * Test of getServerAcceptors and getServerSelectors methods, of class 
+     *     ConfigController.
+     */
+    @Test
+    public void testGetServerAcceptorsSelectors() {
+        System.out.println("getServerAcceptors / getServerSelectors");
+        assertEquals(2, this.testObj1.getServerAcceptors());
+        assertEquals(-1, this.testObj3.getServerAcceptors());
+        assertEquals(-1, this.testObj6.getServerAcceptors());
+        assertEquals(8, this.testObj1.getServerSelectors());
+        assertEquals(-1, this.testObj3.getServerSelectors());
+        assertEquals(-1, this.testObj6.getServerSelectors());
+    }
+    
+    /**
+     * Test of getServerConnectors method, of class ConfigController.
+     */
+    @Test
+    public void testGetServerConnectors() {
+        System.out.println("getServerConnectors");
+        assertEquals(4, this.testObj1.getServerConnectors());
+        assertEquals(1, this.testObj3.getServerConnectors());
+        assertEquals(1, this.testObj6.getServerConnectors());
+    }
+    
+    /**
+     * Test of getLocalPort and getLocalAddress methods, of class 
+     *     ConfigController.
+     */
+    @Test
+    public void testGetLocalListener() {
+        System.out.println("getLocalPort / getLocalAddress");
+        assertEquals(1080, this.testObj1.getLocalPort());
+        assertEquals(0, this.testObj3.getLocalPort());
+        assertEquals(0, this.testObj6.getLocalPort());
+        assertEquals("127.0.0.5", this.testObj1.getLocalAddress().getHostAddress());
+        assertTrue(this.testObj3.getLocalAddress().isLoopbackAddress());
+        assertTrue(this.testObj6.getLocalAddress().isLoopbackAddress());
+    }
+    
+    /**
+     * Test of getServerAcceptQueueSize, getHttpOutputBufferSize and 
+     *     getServerMaxConnections methods, of class ConfigController.
+     */
+    @Test
+    public void testGetConnectorSizes() {
+        System.out.println("getServerAcceptQueueSize / getHttpOutputBufferSize / getServerMaxConnections");
+        assertEquals(1024, this.testObj1.getServerAcceptQueueSize());
+        assertEquals(0, this.testObj3.getServerAcceptQueueSize());
+        assertEquals(0, this.testObj6.getServerAcceptQueueSize());
+        assertEquals(8192, this.testObj1.getHttpOutputBufferSize());
+        assertEquals(32768, this.testObj3.getHttpOutputBufferSize());
+        assertEquals(32768, this.testObj6.getHttpOutputBufferSize());
+        assertEquals(5000, this.testObj1.getServerMaxConnections());
+        assertEquals(0, this.testObj3.getServerMaxConnections());
+        assertEquals(0, this.testObj6.getServerMaxConnections());
+    }
+    
+    /**
+     * Test of getServerThreadMode method, of class ConfigController.
+     */
+    @Test
+    public void testGetServerThreadMode() {
+        System.out.println("getServerThreadMode");
+        assertEquals(RequestThreads.MODE_VIRTUAL, this.testObj1.getServerThreadMode());
+        assertEquals(RequestThreads.MODE_PLATFORM, this.testObj3.getServerThreadMode());
+        assertEquals(RequestThreads.MODE_PLATFORM, this.testObj6.getServerThreadMode());
+    }
+    
+    /**
+     * Test of getCryptoLimit, getCryptoLimitMax and getCryptoLimitLatency 
+     *     methods, of class ConfigController.
+     */
+    @Test
+    public void testGetCryptoLimit() {
+        System.out.println("getCryptoLimit / getCryptoLimitMax / getCryptoLimitLatency");
+        assertEquals(32, this.testObj1.getCryptoLimit());
+        assertEquals(0, this.testObj3.getCryptoLimit());
+        assertEquals(0, this.testObj6.getCryptoLimit());
+        assertEquals(512, this.testObj1.getCryptoLimitMax());
+        assertEquals(1000, this.testObj3.getCryptoLimitMax());
+        assertEquals(1000, this.testObj6.getCryptoLimitMax());
+        assertEquals(50, this.testObj1.getCryptoLimitLatency());
+        assertEquals(100, this.testObj3.getCryptoLimitLatency());
+        assertEquals(100, this.testObj6.getCryptoLimitLatency());
+    }
+    
+    /**
+     * Test of getCryptoScheduler and getCryptoClientWeights methods, of class
+     *     ConfigController.
+     */
+    @Test
+    public void testGetCryptoScheduler() {
+        System.out.println("getCryptoScheduler / getCryptoClientWeights");
+        assertEquals(CryptoWorkers.SCHEDULER_FAIR, this.testObj1.getCryptoScheduler());
+        assertEquals(CryptoWorkers.SCHEDULER_FIFO, this.testObj3.getCryptoScheduler());
+        assertEquals(CryptoWorkers.SCHEDULER_FIFO, this.testObj6.getCryptoScheduler());
+        Map<String, Integer> weights = this.testObj1.getCryptoClientWeights();
+        assertEquals(2, weights.size());
+        assertEquals(Integer.valueOf(4), weights.get("192.168.1.10"));
+        assertEquals(Integer.valueOf(2), weights.get("192.168.1.11"));
+        assertTrue(this.testObj3.getCryptoClientWeights().isEmpty());
+        assertTrue(this.testObj6.getCryptoClientWeights().isEmpty());
+    }
+    
+    /**
+     * Test of getReadyCacheKeys and getReadyQueueLevel methods, of class
+     *     ConfigController.
+     */
+    @Test
+    public void testGetReadiness() {
+        System.out.println("getReadyCacheKeys / getReadyQueueLevel");
+        assertEquals(500, this.testObj1.getReadyCacheKeys());
+        assertEquals(0, this.testObj3.getReadyCacheKeys());
+        assertEquals(0, this.testObj6.getReadyCacheKeys());
+        assertEquals(50, this.testObj1.getReadyQueueLevel());
+        assertEquals(80, this.testObj3.getReadyQueueLevel());
+        assertEquals(80, this.testObj6.getReadyQueueLevel());
+    }
+    
+    /**
+     * Test of getDeadlineHeader method, of class ConfigController.
+     */
+    @Test
+    public void testGetDeadlineHeader() {
+        System.out.println("getDeadlineHeader");
+        assertEquals("X-Edge-Budget", this.testObj1.getDeadlineHeader());
+        assertEquals(DeadlineControl.DEFAULT_HEADER, this.testObj3.getDeadlineHeader());
+        assertEquals(DeadlineControl.DEFAULT_HEADER, this.testObj6.getDeadlineHeader());
+    }
 }
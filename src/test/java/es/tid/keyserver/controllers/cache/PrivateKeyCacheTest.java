@@ -0,0 +1,369 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.controllers.cache;
+
+import es.tid.keyserver.controllers.db.PrivateKeyRegister;
+import es.tid.keyserver.core.lib.RequestDeadline;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the private keys cache.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class PrivateKeyCacheTest {
+    /**
+     * PKCS#8 encoded RSA private key used by the tests.
+     */
+    private final byte[] encodedKey;
+    
+    /**
+     * Number of database queries executed by the test loader.
+     */
+    private final AtomicInteger queries;
+    
+    /**
+     * Test class constructor.
+     * @throws NoSuchAlgorithmException If RSA is not available.
+     * @since v0.4.5
+     */
+    public PrivateKeyCacheTest() throws NoSuchAlgorithmException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        encodedKey = generator.generateKeyPair().getPrivate().getEncoded();
+        queries = new AtomicInteger();
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (hits and misses).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetHit() throws Exception {
+        System.out.println("getHit");
+        PrivateKeyCache instance = new PrivateKeyCache(this::load, spki -> -1L, 10, 60000);
+        PrivateKey first = instance.get("A");
+        PrivateKey second = instance.get("A");
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(1, queries.get());
+        assertEquals(1, instance.getHits());
+        assertEquals(1, instance.getMisses());
+        assertEquals(1, instance.size());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (SPKI not found).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetNotFound() throws Exception {
+        System.out.println("getNotFound");
+        PrivateKeyCache instance = new PrivateKeyCache(spki -> null, spki -> -2L, 10, 60000);
+        assertNull(instance.get("A"));
+        assertNull(instance.get("A"));
+        assertEquals(0, instance.size());
+        assertEquals(2, instance.getMisses());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (Redis expiration date).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetRedisExpiration() throws Exception {
+        System.out.println("getRedisExpiration");
+        PrivateKeyCache instance = new PrivateKeyCache(this::load, spki -> 0L, 10, 60000);
+        instance.get("A");
+        instance.get("A");
+        assertEquals(2, queries.get());
+        assertEquals(1, instance.getExpirations());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (maximum size).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetEviction() throws Exception {
+        System.out.println("getEviction");
+        PrivateKeyCache instance = new PrivateKeyCache(this::load, spki -> -1L, 4, 60000);
+        for(int i = 0; i < 20; i++){
+            instance.get("KEY" + i);
+        }
+        assertTrue(instance.size() <= 4);
+        assertEquals(16, instance.getEvictions());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (concurrent misses).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetConcurrentMisses() throws Exception {
+        System.out.println("getConcurrentMisses");
+        CountDownLatch release = new CountDownLatch(1);
+        PrivateKeyCache instance = new PrivateKeyCache(spki -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return load(spki);
+        }, spki -> -1L, 10, 60000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PrivateKey>> results = new ArrayList<>();
+            for(int i = 0; i < 8; i++){
+                Callable<PrivateKey> task = () -> instance.get("A");
+                results.add(executor.submit(task));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for(Future<PrivateKey> result : results){
+                assertNotNull(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, queries.get());
+        // Requests waiting for the query are not counted as hits.
+        assertEquals(1, instance.getMisses());
+        assertEquals(7, instance.getCollapsed());
+        assertEquals(0, instance.getHits());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (load abandoned because the
+     *     deadline of the loading request expired). The waiting request 
+     *     queries the private key again instead of getting the timeout.
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetAbandonedLoad() throws Exception {
+        System.out.println("getAbandonedLoad");
+        CountDownLatch started = new CountDownLatch(1);
+        PrivateKeyCache instance = new PrivateKeyCache(spki -> {
+            if(queries.get() == 0){
+                started.countDown();
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                queries.incrementAndGet();
+                throw new IllegalStateException("Read timed out");
+            }
+            return load(spki);
+        }, spki -> -1L, 10, 60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PrivateKey> loader = executor.submit(() -> {
+                RequestDeadline.set(RequestDeadline.of(100, 0));
+                try {
+                    return instance.get("A");
+                } finally {
+                    RequestDeadline.set(null);
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            RequestDeadline.set(RequestDeadline.of(5000, 0));
+            try {
+                assertNotNull(instance.get("A"));
+            } finally {
+                RequestDeadline.set(null);
+            }
+            try {
+                loader.get();
+                fail("The loading request must get the timeout.");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, queries.get());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (wait for other request 
+     *     limited to the deadline).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetWaiterDeadline() throws Exception {
+        System.out.println("getWaiterDeadline");
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PrivateKeyCache instance = new PrivateKeyCache(spki -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return load(spki);
+        }, spki -> -1L, 10, 60000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<PrivateKey> loader = executor.submit(() -> instance.get("A"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            RequestDeadline deadline = RequestDeadline.of(100, 0);
+            RequestDeadline.set(deadline);
+            try {
+                instance.get("A");
+                fail("The wait must end at the deadline.");
+            } catch (IllegalStateException ex) {
+                assertTrue(deadline.isExpired());
+                assertTrue(deadline.remainingMillis() > -2000);
+            } finally {
+                RequestDeadline.set(null);
+            }
+            release.countDown();
+            assertNotNull(loader.get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, queries.get());
+    }
+    
+    /**
+     * Test of get method, of class PrivateKeyCache (not valid key).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test(expected = InvalidKeySpecException.class)
+    public void testGetNotValidKey() throws Exception {
+        System.out.println("getNotValidKey");
+        PrivateKeyCache instance = new PrivateKeyCache(spki -> new byte[]{1, 2, 3}, spki -> -1L, 10, 60000);
+        instance.get("A");
+    }
+    
+    /**
+     * Test of isEnabled method, of class PrivateKeyCache.
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testDisabled() throws Exception {
+        System.out.println("disabled");
+        PrivateKeyCache instance = new PrivateKeyCache(this::load, spki -> -1L, 10, 0);
+        instance.get("A");
+        instance.get("A");
+        assertFalse(instance.isEnabled());
+        assertEquals(2, queries.get());
+        assertEquals(0, instance.size());
+    }
+    
+    /**
+     * Test of invalidate method, of class PrivateKeyCache.
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testInvalidate() throws Exception {
+        System.out.println("invalidate");
+        PrivateKeyCache instance = new PrivateKeyCache(this::load, spki -> -1L, 10, 60000);
+        instance.get("A");
+        instance.invalidate("A");
+        instance.get("A");
+        assertEquals(2, queries.get());
+    }
+    
+    /**
+     * Test of getAll method, of class PrivateKeyCache (single database query
+     *     for all the misses).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetAll() throws Exception {
+        System.out.println("getAll");
+        AtomicInteger groupQueries = new AtomicInteger();
+        PrivateKeyCache instance = new PrivateKeyCache(this::load, spki -> -1L, 
+                spkis -> {
+                    throw new AssertionError("Private keys loaded without time to live.");
+                },
+                spkis -> {
+                    groupQueries.incrementAndGet();
+                    List<PrivateKeyRegister> registers = new ArrayList<>();
+                    for(String spki : spkis){
+                        registers.add("C".equals(spki) ? null : new PrivateKeyRegister(encodedKey, -1L));
+                    }
+                    return registers;
+                }, 10, 60000);
+        PrivateKey cached = instance.get("A");
+        Map<String, CompletableFuture<PrivateKey>> result = instance.getAll(Arrays.asList("A", "B", "C", "B"));
+        assertEquals(3, result.size());
+        assertSame(cached, PrivateKeyCache.await(result.get("A")));
+        assertNotNull(PrivateKeyCache.await(result.get("B")));
+        assertNull(PrivateKeyCache.await(result.get("C")));
+        // "A" was cached and "B" and "C" were requested together.
+        assertEquals(1, queries.get());
+        assertEquals(1, groupQueries.get());
+        assertEquals(2, instance.size());
+        assertSame(PrivateKeyCache.await(result.get("B")), instance.get("B"));
+    }
+    
+    /**
+     * Test of getAll method, of class PrivateKeyCache (not valid key).
+     * @throws Exception If something goes wrong.
+     * @since v0.4.5
+     */
+    @Test(expected = InvalidKeySpecException.class)
+    public void testGetAllInvalidKey() throws Exception {
+        System.out.println("getAllInvalidKey");
+        PrivateKeyCache instance = new PrivateKeyCache(spki -> new byte[] {1, 2, 3}, spki -> -1L, 10, 60000);
+        Map<String, CompletableFuture<PrivateKey>> result = instance.getAll(Arrays.asList("A"));
+        assertEquals(0, instance.size());
+        PrivateKeyCache.await(result.get("A"));
+    }
+    
+    /**
+     * Test database loader.
+     * @param spki Certificate hash.
+     * @return Encoded private key.
+     */
+    private byte[] load(String spki){
+        queries.incrementAndGet();
+        return encodedKey;
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.controllers.cache;
+
+import java.util.Map;
+
+/**
+ * Private keys caches for tests of other packages (keys loaded from a map 
+ *     instead of the Redis database).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public final class TestKeyCaches {
+    /**
+     * Private constructor (static methods only).
+     */
+    private TestKeyCaches(){
+    }
+    
+    /**
+     * Returns a private keys cache backed by a map.
+     * @param keys PKCS#8 encoded private keys indexed by SPKI.
+     * @return Private keys cache object.
+     */
+    public static PrivateKeyCache of(Map<String, byte[]> keys){
+        return new PrivateKeyCache(keys::get, spki -> -1L, 100, 60000);
+    }
+    
+    /**
+     * Returns a private keys cache whose database queries always fail.
+     * @param error Exception thrown by the queries (for example, Redis not 
+     *     available).
+     * @return Private keys cache object.
+     */
+    public static PrivateKeyCache failing(RuntimeException error){
+        return new PrivateKeyCache(spki -> {
+            throw error;
+        }, spki -> -1L, 100, 60000);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.controllers.db;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Redis private key lookup throughput benchmark.
+ * 
+ *     <p>Measures {@link DataBase#getPrivateForHash(String)} throughput with 
+ *     an increasing number of client threads and Redis pool sizes. It needs 
+ *     the same local Redis instance used by {@link DataBaseTest}. Run it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.controllers.db.DataBaseBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DataBaseBenchmark {
+    /**
+     * Private key register used during the benchmark.
+     */
+    private static final String CERT_HASH = "BENCHMARK0000000000000000000000000000000";
+    
+    /**
+     * Maximum number of connections inside the Redis pool.
+     */
+    @Param({"1", "8", "32"})
+    public int poolSize;
+    
+    /**
+     * Database object under test.
+     */
+    private DataBase instance;
+    
+    /**
+     * Connects to the local Redis database and provisions the test register.
+     * @throws UnknownHostException If the local address is not available.
+     * @since v0.4.5
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws UnknownHostException {
+        instance = new DataBase(InetAddress.getLocalHost(), 6379, "foobared", 0,
+                DataBase.poolConfig(poolSize, poolSize, poolSize, 2000, 60000));
+        if(!instance.isCorrectlyInitialized()){
+            throw new IllegalStateException("Redis Server is not available.");
+        }
+        instance.setPrivateKey(CERT_HASH, "VGVzdCBtZXNzYWdlLgo=");
+    }
+    
+    /**
+     * Removes the test register and closes the Redis pool.
+     * @since v0.4.5
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        instance.deletePrivateKey(CERT_HASH);
+        instance.stop();
+    }
+    
+    /**
+     * Private key lookup operation.
+     * @return Private key bytes.
+     * @since v0.4.5
+     */
+    @Benchmark
+    public byte[] getPrivateForHash() {
+        return instance.getPrivateForHash(CERT_HASH);
+    }
+    
+    /**
+     * Runs the benchmark with 1, 2, 4... threads up to twice the number of 
+     *     available processors.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     * @since v0.4.5
+     */
+    public static void main(String[] args) throws RunnerException {
+        int maxThreads = 2 * Runtime.getRuntime().availableProcessors();
+        for(int threads = 1; threads <= maxThreads; threads *= 2){
+            Options opt = new OptionsBuilder()
+                    .include(DataBaseBenchmark.class.getSimpleName())
+                    .threads(threads)
+                    .forks(1)
+                    .warmupIterations(3)
+                    .measurementIterations(5)
+                    .build();
+            new Runner(opt).run();
+        }
+    }
+}
@@ -17,9 +17,11 @@ package es.tid.keyserver.controllers.db;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -172,6 +174,57 @@ public class DataBaseTest {
         assertArrayEquals(expResult, result);
     }
 
+    /**
+     * Test of getPrivateKeyRegister method, of class DataBase.
+     */
+    @Test
+    public void testGetPrivateKeyRegister() {
+        System.out.println("getPrivateKeyRegister");
+        Assume.assumeTrue(this.dbAvailable); // If Redis DB is not available, skip the test.
+        // Insert the test register inside Redis DB.
+        String certHash = "TestHashKey1";
+        byte[] value = {1, 2, 3, 4};
+        this.dataBaseObj.set(certHash, Base64.getEncoder().encodeToString(value));
+        this.dataBaseObj.pexpire(certHash, 60000L);
+        // Test code.
+        DataBase instance = new DataBase(dbAddress, dbPort, dbPassword, dbIndex);
+        PrivateKeyRegister result = instance.getPrivateKeyRegister(certHash);
+        PrivateKeyRegister notFound = instance.getPrivateKeyRegister(certHash + "NotFound");
+        // Remove test register from Redis DB.
+        this.dataBaseObj.del(certHash);
+        instance.stop();
+        assertArrayEquals(value, result.getKey());
+        assertTrue(result.getTtl() > 0 && result.getTtl() <= 60000);
+        assertNull(notFound);
+    }
+
+    /**
+     * Test of getPrivateKeyRegisters method, of class DataBase.
+     */
+    @Test
+    public void testGetPrivateKeyRegisters() {
+        System.out.println("getPrivateKeyRegisters");
+        Assume.assumeTrue(this.dbAvailable); // If Redis DB is not available, skip the test.
+        // Insert the test registers inside Redis DB.
+        byte[] value = {1, 2, 3, 4};
+        this.dataBaseObj.set("TestHashKey1", Base64.getEncoder().encodeToString(value));
+        this.dataBaseObj.pexpire("TestHashKey1", 60000L);
+        this.dataBaseObj.set("TestHashKey2", Base64.getEncoder().encodeToString(value));
+        // Test code.
+        DataBase instance = new DataBase(dbAddress, dbPort, dbPassword, dbIndex);
+        List<PrivateKeyRegister> result = instance.getPrivateKeyRegisters(
+                Arrays.asList("TestHashKey1", "TestHashKeyNotFound", "TestHashKey2"));
+        // Remove test registers from Redis DB.
+        this.dataBaseObj.del("TestHashKey1", "TestHashKey2");
+        instance.stop();
+        assertEquals(3, result.size());
+        assertArrayEquals(value, result.get(0).getKey());
+        assertTrue(result.get(0).getTtl() > 0 && result.get(0).getTtl() <= 60000);
+        assertNull(result.get(1));
+        assertArrayEquals(value, result.get(2).getKey());
+        assertEquals(-1, result.get(2).getTtl());
+    }
+
     /**
      * Test of isConnected method, of class DataBase.
      */
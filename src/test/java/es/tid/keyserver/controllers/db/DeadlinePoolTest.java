@@ -0,0 +1,100 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.controllers.db;
+
+import es.tid.keyserver.core.lib.RequestDeadline;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisException;
+import java.net.InetAddress;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the Redis connection pool limited by the request 
+ *     deadline (no Redis server required).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class DeadlinePoolTest {
+    /**
+     * Exhausted pool (no connections allowed, 10s maximum wait).
+     */
+    private DeadlinePool pool;
+
+    /**
+     * Creates the exhausted pool.
+     */
+    @Before
+    public void setUp() {
+        GenericObjectPoolConfig config = new GenericObjectPoolConfig();
+        config.setMaxTotal(0);
+        config.setMaxWaitMillis(10000);
+        pool = new DeadlinePool(config, InetAddress.getLoopbackAddress().getHostAddress(), 6379, 
+                Protocol.DEFAULT_TIMEOUT, null, Protocol.DEFAULT_DATABASE);
+    }
+
+    /**
+     * Closes the pool and clears the request deadline.
+     */
+    @After
+    public void tearDown() {
+        RequestDeadline.set(null);
+        pool.close();
+    }
+
+    /**
+     * Test of getResource method with an exhausted pool, of class 
+     *     DeadlinePool. The wait ends with the request budget instead of the
+     *     pool maximum wait.
+     */
+    @Test
+    public void testGetResourceDeadline() {
+        System.out.println("getResource (deadline)");
+        RequestDeadline.set(RequestDeadline.of(200, 0));
+        long start = System.nanoTime();
+        try {
+            pool.getResource();
+            fail("Exhausted pool returned a connection.");
+        } catch (JedisException ex) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Waited " + elapsed + "ms", elapsed >= 150 && elapsed < 5000);
+        }
+    }
+
+    /**
+     * Test of getResource method with an exhausted pool and an expired
+     *     deadline, of class DeadlinePool. It fails without waiting.
+     */
+    @Test
+    public void testGetResourceExpired() {
+        System.out.println("getResource (expired deadline)");
+        RequestDeadline.set(RequestDeadline.of(100, 200));
+        long start = System.nanoTime();
+        try {
+            pool.getResource();
+            fail("Exhausted pool returned a connection.");
+        } catch (JedisException ex) {
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("Waited " + elapsed + "ms", elapsed < 1000);
+        }
+    }
+}
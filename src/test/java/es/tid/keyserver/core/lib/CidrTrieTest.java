@@ -0,0 +1,138 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.core.lib;
+
+import java.net.InetAddress;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the white list address blocks trie.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class CidrTrieTest {
+    /**
+     * Test of of method, of class CidrTrie.
+     * @throws Exception If an address is not valid.
+     */
+    @Test
+    public void testOf() throws Exception {
+        System.out.println("of");
+        assertNull(CidrTrie.of(null));
+        CidrTrie instance = CidrTrie.of(new String[] {"192.168.2.3 ", " 127.0.0.2"});
+        assertEquals(2, instance.size());
+        assertTrue(instance.test(InetAddress.getByName("192.168.2.3")));
+        assertTrue(instance.test(InetAddress.getByName("127.0.0.2")));
+        assertFalse(instance.test(InetAddress.getByName("127.0.0.1")));
+        assertFalse(instance.test(null));
+    }
+
+    /**
+     * Test of add method with CIDR blocks, of class CidrTrie.
+     * @throws Exception If an address is not valid.
+     */
+    @Test
+    public void testAddCidr() throws Exception {
+        System.out.println("add (CIDR)");
+        CidrTrie instance = new CidrTrie();
+        instance.add("10.0.0.0/8");
+        instance.add("2001:db8::/32");
+        // Already inside 10.0.0.0/8.
+        instance.add("10.1.2.0/24");
+        assertEquals(2, instance.size());
+        assertTrue(instance.test(InetAddress.getByName("10.255.0.1")));
+        assertFalse(instance.test(InetAddress.getByName("11.0.0.1")));
+        assertTrue(instance.test(InetAddress.getByName("2001:db8:1::5")));
+        assertFalse(instance.test(InetAddress.getByName("2001:db9::5")));
+        // IPv4 and IPv6 blocks are kept apart.
+        assertFalse(instance.test(InetAddress.getByName("::a00:1")));
+        instance.add("0.0.0.0/0");
+        assertTrue(instance.test(InetAddress.getByName("8.8.8.8")));
+    }
+
+    /**
+     * Test of add method with address ranges, of class CidrTrie.
+     * @throws Exception If an address is not valid.
+     */
+    @Test
+    public void testAddRange() throws Exception {
+        System.out.println("add (range)");
+        CidrTrie instance = new CidrTrie();
+        instance.add("192.168.1.10-192.168.1.20");
+        // .10/31, .12/30, .16/30 and .20/32
+        assertEquals(4, instance.size());
+        assertFalse(instance.test(InetAddress.getByName("192.168.1.9")));
+        for(int i = 10; i <= 20; i++){
+            assertTrue(instance.test(InetAddress.getByName("192.168.1." + i)));
+        }
+        assertFalse(instance.test(InetAddress.getByName("192.168.1.21")));
+    }
+
+    /**
+     * Test of add method with the legacy Jetty range form, of class
+     *     CidrTrie.
+     * @throws Exception If an address is not valid.
+     */
+    @Test
+    public void testAddLegacyRange() throws Exception {
+        System.out.println("add (legacy range)");
+        CidrTrie instance = CidrTrie.of(new String[] {"192.168.1.10-20", "10.0.0.0 - 255"});
+        assertFalse(instance.test(InetAddress.getByName("192.168.1.9")));
+        for(int i = 10; i <= 20; i++){
+            assertTrue(instance.test(InetAddress.getByName("192.168.1." + i)));
+        }
+        assertFalse(instance.test(InetAddress.getByName("192.168.1.21")));
+        assertFalse(instance.test(InetAddress.getByName("0.0.0.20")));
+        assertTrue(instance.test(InetAddress.getByName("10.0.0.255")));
+        assertFalse(instance.test(InetAddress.getByName("10.0.1.0")));
+    }
+
+    /**
+     * Test of add method with not valid patterns, of class CidrTrie.
+     */
+    @Test
+    public void testAddBadPatterns() {
+        System.out.println("add (bad patterns)");
+        CidrTrie instance = new CidrTrie();
+        String[] patterns = {"", "localhost", "10.0.0.0/33", "10.0.0.0/x",
+            "10.0.0.20-10.0.0.10", "10.0.0.1-::1", "10.0.0.20-10", "10.0.0.1-256", "10.0.0.1-x", "::1-5"};
+        for(String pattern : patterns){
+            try {
+                instance.add(pattern);
+                fail("Pattern accepted: " + pattern);
+            } catch (IllegalArgumentException ex) {
+                assertTrue(ex.getMessage().contains(pattern));
+            }
+        }
+        assertEquals(0, instance.size());
+    }
+
+    /**
+     * Test of contains method with many blocks, of class CidrTrie.
+     */
+    @Test
+    public void testContainsManyBlocks() {
+        System.out.println("contains (many blocks)");
+        CidrTrie instance = new CidrTrie();
+        for(int i = 0; i < 4096; i++){
+            instance.add("172." + (16 + (i >> 8)) + "." + (i & 0xff) + ".0/24");
+        }
+        assertEquals(4096, instance.size());
+        assertTrue(instance.contains(new byte[] {(byte) 172, 31, (byte) 255, 7}));
+        assertFalse(instance.contains(new byte[] {(byte) 172, 32, 0, 7}));
+    }
+}
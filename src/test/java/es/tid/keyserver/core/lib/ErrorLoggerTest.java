@@ -0,0 +1,64 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.core.lib;
+
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the rate limited error log entries.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class ErrorLoggerTest {
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ErrorLoggerTest.class);
+    
+    /**
+     * Test of error method, of class ErrorLogger.
+     */
+    @Test
+    public void testError() {
+        System.out.println("error");
+        ErrorLogger instance = new ErrorLogger(LOGGER, 3600000);
+        Exception ex = new IllegalStateException("Test error");
+        assertTrue(instance.error("Test error: {}", ex));
+        for(int i = 0; i < 10; i++){
+            assertFalse(instance.error("Test error: {}", ex));
+        }
+        assertEquals(10, instance.getSuppressed("Test error: {}"));
+        // Other message has its own limit.
+        assertTrue(instance.error("Other error: {}", ex));
+        assertEquals(0, instance.getSuppressed("Other error: {}"));
+    }
+    
+    /**
+     * Test of error method without rate limit, of class ErrorLogger.
+     */
+    @Test
+    public void testErrorWithoutLimit() {
+        System.out.println("error (without limit)");
+        ErrorLogger instance = new ErrorLogger(LOGGER, 0);
+        Exception ex = new IllegalStateException("Test error");
+        for(int i = 0; i < 3; i++){
+            assertTrue(instance.error("Test error: {}", ex));
+        }
+        assertEquals(0, instance.getSuppressed("Test error: {}"));
+    }
+}
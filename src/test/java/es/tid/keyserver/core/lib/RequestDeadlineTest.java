@@ -0,0 +1,72 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.core.lib;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the client request deadlines.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class RequestDeadlineTest {
+    /**
+     * Test of parse method, of class RequestDeadline.
+     */
+    @Test
+    public void testParse() {
+        System.out.println("parse");
+        assertNull(RequestDeadline.parse(null, 0));
+        assertNull(RequestDeadline.parse("", 0));
+        assertNull(RequestDeadline.parse("abc", 0));
+        assertNull(RequestDeadline.parse("-5", 0));
+        RequestDeadline deadline = RequestDeadline.parse(" 60000 ", 0);
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() > 50000);
+        assertTrue(deadline.allows(TimeUnit.MILLISECONDS.toNanos(1000)));
+        assertFalse(deadline.allows(TimeUnit.MILLISECONDS.toNanos(120000)));
+        // Budget already spent before the request was handled.
+        assertTrue(RequestDeadline.parse("100", 200).isExpired());
+        assertTrue(RequestDeadline.parse("0", 0).isExpired());
+    }
+
+    /**
+     * Test of capTimeout method, of class RequestDeadline.
+     */
+    @Test
+    public void testCapTimeout() {
+        System.out.println("capTimeout");
+        assertNull(RequestDeadline.current());
+        assertEquals(2000, RequestDeadline.capTimeout(2000));
+        RequestDeadline.set(RequestDeadline.of(500, 0));
+        try {
+            int timeout = RequestDeadline.capTimeout(2000);
+            assertTrue(timeout > 0 && timeout <= 500);
+            assertEquals(100, RequestDeadline.capTimeout(100));
+            RequestDeadline.set(RequestDeadline.of(0, 0));
+            // Never 0 (no socket timeout).
+            assertEquals(1, RequestDeadline.capTimeout(2000));
+        } finally {
+            RequestDeadline.set(null);
+        }
+        assertNull(RequestDeadline.current());
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.core.status;
+
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.controllers.cache.TestKeyCaches;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the health and readiness probes state.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class HealthCheckTest {
+    /**
+     * Test of getHealthBody and getReadyBody methods, of class HealthCheck.
+     */
+    @Test
+    public void testReadyBody() {
+        System.out.println("getHealthBody / getReadyBody");
+        CryptoWorkers workers = new CryptoWorkers(0, 16, CryptoWorkers.QUEUE_FULL_BUSY);
+        HealthCheck instance = new HealthCheck(TestKeyCaches.of(Collections.emptyMap()), workers, 0, 80, false);
+        assertEquals("{\"status\":\"up\"}", new String(instance.getHealthBody(), StandardCharsets.UTF_8));
+        byte[] body = instance.getReadyBody();
+        assertFalse(HealthCheck.isReady(body));
+        assertEquals("{\"status\":\"not ready\",\"reason\":\"redis\"}", new String(body, StandardCharsets.UTF_8));
+        // Redis status changes are seen by the next probe.
+        instance.setRedisAvailable(true);
+        body = instance.getReadyBody();
+        assertTrue(HealthCheck.isReady(body));
+        assertEquals("{\"status\":\"ready\"}", new String(body, StandardCharsets.UTF_8));
+        assertEquals("ready", instance.getStatus());
+        assertEquals(3, instance.getProbes());
+    }
+
+    /**
+     * Test of getStatus method with the cache warm up, of class HealthCheck.
+     * @throws Exception If the test keys can't be created.
+     */
+    @Test
+    public void testCacheWarmUp() throws Exception {
+        System.out.println("getStatus (cache warm up)");
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        Map<String, byte[]> database = new HashMap<>();
+        database.put("aa", generator.generateKeyPair().getPrivate().getEncoded());
+        database.put("bb", generator.generateKeyPair().getPrivate().getEncoded());
+        PrivateKeyCache keyCache = TestKeyCaches.of(database);
+        CryptoWorkers workers = new CryptoWorkers(0, 16, CryptoWorkers.QUEUE_FULL_BUSY);
+        HealthCheck instance = new HealthCheck(keyCache, workers, 2, 80, true);
+        assertEquals("not ready (cache)", instance.getStatus());
+        keyCache.get("aa");
+        assertEquals("not ready (cache)", instance.getStatus());
+        keyCache.get("bb");
+        assertEquals("ready", instance.getStatus());
+        // Expired or removed keys don't make the node not ready again.
+        keyCache.clear();
+        assertEquals("ready", instance.getStatus());
+    }
+
+    /**
+     * Test of getStatus method with the crypto workers queue, of class
+     *     HealthCheck.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testQueueLevel() throws Exception {
+        System.out.println("getStatus (queue level)");
+        CryptoWorkers workers = new CryptoWorkers(1, 2, CryptoWorkers.QUEUE_FULL_BUSY);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            HealthCheck instance = new HealthCheck(TestKeyCaches.of(Collections.emptyMap()), workers, 0, 50, true);
+            assertTrue(workers.submit(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertEquals("ready", instance.getStatus());
+            assertTrue(workers.submit(() -> { }));
+            assertEquals("not ready (queue)", instance.getStatus());
+        } finally {
+            release.countDown();
+            workers.stop();
+        }
+    }
+}
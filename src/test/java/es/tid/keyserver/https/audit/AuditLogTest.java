@@ -0,0 +1,156 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.audit;
+
+import java.lang.reflect.Proxy;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.slf4j.Logger;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the asynchronous security audit log.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class AuditLogTest {
+    /**
+     * Number of threads adding entries.
+     */
+    private static final int THREADS = 4;
+    
+    /**
+     * Number of entries added by each thread.
+     */
+    private static final int ENTRIES = 2000;
+    
+    /**
+     * Test of log method with the block overflow policy, of class AuditLog.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testLogBlock() throws Exception {
+        System.out.println("log (block)");
+        AuditLog instance = new AuditLog(4, AuditLog.OVERFLOW_BLOCK);
+        assertTrue(instance.isAsync());
+        assertEquals(4, instance.getCapacity());
+        addEntries(instance);
+        instance.stop();
+        assertEquals(THREADS * ENTRIES, instance.getWrittenEvents());
+        assertEquals(0, instance.getDroppedEvents());
+        assertEquals(0, instance.getPending());
+    }
+    
+    /**
+     * Test of log method with the count overflow policy, of class AuditLog.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testLogCount() throws Exception {
+        System.out.println("log (count)");
+        AuditLog instance = new AuditLog(3, AuditLog.OVERFLOW_COUNT);
+        // Rounded up to a power of two.
+        assertEquals(4, instance.getCapacity());
+        addEntries(instance);
+        instance.stop();
+        assertEquals(THREADS * ENTRIES, instance.getWrittenEvents() + instance.getDroppedEvents());
+    }
+    
+    /**
+     * Test of log method without ring buffer, of class AuditLog.
+     */
+    @Test
+    public void testLogSynchronous() {
+        System.out.println("log (synchronous)");
+        AuditLog instance = new AuditLog(0, AuditLog.OVERFLOW_DROP);
+        assertFalse(instance.isAsync());
+        assertEquals(0, instance.getCapacity());
+        instance.log(AuditEvent.REQUEST, "127.0.0.1", "POST", "/", "SPKI");
+        instance.log(AuditEvent.UNDEFINED_ERROR, "127.0.0.1", "GET", "/", 404);
+        assertEquals(2, instance.getWrittenEvents());
+        instance.stop();
+    }
+    
+    /**
+     * Test of log method with a busy writer thread, of class AuditLog. The
+     *     written line has the time when the entry was added, not when it 
+     *     was written.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testLogEventTime() throws Exception {
+        System.out.println("log (event time)");
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object[]> lines = new CopyOnWriteArrayList<>();
+        // Security logger which records the arguments of the info entries.
+        Logger security = (Logger) Proxy.newProxyInstance(Logger.class.getClassLoader(), 
+                new Class<?>[] {Logger.class}, (proxy, method, arguments) -> {
+                    if("info".equals(method.getName()) && (arguments.length == 2) 
+                            && (arguments[1] instanceof Object[])){
+                        writing.countDown();
+                        release.await(10, TimeUnit.SECONDS);
+                        lines.add((Object[]) arguments[1]);
+                    }
+                    return (method.getReturnType() == boolean.class) ? false : null;
+                });
+        AuditLog instance = new AuditLog(4, AuditLog.OVERFLOW_BLOCK, security);
+        // The writer thread is blocked writing the first entry.
+        instance.log(AuditEvent.REQUEST, "127.0.0.1", "POST", "/", "SPKI1");
+        assertTrue(writing.await(10, TimeUnit.SECONDS));
+        long before = System.currentTimeMillis();
+        instance.log(AuditEvent.REQUEST, "127.0.0.1", "POST", "/", "SPKI2");
+        long after = System.currentTimeMillis();
+        Thread.sleep(200);
+        release.countDown();
+        instance.stop();
+        assertEquals(2, lines.size());
+        long eventTime = LocalDateTime.parse((String) lines.get(1)[0], 
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS"))
+                .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        assertTrue(eventTime >= before && eventTime <= after);
+        assertEquals("SPKI2", lines.get(1)[4]);
+    }
+    
+    /**
+     * Adds entries to the audit log from several threads.
+     * @param instance Audit log.
+     * @throws InterruptedException If the current thread is interrupted.
+     */
+    private static void addEntries(AuditLog instance) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for(int i = 0; i < THREADS; i++){
+            String remoteAddr = "10.0.0." + i;
+            Thread thread = new Thread(() -> {
+                for(int j = 0; j < ENTRIES; j++){
+                    instance.log(AuditEvent.REQUEST, remoteAddr, "POST", "/", j);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for(Thread thread : threads){
+            thread.join();
+        }
+    }
+}
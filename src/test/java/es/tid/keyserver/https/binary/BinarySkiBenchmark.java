@@ -0,0 +1,365 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.binary;
+
+import ch.qos.logback.classic.Level;
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.controllers.cache.TestKeyCaches;
+import es.tid.keyserver.core.status.HealthCheck;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.jetty.KeyServerJettyHandler;
+import es.tid.keyserver.https.protocol.InputJSON;
+import es.tid.keyserver.https.protocol.OutputJSON;
+import es.tid.keyserver.https.protocol.SkiBinary;
+import es.tid.keyserver.https.protocol.SkiCbor;
+import es.tid.keyserver.https.protocol.SkiFormat;
+import es.tid.keyserver.https.protocol.SkiHash;
+import es.tid.keyserver.https.protocol.SkiMethod;
+import es.tid.keyserver.https.protocol.SkiProtocol;
+import es.tid.keyserver.https.protocol.SkiRequest;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary SKI protocol compared with the JSON endpoint, using ECDHE requests 
+ *     (133 bytes input) signed with a 2048 bits RSA key.
+ * 
+ *     <p>The "codec" benchmarks only include the request decoding and the 
+ *     response encoding. The "roundTrip" benchmarks send one request over a 
+ *     loopback TLS connection (HTTPS with keep alive using a JSON, CBOR or
+ *     octet-stream body, or binary listener) and
+ *     wait for the response. The "pipelined" benchmark sends 
+ *     {@link #PIPELINE} binary requests on one connection before reading the
+ *     responses (time per request). Run it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.https.binary.BinarySkiBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BinarySkiBenchmark {
+    /**
+     * Number of binary requests sent before reading the responses.
+     */
+    public static final int PIPELINE = 32;
+    
+    /**
+     * Certificate SHA1 of the test private key.
+     */
+    private static final byte[] SPKI = new byte[SkiBinary.SPKI_SIZE];
+    
+    /**
+     * Jetty server (JSON endpoint).
+     */
+    private Server jetty;
+    
+    /**
+     * JSON endpoint URL.
+     */
+    private URL jsonUrl;
+    
+    /**
+     * Client TLS socket factory.
+     */
+    private SSLSocketFactory clientSsl;
+    
+    /**
+     * Binary listener.
+     */
+    private BinarySkiServer binaryServer;
+    
+    /**
+     * Binary client connection.
+     */
+    private BinarySkiClient binaryClient;
+    
+    /**
+     * Crypto workers pool.
+     */
+    private CryptoWorkers workers;
+    
+    /**
+     * Security audit log.
+     */
+    private AuditLog auditLog;
+    
+    /**
+     * JSON request body.
+     */
+    private byte[] jsonBody;
+    
+    /**
+     * Binary request body.
+     */
+    private byte[] binaryBody;
+    
+    /**
+     * CBOR request body.
+     */
+    private byte[] cborBody;
+    
+    /**
+     * Output (signature) used by the codec benchmarks.
+     */
+    private byte[] output;
+    
+    /**
+     * Response read buffer.
+     */
+    private final byte[] buffer = new byte[4096];
+    
+    /**
+     * Benchmark state initialization: starts both listeners on random ports.
+     * @throws Exception If something goes wrong.
+     */
+    @Setup
+    public void setup() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger("security")).setLevel(Level.WARN);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        SPKI[0] = (byte) 0xAB;
+        String spki = SkiBinary.toHex(SPKI, 0, SPKI.length);
+        PrivateKeyCache keyCache = TestKeyCaches.of(Collections.singletonMap(spki, 
+                generator.generateKeyPair().getPrivate().getEncoded()));
+        workers = new CryptoWorkers(Runtime.getRuntime().availableProcessors(), 1024, CryptoWorkers.QUEUE_FULL_INLINE);
+        auditLog = new AuditLog(8192, AuditLog.OVERFLOW_COUNT);
+        byte[] params = new byte[133];
+        new Random(1).nextBytes(params);
+        jsonBody = ("{\"protocol\":\"TLS 1.2\", \"method\":\"ECDHE\", \"hash\":\"SHA-256\", "
+                + "\"spki\":\"" + spki + "\", "
+                + "\"input\":\"" + Base64.getEncoder().encodeToString(params) + "\"}").getBytes(StandardCharsets.UTF_8);
+        binaryBody = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.ECDHE, SkiHash.SHA_256, SPKI, params);
+        cborBody = SkiCbor.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.ECDHE, SkiHash.SHA_256, SPKI, params);
+        output = new byte[256];
+        new Random(2).nextBytes(output);
+        // JSON endpoint.
+        jetty = new Server();
+        ServerConnector connector = new ServerConnector(jetty, 
+                new SslConnectionFactory(BinarySkiClient.serverSsl(), "http/1.1"), new HttpConnectionFactory());
+        connector.setHost("127.0.0.1");
+        jetty.addConnector(connector);
+        jetty.setHandler(new KeyServerJettyHandler(keyCache, workers, 64, 8192, auditLog, 
+                new RequestThreads(RequestThreads.MODE_PLATFORM), new ConcurrencyLimit(0, 1, 1), 
+                new HealthCheck(keyCache, workers, 0, 80, true), new DeadlineControl(null)));
+        jetty.start();
+        jsonUrl = new URL("https://127.0.0.1:" + connector.getLocalPort() + "/");
+        clientSsl = BinarySkiClient.trustAll().getSocketFactory();
+        // Binary listener.
+        binaryServer = new BinarySkiServer(BinarySkiClient.serverSsl(), InetAddress.getLoopbackAddress(), 0, 
+                keyCache, workers, auditLog, 8192, 256);
+        binaryServer.open();
+        Thread thread = new Thread(binaryServer, "THBINARY");
+        thread.setDaemon(true);
+        thread.start();
+        binaryClient = new BinarySkiClient(binaryServer.getLocalPort());
+    }
+    
+    /**
+     * Stops both listeners.
+     * @throws Exception If something goes wrong.
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        binaryClient.close();
+        binaryServer.stop();
+        jetty.stop();
+        workers.stop();
+        auditLog.stop();
+    }
+    
+    /**
+     * JSON request decoding (base64 "input") and response encoding (base64 
+     *     "output").
+     * @return Response body.
+     */
+    @Benchmark
+    public byte[] jsonCodec() {
+        SkiRequest request = new InputJSON(jsonBody).getRequest();
+        return (request == null) ? null : OutputJSON.toResponseBody(Base64.getEncoder().encodeToString(output));
+    }
+    
+    /**
+     * Binary request decoding and response frame.
+     * @return Response frame.
+     */
+    @Benchmark
+    public byte[] binaryCodec() {
+        SkiRequest request = SkiBinary.decodeRequest(binaryBody, 0, binaryBody.length);
+        if(request == null){
+            return null;
+        }
+        // Length, request id and status fields.
+        byte[] frame = new byte[9 + output.length];
+        frame[8] = SkiBinary.STATUS_OK;
+        System.arraycopy(output, 0, frame, 9, output.length);
+        return frame;
+    }
+    
+    /**
+     * CBOR request decoding and response encoding (raw "input" and 
+     *     "output").
+     * @return Response body.
+     */
+    @Benchmark
+    public byte[] cborCodec() {
+        SkiRequest request = SkiCbor.decodeRequest(cborBody, 0, cborBody.length);
+        return (request == null) ? null : SkiCbor.encodeResponse(output);
+    }
+    
+    /**
+     * JSON request over HTTPS (keep alive connection).
+     * @return Response body length.
+     * @throws IOException If the request fails.
+     */
+    @Benchmark
+    public int jsonRoundTrip() throws IOException {
+        return httpsRoundTrip(jsonBody, SkiFormat.JSON);
+    }
+    
+    /**
+     * CBOR request over HTTPS (keep alive connection).
+     * @return Response body length.
+     * @throws IOException If the request fails.
+     */
+    @Benchmark
+    public int cborRoundTrip() throws IOException {
+        return httpsRoundTrip(cborBody, SkiFormat.CBOR);
+    }
+    
+    /**
+     * Octet-stream request over HTTPS (keep alive connection).
+     * @return Response body length.
+     * @throws IOException If the request fails.
+     */
+    @Benchmark
+    public int octetStreamRoundTrip() throws IOException {
+        return httpsRoundTrip(binaryBody, SkiFormat.BINARY);
+    }
+    
+    /**
+     * Sends one request to the HTTPS endpoint.
+     * @param body Request body.
+     * @param format Request body format (Content-Type header).
+     * @return Response body length.
+     * @throws IOException If the request fails.
+     */
+    private int httpsRoundTrip(byte[] body, SkiFormat format) throws IOException {
+        HttpsURLConnection connection = (HttpsURLConnection) jsonUrl.openConnection();
+        connection.setSSLSocketFactory(clientSsl);
+        connection.setHostnameVerifier((host, session) -> true);
+        connection.setDoOutput(true);
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", format.getMediaType());
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int length = 0;
+        try (InputStream in = connection.getInputStream()) {
+            for(int read = in.read(buffer); read > 0; read = in.read(buffer)){
+                length += read;
+            }
+        }
+        return length;
+    }
+    
+    /**
+     * Binary request over the binary listener.
+     * @return Response output length.
+     * @throws IOException If the request fails.
+     */
+    @Benchmark
+    public int binaryRoundTrip() throws IOException {
+        binaryClient.write(1, binaryBody);
+        binaryClient.flush();
+        binaryClient.read();
+        return binaryClient.output.length;
+    }
+    
+    /**
+     * Binary requests sent without waiting for the responses (time per 
+     *     request).
+     * @return Response output total length.
+     * @throws IOException If the request fails.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE)
+    public int binaryPipelined() throws IOException {
+        for(int i = 0; i < PIPELINE; i++){
+            binaryClient.write(i, binaryBody);
+        }
+        binaryClient.flush();
+        int length = 0;
+        for(int i = 0; i < PIPELINE; i++){
+            binaryClient.read();
+            length += binaryClient.output.length;
+        }
+        return length;
+    }
+    
+    /**
+     * Benchmark launcher.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(BinarySkiBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(opt).run();
+    }
+}
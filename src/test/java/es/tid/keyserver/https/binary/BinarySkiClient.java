@@ -0,0 +1,167 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.binary;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+
+/**
+ * Minimal binary SKI protocol client for tests and benchmarks (the server 
+ *     certificate is not checked).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+class BinarySkiClient implements AutoCloseable {
+    /**
+     * Test keystore (KeyServer self signed certificate).
+     */
+    static final String KEYSTORE = "target/test-classes/cert/ksserverkey.jks";
+    
+    /**
+     * Test keystore password.
+     */
+    static final String KEYSTORE_PASSWORD = "123456";
+    
+    /**
+     * TLS socket.
+     */
+    private final SSLSocket socket;
+    
+    /**
+     * Response frames input.
+     */
+    private final DataInputStream in;
+    
+    /**
+     * Request frames output.
+     */
+    private final DataOutputStream out;
+    
+    /**
+     * Id of the last response read.
+     */
+    int id;
+    
+    /**
+     * Status of the last response read.
+     */
+    byte status;
+    
+    /**
+     * Output of the last response read.
+     */
+    byte[] output;
+    
+    /**
+     * Opens a connection to the local listener.
+     * @param port Listener port.
+     * @throws IOException If the connection fails.
+     * @throws GeneralSecurityException If TLS is not available.
+     */
+    BinarySkiClient(int port) throws IOException, GeneralSecurityException {
+        socket = (SSLSocket) trustAll().getSocketFactory().createSocket("127.0.0.1", port);
+        socket.setTcpNoDelay(true);
+        in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+    }
+    
+    /**
+     * Writes a request frame (it's sent with the next flush).
+     * @param requestId Request id.
+     * @param body Request body.
+     * @throws IOException If the connection fails.
+     */
+    void write(int requestId, byte[] body) throws IOException {
+        out.writeInt(BinarySkiServer.ID_SIZE + body.length);
+        out.writeInt(requestId);
+        out.write(body);
+    }
+    
+    /**
+     * Sends the written request frames.
+     * @throws IOException If the connection fails.
+     */
+    void flush() throws IOException {
+        out.flush();
+    }
+    
+    /**
+     * Reads a response frame (id, status and output fields).
+     * @throws IOException If the connection fails.
+     */
+    void read() throws IOException {
+        int length = in.readInt();
+        id = in.readInt();
+        status = in.readByte();
+        output = new byte[length - BinarySkiServer.ID_SIZE - 1];
+        in.readFully(output);
+    }
+    
+    /**
+     * Closes the connection.
+     * @throws IOException If the socket can't be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+    
+    /**
+     * Returns a TLS configuration object with the test keystore.
+     * @return SslContextFactory object (not started).
+     */
+    static SslContextFactory serverSsl(){
+        SslContextFactory sslContextFactory = new SslContextFactory();
+        sslContextFactory.setKeyStorePath(KEYSTORE);
+        sslContextFactory.setKeyStorePassword(KEYSTORE_PASSWORD);
+        sslContextFactory.setKeyManagerPassword(KEYSTORE_PASSWORD);
+        return sslContextFactory;
+    }
+    
+    /**
+     * Returns a client TLS context that accepts any server certificate.
+     * @return TLS context.
+     * @throws GeneralSecurityException If TLS is not available.
+     */
+    static SSLContext trustAll() throws GeneralSecurityException {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[] {new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+            
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+            
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+}
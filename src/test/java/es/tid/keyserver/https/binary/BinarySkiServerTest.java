@@ -0,0 +1,273 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.binary;
+
+import es.tid.keyserver.controllers.cache.TestKeyCaches;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.protocol.SkiBinary;
+import es.tid.keyserver.https.protocol.SkiHash;
+import es.tid.keyserver.https.protocol.SkiMethod;
+import es.tid.keyserver.https.protocol.SkiProtocol;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.crypto.Cipher;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the binary SKI protocol listener.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class BinarySkiServerTest {
+    /**
+     * Certificate SHA1 of the test private key.
+     */
+    private static final byte[] SPKI = new byte[SkiBinary.SPKI_SIZE];
+    
+    /**
+     * Certificate SHA1 not present on the database.
+     */
+    private static final byte[] UNKNOWN_SPKI = new byte[SkiBinary.SPKI_SIZE];
+    
+    /**
+     * Test key pair.
+     */
+    private static KeyPair keys;
+    
+    /**
+     * Crypto workers pool.
+     */
+    private static CryptoWorkers workers;
+    
+    /**
+     * Audit log.
+     */
+    private static AuditLog auditLog;
+    
+    /**
+     * Listener object.
+     */
+    private static BinarySkiServer server;
+    
+    /**
+     * Starts the listener on a random port.
+     * @throws Exception If something goes wrong.
+     */
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keys = generator.generateKeyPair();
+        SPKI[0] = (byte) 0xAB;
+        UNKNOWN_SPKI[0] = (byte) 0xCD;
+        Map<String, byte[]> database = new HashMap<>();
+        database.put(SkiBinary.toHex(SPKI, 0, SPKI.length), keys.getPrivate().getEncoded());
+        workers = new CryptoWorkers(2, 16, CryptoWorkers.QUEUE_FULL_INLINE);
+        auditLog = new AuditLog(64, AuditLog.OVERFLOW_BLOCK);
+        server = new BinarySkiServer(BinarySkiClient.serverSsl(), InetAddress.getLoopbackAddress(), 0, 
+                TestKeyCaches.of(database), workers, auditLog, 1024, 8);
+        server.open();
+        Thread thread = new Thread(server, "THBINARY");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops the listener.
+     */
+    @AfterClass
+    public static void tearDownClass() {
+        server.stop();
+        workers.stop();
+        auditLog.stop();
+    }
+    
+    /**
+     * Test of pipelined RSA and ECDHE requests, of class BinarySkiServer. 
+     *     Responses are matched using the request id.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testPipelinedRequests() throws Exception {
+        System.out.println("pipelined requests");
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, keys.getPublic());
+        byte[] premaster = new byte[48];
+        premaster[0] = 3;
+        byte[] rsa = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, SPKI, cipher.doFinal(premaster));
+        byte[] params = new byte[133];
+        params[10] = 1;
+        byte[] ecdhe = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.ECDHE, SkiHash.SHA_256, SPKI, params);
+        byte[] unknown = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, UNKNOWN_SPKI, new byte[256]);
+        int requests = 40;
+        Map<Integer, byte[]> outputs = new HashMap<>();
+        Map<Integer, Byte> status = new HashMap<>();
+        try (BinarySkiClient client = new BinarySkiClient(server.getLocalPort())) {
+            for(int i = 0; i < requests; i++){
+                switch(i % 4){
+                    case 0:
+                        client.write(i, rsa);
+                        break;
+                    case 1:
+                        client.write(i, ecdhe);
+                        break;
+                    case 2:
+                        client.write(i, unknown);
+                        break;
+                    default:
+                        client.write(i, new byte[] {1, 2, 3});
+                        break;
+                }
+            }
+            client.flush();
+            for(int i = 0; i < requests; i++){
+                client.read();
+                assertNull(status.put(client.id, client.status));
+                outputs.put(client.id, client.output);
+            }
+        }
+        Signature verifier = Signature.getInstance("SHA256withRSA");
+        for(int i = 0; i < requests; i++){
+            switch(i % 4){
+                case 0:
+                    assertEquals(SkiBinary.STATUS_OK, status.get(i).byteValue());
+                    assertArrayEquals(premaster, outputs.get(i));
+                    break;
+                case 1:
+                    assertEquals(SkiBinary.STATUS_OK, status.get(i).byteValue());
+                    verifier.initVerify(keys.getPublic());
+                    verifier.update(params);
+                    assertTrue(verifier.verify(outputs.get(i)));
+                    break;
+                case 2:
+                    assertEquals(SkiBinary.STATUS_NOT_FOUND, status.get(i).byteValue());
+                    assertEquals(0, outputs.get(i).length);
+                    break;
+                default:
+                    assertEquals(SkiBinary.STATUS_MALFORMED_REQUEST, status.get(i).byteValue());
+                    break;
+            }
+        }
+        assertTrue(server.getRequests() >= requests);
+        assertTrue(server.getAcceptedConnections() >= 1);
+    }
+    
+    /**
+     * Test of frames longer than the maximum request size, of class 
+     *     BinarySkiServer. The connection is closed.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testFrameTooLong() throws Exception {
+        System.out.println("frame too long");
+        long malformed = server.getMalformedRequests();
+        try (BinarySkiClient client = new BinarySkiClient(server.getLocalPort())) {
+            client.write(1, new byte[2048]);
+            client.flush();
+            try {
+                client.read();
+                fail("Response received for a frame too long.");
+            } catch (IOException ex) {
+                assertTrue(server.getMalformedRequests() > malformed);
+            }
+        }
+    }
+    
+    /**
+     * Test of setWhiteList method, of class BinarySkiServer. Not allowed 
+     *     clients are closed before the TLS handshake.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testWhiteList() throws Exception {
+        System.out.println("setWhiteList");
+        BinarySkiServer instance = new BinarySkiServer(BinarySkiClient.serverSsl(), InetAddress.getLoopbackAddress(), 0, 
+                TestKeyCaches.of(Collections.emptyMap()), workers, auditLog, 1024, 8);
+        instance.setWhiteList(new String[] {"10.0.0.1"});
+        instance.open();
+        Thread thread = new Thread(instance, "THBINARY_WL");
+        thread.setDaemon(true);
+        thread.start();
+        try (BinarySkiClient client = new BinarySkiClient(instance.getLocalPort())) {
+            client.write(1, new byte[] {1});
+            client.flush();
+            client.read();
+            fail("Response received from a not allowed address.");
+        } catch (IOException ex) {
+            assertEquals(1, instance.getRejectedConnections());
+            assertEquals(0, instance.getAcceptedConnections());
+        } finally {
+            instance.stop();
+        }
+        assertFalse(instance.isRunning());
+    }
+    
+    /**
+     * Test of setMaxConnections method, of class BinarySkiServer. 
+     *     Connections above the limit are closed before the TLS handshake.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testMaxConnections() throws Exception {
+        System.out.println("setMaxConnections");
+        BinarySkiServer instance = new BinarySkiServer(BinarySkiClient.serverSsl(), InetAddress.getLoopbackAddress(), 0, 
+                TestKeyCaches.of(Collections.emptyMap()), workers, auditLog, 1024, 8);
+        instance.setMaxConnections(2);
+        instance.open();
+        Thread thread = new Thread(instance, "THBINARY_LIMIT");
+        thread.setDaemon(true);
+        thread.start();
+        byte[] unknown = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, UNKNOWN_SPKI, new byte[256]);
+        try (BinarySkiClient first = new BinarySkiClient(instance.getLocalPort());
+                BinarySkiClient second = new BinarySkiClient(instance.getLocalPort())) {
+            for(BinarySkiClient client : new BinarySkiClient[] {first, second}){
+                client.write(1, unknown);
+                client.flush();
+                client.read();
+                assertEquals(SkiBinary.STATUS_NOT_FOUND, client.status);
+            }
+            assertEquals(2, instance.getConnections());
+            for(int i = 0; i < 3; i++){
+                try (BinarySkiClient client = new BinarySkiClient(instance.getLocalPort())) {
+                    client.write(1, unknown);
+                    client.flush();
+                    client.read();
+                    fail("Response received above the connections limit.");
+                } catch (IOException ex) {
+                    assertEquals(i + 1, instance.getLimitedConnections());
+                }
+            }
+            assertEquals(2, instance.getAcceptedConnections());
+            // Served connections still work.
+            first.write(2, unknown);
+            first.flush();
+            first.read();
+            assertEquals(2, first.id);
+        } finally {
+            instance.stop();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.jetty;
+
+import ch.qos.logback.classic.Level;
+import es.tid.keyserver.core.lib.ErrorLogger;
+import es.tid.keyserver.https.jetty.exceptions.KeyServerException;
+import es.tid.keyserver.https.keyprocess.Rsa;
+import es.tid.keyserver.https.protocol.ErrorJSON;
+import es.tid.keyserver.https.protocol.InputJSON;
+import es.tid.keyserver.https.protocol.OutputJSON;
+import es.tid.keyserver.https.protocol.SkiRequest;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Garbage flood benchmark: cost of the error responses compared with the 
+ *     success responses.
+ * 
+ *     <p>The "rsa" benchmarks include the private key operation (a not valid 
+ *     ciphertext fails on the padding check), the "request" benchmarks only 
+ *     include the request checks and the response body. The "legacy" 
+ *     benchmarks show the previous error path (exception with stack trace 
+ *     and stack dump formatted for every error). The root logger is set to 
+ *     INFO, as in production. Run it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.https.jetty.ErrorPathBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ErrorPathBenchmark {
+    /**
+     * Logger object.
+     */
+    private static final org.slf4j.Logger LOGGER = LoggerFactory.getLogger(ErrorPathBenchmark.class);
+    
+    /**
+     * Rate limited error log entries.
+     */
+    private static final ErrorLogger ERRORS = new ErrorLogger(LOGGER);
+    
+    /**
+     * Shared stackless exception.
+     */
+    private static final KeyServerException NOT_FOUND = new KeyServerException(ErrorJSON.ERR_NOT_FOUND);
+    
+    /**
+     * Private key.
+     */
+    private PrivateKey key;
+    
+    /**
+     * Valid RSA request.
+     */
+    private SkiRequest validRsa;
+    
+    /**
+     * RSA request with a not valid ciphertext.
+     */
+    private SkiRequest garbageRsa;
+    
+    /**
+     * Valid request body.
+     */
+    private byte[] validBody;
+    
+    /**
+     * Garbage request body.
+     */
+    private byte[] garbageBody;
+    
+    /**
+     * Benchmark state initialization.
+     * @throws GeneralSecurityException If the test key can't be created.
+     */
+    @Setup
+    public void setup() throws GeneralSecurityException {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        key = keyPair.getPrivate();
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+        byte[] garbage = new byte[256];
+        new Random(1).nextBytes(garbage);
+        garbage[0] = 0;
+        String valid = request(Base64.getEncoder().encodeToString(cipher.doFinal(new byte[48])));
+        validBody = valid.getBytes(StandardCharsets.UTF_8);
+        validRsa = new InputJSON(validBody).getRequest();
+        garbageRsa = new InputJSON(request(Base64.getEncoder().encodeToString(garbage))).getRequest();
+        garbageBody = new byte[validBody.length];
+        new Random(2).nextBytes(garbageBody);
+    }
+    
+    /**
+     * RSA request with a valid ciphertext.
+     * @return Response body.
+     * @throws GeneralSecurityException If the operation fails.
+     */
+    @Benchmark
+    public byte[] rsaSuccess() throws GeneralSecurityException {
+        return OutputJSON.toResponseBody(Rsa.calcDecodedOutput(validRsa, key));
+    }
+    
+    /**
+     * RSA request with a not valid ciphertext.
+     * @return Response body.
+     * @throws GeneralSecurityException If the operation fails for other reason.
+     */
+    @Benchmark
+    public byte[] rsaError() throws GeneralSecurityException {
+        try {
+            return OutputJSON.toResponseBody(Rsa.calcDecodedOutput(garbageRsa, key));
+        } catch (BadPaddingException ex) {
+            ERRORS.error("RSA Bad Padding Exception: {}", ex);
+            return ErrorJSON.getResponseBody(ErrorJSON.ERR_UNSPECIFIED);
+        }
+    }
+    
+    /**
+     * Valid request checks (without the private key operation).
+     * @return Validated request.
+     */
+    @Benchmark
+    public SkiRequest requestSuccess() {
+        return new InputJSON(validBody).getRequest();
+    }
+    
+    /**
+     * Garbage request checks and error response.
+     * @return Response body.
+     */
+    @Benchmark
+    public byte[] requestError() {
+        return ErrorJSON.getResponseBody(new InputJSON(garbageBody).checkValidJSON());
+    }
+    
+    /**
+     * Unknown SPKI error (shared stackless exception).
+     * @return Response body.
+     */
+    @Benchmark
+    public byte[] notFound() {
+        try {
+            throw NOT_FOUND;
+        } catch (KeyServerException ex) {
+            return ErrorJSON.getResponseBody(ex.getMessage());
+        }
+    }
+    
+    /**
+     * Unknown SPKI error (previous implementation: new exception with stack 
+     *     trace).
+     * @return Response body.
+     */
+    @Benchmark
+    public byte[] legacyNotFound() {
+        try {
+            throw new Exception(ErrorJSON.ERR_NOT_FOUND);
+        } catch (Exception ex) {
+            return new ErrorJSON(ex.getMessage()).toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+    
+    /**
+     * Error log entry for a crypto exception (previous implementation: stack 
+     *     dump formatted even if the debug level is not enabled). The error
+     *     entry itself is not written, so the output is not flooded.
+     * @return Formatted stack dump.
+     */
+    @Benchmark
+    public String legacyErrorLog() {
+        Exception ex = new BadPaddingException("Decryption error");
+        StringWriter errors = new StringWriter();
+        ex.printStackTrace(new PrintWriter(errors));
+        LOGGER.debug(errors.toString());
+        return errors.toString();
+    }
+    
+    /**
+     * Error log entry for a crypto exception (rate limited, stack dump only
+     *     if the debug level is enabled).
+     * @return True if the entry has been written.
+     */
+    @Benchmark
+    public boolean errorLog() {
+        Exception ex = new BadPaddingException("Decryption error");
+        return ERRORS.error("RSA Bad Padding Exception: {}", ex);
+    }
+    
+    /**
+     * Creates a RSA request body.
+     * @param input Base64 encoded ciphertext.
+     * @return Request body.
+     */
+    private static String request(String input){
+        return "{\"protocol\":\"TLS 1.2\", \"method\":\"RSA\", "
+                + "\"spki\":\"193D57F655228025FCB8140933BE466BAB5D8E88\", "
+                + "\"input\":\"" + input + "\"}";
+    }
+    
+    /**
+     * Benchmark launcher.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ErrorPathBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import es.tid.keyserver.controllers.cache.PrivateKeyCache;
+import es.tid.keyserver.controllers.cache.TestKeyCaches;
+import es.tid.keyserver.core.status.HealthCheck;
+import es.tid.keyserver.https.audit.AuditLog;
+import es.tid.keyserver.https.protocol.ErrorJSON;
+import es.tid.keyserver.https.protocol.SkiBinary;
+import es.tid.keyserver.https.workers.ConcurrencyLimit;
+import es.tid.keyserver.https.workers.CryptoWorkers;
+import es.tid.keyserver.https.workers.DeadlineControl;
+import es.tid.keyserver.https.workers.RequestThreads;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the HTTP requests handler (plain HTTP connector on
+ *     loopback).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class KeyServerJettyHandlerTest {
+    /**
+     * Request SPKI.
+     */
+    private static final String SPKI = SkiBinary.toHex(new byte[SkiBinary.SPKI_SIZE], 0, SkiBinary.SPKI_SIZE);
+
+    /**
+     * Jetty server object (null until started).
+     */
+    private Server server;
+
+    /**
+     * Crypto workers pool.
+     */
+    private CryptoWorkers workers;
+
+    /**
+     * Security audit log.
+     */
+    private AuditLog auditLog;
+
+    /**
+     * Listener port.
+     */
+    private int port;
+
+    /**
+     * Creates the shared objects.
+     */
+    @Before
+    public void setUp() {
+        workers = new CryptoWorkers(0, 16, CryptoWorkers.QUEUE_FULL_BUSY);
+        auditLog = new AuditLog(64, AuditLog.OVERFLOW_BLOCK);
+    }
+
+    /**
+     * Stops the Jetty server.
+     * @throws Exception If the server can't be stopped.
+     */
+    @After
+    public void tearDown() throws Exception {
+        if(server != null){
+            server.stop();
+        }
+        workers.stop();
+        auditLog.stop();
+    }
+
+    /**
+     * Test of handle method with the Redis query failing on a request
+     *     thread, of class KeyServerJettyHandler. The client gets the
+     *     "unspecified error" response with HTTP 500 (not an empty response).
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testRequestThreadQueryError() throws Exception {
+        System.out.println("handle (request thread, query error)");
+        start(TestKeyCaches.failing(new IllegalStateException("Redis not available")), new TestThreads(true));
+        assertError(500, ErrorJSON.ERR_UNSPECIFIED, post("/", request(SPKI)));
+    }
+
+    /**
+     * Test of handle method with the Redis query failing when the request
+     *     threads executor is stopped (the Jetty thread runs the task), of
+     *     class KeyServerJettyHandler.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testFallbackQueryError() throws Exception {
+        System.out.println("handle (fallback, query error)");
+        start(TestKeyCaches.failing(new IllegalStateException("Redis not available")), new TestThreads(false));
+        assertError(500, ErrorJSON.ERR_UNSPECIFIED, post("/", request(SPKI)));
+    }
+
+    /**
+     * Test of handle method with a batch request, of class 
+     *     KeyServerJettyHandler. Each item takes a slot of the concurrency 
+     *     limit, items above the limit get an error result.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testBatchConcurrencyLimit() throws Exception {
+        System.out.println("handle (batch, concurrency limit)");
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        byte[] key = generator.generateKeyPair().getPrivate().getEncoded();
+        ConcurrencyLimit limit = new ConcurrencyLimit(1, 1, 60000);
+        start(TestKeyCaches.of(Collections.singletonMap(SPKI, key)), new RequestThreads(RequestThreads.MODE_PLATFORM), 
+                limit, new DeadlineControl(null));
+        String batch = "[{\"id\":1, " + request(SPKI).substring(1) + ", {\"id\":2, " + request(SPKI).substring(1) + "]";
+        // Slot taken by other request: both items are rejected.
+        assertTrue(limit.tryAcquire());
+        String response = post(KeyServerJettyHandler.BATCH_TARGET, batch);
+        assertTrue(response, response.startsWith("200\n"));
+        assertTrue(response, response.contains(ErrorJSON.ERR_UNSPECIFIED));
+        assertEquals(2, limit.getRejected());
+        limit.release(System.nanoTime());
+        // Slot available (items executed one by one on the Jetty thread).
+        response = post(KeyServerJettyHandler.BATCH_TARGET, batch);
+        assertTrue(response, response.startsWith("200\n"));
+        assertFalse(response, response.contains("\"error\""));
+        assertEquals(2, limit.getRejected());
+        assertEquals(0, limit.getInFlight());
+    }
+
+    /**
+     * Starts the handler on a random loopback port.
+     * @param keyCache Private keys cache.
+     * @param requestThreads Request threads.
+     * @throws Exception If the server can't be started.
+     */
+    private void start(PrivateKeyCache keyCache, RequestThreads requestThreads) throws Exception {
+        start(keyCache, requestThreads, new ConcurrencyLimit(0, 1, 1), new DeadlineControl(null));
+    }
+
+    /**
+     * Starts the handler on a random loopback port.
+     * @param keyCache Private keys cache.
+     * @param requestThreads Request threads.
+     * @param concurrencyLimit Concurrency limit.
+     * @param deadlineControl Client time budgets.
+     * @throws Exception If the server can't be started.
+     */
+    private void start(PrivateKeyCache keyCache, RequestThreads requestThreads, ConcurrencyLimit concurrencyLimit,
+            DeadlineControl deadlineControl) throws Exception {
+        server = new Server();
+        ServerConnector connector = new ServerConnector(server, new HttpConnectionFactory());
+        connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        server.addConnector(connector);
+        server.setHandler(new KeyServerJettyHandler(keyCache, workers, 8, 8192, auditLog, requestThreads,
+                concurrencyLimit, new HealthCheck(keyCache, workers, 0, 80, true), deadlineControl));
+        server.start();
+        port = connector.getLocalPort();
+    }
+
+    /**
+     * Returns a valid ECDHE request body.
+     * @param spki Request SPKI.
+     * @return JSON request.
+     */
+    static String request(String spki) {
+        return "{\"protocol\":\"TLS 1.2\", \"method\":\"ECDHE\", \"hash\":\"SHA-256\", "
+                + "\"spki\":\"" + spki + "\", "
+                + "\"input\":\"" + Base64.getEncoder().encodeToString(new byte[133]) + "\"}";
+    }
+
+    /**
+     * Sends a POST request.
+     * @param target Request target.
+     * @param body Request body.
+     * @param headers Extra header names and values.
+     * @return HTTP status and response body (status code, new line, body).
+     * @throws IOException If the request fails.
+     */
+    String post(String target, String body, String... headers) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http",
+                InetAddress.getLoopbackAddress().getHostAddress(), port, target).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setReadTimeout(10000);
+        connection.setRequestProperty("Content-Type", "application/json");
+        for(int i = 0; i + 1 < headers.length; i += 2){
+            connection.setRequestProperty(headers[i], headers[i + 1]);
+        }
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        if(in != null){
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[1024];
+                for(int read; (read = stream.read(buffer)) >= 0; ){
+                    response.write(buffer, 0, read);
+                }
+            }
+        }
+        return status + "\n" + new String(response.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks an error response.
+     * @param status Expected HTTP status.
+     * @param error Expected error code.
+     * @param response Response returned by {@link #post(String, String, String...)}.
+     */
+    static void assertError(int status, String error, String response) {
+        assertTrue(response, response.startsWith(status + "\n"));
+        assertTrue(response, response.contains(error));
+    }
+
+    /**
+     * Request threads for the tests: each task runs on a new platform thread
+     *     (as on a virtual thread), or on the Jetty thread as when the
+     *     executor is stopped.
+     */
+    static final class TestThreads extends RequestThreads {
+        /**
+         * True to run the tasks on new threads.
+         */
+        private final boolean start;
+
+        /**
+         * Class constructor.
+         * @param start True to run the tasks on new threads, false to
+         *     reject them (the caller runs the task).
+         */
+        TestThreads(boolean start) {
+            super(RequestThreads.MODE_PLATFORM);
+            this.start = start;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        public boolean submit(Runnable task) {
+            if(!start){
+                return false;
+            }
+            new Thread(task, "THTESTREQUEST").start();
+            return true;
+        }
+    }
+}
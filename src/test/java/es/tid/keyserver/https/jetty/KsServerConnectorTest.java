@@ -0,0 +1,196 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import es.tid.keyserver.core.lib.CidrTrie;
+import es.tid.keyserver.https.audit.AuditLog;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.DefaultHandler;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the white list check of the HTTPS connector.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class KsServerConnectorTest {
+    /**
+     * Jetty server object.
+     */
+    private Server server;
+
+    /**
+     * Connector under test (plain HTTP, the check is done before any byte
+     *     is read).
+     */
+    private KsServerConnector connector;
+
+    /**
+     * Security audit log.
+     */
+    private AuditLog auditLog;
+
+    /**
+     * Starts a Jetty server on a random loopback port.
+     * @throws Exception If the server can't be started.
+     */
+    @Before
+    public void setUp() throws Exception {
+        server = new Server();
+        auditLog = new AuditLog(64, AuditLog.OVERFLOW_BLOCK);
+        connector = new KsServerConnector(server, 1, 1, new HttpConnectionFactory());
+        connector.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new DefaultHandler());
+        server.start();
+    }
+
+    /**
+     * Stops the Jetty server.
+     * @throws Exception If the server can't be stopped.
+     */
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        auditLog.stop();
+    }
+
+    /**
+     * Test of setWhiteList method with a not allowed client, of class
+     *     KsServerConnector.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testNotAllowed() throws Exception {
+        System.out.println("setWhiteList (not allowed)");
+        connector.setWhiteList(CidrTrie.of(new String[] {"10.0.0.0/8"}), auditLog);
+        assertEquals(-1, request());
+        assertEquals(1, connector.getRejectedConnections());
+    }
+
+    /**
+     * Test of setWhiteList method with an allowed client, of class
+     *     KsServerConnector.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testAllowed() throws Exception {
+        System.out.println("setWhiteList (allowed)");
+        connector.setWhiteList(CidrTrie.of(new String[] {"127.0.0.0/8", "::1"}), auditLog);
+        assertEquals('H', request());
+        connector.setWhiteList(null, null);
+        assertEquals('H', request());
+        assertEquals(0, connector.getRejectedConnections());
+    }
+
+    /**
+     * Test of setReusePort method, of class KsServerConnector. Two 
+     *     connectors listen on the same port.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testReusePort() throws Exception {
+        System.out.println("setReusePort");
+        Assume.assumeTrue(KsServerConnector.isReusePortSupported());
+        Server shared = new Server();
+        KsServerConnector first = newReusePortConnector(shared, 0);
+        first.open();
+        KsServerConnector second = newReusePortConnector(shared, first.getLocalPort());
+        shared.addConnector(first);
+        shared.addConnector(second);
+        shared.setHandler(new DefaultHandler());
+        try {
+            shared.start();
+            assertEquals(first.getLocalPort(), second.getLocalPort());
+            for(int i = 0; i < 8; i++){
+                assertEquals('H', request(first.getLocalPort()));
+            }
+        } finally {
+            shared.stop();
+        }
+        // Without SO_REUSEPORT the port can't be shared.
+        KsServerConnector other = newReusePortConnector(server, connector.getLocalPort());
+        other.setReusePort(false);
+        try {
+            other.open();
+            fail("Port shared without SO_REUSEPORT.");
+        } catch (IOException ex) {
+            assertFalse(other.isOpen());
+        }
+    }
+
+    /**
+     * Creates a loopback connector with SO_REUSEPORT.
+     * @param owner Jetty server object.
+     * @param port Listener port.
+     * @return Connector object (not opened).
+     */
+    private static KsServerConnector newReusePortConnector(Server owner, int port) {
+        KsServerConnector instance = new KsServerConnector(owner, 1, 1, new HttpConnectionFactory());
+        instance.setHost(InetAddress.getLoopbackAddress().getHostAddress());
+        instance.setPort(port);
+        instance.setReusePort(true);
+        return instance;
+    }
+
+    /**
+     * Sends a HTTP request to the connector.
+     * @return First response byte or -1 if the connection has been closed.
+     * @throws Exception If the request can't be sent.
+     */
+    private int request() throws Exception {
+        return request(connector.getLocalPort());
+    }
+
+    /**
+     * Sends a HTTP request to a local port.
+     * @param port Listener port.
+     * @return First response byte or -1 if the connection has been closed.
+     * @throws Exception If the request can't be sent.
+     */
+    private static int request(int port) throws Exception {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setSoTimeout(5000);
+            OutputStream out = socket.getOutputStream();
+            InputStream in = socket.getInputStream();
+            try {
+                out.write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                        .getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+                return in.read();
+            } catch (SocketException ex) {
+                // Connection reset by the server.
+                return -1;
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.DefaultHandler;
+import org.junit.Test;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the TLS configuration of the KeyServer listeners.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class KsSslContextFactoryTest {
+    /**
+     * Test of the server cipher suites order.
+     */
+    @Test
+    public void testServerCipherOrder() {
+        System.out.println("SERVER_CIPHER_ORDER");
+        List<String> suites = Arrays.asList(
+                "TLS_RSA_WITH_AES_128_GCM_SHA256",
+                "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384",
+                "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+                "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+                "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+                "TLS_AES_256_GCM_SHA384",
+                "TLS_AES_128_GCM_SHA256");
+        suites.sort(KsSslContextFactory.SERVER_CIPHER_ORDER);
+        assertEquals(Arrays.asList(
+                "TLS_AES_128_GCM_SHA256",
+                "TLS_AES_256_GCM_SHA384",
+                "TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256",
+                "TLS_ECDHE_ECDSA_WITH_CHACHA20_POLY1305_SHA256",
+                "TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384",
+                "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384",
+                "TLS_RSA_WITH_AES_128_GCM_SHA256"), suites);
+    }
+    
+    /**
+     * Test of setTlsProvider and setCipherOrder methods, of class 
+     *     KsSslContextFactory.
+     */
+    @Test
+    public void testSettings() {
+        System.out.println("setTlsProvider / setCipherOrder");
+        KsSslContextFactory factory = new KsSslContextFactory();
+        factory.setTlsProvider("SunJSSE");
+        assertEquals("SunJSSE", factory.getProvider());
+        // Unknown providers use the default provider.
+        factory.setTlsProvider("NotAProvider");
+        assertNull(factory.getProvider());
+        factory.setCipherOrder(KsSslContextFactory.CIPHER_ORDER_SERVER);
+        assertSame(KsSslContextFactory.SERVER_CIPHER_ORDER, factory.getCipherComparator());
+        assertTrue(factory.isUseCipherSuitesOrder());
+        factory.setSslSessionCacheSize(100);
+        factory.setSslSessionTimeout(60);
+        assertEquals("provider default, cipher order server, session cache 100 (60 s), tickets default", 
+                factory.getSettings());
+    }
+    
+    /**
+     * Test of getHandshakeListener method, of class KsSslContextFactory. The
+     *     second connection of the same client resumes the session.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testHandshakeListener() throws Exception {
+        System.out.println("getHandshakeListener");
+        KsSslContextFactory factory = new KsSslContextFactory();
+        factory.setKeyStorePath("target/test-classes/cert/ksserverkey.jks");
+        factory.setKeyStorePassword("123456");
+        factory.setKeyManagerPassword("123456");
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server, 
+                new SslConnectionFactory(factory, "http/1.1"), new HttpConnectionFactory());
+        connector.setHost("127.0.0.1");
+        connector.addBean(factory.getHandshakeListener());
+        server.addConnector(connector);
+        server.setHandler(new DefaultHandler());
+        server.start();
+        try {
+            SSLContext client = SSLContext.getInstance("TLS");
+            client.init(null, new TrustManager[] {new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+                
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+                
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            }}, null);
+            request(client, connector.getLocalPort());
+            // Session creation time resolution.
+            Thread.sleep(20);
+            request(client, connector.getLocalPort());
+            assertEquals(1, factory.getFullHandshakes());
+            assertEquals(1, factory.getResumedHandshakes());
+            // The JDK provider doesn't accept external ticket keys.
+            assertFalse(factory.setTicketKeys(new byte[SessionTicketKeys.KEYS_SIZE]));
+        } finally {
+            server.stop();
+        }
+    }
+    
+    /**
+     * Sends a HTTP request and reads the response until the server closes 
+     *     the connection.
+     * @param client Client TLS context.
+     * @param port HTTPS connector port.
+     * @throws Exception If the connection fails.
+     */
+    private static void request(SSLContext client, int port) throws Exception {
+        try (SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("127.0.0.1", port)) {
+            socket.setEnabledProtocols(new String[] {"TLSv1.2"});
+            socket.getOutputStream().write("GET / HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                    .getBytes(StandardCharsets.US_ASCII));
+            socket.getOutputStream().flush();
+            InputStream in = socket.getInputStream();
+            byte[] buffer = new byte[1024];
+            while(in.read(buffer) > 0){
+                // Response discarded.
+            }
+        }
+    }
+}
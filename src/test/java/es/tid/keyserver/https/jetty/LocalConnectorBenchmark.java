@@ -0,0 +1,252 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import ch.qos.logback.classic.Level;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request latency of the local cleartext listener compared with the HTTPS
+ *     connector on loopback. Each operation sends one SKI sized POST on a
+ *     persistent connection and reads the response, so the handshake is
+ *     not measured (only the TLS record layer).
+ *
+ *     <p>Run it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.https.jetty.LocalConnectorBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocalConnectorBenchmark {
+    /**
+     * Test keystore (RSA 2048 bits certificate).
+     */
+    private static final String KEYSTORE = "target/test-classes/cert/ksserverkey.jks";
+
+    /**
+     * Response body (RSA 2048 bits output size in base64).
+     */
+    private static final byte[] RESPONSE = new byte[360];
+
+    /**
+     * Connector transport.
+     */
+    @Param({"tls", "cleartext"})
+    public String transport;
+
+    /**
+     * Jetty server.
+     */
+    private Server jetty;
+
+    /**
+     * Persistent client connection.
+     */
+    private Socket socket;
+
+    /**
+     * Request bytes (headers and a SKI request sized body).
+     */
+    private byte[] request;
+
+    /**
+     * Response read buffer.
+     */
+    private final byte[] buffer = new byte[4096];
+
+    /**
+     * Benchmark state initialization: starts the connector and opens the
+     *     client connection.
+     * @throws Exception If something goes wrong.
+     */
+    @Setup
+    public void setup() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        Arrays.fill(RESPONSE, (byte) 'A');
+        jetty = new Server();
+        ServerConnector connector;
+        if("tls".equals(transport)){
+            KsSslContextFactory sslContextFactory = new KsSslContextFactory();
+            sslContextFactory.setKeyStorePath(KEYSTORE);
+            sslContextFactory.setKeyStorePassword("123456");
+            sslContextFactory.setKeyManagerPassword("123456");
+            connector = new ServerConnector(jetty,
+                    new SslConnectionFactory(sslContextFactory, "http/1.1"), new HttpConnectionFactory());
+        } else {
+            connector = new ServerConnector(jetty, new HttpConnectionFactory());
+        }
+        connector.setHost("127.0.0.1");
+        jetty.addConnector(connector);
+        jetty.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                    HttpServletResponse response) throws IOException {
+                InputStream in = request.getInputStream();
+                while(in.read(new byte[1024]) >= 0){
+                    // Request body discarded.
+                }
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentLength(RESPONSE.length);
+                response.getOutputStream().write(RESPONSE);
+                baseRequest.setHandled(true);
+            }
+        });
+        jetty.start();
+        byte[] body = new byte[420];
+        Arrays.fill(body, (byte) 'B');
+        byte[] head = ("POST / HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\n"
+                + "Content-Length: " + body.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+        request = Arrays.copyOf(head, head.length + body.length);
+        System.arraycopy(body, 0, request, head.length, body.length);
+        socket = "tls".equals(transport)
+                ? trustAll().getSocketFactory().createSocket("127.0.0.1", connector.getLocalPort())
+                : new Socket("127.0.0.1", connector.getLocalPort());
+        socket.setTcpNoDelay(true);
+    }
+
+    /**
+     * Closes the client connection and stops the connector.
+     * @throws Exception If something goes wrong.
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        socket.close();
+        jetty.stop();
+    }
+
+    /**
+     * One request on the persistent connection.
+     * @return Response length.
+     * @throws IOException If the connection fails.
+     */
+    @Benchmark
+    public int request() throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(request);
+        out.flush();
+        return readResponse(socket.getInputStream());
+    }
+
+    /**
+     * Reads a response with Content-Length.
+     * @param in Connection input stream.
+     * @return Response length (headers and body).
+     * @throws IOException If the connection is closed.
+     */
+    private int readResponse(InputStream in) throws IOException {
+        int length = 0;
+        int headerEnd = -1;
+        int contentLength = 0;
+        while((headerEnd < 0) || (length < headerEnd + contentLength)){
+            int read = in.read(buffer, length, buffer.length - length);
+            if(read < 0){
+                throw new EOFException("Connection closed.");
+            }
+            length += read;
+            if(headerEnd < 0){
+                String head = new String(buffer, 0, length, StandardCharsets.US_ASCII);
+                int end = head.indexOf("\r\n\r\n");
+                if(end >= 0){
+                    headerEnd = end + 4;
+                    int field = head.toLowerCase().indexOf("content-length:");
+                    contentLength = Integer.parseInt(head.substring(field + 15,
+                            head.indexOf("\r\n", field)).trim());
+                }
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns a client TLS context that accepts any server certificate.
+     * @return TLS context.
+     * @throws GeneralSecurityException If TLS is not available.
+     */
+    private static SSLContext trustAll() throws GeneralSecurityException {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[] {new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+
+    /**
+     * Benchmark launcher.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(LocalConnectorBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.jetty;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the bounded request body reader.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class RequestBodyReaderTest {
+    /**
+     * Test of read method, of class RequestBodyReader.
+     * @throws Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testRead() throws Exception {
+        System.out.println("read");
+        RequestBodyReader instance = new RequestBodyReader(1024);
+        byte[] data = "{\"method\":\"RSA\"}".getBytes(StandardCharsets.UTF_8);
+        // With and without Content-Length.
+        for(int contentLength : new int[] {data.length, -1}){
+            ByteBuffer result = instance.read(new ByteArrayInputStream(data), contentLength);
+            assertNotNull(result);
+            assertArrayEquals(data, Arrays.copyOf(result.array(), result.limit()));
+        }
+        // The buffer is reused by the same thread.
+        assertSame(instance.read(new ByteArrayInputStream(data), -1), instance.read(new ByteArrayInputStream(data), -1));
+        // Exactly the maximum size.
+        assertEquals(1024, instance.read(new ByteArrayInputStream(new byte[1024]), -1).limit());
+    }
+    
+    /**
+     * Test of read method, of class RequestBodyReader (body too long).
+     * @throws Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testReadTooLong() throws Exception {
+        System.out.println("readTooLong");
+        RequestBodyReader instance = new RequestBodyReader(1024);
+        CountingInputStream in = new CountingInputStream(new byte[1 << 20]);
+        // Content-Length too long: nothing is read.
+        assertNull(instance.read(in, 1 << 20));
+        assertEquals(0, in.count);
+        // No Content-Length: reading stops after the maximum size.
+        assertNull(instance.read(in, -1));
+        assertEquals(1025, in.count);
+    }
+    
+    /**
+     * Test of readFully method, of class RequestBodyReader.
+     * @throws Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testReadFully() throws Exception {
+        System.out.println("readFully");
+        RequestBodyReader instance = new RequestBodyReader(1024);
+        byte[] data = new byte[3000];
+        Arrays.fill(data, (byte) 'a');
+        assertArrayEquals(data, instance.readFully(new ByteArrayInputStream(data), data.length, 4096));
+        assertArrayEquals(data, instance.readFully(new ByteArrayInputStream(data), -1, 4096));
+        assertNull(instance.readFully(new ByteArrayInputStream(data), data.length, 2048));
+        assertNull(instance.readFully(new ByteArrayInputStream(data), -1, 2048));
+    }
+    
+    /**
+     * Test of readFully method with a Content-Length longer than the body, 
+     *     of class RequestBodyReader. The reads are limited to the thread 
+     *     buffer and the bytes after the Content-Length are not read.
+     * @throws Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testReadFullyShortBody() throws Exception {
+        System.out.println("readFully (short body)");
+        RequestBodyReader instance = new RequestBodyReader(1024);
+        int[] maxRead = new int[1];
+        InputStream in = new ByteArrayInputStream(new byte[100]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                maxRead[0] = Math.max(maxRead[0], len);
+                return super.read(b, off, len);
+            }
+        };
+        // Announced 512 KB, only 100 bytes sent.
+        assertEquals(100, instance.readFully(in, 512 * 1024, 512 * 1024).length);
+        assertEquals(1024, maxRead[0]);
+        ByteArrayInputStream longer = new ByteArrayInputStream(new byte[3000]);
+        assertEquals(2000, instance.readFully(longer, 2000, 4096).length);
+        assertEquals(1000, longer.available());
+    }
+    
+    /**
+     * Test of preview method, of class RequestBodyReader.
+     * @throws Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testPreview() throws Exception {
+        System.out.println("preview");
+        RequestBodyReader instance = new RequestBodyReader(1024);
+        assertEquals("junk", instance.preview(new ByteArrayInputStream("junk".getBytes(StandardCharsets.UTF_8))));
+        CountingInputStream in = new CountingInputStream(new byte[1 << 20]);
+        assertEquals(RequestBodyReader.PREVIEW_SIZE, instance.preview(in).length());
+        assertEquals(RequestBodyReader.PREVIEW_SIZE, in.count);
+    }
+    
+    /**
+     * Input stream that counts the number of bytes read.
+     */
+    private static class CountingInputStream extends InputStream {
+        /**
+         * Stream content.
+         */
+        private final ByteArrayInputStream in;
+        
+        /**
+         * Number of bytes read.
+         */
+        private int count = 0;
+        
+        /**
+         * Class constructor.
+         * @param data Stream content.
+         */
+        CountingInputStream(byte[] data){
+            in = new ByteArrayInputStream(data);
+        }
+        
+        @Override
+        public int read(){
+            int value = in.read();
+            if(value != -1){
+                count++;
+            }
+            return value;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len){
+            int read = in.read(b, off, len);
+            if(read > 0){
+                count += read;
+            }
+            return read;
+        }
+    }
+}
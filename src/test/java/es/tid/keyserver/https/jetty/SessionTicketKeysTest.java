@@ -0,0 +1,111 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the session ticket keys shared by the KeyServer
+ *     nodes.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SessionTicketKeysTest {
+    /**
+     * Test of deriveKeys method, of class SessionTicketKeys.
+     */
+    @Test
+    public void testDeriveKeys() {
+        System.out.println("deriveKeys");
+        byte[] secret = new byte[32];
+        Arrays.fill(secret, (byte) 7);
+        byte[] keys = SessionTicketKeys.deriveKeys(secret, 10);
+        assertEquals(SessionTicketKeys.KEYS_SIZE, keys.length);
+        // Same secret and slot on every node.
+        assertArrayEquals(keys, SessionTicketKeys.deriveKeys(secret.clone(), 10));
+        assertFalse(Arrays.equals(keys, SessionTicketKeys.deriveKeys(secret, 11)));
+        secret[0] = 8;
+        assertFalse(Arrays.equals(keys, SessionTicketKeys.deriveKeys(secret, 10)));
+    }
+
+    /**
+     * Test of loadSecret method with a file source, of class
+     *     SessionTicketKeys.
+     * @throws Exception If the test file can't be written.
+     */
+    @Test
+    public void testLoadSecretFile() throws Exception {
+        System.out.println("loadSecret (file)");
+        File file = File.createTempFile("ticketsecret", ".txt");
+        file.deleteOnExit();
+        byte[] secret = new byte[48];
+        Arrays.fill(secret, (byte) 3);
+        Files.write(file.toPath(), (Base64.getEncoder().encodeToString(secret) + "\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        SessionTicketKeys instance = new SessionTicketKeys(SessionTicketKeys.SOURCE_FILE + file.getPath(),
+                60000, null);
+        assertTrue(instance.isEnabled());
+        assertArrayEquals(secret, instance.loadSecret());
+        // Too short.
+        Files.write(file.toPath(), Base64.getEncoder().encode(new byte[16]));
+        assertNull(instance.loadSecret());
+        // Not base64.
+        Files.write(file.toPath(), "%%%".getBytes(StandardCharsets.US_ASCII));
+        assertNull(instance.loadSecret());
+        // Missing file.
+        assertNull(new SessionTicketKeys(SessionTicketKeys.SOURCE_FILE + file.getPath() + ".missing",
+                60000, null).loadSecret());
+        assertFalse(new SessionTicketKeys(SessionTicketKeys.SOURCE_OFF, 60000, null).isEnabled());
+    }
+
+    /**
+     * Test of update method, of class SessionTicketKeys. The keys change
+     *     only at the slot boundaries.
+     * @throws Exception If the test file can't be written.
+     */
+    @Test
+    public void testUpdate() throws Exception {
+        System.out.println("update");
+        File file = File.createTempFile("ticketsecret", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Base64.getEncoder().encode(new byte[32]));
+        SessionTicketKeys instance = new SessionTicketKeys(SessionTicketKeys.SOURCE_FILE + file.getPath(),
+                60000, null);
+        KsSslContextFactory context = new KsSslContextFactory();
+        instance.addContext(context);
+        assertTrue(instance.update(120000));
+        assertEquals(1, instance.getRotations());
+        // Context not started: keys kept for the start, applied again later.
+        assertFalse(instance.isApplied());
+        assertTrue(instance.update(150000));
+        assertEquals(1, instance.getRotations());
+        assertTrue(instance.update(180000));
+        assertEquals(2, instance.getRotations());
+        // New secret in the same slot.
+        Files.write(file.toPath(), Base64.getEncoder().encode(new byte[40]));
+        assertTrue(instance.update(190000));
+        assertEquals(3, instance.getRotations());
+    }
+}
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.jetty;
+
+import ch.qos.logback.classic.Level;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TLS handshake cost of the KeyServer HTTPS connector for each TLS setting 
+ *     (protocol, cipher suites order and session tickets). Each operation 
+ *     opens a loopback connection, sends one HTTP request and waits until 
+ *     the server closes the connection (the connection churn case).
+ * 
+ *     <p>The "full" benchmark uses a new client TLS context for each 
+ *     connection (no session to resume). The "resumed" benchmark reuses the
+ *     client context, so the session is resumed with the server sessions 
+ *     cache or a session ticket. The provider can be selected with 
+ *     -Dks.tlsProvider=conscrypt if Conscrypt is on the test classpath. Run 
+ *     it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.https.jetty.TlsHandshakeBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TlsHandshakeBenchmark {
+    /**
+     * Test keystore (RSA 2048 bits certificate).
+     */
+    private static final String KEYSTORE = "target/test-classes/cert/ksserverkey.jks";
+    
+    /**
+     * HTTP request sent on each connection.
+     */
+    private static final byte[] REQUEST = ("GET / HTTP/1.1\r\nHost: localhost\r\n"
+            + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+    
+    /**
+     * Client TLS protocol.
+     */
+    @Param({"TLSv1.2", "TLSv1.3"})
+    public String protocol;
+    
+    /**
+     * Server cipher suites order.
+     */
+    @Param({KsSslContextFactory.CIPHER_ORDER_CLIENT, KsSslContextFactory.CIPHER_ORDER_SERVER})
+    public String cipherOrder;
+    
+    /**
+     * Server session tickets (JVM wide, each parameters set runs on its own 
+     *     fork).
+     */
+    @Param({KsSslContextFactory.TICKETS_ON, KsSslContextFactory.TICKETS_OFF})
+    public String sessionTickets;
+    
+    /**
+     * Jetty server.
+     */
+    private Server jetty;
+    
+    /**
+     * HTTPS connector port.
+     */
+    private int port;
+    
+    /**
+     * Client TLS context reused by the "resumed" benchmark.
+     */
+    private SSLContext resumeClient;
+    
+    /**
+     * Response read buffer.
+     */
+    private final byte[] buffer = new byte[4096];
+    
+    /**
+     * Benchmark state initialization: starts the HTTPS connector.
+     * @throws Exception If something goes wrong.
+     */
+    @Setup
+    public void setup() throws Exception {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        KsSslContextFactory sslContextFactory = new KsSslContextFactory();
+        // Before the first TLS object of the JVM.
+        sslContextFactory.setSessionTickets(sessionTickets);
+        sslContextFactory.setKeyStorePath(KEYSTORE);
+        sslContextFactory.setKeyStorePassword("123456");
+        sslContextFactory.setKeyManagerPassword("123456");
+        sslContextFactory.setTlsProvider(System.getProperty("ks.tlsProvider", KsSslContextFactory.PROVIDER_DEFAULT));
+        sslContextFactory.setCipherOrder(cipherOrder);
+        sslContextFactory.setSslSessionCacheSize(20480);
+        sslContextFactory.setSslSessionTimeout(86400);
+        jetty = new Server();
+        ServerConnector connector = new ServerConnector(jetty, 
+                new SslConnectionFactory(sslContextFactory, "http/1.1"), new HttpConnectionFactory());
+        connector.setHost("127.0.0.1");
+        jetty.addConnector(connector);
+        jetty.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, 
+                    HttpServletResponse response) {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.setContentLength(0);
+                baseRequest.setHandled(true);
+            }
+        });
+        jetty.start();
+        port = connector.getLocalPort();
+        resumeClient = trustAll();
+        LoggerFactory.getLogger(TlsHandshakeBenchmark.class).warn("TLS settings: {}", 
+                sslContextFactory.getSettings());
+    }
+    
+    /**
+     * Stops the HTTPS connector.
+     * @throws Exception If something goes wrong.
+     */
+    @TearDown
+    public void tearDown() throws Exception {
+        jetty.stop();
+    }
+    
+    /**
+     * Full handshake and one request.
+     * @return Response length.
+     * @throws Exception If the connection fails.
+     */
+    @Benchmark
+    public int full() throws Exception {
+        return connect(trustAll());
+    }
+    
+    /**
+     * Resumed handshake and one request.
+     * @return Response length.
+     * @throws IOException If the connection fails.
+     */
+    @Benchmark
+    public int resumed() throws IOException {
+        return connect(resumeClient);
+    }
+    
+    /**
+     * Opens a connection, sends the request and reads the response until 
+     *     the server closes the connection.
+     * @param client Client TLS context.
+     * @return Response length.
+     * @throws IOException If the connection fails.
+     */
+    private int connect(SSLContext client) throws IOException {
+        try (SSLSocket socket = (SSLSocket) client.getSocketFactory().createSocket("127.0.0.1", port)) {
+            socket.setEnabledProtocols(new String[] {protocol});
+            socket.setTcpNoDelay(true);
+            socket.getOutputStream().write(REQUEST);
+            socket.getOutputStream().flush();
+            int length = 0;
+            InputStream in = socket.getInputStream();
+            for(int read = in.read(buffer); read > 0; read = in.read(buffer)){
+                length += read;
+            }
+            return length;
+        }
+    }
+    
+    /**
+     * Returns a client TLS context that accepts any server certificate.
+     * @return TLS context.
+     * @throws GeneralSecurityException If TLS is not available.
+     */
+    private static SSLContext trustAll() throws GeneralSecurityException {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[] {new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] chain, String authType) {
+            }
+            
+            @Override
+            public void checkServerTrusted(X509Certificate[] chain, String authType) {
+            }
+            
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        }}, null);
+        return context;
+    }
+    
+    /**
+     * Benchmark launcher.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TlsHandshakeBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.keyprocess;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JCA engine creation benchmark.
+ * 
+ *     <p>Compares the cost of a new engine object per operation 
+ *     ({@code getInstance}) against the per thread engines returned by 
+ *     {@link CryptoEngines}. The "init" benchmarks include only the engine 
+ *     lookup and the key initialization, so the saving is not hidden by the 
+ *     RSA private key operation. Run it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.https.keyprocess.CryptoEnginesBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CryptoEnginesBenchmark {
+    /**
+     * RSA key pair used during the benchmark.
+     */
+    private KeyPair keyPair;
+    
+    /**
+     * ECDHE input data (133 bytes).
+     */
+    private byte[] ecdheInput;
+    
+    /**
+     * RSA encrypted PremasterSecret.
+     */
+    private byte[] rsaInput;
+    
+    /**
+     * Generates the key pair and the input data.
+     * @throws Exception If something goes wrong.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        ecdheInput = new byte[133];
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.ENCRYPT_MODE, keyPair.getPublic());
+        rsaInput = cipher.doFinal(new byte[48]);
+    }
+    
+    /**
+     * New Cipher object and initialization.
+     * @return Cipher object.
+     * @throws Exception If something goes wrong.
+     */
+    @Benchmark
+    public Cipher cipherInitNew() throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        return cipher;
+    }
+    
+    /**
+     * Reused Cipher object and initialization.
+     * @return Cipher object.
+     * @throws Exception If something goes wrong.
+     */
+    @Benchmark
+    public Cipher cipherInitReused() throws Exception {
+        Cipher cipher = CryptoEngines.cipher("RSA");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        return cipher;
+    }
+    
+    /**
+     * New Signature and MessageDigest objects and initialization.
+     * @return Message digest.
+     * @throws Exception If something goes wrong.
+     */
+    @Benchmark
+    public byte[] signatureInitNew() throws Exception {
+        Signature dsa = Signature.getInstance("SHA1withRSA");
+        dsa.initSign(keyPair.getPrivate());
+        MessageDigest messageDigest = MessageDigest.getInstance("MD5");
+        return messageDigest.digest(ecdheInput);
+    }
+    
+    /**
+     * Reused Signature and MessageDigest objects and initialization.
+     * @return Message digest.
+     * @throws Exception If something goes wrong.
+     */
+    @Benchmark
+    public byte[] signatureInitReused() throws Exception {
+        Signature dsa = CryptoEngines.signature("SHA1withRSA");
+        dsa.initSign(keyPair.getPrivate());
+        MessageDigest messageDigest = CryptoEngines.digest("MD5");
+        return messageDigest.digest(ecdheInput);
+    }
+    
+    /**
+     * Full RSA decryption using a new Cipher object.
+     * @return Decrypted data.
+     * @throws Exception If something goes wrong.
+     */
+    @Benchmark
+    public byte[] rsaDecryptNew() throws Exception {
+        Cipher cipher = Cipher.getInstance("RSA");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        return cipher.doFinal(rsaInput);
+    }
+    
+    /**
+     * Full RSA decryption using the reused Cipher object.
+     * @return Decrypted data.
+     * @throws Exception If something goes wrong.
+     */
+    @Benchmark
+    public byte[] rsaDecryptReused() throws Exception {
+        Cipher cipher = CryptoEngines.cipher("RSA");
+        cipher.init(Cipher.DECRYPT_MODE, keyPair.getPrivate());
+        return cipher.doFinal(rsaInput);
+    }
+    
+    /**
+     * Benchmark launcher.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CryptoEnginesBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.keyprocess;
+
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.crypto.Cipher;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the reusable JCA engines.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class CryptoEnginesTest {
+    /**
+     * Test of cipher method, of class CryptoEngines.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testCipher() throws Exception {
+        System.out.println("cipher");
+        Cipher first = CryptoEngines.cipher("RSA");
+        Cipher second = CryptoEngines.cipher("RSA");
+        assertSame(first, second);
+        // Other threads must get their own instance.
+        AtomicReference<Cipher> other = new AtomicReference<>();
+        Thread th = new Thread(() -> {
+            try {
+                other.set(CryptoEngines.cipher("RSA"));
+            } catch (Exception ex) {
+                other.set(null);
+            }
+        });
+        th.start();
+        th.join();
+        assertNotNull(other.get());
+        assertNotSame(first, other.get());
+    }
+
+    /**
+     * Test of signature method, of class CryptoEngines.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testSignature() throws Exception {
+        System.out.println("signature");
+        Signature first = CryptoEngines.signature("SHA256withRSA");
+        assertSame(first, CryptoEngines.signature("SHA256withRSA"));
+        assertNotSame(first, CryptoEngines.signature("SHA1withRSA"));
+        assertEquals("SHA256withRSA", first.getAlgorithm());
+    }
+
+    /**
+     * Test of digest method, of class CryptoEngines.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testDigest() throws Exception {
+        System.out.println("digest");
+        byte[] data = "KeyServer".getBytes("UTF-8");
+        byte[] expResult = MessageDigest.getInstance("MD5").digest(data);
+        MessageDigest digest = CryptoEngines.digest("MD5");
+        // Data pending inside the digest must be discarded.
+        digest.update(data);
+        digest = CryptoEngines.digest("MD5");
+        assertArrayEquals(expResult, digest.digest(data));
+    }
+}
@@ -16,6 +16,7 @@
 package es.tid.keyserver.https.keyprocess;
 
 import es.tid.keyserver.https.protocol.InputJSON;
+import es.tid.keyserver.https.protocol.SkiRequest;
 import java.security.PrivateKey;
 import org.junit.Test;
 import static org.junit.Assert.*;
@@ -186,4 +187,22 @@ public class EcdheTest {
         System.out.println("[ JAVI ] " + result);
         assertNull(result);
     }
+    
+    /**
+     * Test of calcOutput method using a validated request, of class Ecdhe.
+     * @throws java.lang.Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testCalcOutputRequest() throws Exception {
+        System.out.println("calcOutputRequest");
+        String incomingData = "BJmr+S9gFYd/MbcwRb2UnmOIw+JluM6Hr/nuxXhubAu8YXMgIsD3OuG/xW92g/YmBvzs6IdpFNIDdm8AZoHaJgMAF0EEpIIa2HyIZpSlcd3OVi7Lt8YZ8bVTQQxuQU+icNwgjKinxOoMvCsLMsfILRE05b4r2uCW+xY6ks0UNXY3gu99tQ==";
+        PrivateKey key = RsaTest.getPrivKey(privKey);
+        for(String hash : new String[] {InputJSON.SHA1, InputJSON.SHA_224, InputJSON.SHA_256}){
+            SkiRequest request = new InputJSON("{\"protocol\":\"TLS 1.2\", \"method\":\"ECDHE\", "
+                    + "\"hash\":\"" + hash + "\", \"spki\":\"405FD8A83BFB64683BAEB51D9F8D99C9D872FA63\", "
+                    + "\"input\":\"" + incomingData + "\"}").getRequest();
+            assertNotNull(request);
+            assertEquals(Ecdhe.calcOutput(incomingData, key, hash), Ecdhe.calcOutput(request, key));
+        }
+    }
 }
@@ -15,6 +15,8 @@
  */
 package es.tid.keyserver.https.keyprocess;
 
+import es.tid.keyserver.https.protocol.InputJSON;
+import es.tid.keyserver.https.protocol.SkiRequest;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.security.NoSuchAlgorithmException;
@@ -122,6 +124,21 @@ public class RsaTest {
         String result = Rsa.calcDecodedOutput(encMsg, key);
         assertEquals(decMsg, result);
     }
+    
+    /**
+     * Test of calcDecodedOutput method using a validated request, of class Rsa.
+     * @throws java.lang.Exception Generate an exception if something goes wrong.
+     */
+    @Test
+    public void testCalcDecodedOutputRequest() throws Exception {
+        System.out.println("calcDecodedOutputRequest");
+        PrivateKey key = getPrivKey(this.privKey);
+        SkiRequest request = new InputJSON("{\"protocol\":\"TLS 1.2\", \"method\":\"RSA\", "
+                + "\"spki\":\"405FD8A83BFB64683BAEB51D9F8D99C9D872FA63\", "
+                + "\"input\":\"" + encMsg + "\"}").getRequest();
+        assertNotNull(request);
+        assertEquals(decMsg, Rsa.calcDecodedOutput(request, key));
+    }
 
     /**
      * Get test private key.
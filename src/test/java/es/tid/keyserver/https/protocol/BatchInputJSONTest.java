@@ -0,0 +1,107 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.util.Base64;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for batch input JSON messages.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class BatchInputJSONTest {
+    /**
+     * Valid RSA item without id field.
+     */
+    private final String rsaItem;
+    
+    /**
+     * Valid ECDHE item without id field.
+     */
+    private final String ecdheItem;
+    
+    /**
+     * Test class constructor.
+     */
+    public BatchInputJSONTest() {
+        rsaItem = "\"method\":\"RSA\", \"protocol\":\"TLS 1.2\", "
+                + "\"spki\":\"405FD8A83BFB64683BAEB51D9F8D99C9D872FA63\", "
+                + "\"input\":\"" + Base64.getEncoder().encodeToString(new byte[128]) + "\"";
+        ecdheItem = "\"method\":\"ECDHE\", \"protocol\":\"TLS 1.2\", \"hash\":\"SHA-256\", "
+                + "\"spki\":\"5F2EAF5E1D9F8D99C9D872FA63405FD8A83BFB64\", "
+                + "\"input\":\"" + Base64.getEncoder().encodeToString(new byte[133]) + "\"";
+    }
+    
+    /**
+     * Test of a valid batch with independent item errors.
+     */
+    @Test
+    public void testItems() {
+        System.out.println("items");
+        String data = "[{\"id\":1, " + rsaItem + "}, "
+                + "{\"id\":\"two\", " + ecdheItem + "}, "
+                + "{\"id\":3, \"method\":\"RSA\"}, "
+                + "{" + rsaItem + "}, "
+                + "\"not an object\", "
+                + "{\"id\":6, " + rsaItem + "}]";
+        BatchInputJSON instance = new BatchInputJSON(data, 10);
+        assertNull(instance.checkValidJSON());
+        assertEquals(6, instance.size());
+        assertEquals(1L, instance.getId(0));
+        assertEquals("two", instance.getId(1));
+        assertNull(instance.checkValidItem(0));
+        assertNull(instance.checkValidItem(1));
+        assertEquals(InputJSON.ECDHE, instance.getItem(1).getMethod());
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, instance.checkValidItem(2));
+        // Items without id are not valid.
+        assertNull(instance.getId(3));
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, instance.checkValidItem(3));
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, instance.checkValidItem(4));
+        Set<String> spkis = instance.getSpkis();
+        assertEquals(2, spkis.size());
+        assertTrue(spkis.contains("405FD8A83BFB64683BAEB51D9F8D99C9D872FA63"));
+    }
+    
+    /**
+     * Test of not valid batch structures.
+     */
+    @Test
+    public void testCheckValidJSON() {
+        System.out.println("checkValidJSON");
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, new BatchInputJSON("[", 10).checkValidJSON());
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, new BatchInputJSON("[]", 10).checkValidJSON());
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, 
+                new BatchInputJSON("{\"id\":1, " + rsaItem + "}", 10).checkValidJSON());
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, 
+                new BatchInputJSON("[{\"id\":1, " + rsaItem + "}, {\"id\":2, " + rsaItem + "}]", 1).checkValidJSON());
+    }
+    
+    /**
+     * Test of an item with a not valid base64 input field.
+     */
+    @Test
+    public void testCheckValidItemBase64() {
+        System.out.println("checkValidItem (base64)");
+        String data = "[{\"id\":1, \"method\":\"RSA\", \"protocol\":\"TLS 1.2\", "
+                + "\"spki\":\"405FD8A83BFB64683BAEB51D9F8D99C9D872FA63\", \"input\":\"%%%\"}]";
+        BatchInputJSON instance = new BatchInputJSON(data, 10);
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, instance.checkValidItem(0));
+        assertTrue(instance.getSpkis().isEmpty());
+    }
+}
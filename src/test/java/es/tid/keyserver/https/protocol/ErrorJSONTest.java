@@ -17,7 +17,12 @@ package es.tid.keyserver.https.protocol;
 
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test class for output error JSON messages.
@@ -89,4 +94,23 @@ public class ErrorJSONTest {
         String result = instance.toString();
         assertEquals(expResult, result);
     }
+    
+    /**
+     * Test of getResponseBody method, of class ErrorJSON.
+     * @since v0.4.5
+     */
+    @Test
+    public void testGetResponseBody() {
+        System.out.println("getResponseBody");
+        for(String code : new String[] {ErrorJSON.ERR_MALFORMED_REQUEST, ErrorJSON.ERR_NOT_FOUND, 
+                ErrorJSON.ERR_REQUEST_DENIED, ErrorJSON.ERR_UNSPECIFIED}){
+            String expResult = new ErrorJSON(code).toString() + System.lineSeparator();
+            assertEquals(expResult, new String(ErrorJSON.getResponseBody(code), StandardCharsets.UTF_8));
+            assertSame(ErrorJSON.getResponseBody(code), ErrorJSON.getResponseBody(new String(code)));
+            assertTrue(ErrorJSON.isErrorCode(code));
+        }
+        assertSame(ErrorJSON.getResponseBody(ErrorJSON.ERR_UNSPECIFIED), ErrorJSON.getResponseBody("NOT_VALID_ERROR"));
+        assertFalse(ErrorJSON.isErrorCode("NOT_VALID_ERROR"));
+        assertFalse(ErrorJSON.isErrorCode(null));
+    }
 }
@@ -15,9 +15,13 @@
  */
 package es.tid.keyserver.https.protocol;
 
+import java.util.Base64;
 import org.junit.Test;
-
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * This class contains the Ericsson API Interface Description for it use on KeyServer.
@@ -674,4 +678,44 @@ public class InputJSONTest {
         InputJSON instance = new InputJSON(dataTest_16);
         assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, instance.checkValidJSON());
     }
+    
+    /**
+     * Test of getRequest method, of class InputJSON.
+     */
+    @Test
+    public void testGetRequest1() {
+        System.out.println("getRequest ECDHE");
+        InputJSON instance = new InputJSON(dataTest_2);
+        SkiRequest result = instance.getRequest();
+        assertNotNull(result);
+        assertSame(result, instance.getRequest());
+        assertEquals(SkiMethod.ECDHE, result.getMethod());
+        assertEquals(SkiHash.SHA1, result.getHash());
+        assertEquals(instance.getSpki(), result.getSpki());
+        assertArrayEquals(Base64.getDecoder().decode(instance.getInput().trim()), result.getInput());
+    }
+    
+    /**
+     * Test of getRequest method, of class InputJSON.
+     */
+    @Test
+    public void testGetRequest2() {
+        System.out.println("getRequest RSA");
+        InputJSON instance = new InputJSON(dataTest_12);
+        SkiRequest result = instance.getRequest();
+        assertNotNull(result);
+        assertEquals(SkiMethod.RSA, result.getMethod());
+        assertNull(result.getHash());
+    }
+    
+    /**
+     * Test of getRequest method, of class InputJSON.
+     */
+    @Test
+    public void testGetRequest3() {
+        System.out.println("getRequest NOT_VALID");
+        InputJSON instance = new InputJSON(dataTest_9);
+        assertNull(instance.getRequest());
+        assertNotNull(instance.checkValidJSON());
+    }
 }
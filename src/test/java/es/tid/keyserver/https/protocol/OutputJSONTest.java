@@ -17,6 +17,8 @@ package es.tid.keyserver.https.protocol;
 
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -37,4 +39,17 @@ public class OutputJSONTest {
         String result = instance.toString();
         assertEquals(expResult, result);
     }
+    
+    /**
+     * Test of toResponseBody method, of class OutputJSON.
+     * @since v0.4.5
+     */
+    @Test
+    public void testToResponseBody() {
+        System.out.println("toResponseBody");
+        for(String data : new String[] {"", "OUTPUT_FIELD", "Ab+/Cd/=", "/", "not \"base64\" \u00e9"}){
+            String expResult = new OutputJSON(data).toString() + System.lineSeparator();
+            assertEquals(expResult, new String(OutputJSON.toResponseBody(data), StandardCharsets.UTF_8));
+        }
+    }
 }
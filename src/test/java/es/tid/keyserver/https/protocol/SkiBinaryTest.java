@@ -0,0 +1,130 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the binary SKI requests encoding.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SkiBinaryTest {
+    /**
+     * Certificate SHA1 used by the tests.
+     */
+    private static final byte[] SPKI = {(byte) 0x40, (byte) 0x5F, (byte) 0xD8, (byte) 0xA8, 
+        (byte) 0x3B, (byte) 0xFB, (byte) 0x64, (byte) 0x68, (byte) 0x3B, (byte) 0xAE, 
+        (byte) 0xB5, (byte) 0x1D, (byte) 0x9F, (byte) 0x8D, (byte) 0x99, (byte) 0xC9, 
+        (byte) 0xD8, (byte) 0x72, (byte) 0xFA, (byte) 0x63};
+    
+    /**
+     * Test of decodeRequest method for RSA requests, of class SkiBinary.
+     */
+    @Test
+    public void testDecodeRequestRsa() {
+        System.out.println("decodeRequest (RSA)");
+        byte[] input = new byte[256];
+        Arrays.fill(input, (byte) 7);
+        byte[] data = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, SPKI, input);
+        assertEquals(SkiBinary.REQUEST_HEADER_SIZE + 256, data.length);
+        // Request inside a bigger array.
+        byte[] frame = new byte[data.length + 8];
+        System.arraycopy(data, 0, frame, 4, data.length);
+        SkiRequest result = SkiBinary.decodeRequest(frame, 4, data.length);
+        assertNotNull(result);
+        assertEquals(SkiProtocol.TLS_1_2, result.getProtocol());
+        assertEquals(SkiMethod.RSA, result.getMethod());
+        assertNull(result.getHash());
+        assertEquals("405FD8A83BFB64683BAEB51D9F8D99C9D872FA63", result.getSpki());
+        assertArrayEquals(input, result.getInput());
+        // Too short input.
+        data = SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, SPKI, new byte[9]);
+        assertNull(SkiBinary.decodeRequest(data, 0, data.length));
+    }
+    
+    /**
+     * Test of decodeRequest method for ECDHE requests, of class SkiBinary.
+     */
+    @Test
+    public void testDecodeRequestEcdhe() {
+        System.out.println("decodeRequest (ECDHE)");
+        byte[] data = SkiBinary.encodeRequest(SkiProtocol.TLS_1_0, SkiMethod.ECDHE, SkiHash.SHA_512, SPKI, new byte[133]);
+        SkiRequest result = SkiBinary.decodeRequest(data, 0, data.length);
+        assertNotNull(result);
+        assertEquals(SkiProtocol.TLS_1_0, result.getProtocol());
+        assertEquals(SkiHash.SHA_512, result.getHash());
+        assertEquals(133, result.getInput().length);
+        // Input length not valid.
+        data = SkiBinary.encodeRequest(SkiProtocol.TLS_1_0, SkiMethod.ECDHE, SkiHash.SHA1, SPKI, new byte[132]);
+        assertNull(SkiBinary.decodeRequest(data, 0, data.length));
+        // Hash not present.
+        data = SkiBinary.encodeRequest(SkiProtocol.TLS_1_0, SkiMethod.ECDHE, null, SPKI, new byte[133]);
+        assertNull(SkiBinary.decodeRequest(data, 0, data.length));
+    }
+    
+    /**
+     * Test of decodeRequest method with malformed requests, of class 
+     *     SkiBinary.
+     */
+    @Test
+    public void testDecodeRequestMalformed() {
+        System.out.println("decodeRequest (malformed)");
+        byte[] data = SkiBinary.encodeRequest(SkiProtocol.DTLS_1_2, SkiMethod.RSA, null, SPKI, new byte[64]);
+        assertNull(SkiBinary.decodeRequest(data, 0, SkiBinary.REQUEST_HEADER_SIZE - 1));
+        data[0] = 0;
+        assertNull(SkiBinary.decodeRequest(data, 0, data.length));
+        data[0] = 6;
+        assertNull(SkiBinary.decodeRequest(data, 0, data.length));
+        data[0] = 5;
+        data[1] = (byte) 0xFF;
+        assertNull(SkiBinary.decodeRequest(data, 0, data.length));
+        data[1] = 1;
+        assertNotNull(SkiBinary.decodeRequest(data, 0, data.length));
+        try {
+            SkiBinary.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, new byte[19], new byte[64]);
+            fail("SPKI length not checked.");
+        } catch (IllegalArgumentException ex) {
+            assertNotNull(ex.getMessage());
+        }
+    }
+    
+    /**
+     * Test of getStatus method, of class SkiBinary.
+     */
+    @Test
+    public void testGetStatus() {
+        System.out.println("getStatus");
+        assertEquals(SkiBinary.STATUS_MALFORMED_REQUEST, SkiBinary.getStatus(ErrorJSON.ERR_MALFORMED_REQUEST));
+        assertEquals(SkiBinary.STATUS_NOT_FOUND, SkiBinary.getStatus(ErrorJSON.ERR_NOT_FOUND));
+        assertEquals(SkiBinary.STATUS_REQUEST_DENIED, SkiBinary.getStatus(ErrorJSON.ERR_REQUEST_DENIED));
+        assertEquals(SkiBinary.STATUS_UNSPECIFIED, SkiBinary.getStatus(ErrorJSON.ERR_UNSPECIFIED));
+        assertEquals(SkiBinary.STATUS_UNSPECIFIED, SkiBinary.getStatus(null));
+    }
+    
+    /**
+     * Test of encodeResponse and getErrorResponse methods, of class SkiBinary.
+     */
+    @Test
+    public void testResponses() {
+        System.out.println("encodeResponse / getErrorResponse");
+        assertArrayEquals(new byte[] {SkiBinary.STATUS_OK, 1, 2}, SkiBinary.encodeResponse(new byte[] {1, 2}));
+        assertArrayEquals(new byte[] {SkiBinary.STATUS_NOT_FOUND}, SkiBinary.getErrorResponse(ErrorJSON.ERR_NOT_FOUND));
+        assertArrayEquals(new byte[] {SkiBinary.STATUS_UNSPECIFIED}, SkiBinary.getErrorResponse("unknown"));
+    }
+}
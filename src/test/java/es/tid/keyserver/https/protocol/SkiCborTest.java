@@ -0,0 +1,151 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the CBOR SKI requests encoding.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SkiCborTest {
+    /**
+     * Certificate SHA1 used by the tests.
+     */
+    private static final byte[] SPKI = {(byte) 0x40, (byte) 0x5F, (byte) 0xD8, (byte) 0xA8, 
+        (byte) 0x3B, (byte) 0xFB, (byte) 0x64, (byte) 0x68, (byte) 0x3B, (byte) 0xAE, 
+        (byte) 0xB5, (byte) 0x1D, (byte) 0x9F, (byte) 0x8D, (byte) 0x99, (byte) 0xC9, 
+        (byte) 0xD8, (byte) 0x72, (byte) 0xFA, (byte) 0x63};
+    
+    /**
+     * Test of decodeRequest method for RSA requests, of class SkiCbor.
+     */
+    @Test
+    public void testDecodeRequestRsa() {
+        System.out.println("decodeRequest (RSA)");
+        byte[] input = new byte[256];
+        Arrays.fill(input, (byte) 7);
+        byte[] data = SkiCbor.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, SPKI, input);
+        // Map with 4 fields and 2 bytes input length.
+        assertEquals((byte) 0xA4, data[0]);
+        assertEquals((byte) 0x59, data[data.length - 259]);
+        // Request inside a bigger array.
+        byte[] body = new byte[data.length + 8];
+        System.arraycopy(data, 0, body, 4, data.length);
+        SkiRequest result = SkiCbor.decodeRequest(body, 4, data.length);
+        assertNotNull(result);
+        assertEquals(SkiProtocol.TLS_1_2, result.getProtocol());
+        assertEquals(SkiMethod.RSA, result.getMethod());
+        assertNull(result.getHash());
+        assertEquals("405FD8A83BFB64683BAEB51D9F8D99C9D872FA63", result.getSpki());
+        assertArrayEquals(input, result.getInput());
+        // Too short input.
+        data = SkiCbor.encodeRequest(SkiProtocol.TLS_1_2, SkiMethod.RSA, null, SPKI, new byte[9]);
+        assertNull(SkiCbor.decodeRequest(data, 0, data.length));
+    }
+    
+    /**
+     * Test of decodeRequest method for ECDHE requests, of class SkiCbor.
+     */
+    @Test
+    public void testDecodeRequestEcdhe() {
+        System.out.println("decodeRequest (ECDHE)");
+        byte[] data = SkiCbor.encodeRequest(SkiProtocol.TLS_1_1, SkiMethod.ECDHE, SkiHash.SHA_384, SPKI, new byte[133]);
+        SkiRequest result = SkiCbor.decodeRequest(data, 0, data.length);
+        assertNotNull(result);
+        assertEquals(SkiProtocol.TLS_1_1, result.getProtocol());
+        assertEquals(SkiHash.SHA_384, result.getHash());
+        assertEquals(133, result.getInput().length);
+        // SHA1 if the hash is not present (same as JSON).
+        data = SkiCbor.encodeRequest(SkiProtocol.TLS_1_1, SkiMethod.ECDHE, null, SPKI, new byte[133]);
+        assertEquals(SkiHash.SHA1, SkiCbor.decodeRequest(data, 0, data.length).getHash());
+        // Input length not valid.
+        data = SkiCbor.encodeRequest(SkiProtocol.TLS_1_1, SkiMethod.ECDHE, SkiHash.SHA1, SPKI, new byte[134]);
+        assertNull(SkiCbor.decodeRequest(data, 0, data.length));
+    }
+    
+    /**
+     * Test of decodeRequest method with malformed requests, of class SkiCbor.
+     */
+    @Test
+    public void testDecodeRequestMalformed() {
+        System.out.println("decodeRequest (malformed)");
+        byte[] data = SkiCbor.encodeRequest(SkiProtocol.DTLS_1_0, SkiMethod.RSA, null, SPKI, new byte[64]);
+        assertNotNull(SkiCbor.decodeRequest(data, 0, data.length));
+        // Truncated and trailing bytes.
+        assertNull(SkiCbor.decodeRequest(data, 0, data.length - 1));
+        assertNull(SkiCbor.decodeRequest(Arrays.copyOf(data, data.length + 1), 0, data.length + 1));
+        // Not a map.
+        assertNull(SkiCbor.decodeRequest(new byte[] {(byte) 0x80}, 0, 1));
+        // Indefinite length map.
+        byte[] indefinite = data.clone();
+        indefinite[0] = (byte) 0xBF;
+        assertNull(SkiCbor.decodeRequest(indefinite, 0, indefinite.length));
+        // SPKI not valid.
+        data = SkiCbor.encodeRequest(SkiProtocol.DTLS_1_0, SkiMethod.RSA, null, new byte[19], new byte[64]);
+        assertNull(SkiCbor.decodeRequest(data, 0, data.length));
+        // Hash value not valid.
+        data = SkiCbor.encodeRequest(SkiProtocol.DTLS_1_0, SkiMethod.ECDHE, SkiHash.SHA1, SPKI, new byte[133]);
+        int hash = indexOf(data, "SHA1".getBytes(StandardCharsets.UTF_8));
+        data[hash + 3] = '2';
+        assertNull(SkiCbor.decodeRequest(data, 0, data.length));
+        // Unknown fields are ignored.
+        data = SkiCbor.encodeRequest(SkiProtocol.DTLS_1_0, SkiMethod.RSA, null, SPKI, new byte[64]);
+        byte[] extra = new byte[data.length + 4];
+        extra[0] = (byte) 0xA5;
+        System.arraycopy(data, 1, extra, 1, data.length - 1);
+        extra[data.length] = 0x62;
+        extra[data.length + 1] = 'i';
+        extra[data.length + 2] = 'd';
+        extra[data.length + 3] = 0x07;
+        assertNotNull(SkiCbor.decodeRequest(extra, 0, extra.length));
+    }
+    
+    /**
+     * Test of encodeResponse and getErrorResponse methods, of class SkiCbor.
+     */
+    @Test
+    public void testResponses() {
+        System.out.println("encodeResponse / getErrorResponse");
+        byte[] expected = {(byte) 0xA1, 0x66, 'o', 'u', 't', 'p', 'u', 't', 0x42, 1, 2};
+        assertArrayEquals(expected, SkiCbor.encodeResponse(new byte[] {1, 2}));
+        byte[] error = SkiCbor.getErrorResponse(ErrorJSON.ERR_NOT_FOUND);
+        assertEquals((byte) 0xA1, error[0]);
+        assertEquals(0x65, error[1]);
+        assertEquals("spki not found", new String(error, 8, error.length - 8, StandardCharsets.UTF_8));
+        assertEquals(0x6E, error[7]);
+        assertArrayEquals(SkiCbor.getErrorResponse(ErrorJSON.ERR_UNSPECIFIED), SkiCbor.getErrorResponse("unknown"));
+    }
+    
+    /**
+     * Returns the position of a sequence inside an array.
+     * @param data Array.
+     * @param sequence Sequence to find.
+     * @return Position or -1 if not found.
+     */
+    private static int indexOf(byte[] data, byte[] sequence){
+        for(int i = 0; i <= data.length - sequence.length; i++){
+            if(Arrays.equals(Arrays.copyOfRange(data, i, i + sequence.length), sequence)){
+                return i;
+            }
+        }
+        return -1;
+    }
+}
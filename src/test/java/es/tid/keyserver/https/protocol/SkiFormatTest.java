@@ -0,0 +1,71 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the HTTPS endpoint body formats.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SkiFormatTest {
+    /**
+     * Test of fromContentType method, of class SkiFormat.
+     */
+    @Test
+    public void testFromContentType() {
+        System.out.println("fromContentType");
+        assertEquals(SkiFormat.JSON, SkiFormat.fromContentType(null));
+        assertEquals(SkiFormat.JSON, SkiFormat.fromContentType("application/json; charset=UTF-8"));
+        assertEquals(SkiFormat.JSON, SkiFormat.fromContentType("text/plain"));
+        assertEquals(SkiFormat.BINARY, SkiFormat.fromContentType("application/octet-stream"));
+        assertEquals(SkiFormat.CBOR, SkiFormat.fromContentType("Application/CBOR"));
+    }
+    
+    /**
+     * Test of fromAccept method, of class SkiFormat.
+     */
+    @Test
+    public void testFromAccept() {
+        System.out.println("fromAccept");
+        assertEquals(SkiFormat.CBOR, SkiFormat.fromAccept(null, SkiFormat.CBOR));
+        assertEquals(SkiFormat.BINARY, SkiFormat.fromAccept("*/*", SkiFormat.BINARY));
+        assertEquals(SkiFormat.JSON, SkiFormat.fromAccept("text/html, application/json;q=0.9", SkiFormat.CBOR));
+        assertEquals(SkiFormat.BINARY, SkiFormat.fromAccept("application/octet-stream", SkiFormat.JSON));
+        assertEquals(SkiFormat.CBOR, SkiFormat.fromAccept("text/html,application/cbor , */*", SkiFormat.JSON));
+        assertEquals(SkiFormat.JSON, SkiFormat.fromAccept("text/html", SkiFormat.JSON));
+    }
+    
+    /**
+     * Test of getOutputBody and getErrorBody methods, of class SkiFormat.
+     */
+    @Test
+    public void testBodies() {
+        System.out.println("getOutputBody / getErrorBody");
+        byte[] output = {1, 2, 3};
+        assertEquals("{\"output\":\"AQID\"}", new String(SkiFormat.JSON.getOutputBody(output), 
+                StandardCharsets.UTF_8).trim());
+        assertArrayEquals(SkiBinary.encodeResponse(output), SkiFormat.BINARY.getOutputBody(output));
+        assertArrayEquals(SkiCbor.encodeResponse(output), SkiFormat.CBOR.getOutputBody(output));
+        assertArrayEquals(ErrorJSON.getResponseBody(ErrorJSON.ERR_NOT_FOUND), 
+                SkiFormat.JSON.getErrorBody(ErrorJSON.ERR_NOT_FOUND));
+        assertArrayEquals(new byte[] {SkiBinary.STATUS_NOT_FOUND}, 
+                SkiFormat.BINARY.getErrorBody(ErrorJSON.ERR_NOT_FOUND));
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * SKI request parsing benchmark.
+ * 
+ *     <p>Compares the json-simple parser (JSONObject + field reads, the 
+ *     previous InputJSON implementation) against {@link SkiRequestParser}
+ *     for a RSA 2048 request. Use the JMH "-prof gc" option to compare the 
+ *     allocation rate. Run it with:
+ *     <pre>
+ *     mvn test-compile exec:java -Dexec.classpathScope=test \
+ *         -Dexec.mainClass=es.tid.keyserver.https.protocol.SkiRequestParserBenchmark
+ *     </pre>
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SkiRequestParserBenchmark {
+    /**
+     * Request body as String.
+     */
+    private final String request;
+    
+    /**
+     * Request body as UTF-8 bytes.
+     */
+    private final byte[] requestBytes;
+    
+    /**
+     * Benchmark state constructor.
+     */
+    public SkiRequestParserBenchmark(){
+        request = "{\"protocol\":\"TLS 1.2\", \"method\":\"RSA\", "
+                + "\"spki\":\"193D57F655228025FCB8140933BE466BAB5D8E88\", "
+                + "\"input\":\"" + Base64.getEncoder().encodeToString(new byte[256]) + "\"}";
+        requestBytes = request.getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * json-simple parser and field reads.
+     * @param bh Blackhole object.
+     * @throws ParseException If the JSON is not valid.
+     */
+    @Benchmark
+    public void jsonSimple(Blackhole bh) throws ParseException {
+        JSONObject json = (JSONObject) new JSONParser().parse(new String(requestBytes, StandardCharsets.UTF_8));
+        bh.consume(SkiProtocol.fromLabel((String) json.get("protocol")));
+        bh.consume(SkiMethod.fromLabel((String) json.get("method")));
+        bh.consume(json.get("hash"));
+        bh.consume(json.get("spki"));
+        bh.consume(json.get("input"));
+    }
+    
+    /**
+     * Streaming parser.
+     * @param bh Blackhole object.
+     */
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        SkiRequestParser parser = SkiRequestParser.parse(requestBytes, 0, requestBytes.length);
+        bh.consume(parser.getProtocol());
+        bh.consume(parser.getMethod());
+        bh.consume(parser.getHash());
+        bh.consume(parser.getSpki());
+        bh.consume(parser.getInputLength());
+    }
+    
+    /**
+     * InputJSON object (streaming parser and validation).
+     * @return Validation result.
+     */
+    @Benchmark
+    public String inputJson() {
+        return new InputJSON(requestBytes).checkValidJSON();
+    }
+    
+    /**
+     * Benchmark launcher.
+     * @param args Not used.
+     * @throws RunnerException If the benchmark can't be executed.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SkiRequestParserBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(3)
+                .measurementIterations(5)
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.protocol;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Test class for the SKI request streaming parser.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class SkiRequestParserTest {
+    /**
+     * Valid ECDHE request.
+     */
+    private static final String ECDHE_REQUEST = "{ \"method\":\"ECDHE\", \"protocol\":\"TLS 1.2\", "
+            + "\"spki\":\"405FD8A83BFB64683BAEB51D9F8D99C9D872FA63\", \"hash\":\"SHA-256\", "
+            + "\"input\":\"VW2z\" }";
+    
+    /**
+     * Parses a request string.
+     * @param request Request as string.
+     * @return Parser object.
+     */
+    private static SkiRequestParser parse(String request){
+        byte[] data = request.getBytes(StandardCharsets.UTF_8);
+        return SkiRequestParser.parse(data, 0, data.length);
+    }
+    
+    /**
+     * Test of a valid request.
+     */
+    @Test
+    public void testValid() {
+        System.out.println("valid");
+        SkiRequestParser instance = parse(ECDHE_REQUEST);
+        assertNull(instance.getError());
+        assertEquals(SkiProtocol.TLS_1_2, instance.getProtocol());
+        assertEquals(SkiMethod.ECDHE, instance.getMethod());
+        assertEquals(SkiHash.SHA_256, instance.getHash());
+        assertTrue(instance.isHashPresent());
+        assertEquals("405FD8A83BFB64683BAEB51D9F8D99C9D872FA63", instance.getSpki());
+        assertEquals("VW2z", new String(instance.getInputData(), instance.getInputOffset(), 
+                instance.getInputLength(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Test of a request slice inside a bigger array.
+     */
+    @Test
+    public void testSlice() {
+        System.out.println("slice");
+        byte[] request = ECDHE_REQUEST.getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[request.length + 10];
+        System.arraycopy(request, 0, data, 5, request.length);
+        SkiRequestParser instance = SkiRequestParser.parse(data, 5, request.length);
+        assertNull(instance.getError());
+        assertEquals(SkiMethod.ECDHE, instance.getMethod());
+    }
+    
+    /**
+     * Test of escaped strings and unknown fields.
+     */
+    @Test
+    public void testEscapesAndUnknownFields() {
+        System.out.println("escapes and unknown fields");
+        SkiRequestParser instance = parse("{\"extra\":{\"a\":[1, -2.5e3, true, null, \"x\\\"y\"]}, "
+                + "\"m\\u0065thod\":\"RSA\", \"protocol\":\"TLS\\u0020\\u0031.0\", \"spki\":\"A\\/B\", "
+                + "\"input\":\"VW\\/z\", \"id\":7}");
+        assertNull(instance.getError());
+        assertEquals(SkiMethod.RSA, instance.getMethod());
+        assertEquals(SkiProtocol.TLS_1_0, instance.getProtocol());
+        assertEquals("A/B", instance.getSpki());
+        assertFalse(instance.isHashPresent());
+        assertEquals("VW/z", new String(instance.getInputData(), instance.getInputOffset(), 
+                instance.getInputLength(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Test of not valid values for the enum fields.
+     */
+    @Test
+    public void testNotValidValues() {
+        System.out.println("not valid values");
+        SkiRequestParser instance = parse("{\"method\":\"ECDH\", \"protocol\":\"TLS 1.3\", \"hash\":\"MD5\"}");
+        assertNull(instance.getError());
+        assertNull(instance.getMethod());
+        assertNull(instance.getProtocol());
+        assertNull(instance.getHash());
+        assertTrue(instance.isHashPresent());
+    }
+    
+    /**
+     * Test of malformed requests.
+     */
+    @Test
+    public void testMalformed() {
+        System.out.println("malformed");
+        String[] requests = {
+            "",
+            "[]",
+            "{",
+            "{\"method\":\"RSA\"",
+            "{\"method\":\"RSA\",}",
+            "{\"method\" \"RSA\"}",
+            "{\"method\":RSA}",
+            "{\"method\":5}",
+            "{\"method\":\"RSA\", \"method\":\"RSA\"}",
+            "{\"spki\":\"A\\qB\"}",
+            "{\"spki\":\"A\tB\"}",
+            "{\"extra\":tru}",
+            "{\"extra\":[1,]}",
+            "{\"method\":\"RSA\"} {}",
+            "{\"method\":\"RSA\"}x"
+        };
+        for(String request : requests){
+            SkiRequestParser instance = parse(request);
+            assertEquals(request, ErrorJSON.ERR_MALFORMED_REQUEST, instance.getError());
+            assertNull(instance.getMethod());
+        }
+    }
+    
+    /**
+     * Test of too deeply nested unknown fields.
+     */
+    @Test
+    public void testNestingLimit() {
+        System.out.println("nesting limit");
+        StringBuilder request = new StringBuilder("{\"extra\":");
+        for(int i = 0; i < 100; i++){
+            request.append('[');
+        }
+        for(int i = 0; i < 100; i++){
+            request.append(']');
+        }
+        request.append('}');
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, parse(request.toString()).getError());
+    }
+    
+    /**
+     * Test of oversized requests.
+     */
+    @Test
+    public void testOversized() {
+        System.out.println("oversized");
+        byte[] data = ECDHE_REQUEST.getBytes(StandardCharsets.UTF_8);
+        assertNull(SkiRequestParser.parse(data, 0, data.length, data.length).getError());
+        SkiRequestParser instance = SkiRequestParser.parse(data, 0, data.length, data.length - 1);
+        assertEquals(ErrorJSON.ERR_MALFORMED_REQUEST, instance.getError());
+        assertNull(instance.getSpki());
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the adaptive concurrency limit.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class ConcurrencyLimitTest {
+    /**
+     * Test of tryAcquire and release methods, of class ConcurrencyLimit.
+     */
+    @Test
+    public void testTryAcquire() {
+        System.out.println("tryAcquire / release");
+        ConcurrencyLimit instance = new ConcurrencyLimit(2, 10, 1000);
+        assertTrue(instance.isEnabled());
+        assertTrue(instance.tryAcquire());
+        assertTrue(instance.tryAcquire());
+        assertFalse(instance.tryAcquire());
+        assertEquals(2, instance.getInFlight());
+        assertEquals(1, instance.getRejected());
+        instance.release(System.nanoTime());
+        assertEquals(1, instance.getInFlight());
+        // Fast sample with the limit in use: additive increase.
+        assertEquals(3, instance.getLimit());
+        assertTrue(instance.tryAcquire());
+        assertTrue(instance.tryAcquire());
+        assertFalse(instance.tryAcquire());
+        assertEquals(2, instance.getRejected());
+    }
+    
+    /**
+     * Test of the limit updates (AIMD), of class ConcurrencyLimit.
+     */
+    @Test
+    public void testOnSample() {
+        System.out.println("onSample");
+        long fast = TimeUnit.MILLISECONDS.toNanos(1);
+        long slow = TimeUnit.MILLISECONDS.toNanos(100);
+        ConcurrencyLimit instance = new ConcurrencyLimit(20, 22, 10);
+        // Fast samples: the limit grows up to the maximum.
+        for(int i = 0; i < 5; i++){
+            instance.onSample(fast, instance.getLimit());
+        }
+        assertEquals(22, instance.getLimit());
+        // Fast samples with the limit not in use: no changes.
+        instance.onSample(fast, 1);
+        assertEquals(22, instance.getLimit());
+        // Slow samples: multiplicative decrease down to the minimum.
+        instance.onSample(slow, 22);
+        assertEquals(19, instance.getLimit());
+        for(int i = 0; i < 100; i++){
+            instance.onSample(slow, 1);
+        }
+        assertEquals(ConcurrencyLimit.MIN_LIMIT, instance.getLimit());
+        assertEquals(22, instance.getMaxLimit());
+        assertEquals(10, instance.getTargetLatency());
+    }
+    
+    /**
+     * Test of the disabled limit, of class ConcurrencyLimit.
+     */
+    @Test
+    public void testDisabled() {
+        System.out.println("disabled");
+        ConcurrencyLimit instance = new ConcurrencyLimit(0, 10, 100);
+        assertFalse(instance.isEnabled());
+        for(int i = 0; i < 100; i++){
+            assertTrue(instance.tryAcquire());
+        }
+        instance.release(System.nanoTime());
+        assertEquals(0, instance.getInFlight());
+        assertEquals(0, instance.getRejected());
+    }
+}
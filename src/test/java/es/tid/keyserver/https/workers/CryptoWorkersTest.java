@@ -0,0 +1,135 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the private key operations workers pool.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class CryptoWorkersTest {
+    /**
+     * Test of submit method, of class CryptoWorkers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testSubmit() throws Exception {
+        System.out.println("submit");
+        CryptoWorkers instance = new CryptoWorkers(2, 4, CryptoWorkers.QUEUE_FULL_BUSY);
+        CountDownLatch done = new CountDownLatch(3);
+        for(int i = 0; i < 3; i++){
+            assertTrue(instance.submit(done::countDown));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(instance.isEnabled());
+        assertEquals(2, instance.getThreads());
+        assertEquals(0, instance.getRejectedTasks());
+        instance.stop();
+        assertFalse(instance.submit(done::countDown));
+    }
+    
+    /**
+     * Test of submit method with the queue full, of class CryptoWorkers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testSubmitQueueFull() throws Exception {
+        System.out.println("submit (queue full)");
+        CryptoWorkers instance = new CryptoWorkers(1, 2, CryptoWorkers.QUEUE_FULL_ERROR);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        // One running task and two queued tasks.
+        assertTrue(instance.submit(blocked));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(instance.submit(blocked));
+        assertTrue(instance.submit(blocked));
+        assertEquals(2, instance.getQueueDepth());
+        assertFalse(instance.submit(blocked));
+        assertEquals(1, instance.getRejectedTasks());
+        assertEquals(CryptoWorkers.QUEUE_FULL_ERROR, instance.getQueueFullResponse());
+        release.countDown();
+        instance.stop();
+    }
+    
+    /**
+     * Test of disabled workers pool, of class CryptoWorkers.
+     */
+    @Test
+    public void testDisabled() {
+        System.out.println("disabled");
+        CryptoWorkers instance = new CryptoWorkers(0, 16, CryptoWorkers.QUEUE_FULL_BUSY);
+        assertFalse(instance.isEnabled());
+        assertFalse(instance.submit(() -> {}));
+        assertEquals(0, instance.getThreads());
+        assertEquals(0, instance.getQueueDepth());
+        assertEquals(16, instance.getQueueSize());
+        instance.stop();
+    }
+    
+    /**
+     * Test of submit method with the fair scheduler, of class CryptoWorkers.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testSubmitFair() throws Exception {
+        System.out.println("submit (fair scheduler)");
+        CryptoWorkers instance = new CryptoWorkers(1, 8, CryptoWorkers.QUEUE_FULL_BUSY, 
+                CryptoWorkers.SCHEDULER_FAIR, null);
+        assertEquals(CryptoWorkers.SCHEDULER_FAIR, instance.getScheduler());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(instance.submit("10.0.0.1", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CountDownLatch done = new CountDownLatch(8);
+        // Each client can only fill half of the queue.
+        for(int i = 0; i < 4; i++){
+            assertTrue(instance.submit("10.0.0.2", done::countDown));
+        }
+        assertFalse(instance.submit("10.0.0.2", done::countDown));
+        for(int i = 0; i < 4; i++){
+            assertTrue(instance.submit("10.0.0.3", done::countDown));
+        }
+        assertFalse(instance.submit("10.0.0.4", done::countDown));
+        assertEquals(8, instance.getQueueDepth());
+        assertEquals(2, instance.getRejectedTasks());
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, instance.getQueueDepth());
+        // Idle clients are removed (statistics kept as other clients).
+        assertEquals(1, instance.getClientQueues().size());
+        instance.stop();
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package es.tid.keyserver.https.workers;
+
+import es.tid.keyserver.core.lib.RequestDeadline;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the early discard of expired requests.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class DeadlineControlTest {
+    /**
+     * Test of read method, of class DeadlineControl.
+     */
+    @Test
+    public void testRead() {
+        System.out.println("read");
+        DeadlineControl instance = new DeadlineControl(DeadlineControl.DEFAULT_HEADER);
+        assertTrue(instance.isEnabled());
+        assertNull(instance.read(null, 0));
+        assertNull(instance.read("soon", 0));
+        assertNotNull(instance.read("250", 0));
+        assertEquals(1, instance.getRequests());
+        // Disabled: the header is ignored.
+        DeadlineControl disabled = new DeadlineControl(null);
+        assertFalse(disabled.isEnabled());
+        assertNull(disabled.read("250", 0));
+        assertEquals(0, disabled.getRequests());
+    }
+
+    /**
+     * Test of beforeLookup method, of class DeadlineControl.
+     */
+    @Test
+    public void testBeforeLookup() {
+        System.out.println("beforeLookup");
+        DeadlineControl instance = new DeadlineControl(DeadlineControl.DEFAULT_HEADER);
+        assertTrue(instance.beforeLookup(null));
+        assertTrue(instance.beforeLookup(RequestDeadline.of(60000, 0)));
+        assertFalse(instance.beforeLookup(RequestDeadline.of(50, 100)));
+        instance.discardedLookup();
+        assertEquals(2, instance.getDiscardedLookup());
+        assertEquals(0, instance.getDiscardedCrypto());
+        assertEquals(2, instance.getDiscarded());
+    }
+
+    /**
+     * Test of beforeCrypto method, of class DeadlineControl. The request is
+     *     discarded if the average operation can't finish in time.
+     */
+    @Test
+    public void testBeforeCrypto() {
+        System.out.println("beforeCrypto");
+        DeadlineControl instance = new DeadlineControl(DeadlineControl.DEFAULT_HEADER);
+        for(int i = 0; i < 64; i++){
+            instance.recordOperation(TimeUnit.MILLISECONDS.toNanos(40));
+        }
+        assertTrue(instance.getOperationTime() > TimeUnit.MILLISECONDS.toNanos(35));
+        assertTrue(instance.getOperationTime() <= TimeUnit.MILLISECONDS.toNanos(40));
+        assertTrue(instance.beforeCrypto(null));
+        assertTrue(instance.beforeCrypto(RequestDeadline.of(60000, 0)));
+        // Not expired, but shorter than the operation.
+        assertFalse(instance.beforeCrypto(RequestDeadline.of(10, 0)));
+        assertEquals(1, instance.getDiscardedCrypto());
+        assertEquals(1, instance.getDiscarded());
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the crypto workers fair scheduler.
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class FairSchedulerTest {
+    /**
+     * Test of offer and poll methods with weights, of class FairScheduler.
+     */
+    @Test
+    public void testWeights() {
+        System.out.println("offer / poll (weights)");
+        Map<String, Integer> weights = new HashMap<>();
+        weights.put("10.0.0.1", 3);
+        FairScheduler instance = new FairScheduler(100, weights);
+        StringBuilder order = new StringBuilder();
+        // Client B floods the queue before client A.
+        for(int i = 0; i < 20; i++){
+            assertTrue(instance.offer("10.0.0.2", () -> order.append('B')));
+        }
+        for(int i = 0; i < 9; i++){
+            assertTrue(instance.offer("10.0.0.1", () -> order.append('A')));
+        }
+        assertEquals(29, instance.size());
+        for(int i = 0; i < 12; i++){
+            instance.poll().run();
+        }
+        // Weight 3 against weight 1: three tasks of A for each task of B.
+        assertEquals(9, order.chars().filter(c -> c == 'A').count());
+        assertEquals(3, order.chars().filter(c -> c == 'B').count());
+        for(ClientQueue queue : instance.getClientQueues()){
+            if("10.0.0.1".equals(queue.getClient())){
+                assertEquals(3, queue.getWeight());
+                assertEquals(0, queue.getDepth());
+                assertEquals(9, queue.getServed());
+            } else {
+                assertEquals(1, queue.getWeight());
+                assertEquals(17, queue.getDepth());
+                assertEquals(3, queue.getServed());
+            }
+        }
+    }
+    
+    /**
+     * Test of offer method with the queue full and remove method, of class 
+     *     FairScheduler.
+     */
+    @Test
+    public void testCapacity() {
+        System.out.println("offer (queue full) / remove");
+        FairScheduler instance = new FairScheduler(2, null);
+        Runnable task = () -> { };
+        assertTrue(instance.offer("10.0.0.1", task));
+        assertTrue(instance.offer(null, () -> { }));
+        assertFalse(instance.offer("10.0.0.1", () -> { }));
+        instance.remove(task);
+        assertEquals(1, instance.size());
+        assertNotNull(instance.poll());
+        assertNull(instance.poll());
+        // Idle clients removed (statistics of the executed task kept).
+        assertEquals(1, instance.getClientQueues().size());
+        ClientQueue others = instance.getClientQueues().iterator().next();
+        assertEquals(FairScheduler.OTHER_CLIENTS, others.getClient());
+        assertEquals(1, others.getServed());
+    }
+    
+    /**
+     * Test of offer method with a client flooding the queue, of class 
+     *     FairScheduler. The flooding client only fills its share of the 
+     *     queue, so the tasks of a quiet client are still accepted.
+     */
+    @Test
+    public void testClientCapacity() {
+        System.out.println("offer (client share)");
+        FairScheduler instance = new FairScheduler(8, Collections.singletonMap("10.0.0.3", 3));
+        assertEquals(4, instance.clientCapacity(1));
+        assertEquals(6, instance.clientCapacity(3));
+        int accepted = 0;
+        for(int i = 0; i < 100; i++){
+            if(instance.offer("10.0.0.2", () -> { })){
+                accepted++;
+            }
+        }
+        assertEquals(4, accepted);
+        // Quiet clients are not rejected while the other client floods.
+        assertTrue(instance.offer("10.0.0.1", () -> { }));
+        assertTrue(instance.offer("10.0.0.3", () -> { }));
+        assertFalse(instance.offer("10.0.0.2", () -> { }));
+        for(ClientQueue queue : instance.getClientQueues()){
+            if("10.0.0.2".equals(queue.getClient())){
+                assertEquals(4, queue.getDepth());
+                assertEquals(97, queue.getRejected());
+            } else {
+                assertEquals(1, queue.getDepth());
+                assertEquals(0, queue.getRejected());
+            }
+        }
+    }
+    
+    /**
+     * Test of poll method with many clients, of class FairScheduler. Clients
+     *     without queued tasks are removed unless they have a configured 
+     *     weight.
+     */
+    @Test
+    public void testIdleClients() {
+        System.out.println("poll (idle clients)");
+        FairScheduler instance = new FairScheduler(10, Collections.singletonMap("10.0.0.1", 2));
+        for(int i = 0; i < 1000; i++){
+            assertTrue(instance.offer("10.1." + (i / 256) + "." + (i % 256), () -> { }));
+            assertTrue(instance.offer("10.0.0.1", () -> { }));
+            assertNotNull(instance.poll());
+            assertNotNull(instance.poll());
+        }
+        assertEquals(0, instance.size());
+        assertEquals(2, instance.getClientQueues().size());
+        for(ClientQueue queue : instance.getClientQueues()){
+            if("10.0.0.1".equals(queue.getClient())){
+                assertEquals(1000, queue.getServed());
+            } else {
+                assertEquals(FairScheduler.OTHER_CLIENTS, queue.getClient());
+                assertEquals(1000, queue.getServed());
+            }
+        }
+    }
+}
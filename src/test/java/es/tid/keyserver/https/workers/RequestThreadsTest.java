@@ -0,0 +1,68 @@
+/**
+ * Copyright 2017.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package es.tid.keyserver.https.workers;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Unitary test class for the request threads (platform and virtual mode).
+ * @author <a href="mailto:jgm1986@hotmail.com">Javier Martinez Gusano</a>
+ * @since v0.4.5
+ */
+public class RequestThreadsTest {
+    /**
+     * Test of submit method in platform mode, of class RequestThreads.
+     */
+    @Test
+    public void testSubmitPlatform() {
+        System.out.println("submit (platform)");
+        RequestThreads instance = new RequestThreads(RequestThreads.MODE_PLATFORM);
+        assertFalse(instance.isEnabled());
+        assertEquals(RequestThreads.MODE_PLATFORM, instance.getMode());
+        assertFalse(instance.submit(() -> fail("Task must be executed by the caller")));
+        assertEquals(0, instance.getStartedTasks());
+    }
+    
+    /**
+     * Test of submit method in virtual mode, of class RequestThreads. JVMs 
+     *     without virtual threads use the platform mode.
+     * @throws Exception If something goes wrong.
+     */
+    @Test
+    public void testSubmitVirtual() throws Exception {
+        System.out.println("submit (virtual)");
+        boolean supported = RequestThreads.newVirtualThreadExecutor("TEST_") != null;
+        RequestThreads instance = new RequestThreads(RequestThreads.MODE_VIRTUAL);
+        assertEquals(supported, instance.isEnabled());
+        if(!supported){
+            assertEquals(RequestThreads.MODE_PLATFORM, instance.getMode());
+            assertFalse(instance.submit(() -> { }));
+            return;
+        }
+        assertEquals(RequestThreads.MODE_VIRTUAL, instance.getMode());
+        CountDownLatch done = new CountDownLatch(100);
+        for(int i = 0; i < 100; i++){
+            assertTrue(instance.submit(done::countDown));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(100, instance.getStartedTasks());
+        instance.stop();
+        assertFalse(instance.submit(done::countDown));
+    }
+}